@@ -38,12 +38,44 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * The query range of each series during the last update. The data of a series can only have changed since if its query range
+   * changed, or if it is open ended.
+   */
+  @NotNull
+  private final Map<RangedContinuousSeries, Range> myLastQueryRanges = new HashMap<>();
+
+  /**
+   * Whether a y range changed since the last update, or is still animating towards the max of its series.
+   */
+  private boolean myYRangeDirty;
+
+  @Override
+  public boolean needsUpdate() {
+    if (myFirstUpdate || myYRangeDirty) {
+      return true;
+    }
+    for (RangedContinuousSeries ranged : mySeries) {
+      Range queryRange = ranged.getIntersection();
+      if (queryRange.getMax() == Long.MAX_VALUE || queryRange.getMax() == Double.MAX_VALUE) {
+        return true;
+      }
+      Range lastQueryRange = myLastQueryRanges.get(ranged);
+      if (lastQueryRange == null || !lastQueryRange.isSameAs(queryRange)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public void update(long elapsedNs) {
+    myYRangeDirty = false;
     Map<Range, Double> maxPerRangeObject = new HashMap<>();
 
     // TODO Handle stacked configs
     for (RangedContinuousSeries ranged : mySeries) {
+      myLastQueryRanges.put(ranged, ranged.getIntersection());
       Range range = ranged.getYRange();
       double yMax = -Double.MAX_VALUE;
 
@@ -76,6 +108,9 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
                                     (float)(entry.getValue() * Updater.DEFAULT_LERP_THRESHOLD_PERCENTAGE));
         range.setMax(max);
         changed = true;
+        if (max < entry.getValue()) {
+          myYRangeDirty = true;
+        }
       }
     }
 
@@ -93,11 +128,15 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
   public void add(@NotNull RangedContinuousSeries series) {
     mySeries.add(series);
     series.getXRange().addDependency(this).onChange(Range.Aspect.RANGE, () -> changed(Aspect.LINE_CHART));
+    // The y range may be lowered below the max of the series by someone else.
+    series.getYRange().addDependency(this).onChange(Range.Aspect.RANGE, () -> myYRangeDirty = true);
   }
 
   public void remove(@NotNull RangedContinuousSeries series) {
     series.getXRange().removeDependencies(this);
+    series.getYRange().removeDependencies(this);
     mySeries.remove(series);
+    myLastQueryRanges.remove(series);
   }
 
   @NotNull
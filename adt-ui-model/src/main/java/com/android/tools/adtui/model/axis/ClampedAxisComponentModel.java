@@ -59,6 +59,12 @@ public final class ClampedAxisComponentModel extends AxisComponentModel implemen
     myIsUpdating = false;
   }
 
+  @Override
+  public boolean needsUpdate() {
+    // Once the range max reaches its clamped target there is nothing left to animate. Changes to the range update the axis right away.
+    return myFirstUpdate || Double.compare(myRange.getMax(), calculateClampedMaxTarget()) != 0;
+  }
+
   @Override
   public void updateImmediately() {
     update(0);
@@ -32,6 +32,15 @@ public interface Updatable {
    */
   void update(long elapsedNs);
 
+  /**
+   * Whether this {@link Updatable} has anything to animate or recompute in the coming frame. Returning {@code false} lets the
+   * {@link Updater} skip {@link #update(long)} and {@link #postUpdate()} for that frame. This is polled once per frame, before any
+   * component is updated.
+   */
+  default boolean needsUpdate() {
+    return true;
+  }
+
   /**
    * Triggered by the {@link Choreographer} after all components have finished animating.
    * This allows an {@link Updatable} to read any data modified by other components
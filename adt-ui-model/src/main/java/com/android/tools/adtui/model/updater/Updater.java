@@ -19,6 +19,7 @@ package com.android.tools.adtui.model.updater;
 import com.android.tools.adtui.model.StopwatchTimer;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -26,6 +27,9 @@ import java.util.List;
  * An auxiliary object that synchronizes a group of {@link Updatable} via a simple update loop
  * running at a specific frame rate. This ensures all UI components and model classes are reading
  * and displaying consistent information at any given time.
+ *
+ * Components reporting that they don't {@link Updatable#needsUpdate() need an update} are skipped for the frame. The timer keeps
+ * ticking while nothing needs an update, as components that become dirty again have no way to wake it up.
  */
 public class Updater implements StopwatchTimer.TickHandler {
 
@@ -39,6 +43,10 @@ public class Updater implements StopwatchTimer.TickHandler {
   private boolean mReset;
 
   private boolean mUpdating;
+  /**
+   * The components updated in the current frame. Reused across frames.
+   */
+  private final List<Updatable> mDirty = new ArrayList<>();
 
   public Updater(@NotNull StopwatchTimer timer) {
     mComponents = new LinkedList<>();
@@ -100,8 +108,19 @@ public class Updater implements StopwatchTimer.TickHandler {
       mReset = false;
     }
 
-    mComponents.forEach(component -> component.update(elapsedNs));
-    mComponents.forEach(Updatable::postUpdate);
+    for (Updatable component : mComponents) {
+      if (component.needsUpdate()) {
+        mDirty.add(component);
+      }
+    }
+
+    for (Updatable component : mDirty) {
+      component.update(elapsedNs);
+    }
+    for (Updatable component : mDirty) {
+      component.postUpdate();
+    }
+    mDirty.clear();
     mUpdating = false;
 
     mToUnregister.forEach(this::unregister);
@@ -20,7 +20,11 @@ import com.android.tools.adtui.model.axis.ClampedAxisComponentModel;
 import com.android.tools.adtui.model.formatter.SingleUnitAxisFormatter;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class AxisComponentModelTest {
 
@@ -40,4 +44,27 @@ public class AxisComponentModelTest {
     model.reset();
     assertEquals(10.0, model.getRange().getMax(), 0.0);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testNeedsUpdateUntilClampedMaxIsReached() {
+    SingleUnitAxisFormatter formatter = new SingleUnitAxisFormatter(1, 1, 10, "");
+    Range range = new Range(0, 5);
+
+    ClampedAxisComponentModel model = new ClampedAxisComponentModel.Builder(range, formatter).build();
+    assertTrue(model.needsUpdate()); // First update.
+    model.update(0);
+    assertEquals(10.0, range.getMax(), 0.0);
+    assertFalse(model.needsUpdate());
+
+    // The axis then animates the range to a major tick, and stops needing updates once there.
+    range.setMax(15.0);
+    assertTrue(model.needsUpdate());
+    while (model.needsUpdate()) {
+      model.update(TimeUnit.MILLISECONDS.toNanos(16));
+    }
+    double clampedMax = range.getMax();
+    assertTrue(clampedMax > 15.0);
+    model.update(TimeUnit.MILLISECONDS.toNanos(16));
+    assertEquals(clampedMax, range.getMax(), 0.0);
+  }
+}
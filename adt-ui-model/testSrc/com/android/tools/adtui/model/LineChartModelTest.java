@@ -144,4 +144,48 @@ public class LineChartModelTest {
     assertTrue(updated[0]);
     // TODO(b/80503984) We can't assert range max is at 7L since it needs many steps to interpolate.
   }
+
+  @Test
+  public void testNeedsUpdateOnlyWhenTheDataCanChange() {
+    Range xRange = new Range(0, 10);
+    Range yRange = new Range(0, 0);
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    for (int i = 0; i < 21; i++) {
+      testSeries.add(i, (long)i);
+    }
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("test", xRange, yRange, testSeries);
+    FakeTimer t = new FakeTimer();
+    Updater updater = new Updater(t);
+
+    LineChartModel model = new LineChartModel();
+    model.add(rangedSeries);
+    updater.register(model);
+
+    assertTrue(model.needsUpdate()); // First update.
+    t.step();
+    assertEquals(10, yRange.getMax(), 0);
+    // The range change of the first update is checked once more.
+    assertTrue(model.needsUpdate());
+    t.step();
+    assertFalse(model.needsUpdate());
+
+    // Moving the x range brings in larger values.
+    xRange.set(0, 20);
+    assertTrue(model.needsUpdate());
+    t.step();
+    assertTrue(yRange.getMax() > 10);
+
+    // The y range is lowered by someone else.
+    while (model.needsUpdate()) {
+      t.step();
+    }
+    yRange.setMax(0);
+    assertTrue(model.needsUpdate());
+
+    // An open ended range may see new data at any time.
+    xRange.setMax(Long.MAX_VALUE);
+    t.step();
+    t.step();
+    assertTrue(model.needsUpdate());
+  }
 }
@@ -150,8 +150,28 @@ public class UpdaterTest {
     assertEquals(Arrays.asList(updatableA, updatableB), reset);
   }
 
+  @Test
+  public void updatablesThatDoNotNeedUpdateAreSkipped() {
+    List<Updatable> updated = new ArrayList<>();
+    FakeUpdatable updatableA = new FakeUpdatable(updated);
+    FakeUpdatable updatableB = new FakeUpdatable(updated);
+    myUpdater.register(Arrays.asList(updatableA, updatableB));
+
+    updatableA.myNeedsUpdate = false;
+    updated.clear();
+    myUpdater.getTimer().tick(1);
+    assertEquals(Collections.singletonList(updatableB), updated);
+    assertTrue(myUpdater.getTimer().isRunning());
+
+    updatableA.myNeedsUpdate = true;
+    updated.clear();
+    myUpdater.getTimer().tick(1);
+    assertEquals(Arrays.asList(updatableA, updatableB), updated);
+  }
+
   private static class FakeUpdatable implements Updatable {
     private final List<Updatable> myUpdated;
+    private boolean myNeedsUpdate = true;
 
     private FakeUpdatable(List<Updatable> updated) {
       myUpdated = updated;
@@ -161,5 +181,10 @@ public class UpdaterTest {
     public void update(long elapsedNs) {
       myUpdated.add(this);
     }
+
+    @Override
+    public boolean needsUpdate() {
+      return myNeedsUpdate;
+    }
   }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart;
+
+import com.android.tools.adtui.model.HNode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The nodes of an {@link HNode} tree grouped by depth, each depth sorted by start. This lets {@link HTreeChart} find the nodes
+ * intersecting the visible range with binary searches instead of walking the whole tree on every redraw.
+ */
+final class HNodeIndex<N extends HNode<N>> {
+  @NotNull private final List<Level<N>> myLevels;
+  private final int myMaxDepth;
+
+  HNodeIndex(@Nullable N root) {
+    Map<Integer, List<N>> nodesByDepth = new HashMap<>();
+    int maxDepth = -1;
+    if (root != null) {
+      List<N> queue = new ArrayList<>();
+      queue.add(root);
+      for (int head = 0; head < queue.size(); ++head) {
+        N node = queue.get(head);
+        maxDepth = Math.max(maxDepth, node.getDepth());
+        nodesByDepth.computeIfAbsent(node.getDepth(), depth -> new ArrayList<>()).add(node);
+        for (int i = 0; i < node.getChildCount(); ++i) {
+          queue.add(node.getChildAt(i));
+        }
+      }
+    }
+    myMaxDepth = maxDepth;
+    myLevels = new ArrayList<>(nodesByDepth.size());
+    nodesByDepth.keySet().stream().sorted().forEach(depth -> myLevels.add(new Level<>(depth, nodesByDepth.get(depth))));
+  }
+
+  /**
+   * @return the largest depth of the tree's nodes, or -1 if the tree is empty.
+   */
+  int getMaxDepth() {
+    return myMaxDepth;
+  }
+
+  /**
+   * @return the levels of the tree, by increasing depth.
+   */
+  @NotNull
+  List<Level<N>> getLevels() {
+    return myLevels;
+  }
+
+  static final class Level<N extends HNode<N>> {
+    private final int myDepth;
+    @NotNull private final Object[] myNodes;
+    @NotNull private final long[] myStarts;
+    // The maximum end of the nodes up to each index, so that searching by end still works if nodes overlap.
+    @NotNull private final long[] myMaxEnds;
+
+    private Level(int depth, @NotNull List<N> nodes) {
+      myDepth = depth;
+      // Nodes of a depth are usually already in order, as siblings are.
+      for (int i = 1; i < nodes.size(); ++i) {
+        if (nodes.get(i).getStart() < nodes.get(i - 1).getStart()) {
+          nodes.sort(Comparator.comparingLong(HNode::getStart));
+          break;
+        }
+      }
+      myNodes = nodes.toArray();
+      myStarts = new long[myNodes.length];
+      myMaxEnds = new long[myNodes.length];
+      long maxEnd = Long.MIN_VALUE;
+      for (int i = 0; i < myNodes.length; ++i) {
+        N node = get(i);
+        myStarts[i] = node.getStart();
+        maxEnd = Math.max(maxEnd, node.getEnd());
+        myMaxEnds[i] = maxEnd;
+      }
+    }
+
+    int getDepth() {
+      return myDepth;
+    }
+
+    int size() {
+      return myNodes.length;
+    }
+
+    @NotNull
+    N get(int index) {
+      //noinspection unchecked
+      return (N)myNodes[index];
+    }
+
+    /**
+     * @return the index of the first node that ends at or after {@code time}, or {@link #size()} if there is none.
+     */
+    int firstEndingAtOrAfter(double time) {
+      int low = 0;
+      int high = myMaxEnds.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myMaxEnds[mid] < time) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first node in {@code [from, to)} that starts at or after {@code time}, or {@code to} if there is none.
+     */
+    int firstStartingAtOrAfter(double time, int from, int to) {
+      int low = from;
+      int high = to;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myStarts[mid] < time) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first node that starts after {@code time}, or {@link #size()} if there is none.
+     */
+    int firstStartingAfter(double time) {
+      int low = 0;
+      int high = myStarts.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (myStarts[mid] <= time) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
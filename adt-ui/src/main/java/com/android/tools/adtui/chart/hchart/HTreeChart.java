@@ -43,9 +43,7 @@ import java.awt.event.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import javax.swing.AbstractAction;
 import javax.swing.KeyStroke;
 import org.jetbrains.annotations.NotNull;
@@ -92,11 +90,11 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final Range myYRange;
 
+  /**
+   * Index of {@link #myRoot}'s nodes, used to only visit the nodes intersecting the visible area when drawing.
+   */
   @NotNull
-  private final List<Rectangle2D.Float> myRectangles;
-
-  @NotNull
-  private final List<N> myNodes;
+  private HNodeIndex<N> myNodeIndex;
 
   private boolean myRootVisible;
 
@@ -114,6 +112,20 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
   @NotNull
   private final List<N> myDrawnNodes;
 
+  /**
+   * Rectangles reused across redraws for {@link #myDrawnRectangles}, so that redrawing doesn't allocate one per node.
+   */
+  @NotNull
+  private final List<Rectangle2D.Float> myRectanglePool;
+
+  @NotNull
+  private final Rectangle2D.Float myClampedDrawingArea = new Rectangle2D.Float();
+
+  /**
+   * Number of nodes looked at in the last redraw, for debugging purposes.
+   */
+  private int myVisitedNodeCount;
+
   @NotNull
   private final HTreeChartReducer<N> myReducer;
 
@@ -146,6 +158,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     myGlobalXRange = builder.myGlobalXRange;
     myXRange = builder.myXRange;
     myRoot = builder.myRoot;
+    myNodeIndex = new HNodeIndex<>(myRoot);
     myReducer = builder.myReducer;
     myRenderer = builder.myRenderer;
     myOrientation = builder.myOrientation;
@@ -156,10 +169,9 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     myNodeYPaddingPx = builder.myNodeYPaddingPx;
 
     myYRange = new Range(INITIAL_Y_POSITION, INITIAL_Y_POSITION);
-    myRectangles = new ArrayList<>();
-    myNodes = new ArrayList<>();
     myDrawnNodes = new ArrayList<>();
     myDrawnRectangles = new ArrayList<>();
+    myRectanglePool = new ArrayList<>();
     mySelectedNode = null;
 
     setFocusable(true);
@@ -215,7 +227,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     long startTime = System.nanoTime();
     if (myDataUpdated) {
       // Nulling out the canvas will trigger a render pass, below
-      updateNodesAndClearCanvas();
+      myCanvas = null;
       myDataUpdated = false;
     }
     g.setFont(getFont());
@@ -237,7 +249,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     }
     UIUtil.drawImage(g, myCanvas, 0, 0, null);
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6);
-    addDebugInfo("# of nodes %d", myNodes.size());
+    addDebugInfo("# of visited nodes %d", myVisitedNodeCount);
     addDebugInfo("# of reduced nodes %d", myDrawnNodes.size());
   }
 
@@ -254,25 +266,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     UISettings.setupAntialiasing(g);
     g.setFont(getFont());
 
-    myDrawnNodes.clear();
-    myDrawnNodes.addAll(myNodes);
-
-    myDrawnRectangles.clear();
-    // Transform
-    for (Rectangle2D.Float rect : myRectangles) {
-      Rectangle2D.Float newRect = new Rectangle2D.Float();
-      newRect.x = rect.x * (float)dim.getWidth();
-      newRect.y = rect.y;
-      newRect.width = Math.max(0, rect.width * (float)dim.getWidth() - myNodeXPaddingPx);
-      newRect.height = rect.height;
-
-      if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
-        newRect.y = (float)(dim.getHeight() - newRect.y - newRect.getHeight());
-      }
-
-      myDrawnRectangles.add(newRect);
-    }
-
+    collectVisibleNodes(dim);
     myReducer.reduce(myDrawnRectangles, myDrawnNodes);
 
     assert myDrawnRectangles.size() == myDrawnNodes.size();
@@ -280,62 +274,79 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     for (int i = 0; i < myDrawnNodes.size(); ++i) {
       N node = myDrawnNodes.get(i);
       Rectangle2D.Float drawingArea = myDrawnRectangles.get(i);
-      Rectangle2D.Float clampedDrawingArea = new Rectangle2D.Float(
+      myClampedDrawingArea.setRect(
         Math.max(0, drawingArea.x),
         drawingArea.y,
         Math.min(drawingArea.x + drawingArea.width, dim.width - myNodeXPaddingPx) - Math.max(0, drawingArea.x),
         drawingArea.height);
-      myRenderer.render(g, node, drawingArea, clampedDrawingArea, node == myFocusedNode, mySelectedNode != null && node != mySelectedNode);
+      myRenderer.render(g, node, drawingArea, myClampedDrawingArea, node == myFocusedNode,
+                        mySelectedNode != null && node != mySelectedNode);
     }
 
     g.dispose();
   }
 
-  private void updateNodesAndClearCanvas() {
-    myNodes.clear();
-    myRectangles.clear();
-    myCanvas = null;
-    if (myRoot == null) {
-      return;
-    }
-
-    if (inRange(myRoot)) {
-      myNodes.add(myRoot);
-      myRectangles.add(createRectangle(myRoot));
-    }
-
-    int head = 0;
-    while (head < myNodes.size()) {
-      N curNode = myNodes.get(head++);
+  /**
+   * Fills {@link #myDrawnNodes} and {@link #myDrawnRectangles} with the nodes intersecting the visible area, depth by depth and
+   * ordered by start within a depth, as {@link HTreeChartReducer} expects them.
+   * <p>
+   * Runs of nodes narrower than a pixel are only partially visited: when a node fits in a single pixel, the nodes that start in the
+   * same pixel are skipped, except for the last one. The reducer merges all the nodes of such a run into a single rectangle
+   * that spans from the first to the last one anyway, so the result is the same as if every node was visited, but the cost of a
+   * redraw depends on the number of pixels rather than on the number of nodes.
+   */
+  private void collectVisibleNodes(@NotNull Dimension dim) {
+    myDrawnNodes.clear();
+    myDrawnRectangles.clear();
+    myVisitedNodeCount = 0;
+
+    double min = myXRange.getMin();
+    double max = myXRange.getMax();
+    double length = myXRange.getLength();
+    double width = dim.getWidth();
+    int nodeHeight = getNodeHeight();
+    for (HNodeIndex.Level<N> level : myNodeIndex.getLevels()) {
+      float y = (float)((nodeHeight + myNodeYPaddingPx) * level.getDepth() - getYRange().getMin());
+      if (y + nodeHeight < 0 || y > dim.height) {
+        continue;
+      }
+      if (myOrientation == HTreeChart.Orientation.BOTTOM_UP) {
+        y = (float)(dim.getHeight() - y - nodeHeight);
+      }
 
-      for (int i = 0; i < curNode.getChildCount(); ++i) {
-        N child = curNode.getChildAt(i);
-        if (inRange(child)) {
-          myNodes.add(child);
-          myRectangles.add(createRectangle(child));
+      int end = level.firstStartingAfter(max);
+      int i = level.firstEndingAtOrAfter(min);
+      while (i < end) {
+        N node = level.get(i);
+        ++myVisitedNodeCount;
+        int next = i + 1;
+        if (node.getEnd() >= min && (myRootVisible || node != myRoot)) {
+          float left = (float)((node.getStart() - min) / length * width);
+          float right = (float)((node.getEnd() - min) / length * width);
+          addDrawnNode(node, left, y, Math.max(0, right - left - myNodeXPaddingPx), nodeHeight);
+
+          double pixel = Math.floor(left);
+          if (pixel == Math.floor(right)) {
+            // Skip to the last node that starts in the same pixel. The ones in between are inside this pixel too, as nodes of the
+            // same depth don't overlap.
+            int firstInNextPixel = level.firstStartingAtOrAfter(min + (pixel + 1) / width * length, next, end);
+            next = Math.max(next, firstInNextPixel - 1);
+          }
         }
+        i = next;
       }
     }
-    if (!myRootVisible && !myNodes.isEmpty()) {
-      myNodes.remove(0);
-      myRectangles.remove(0);
-    }
-  }
-
-  private boolean inRange(@NotNull N node) {
-    return node.getStart() <= myXRange.getMax() && node.getEnd() >= myXRange.getMin();
   }
 
-  @NotNull
-  private Rectangle2D.Float createRectangle(@NotNull N node) {
-    float left = (float)((node.getStart() - myXRange.getMin()) / myXRange.getLength());
-    float right = (float)((node.getEnd() - myXRange.getMin()) / myXRange.getLength());
-    Rectangle2D.Float rect = new Rectangle2D.Float();
-    rect.x = left;
-    rect.y = (float)((getNodeHeight() + myNodeYPaddingPx) * node.getDepth() - getYRange().getMin());
-    rect.width = right - left;
-    rect.height = getNodeHeight();
-    return rect;
+  private void addDrawnNode(@NotNull N node, float x, float y, float width, float height) {
+    int index = myDrawnRectangles.size();
+    if (index == myRectanglePool.size()) {
+      myRectanglePool.add(new Rectangle2D.Float());
+    }
+    Rectangle2D.Float rect = myRectanglePool.get(index);
+    rect.setRect(x, y, width, height);
+    myDrawnRectangles.add(rect);
+    myDrawnNodes.add(node);
   }
 
   private double positionToRange(double x) {
@@ -344,6 +355,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
 
   public void setHTree(@Nullable N root) {
     this.myRoot = root;
+    myNodeIndex = new HNodeIndex<>(root);
     changed();
   }
 
@@ -517,23 +529,7 @@ public final class HTreeChart<N extends HNode<N>> extends AnimatedComponent {
     if (myRoot == null) {
       return 0;
     }
-
-    int maxDepth = -1;
-    Queue<N> queue = new LinkedList<>();
-    queue.add(myRoot);
-
-    while (!queue.isEmpty()) {
-      N n = queue.poll();
-      assert n != null;
-      if (n.getDepth() > maxDepth) {
-        maxDepth = n.getDepth();
-      }
-
-      for (int i = 0; i < n.getChildCount(); ++i) {
-        queue.add(n.getChildAt(i));
-      }
-    }
-    maxDepth += 1;
+    int maxDepth = myNodeIndex.getMaxDepth() + 1;
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
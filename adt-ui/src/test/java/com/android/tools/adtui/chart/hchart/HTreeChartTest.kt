@@ -27,6 +27,7 @@ import java.awt.*
 import com.google.common.truth.Truth.assertThat
 import com.intellij.openapi.util.SystemInfo.isMac
 import java.awt.geom.Rectangle2D
+import java.awt.image.BufferedImage
 
 class HTreeChartTest {
   private lateinit var myUi: FakeUi
@@ -344,6 +345,67 @@ class HTreeChartTest {
     assertThat(myChart.yRange.max).isWithin(EPSILON).of(18.0)
   }
 
+  @Test
+  fun testSubPixelNodesAreSkippedBeforeReducing() {
+    val reducer = RecordingReducer()
+    val range = Range(0.0, 2000.0)
+    val chart = HTreeChart.Builder(wideTree(), range, FakeRenderer())
+      .setOrientation(HTreeChart.Orientation.TOP_DOWN)
+      .setReducer(reducer)
+      .build()
+    chart.size = Dimension(200, myViewHeight)
+    chart.paint(BufferedImage(200, myViewHeight, BufferedImage.TYPE_INT_RGB).createGraphics())
+
+    // Each pixel holds ten children: only the first and the last of them are handed to the reducer, which merges them.
+    assertThat(reducer.inputSize).isEqualTo(202)
+    assertThat(reducer.nodes).containsExactlyElementsIn(listOf("root") + (0 until 100).map { "${it * 10}" } + "wide").inOrder()
+    assertThat(reducer.rectangles[1].x).isWithin(EPSILON.toFloat()).of(0f)
+    assertThat(reducer.rectangles[1].width).isWithin(EPSILON.toFloat()).of(0.9f)
+  }
+
+  @Test
+  fun testNodesOutsideOfTheRangeAreSkipped() {
+    val reducer = RecordingReducer()
+    val range = Range(1000.0, 2000.0)
+    val chart = HTreeChart.Builder(wideTree(), range, FakeRenderer())
+      .setOrientation(HTreeChart.Orientation.TOP_DOWN)
+      .setReducer(reducer)
+      .build()
+    chart.size = Dimension(200, myViewHeight)
+    chart.paint(BufferedImage(200, myViewHeight, BufferedImage.TYPE_INT_RGB).createGraphics())
+
+    assertThat(reducer.inputSize).isEqualTo(3)
+    assertThat(reducer.nodes).containsExactly("root", "999", "wide").inOrder()
+  }
+
+  /**
+   * Returns a root spanning [0, 2000] with a thousand children of duration 1 followed by a child spanning [1000, 2000].
+   */
+  private fun wideTree(): DefaultHNode<String> {
+    val root = DefaultHNode("root", 0, 2000)
+    for (i in 0 until 1000) {
+      root.addChild(DefaultHNode("$i", i.toLong(), i + 1L).apply { depth = 1 })
+    }
+    root.addChild(DefaultHNode("wide", 1000, 2000).apply { depth = 1 })
+    return root
+  }
+
+  private class RecordingReducer : HTreeChartReducer<DefaultHNode<String>> {
+    private val delegate = DefaultHTreeChartReducer<DefaultHNode<String>>()
+    var inputSize = 0
+    val nodes = mutableListOf<String>()
+    val rectangles = mutableListOf<Rectangle2D.Float>()
+
+    override fun reduce(rectangles: MutableList<Rectangle2D.Float>, nodes: MutableList<DefaultHNode<String>>) {
+      inputSize = nodes.size
+      delegate.reduce(rectangles, nodes)
+      this.nodes.clear()
+      this.nodes.addAll(nodes.map { it.data })
+      this.rectangles.clear()
+      this.rectangles.addAll(rectangles.map { Rectangle2D.Float(it.x, it.y, it.width, it.height) })
+    }
+  }
+
   class FakeRenderer : DefaultHRenderer<String>() {
     override fun getFillColor(nodeData: String) = Color.white
 
@@ -358,6 +358,12 @@ public final class StudioFlags {
     "When running or debugging an Android process, output the logcat output of the process in the console window.",
     true);
 
+  public static final Flag<Boolean> RUNDEBUG_LOGCAT_BINARY_INGESTION_ENABLED = Flag.create(
+    RUNDEBUG, "logcat.binary.ingestion.enabled", "Read logcat in binary format",
+    "If enabled, logcat entries are read from devices running API 24 or higher in the binary 'logcat -B' format " +
+    "instead of being parsed from 'logcat -v long' text.",
+    false);
+
   public static final Flag<Boolean> RUNDEBUG_ANDROID_BUILD_BUNDLE_ENABLED = Flag.create(
     RUNDEBUG, "android.bundle.build.enabled", "Enable the Build Bundle action",
     "If enabled, the \"Build Bundle(s)\" menu item is enabled. " +
@@ -20,7 +20,8 @@ class AnalysisConfig(
   val histogramOptions: HistogramOptions = HistogramOptions(),
   val disposerOptions: DisposerOptions = DisposerOptions(),
   val traverseOptions: TraverseOptions = TraverseOptions(),
-  val metaInfoOptions: MetaInfoOptions = MetaInfoOptions()
+  val metaInfoOptions: MetaInfoOptions = MetaInfoOptions(),
+  val retainedSizeOptions: RetainedSizeOptions = RetainedSizeOptions()
 ) {
 
   class PerClassOptions(
@@ -74,14 +75,24 @@ class AnalysisConfig(
   class TraverseOptions(
     val onlyStrongReferences: Boolean = false,
     val includeDisposerRelationships: Boolean = true,
-    val includeFieldInformation: Boolean = true
+    val includeFieldInformation: Boolean = true,
+    // Number of threads decoding objects of the instance graph during traversal. The result does not depend on it.
+    val parallelism: Int = Runtime.getRuntime().availableProcessors().coerceIn(1, 8)
   )
 
   class MetaInfoOptions(
     val include: Boolean = true
   )
 
+  class RetainedSizeOptions(
+    val include: Boolean = true,
+    val objectLimit: Int = 20,
+    val classLimit: Int = 20,
+    val disposableLimit: Int = 20
+  )
+
   companion object {
-    fun getDefaultConfig(nominatedClasses: List<String>) = AnalysisConfig(PerClassOptions(nominatedClasses))
+    fun getDefaultConfig(nominatedClasses: List<String>, includeMetaInfo: Boolean = true) =
+      AnalysisConfig(PerClassOptions(nominatedClasses), metaInfoOptions = MetaInfoOptions(includeMetaInfo))
   }
 }
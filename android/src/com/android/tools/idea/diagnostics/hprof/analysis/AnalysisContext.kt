@@ -30,6 +30,7 @@ class AnalysisContext(
   val sizesList: IntList,
   val visitedList: IntList,
   val refIndexList: UByteList,
+  val dominatorLists: DominatorLists?,
   var histogram: Histogram
 ) {
   val classStore = navigator.classStore
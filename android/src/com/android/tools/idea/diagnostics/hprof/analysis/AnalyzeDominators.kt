@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof.analysis
+
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
+import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
+import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toPaddedShortStringAsCount
+import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toPaddedShortStringAsSize
+import com.android.tools.idea.diagnostics.hprof.util.IntList
+import com.android.tools.idea.diagnostics.hprof.util.LongList
+import com.google.common.base.Stopwatch
+import com.intellij.openapi.progress.ProgressIndicator
+import gnu.trove.TIntHashSet
+import gnu.trove.TLongArrayList
+import java.util.PriorityQueue
+
+/**
+ * Per-object state of [AnalyzeDominators], all indexed by object id except [orderList], which holds object ids by rank.
+ * Only allocated when retained sizes are included in the report.
+ */
+class DominatorLists(
+  val dominatorsList: IntList,
+  val ranksList: IntList,
+  val orderList: IntList,
+  val retainedSizesList: LongList
+)
+
+/**
+ * Computes the dominator tree of the strongly reachable objects and the retained size of each of them.
+ *
+ * Runs after [AnalyzeGraph] has traversed the graph. The objects visited during the strong reference phases are first ranked in reverse
+ * postorder of a depth-first search from the GC roots, and the parent of each object in that search is the first guess for its immediate
+ * dominator. Each pass then decodes all those objects in rank order from the auxiliary files and, for every reference, moves the
+ * immediate dominator of the referenced object up to the nearest common dominator of its current value and the referencing object
+ * (Cooper, Harvey, Kennedy: "A Simple, Fast Dominance Algorithm"). Reverse postorder makes each pass see the predecessors of an object
+ * before the object itself wherever the graph has no cycles, so passes repeat only a few times until nothing changes. All per-object
+ * state is kept in file-backed [DominatorLists], so the graph is never loaded into memory.
+ *
+ * Object id 0 stands for the virtual root that dominates all GC roots.
+ */
+class AnalyzeDominators(private val analysisContext: AnalysisContext,
+                        lists: DominatorLists,
+                        private val strongReachableCount: Int) {
+
+  private val nav = analysisContext.navigator
+  private val visitedList = analysisContext.visitedList
+  private val dominatorsList = lists.dominatorsList
+  private val ranksList = lists.ranksList
+  private val orderList = lists.orderList
+  private val retainedSizesList = lists.retainedSizesList
+  private val options = analysisContext.config.retainedSizeOptions
+  private val includeDisposerRelationships = analysisContext.config.traverseOptions.includeDisposerRelationships
+  private val references = TLongArrayList()
+
+  var passCount = 0
+    private set
+  private val stopwatch = Stopwatch.createUnstarted()
+
+  fun computeRetainedSizes(progress: ProgressIndicator) {
+    stopwatch.start()
+    progress.text2 = "Compute retained sizes"
+
+    rankInReversePostorder(progress)
+
+    do {
+      var changed = false
+      for (rank in 1..strongReachableCount) {
+        val id = orderList[rank - 1]
+        loadReferences(id)
+        if (passCount == 0) {
+          retainedSizesList[id] = nav.getObjectSize().toLong()
+        }
+        for (i in 0 until references.size()) {
+          val referenceId = references[i].toInt()
+          // Skip null, self and references to objects that were not strongly reachable
+          if (referenceId == 0 || referenceId == id || ranksList[referenceId] <= 0) {
+            continue
+          }
+          val dominatorId = dominatorsList[referenceId]
+          if (dominatorId == id) {
+            continue
+          }
+          val newDominatorId = intersect(dominatorId, id)
+          if (newDominatorId != dominatorId) {
+            dominatorsList[referenceId] = newDominatorId
+            changed = true
+          }
+        }
+        if (rank % 10_000 == 0) {
+          // The number of passes is unknown upfront, so each pass covers half of the remaining progress.
+          val passStart = 0.5 + 0.5 * (1.0 - Math.pow(0.5, passCount.toDouble()))
+          progress.fraction = passStart + (1.0 - passStart) / 2 * rank / strongReachableCount
+        }
+      }
+      passCount++
+    }
+    while (changed)
+
+    // Dominators always rank before the objects they dominate, so going backwards adds each object to its dominator after
+    // the object itself is complete.
+    for (rank in strongReachableCount downTo 1) {
+      val id = orderList[rank - 1]
+      val dominatorId = dominatorsList[id]
+      if (dominatorId != 0) {
+        retainedSizesList[dominatorId] += retainedSizesList[id]
+      }
+    }
+    progress.fraction = 1.0
+    stopwatch.stop()
+  }
+
+  /**
+   * Fills [orderList] and [ranksList] with the reverse postorder of an iterative depth-first search over the strongly reachable objects,
+   * starting from the GC roots, and sets the immediate dominator guess of every object to its parent in the search.
+   *
+   * Finished objects and the search stack never add up to more than [strongReachableCount], so both share [orderList]: the postorder
+   * grows from the start and the stack from the end. While an object is on the stack, its entry in [retainedSizesList] holds the index
+   * of the next reference to follow.
+   */
+  private fun rankInReversePostorder(progress: ProgressIndicator) {
+    for (i in 0 until strongReachableCount) {
+      ranksList[visitedList[i]] = UNVISITED
+    }
+
+    var finishedCount = 0
+    var stackStart = strongReachableCount
+    fun push(id: Int, parentId: Int) {
+      ranksList[id] = ON_STACK
+      // A GC root found through another object is still only dominated by the virtual root.
+      dominatorsList[id] = if (analysisContext.parentList[id] == id) 0 else parentId
+      retainedSizesList[id] = 0
+      orderList[--stackStart] = id
+    }
+
+    // Start from the GC roots (objects the traversal did not reach from another object). A second round picks up anything the strong
+    // references did not reach from them, under the virtual root.
+    for (round in 0..1) {
+      for (i in 0 until strongReachableCount) {
+        val rootId = visitedList[i]
+        if (ranksList[rootId] != UNVISITED || round == 0 && analysisContext.parentList[rootId] != rootId) {
+          continue
+        }
+        push(rootId, 0)
+        while (stackStart < strongReachableCount) {
+          val id = orderList[stackStart]
+          loadReferences(id)
+          var next = retainedSizesList[id].toInt()
+          while (next < references.size() && !isUnvisited(references[next].toInt())) {
+            next++
+          }
+          if (next < references.size()) {
+            retainedSizesList[id] = next + 1L
+            push(references[next].toInt(), id)
+          }
+          else {
+            stackStart++
+            orderList[finishedCount++] = id
+            if (finishedCount % 10_000 == 0) {
+              progress.fraction = 0.5 * finishedCount / strongReachableCount
+            }
+          }
+        }
+      }
+    }
+    assert(finishedCount == strongReachableCount)
+
+    // Reverse the postorder in place and rank the objects, starting from 1.
+    var left = 0
+    var right = strongReachableCount - 1
+    while (left < right) {
+      val id = orderList[left]
+      orderList[left++] = orderList[right]
+      orderList[right--] = id
+    }
+    for (rank in 1..strongReachableCount) {
+      ranksList[orderList[rank - 1]] = rank
+    }
+  }
+
+  private fun isUnvisited(id: Int) = id != 0 && ranksList[id] == UNVISITED
+
+  /**
+   * Decodes the strong references of an object into [references], adding its disposer children when those relationships are followed.
+   * Leaves the navigator on the object.
+   */
+  private fun loadReferences(id: Int) {
+    nav.goTo(id.toLong(), ObjectNavigator.ReferenceResolution.ONLY_STRONG_REFERENCES)
+    nav.copyReferencesTo(references)
+    if (includeDisposerRelationships) {
+      analysisContext.disposerParentToChildren[id]?.forEach {
+        references.add(it.toLong())
+        true
+      }
+    }
+  }
+
+  /**
+   * Returns the nearest common dominator of two objects, walking up the current dominator tree.
+   */
+  private fun intersect(id1: Int, id2: Int): Int {
+    var a = id1
+    var b = id2
+    while (a != b) {
+      while (getRank(a) > getRank(b)) {
+        a = dominatorsList[a]
+      }
+      while (getRank(b) > getRank(a)) {
+        b = dominatorsList[b]
+      }
+    }
+    return a
+  }
+
+  private fun getRank(id: Int) = if (id == 0) 0 else ranksList[id]
+
+  fun getImmediateDominator(id: Int): Int = dominatorsList[id]
+
+  fun getRetainedSize(id: Int): Long = retainedSizesList[id]
+
+  fun prepareRetainedSizesSection(): String = buildString {
+    if (analysisContext.config.metaInfoOptions.include) {
+      appendln("Retained sizes computed in $passCount passes, time: $stopwatch")
+    }
+
+    appendln("Objects with the largest retained size:")
+    forEachLargest(options.objectLimit, { true }) { id ->
+      appendln(" ${toPaddedShortStringAsSize(getRetainedSize(id))} ${nav.getClassForObjectId(id.toLong()).prettyName}")
+    }
+    appendln()
+
+    // An instance dominated by another instance of the same class is already included in the retained size of that instance. Only the
+    // immediate dominator is checked, so instances nested through objects of other classes are counted more than once.
+    val classStats = HashMap<ClassDefinition, LongArray>()
+    for (rank in 1..strongReachableCount) {
+      val id = visitedList[rank - 1]
+      val classDefinition = nav.getClassForObjectId(id.toLong())
+      val dominatorId = dominatorsList[id]
+      if (dominatorId != 0 && nav.getClassForObjectId(dominatorId.toLong()) == classDefinition) {
+        continue
+      }
+      val stats = classStats.getOrPut(classDefinition) { LongArray(2) }
+      stats[0]++
+      stats[1] += getRetainedSize(id)
+    }
+    appendln("Classes with the largest retained size:")
+    classStats.entries.sortedByDescending { it.value[1] }.take(options.classLimit).forEach { (classDefinition, stats) ->
+      appendln(" [${toPaddedShortStringAsCount(stats[0])}/${toPaddedShortStringAsSize(stats[1])}] ${classDefinition.prettyName}")
+    }
+
+    val disposables = TIntHashSet()
+    analysisContext.disposerParentToChildren.forEachEntry { parentId, children ->
+      disposables.add(parentId)
+      disposables.addAll(children.toNativeArray())
+      true
+    }
+    disposables.remove(0)
+    if (!disposables.isEmpty) {
+      appendln()
+      appendln("Disposables with the largest retained size:")
+      forEachLargest(options.disposableLimit, { disposables.contains(it) }) { id ->
+        appendln(" ${toPaddedShortStringAsSize(getRetainedSize(id))} ${nav.getClassForObjectId(id.toLong()).prettyName}")
+      }
+    }
+  }
+
+  /**
+   * Calls [action] for the [limit] strongly reachable objects accepted by [filter] with the largest retained size, largest first.
+   */
+  private inline fun forEachLargest(limit: Int, filter: (Int) -> Boolean, action: (Int) -> Unit) {
+    val largest = PriorityQueue<Int>(limit + 1, compareBy { retainedSizesList[it] })
+    for (rank in 1..strongReachableCount) {
+      val id = visitedList[rank - 1]
+      if (!filter(id)) {
+        continue
+      }
+      if (largest.size < limit) {
+        largest.add(id)
+      }
+      else if (limit > 0 && retainedSizesList[largest.peek()] < retainedSizesList[id]) {
+        largest.poll()
+        largest.add(id)
+      }
+    }
+    largest.sortedByDescending { retainedSizesList[it] }.forEach(action)
+  }
+
+  companion object {
+    // Marks of strongly reachable objects in ranksList before they get their rank.
+    private const val UNVISITED = -1
+    private const val ON_STACK = -2
+  }
+}
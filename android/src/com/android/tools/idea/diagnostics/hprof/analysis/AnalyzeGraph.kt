@@ -17,7 +17,6 @@ package com.android.tools.idea.diagnostics.hprof.analysis
 
 import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
 import com.android.tools.idea.diagnostics.hprof.histogram.Histogram
-import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.sectionHeader
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toPaddedShortStringAsCount
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toPaddedShortStringAsSize
@@ -31,7 +30,6 @@ import com.intellij.openapi.progress.ProgressIndicator
 import gnu.trove.TIntArrayList
 import gnu.trove.TIntHashSet
 import gnu.trove.TIntIntHashMap
-import gnu.trove.TLongArrayList
 
 class AnalyzeGraph(private val analysisContext: AnalysisContext) {
 
@@ -39,6 +37,7 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
   private var strongRefHistogram: Histogram? = null
   private var softWeakRefHistogram: Histogram? = null
   private var traverseReport: String? = null
+  private var strongReachableCount = 0
 
   private val parentList = analysisContext.parentList
 
@@ -55,8 +54,13 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
   fun analyze(progress: ProgressIndicator): String = buildString {
     val includePerClassSection = analysisContext.config.perClassOptions.classNames.isNotEmpty()
 
-    val traverseProgress =
+    val dominatorLists = if (analysisContext.config.retainedSizeOptions.include) analysisContext.dominatorLists else null
+    val includeRetainedSizes = dominatorLists != null
+
+    val graphProgress =
       if (includePerClassSection) PartialProgressIndicator(progress, 0.0, 0.5) else progress
+    val traverseProgress =
+      if (includeRetainedSizes) PartialProgressIndicator(graphProgress, 0.0, 0.6) else graphProgress
 
     val analyzeDisposer = AnalyzeDisposer(analysisContext)
     analyzeDisposer.prepareDisposerChildren()
@@ -65,6 +69,9 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
 
     analyzeDisposer.computeDisposedObjectsIDs()
 
+    val analyzeDominators = dominatorLists?.let { AnalyzeDominators(analysisContext, it, strongReachableCount) }
+    analyzeDominators?.computeRetainedSizes(PartialProgressIndicator(graphProgress, 0.6, 0.4))
+
     // Histogram section
     val histogramOptions = analysisContext.config.histogramOptions
     if (histogramOptions.includeByCount || histogramOptions.includeBySize) {
@@ -75,6 +82,12 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
     appendln(sectionHeader("Heap summary"))
     append(traverseReport)
 
+    // Retained sizes section
+    if (analyzeDominators != null) {
+      appendln(sectionHeader("Retained sizes"))
+      append(analyzeDominators.prepareRetainedSizesSection())
+    }
+
     // Per-class section
     if (includePerClassSection) {
       val perClassProgress = PartialProgressIndicator(progress, 0.5, 0.5)
@@ -231,7 +244,6 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
 
     var visitedInstancesCount = 0
     val stopwatch = Stopwatch.createStarted()
-    val references = TLongArrayList()
 
     var visitedCount = 0
     var strongRefVisitedCount = 0
@@ -247,120 +259,129 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
     val sunMiscCleanerClass = classStore.getClassIfExists("sun.misc.Cleaner")
     val finalizerClass = classStore.getClassIfExists("java.lang.ref.Finalizer")
 
+    val decoder = FrontierDecoder(nav, parentList, traverseOptions.parallelism)
+
     while (!toVisit.isEmpty) {
-      for (i in 0 until toVisit.size()) {
-        val id = toVisit[i]
-
-        // Disposer.ourTree is only visited during DisposerTree phase to give opportunity for
-        if (includeDisposerRelationships &&
-            id == analysisContext.diposerTreeObjectId &&
-            phase < WalkGraphPhase.DisposerTree) {
-          continue
-        }
+      var decodedCount = 0
+      while (decodedCount < toVisit.size()) {
+        val slices = decoder.decode(toVisit,
+                                    decodedCount,
+                                    postponeSoftReferences = phase < WalkGraphPhase.SoftReferences,
+                                    postponeWeakReferences = phase < WalkGraphPhase.WeakReferences)
+        // Slices are processed in the order of the level, so parents are assigned exactly as in a sequential walk.
+        for (decoded in slices) {
+          decodedCount += decoded.size
+          for (i in 0 until decoded.size) {
+            val id = decoded.ids[i]
+
+            // Disposer.ourTree is only visited during DisposerTree phase to give opportunity for
+            if (includeDisposerRelationships &&
+                id == analysisContext.diposerTreeObjectId &&
+                phase < WalkGraphPhase.DisposerTree) {
+              continue
+            }
 
-        nav.goTo(id.toLong(), ObjectNavigator.ReferenceResolution.ALL_REFERENCES)
-        val currentObjectClass = nav.getClass()
+            val currentObjectClass = decoded.classes[i]
 
-        if ((currentObjectClass == sunMiscCleanerClass || currentObjectClass == finalizerClass)
-            && phase < WalkGraphPhase.CleanerFinalizerReferences) {
-          if (!onlyStrongReferences) {
-            // Postpone visiting sun.misc.Cleaner and java.lang.ref.Finalizer objects until later phase
-            cleanerObjects.add(id)
-          }
-          continue
-        }
+            if ((currentObjectClass == sunMiscCleanerClass || currentObjectClass == finalizerClass)
+                && phase < WalkGraphPhase.CleanerFinalizerReferences) {
+              if (!onlyStrongReferences) {
+                // Postpone visiting sun.misc.Cleaner and java.lang.ref.Finalizer objects until later phase
+                cleanerObjects.add(id)
+              }
+              continue
+            }
 
-        visitedInstancesCount++
-        nominatedInstances[currentObjectClass]?.add(id)
+            visitedInstancesCount++
+            nominatedInstances[currentObjectClass]?.add(id)
 
-        var isLeaf = true
-        nav.copyReferencesTo(references)
-        val currentObjectIsArray = currentObjectClass.isArray()
+            var isLeaf = true
+            val currentObjectIsArray = currentObjectClass.isArray()
 
-        // Postpone any soft references encountered before the phase that handles them
-        if (phase < WalkGraphPhase.SoftReferences && nav.getSoftReferenceId() != 0L) {
-          if (!onlyStrongReferences) {
-            softReferenceIdToParentMap.put(nav.getSoftReferenceId().toInt(), id)
-          }
-          references[nav.getSoftWeakReferenceIndex()] = 0L
-        }
+            // Postpone any soft references encountered before the phase that handles them. The decoder already dropped them
+            // from the references.
+            val softReferenceId = decoded.softReferenceIds[i]
+            if (phase < WalkGraphPhase.SoftReferences && softReferenceId != 0 && !onlyStrongReferences) {
+              softReferenceIdToParentMap.put(softReferenceId, id)
+            }
 
-        // Postpone any weak references encountered before the phase that handles them
-        if (phase < WalkGraphPhase.WeakReferences && nav.getWeakReferenceId() != 0L) {
-          if (!onlyStrongReferences) {
-            weakReferenceIdToParentMap.put(nav.getWeakReferenceId().toInt(), id)
-          }
-          references[nav.getSoftWeakReferenceIndex()] = 0L
-        }
+            // Postpone any weak references encountered before the phase that handles them
+            val weakReferenceId = decoded.weakReferenceIds[i]
+            if (phase < WalkGraphPhase.WeakReferences && weakReferenceId != 0 && !onlyStrongReferences) {
+              weakReferenceIdToParentMap.put(weakReferenceId, id)
+            }
 
-        val size = nav.getObjectSize()
-        val nonDisposerReferences = references.size()
+            val size = decoded.sizes[i]
+            val nonDisposerReferences = decoded.referenceCounts[i]
 
-        // Inline children from the disposer tree
-        if (includeDisposerRelationships && analysisContext.disposerParentToChildren.contains(id)) {
-          if (phase >= WalkGraphPhase.DisposerTree) {
-            unreachableDisposableObjects.add(id)
-          }
-          analysisContext.disposerParentToChildren[id].forEach {
-            references.add(it.toLong())
-            true
-          }
-        }
-
-        for (j in 0 until references.size()) {
-          val referenceId = references[j].toInt()
+            for (k in decoded.referencesStart(i) until decoded.referencesEnd[i]) {
+              val referenceId = decoded.referenceIds[k]
+              if (addIdToListAndSetParentIfOrphan(toVisit2, referenceId, id)) {
+                if (includeFieldInformation) {
+                  refIndexList[referenceId] = getRefIndex(currentObjectIsArray, decoded.referenceIndices[k], nonDisposerReferences)
+                }
+                isLeaf = false
+              }
+            }
 
-          if (addIdToListAndSetParentIfOrphan(toVisit2, referenceId, id)) {
-            if (includeFieldInformation) {
-              refIndexList[referenceId] = when {
-                currentObjectIsArray -> RefIndexUtil.ARRAY_ELEMENT
-                j >= nonDisposerReferences -> RefIndexUtil.DISPOSER_CHILD
-                j < RefIndexUtil.MAX_FIELD_INDEX -> j + 1
-                else -> RefIndexUtil.FIELD_OMITTED // Too many reference fields
+            // Inline children from the disposer tree
+            if (includeDisposerRelationships && analysisContext.disposerParentToChildren.contains(id)) {
+              if (phase >= WalkGraphPhase.DisposerTree) {
+                unreachableDisposableObjects.add(id)
+              }
+              var j = nonDisposerReferences
+              analysisContext.disposerParentToChildren[id].forEach { referenceId ->
+                if (addIdToListAndSetParentIfOrphan(toVisit2, referenceId, id)) {
+                  if (includeFieldInformation) {
+                    refIndexList[referenceId] = getRefIndex(currentObjectIsArray, j, nonDisposerReferences)
+                  }
+                  isLeaf = false
+                }
+                j++
+                true
               }
             }
-            isLeaf = false
-          }
-        }
 
-        // Ordered list of visited nodes. Parent is always before its children.
-        visitedList[visitedCount++] = id
-
-        // Store size of the object. Later pass will update the size by adding sizes of children
-        // Size in DWORDs to support graph sizes up to 10GB.
-        var sizeDivBy4 = (size + 3) / 4
-        if (sizeDivBy4 == 0) sizeDivBy4 = 1
-        sizesList[id] = sizeDivBy4
-
-        // Update histogram (separately for Strong-references and other reachable objects)
-        var histogramEntries: HashMap<ClassDefinition, HistogramVisitor.InternalHistogramEntry>
-        if (phase == WalkGraphPhase.StrongReferencesNonLocalVariables || phase == WalkGraphPhase.StrongReferencesLocalVariables ||
-          phase == WalkGraphPhase.DisposerTree) {
-          histogramEntries = strongRefHistogramEntries
-          if (isLeaf) {
-            leafCounter++
-          }
-          strongRefVisitedCount++
-        }
-        else {
-          histogramEntries = reachableNonStrongHistogramEntries
-          when (phase) {
-            WalkGraphPhase.CleanerFinalizerReferences -> finalizableBytes += size
-            WalkGraphPhase.SoftReferences -> softBytes += size
-            else -> {
-              assert(phase == WalkGraphPhase.WeakReferences)
-              weakBytes += size
+            // Ordered list of visited nodes. Parent is always before its children.
+            visitedList[visitedCount++] = id
+
+            // Store size of the object. Later pass will update the size by adding sizes of children
+            // Size in DWORDs to support graph sizes up to 10GB.
+            var sizeDivBy4 = (size + 3) / 4
+            if (sizeDivBy4 == 0) sizeDivBy4 = 1
+            sizesList[id] = sizeDivBy4
+
+            // Update histogram (separately for Strong-references and other reachable objects)
+            var histogramEntries: HashMap<ClassDefinition, HistogramVisitor.InternalHistogramEntry>
+            if (phase == WalkGraphPhase.StrongReferencesNonLocalVariables || phase == WalkGraphPhase.StrongReferencesLocalVariables ||
+              phase == WalkGraphPhase.DisposerTree) {
+              histogramEntries = strongRefHistogramEntries
+              if (isLeaf) {
+                leafCounter++
+              }
+              strongRefVisitedCount++
+            }
+            else {
+              histogramEntries = reachableNonStrongHistogramEntries
+              when (phase) {
+                WalkGraphPhase.CleanerFinalizerReferences -> finalizableBytes += size
+                WalkGraphPhase.SoftReferences -> softBytes += size
+                else -> {
+                  assert(phase == WalkGraphPhase.WeakReferences)
+                  weakBytes += size
+                }
+              }
+              softWeakVisitedCount++
             }
+            histogramEntries.getOrPut(currentObjectClass) {
+              HistogramVisitor.InternalHistogramEntry(currentObjectClass)
+            }.addInstance(size.toLong())
           }
-          softWeakVisitedCount++
         }
-        histogramEntries.getOrPut(currentObjectClass) {
-          HistogramVisitor.InternalHistogramEntry(currentObjectClass)
-        }.addInstance(size.toLong())
-      }
 
-      // Update process
-      progress.fraction = (1.0 * visitedInstancesCount / nav.instanceCount)
+        // Update progress within large levels too, as a single level may contain most of the heap
+        progress.fraction = (1.0 * visitedInstancesCount / nav.instanceCount)
+      }
 
       // Prepare next level of objects for processing
       toVisit.resetQuick()
@@ -416,6 +437,9 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
       }
     }
 
+    // Objects visited in the strong reference phases come first in visitedList
+    strongReachableCount = strongRefVisitedCount
+
     // Assert that any postponed objects have been handled
     assert(cleanerObjects.isEmpty)
     assert(softReferenceIdToParentMap.isEmpty)
@@ -483,6 +507,15 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext) {
     }
   }
 
+  private fun getRefIndex(currentObjectIsArray: Boolean, referenceIndex: Int, nonDisposerReferences: Int): Int {
+    return when {
+      currentObjectIsArray -> RefIndexUtil.ARRAY_ELEMENT
+      referenceIndex >= nonDisposerReferences -> RefIndexUtil.DISPOSER_CHILD
+      referenceIndex < RefIndexUtil.MAX_FIELD_INDEX -> referenceIndex + 1
+      else -> RefIndexUtil.FIELD_OMITTED // Too many reference fields
+    }
+  }
+
   /**
    * Adds object id to the list, only if the object does not have a parent object. Object will
    * also have a parent assigned.
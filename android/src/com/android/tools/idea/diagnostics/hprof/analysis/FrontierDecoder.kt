@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof.analysis
+
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
+import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
+import com.android.tools.idea.diagnostics.hprof.util.IntList
+import com.intellij.util.concurrency.AppExecutorUtil
+import gnu.trove.TIntArrayList
+import gnu.trove.TLongArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+
+/**
+ * Decodes objects of a traversal level on several threads.
+ *
+ * Decoding (reading the class, size and references of an object from the auxiliary files) is the expensive part of walking the
+ * instance graph. The calling thread and up to `parallelism - 1` tasks on an executor shared by all analyses each decode a contiguous
+ * slice of the level with its own [ObjectNavigator], and only keep the references that do not have a parent yet. Parents are assigned
+ * afterwards by the caller, going over the slices in order, so the resulting spanning tree is exactly the one a single-threaded walk
+ * would produce.
+ */
+internal class FrontierDecoder(navigator: ObjectNavigator,
+                               private val parentList: IntList,
+                               parallelism: Int) {
+
+  private val navigators = List(parallelism.coerceAtLeast(1)) { if (it == 0) navigator else navigator.createCopy() }
+  private val slices = List(navigators.size) { DecodedObjects() }
+  private val executor: ExecutorService? = if (navigators.size > 1) ourExecutor else null
+
+  /**
+   * Decodes objects of [frontier], starting at [from]. The soft or weak reference of an object is dropped, and not reported as a
+   * reference, when the corresponding [postponeSoftReferences] or [postponeWeakReferences] flag is set.
+   *
+   * @return the decoded slices, in the order of the frontier. The slices are reused by the next call.
+   */
+  fun decode(frontier: TIntArrayList, from: Int, postponeSoftReferences: Boolean, postponeWeakReferences: Boolean): List<DecodedObjects> {
+    val count = minOf(frontier.size() - from, navigators.size * SLICE_SIZE)
+    val sliceCount = if (executor == null || count < 2 * MIN_SLICE_SIZE) 1 else minOf(navigators.size, count / MIN_SLICE_SIZE)
+    val sliceSize = (count + sliceCount - 1) / sliceCount
+
+    val futures = ArrayList<Future<*>>(sliceCount - 1)
+    for (i in 1 until sliceCount) {
+      val start = from + i * sliceSize
+      val end = minOf(start + sliceSize, from + count)
+      futures.add(executor!!.submit(Runnable {
+        decodeSlice(navigators[i], slices[i], frontier, start, end, postponeSoftReferences, postponeWeakReferences)
+      }))
+    }
+    try {
+      decodeSlice(navigators[0], slices[0], frontier, from, minOf(from + sliceSize, from + count), postponeSoftReferences,
+                  postponeWeakReferences)
+      futures.forEach { it.get() }
+    }
+    catch (e: ExecutionException) {
+      throw e.cause ?: e
+    }
+    finally {
+      futures.forEach { it.cancel(false) }
+    }
+    return slices.subList(0, sliceCount)
+  }
+
+  private fun decodeSlice(nav: ObjectNavigator,
+                          slice: DecodedObjects,
+                          frontier: TIntArrayList,
+                          start: Int,
+                          end: Int,
+                          postponeSoftReferences: Boolean,
+                          postponeWeakReferences: Boolean) {
+    slice.clear()
+    val references = slice.scratchReferences
+    for (i in start until end) {
+      val id = frontier[i]
+      nav.goTo(id.toLong(), ObjectNavigator.ReferenceResolution.ALL_REFERENCES)
+      nav.copyReferencesTo(references)
+
+      val softReferenceId = nav.getSoftReferenceId().toInt()
+      val weakReferenceId = nav.getWeakReferenceId().toInt()
+      if (postponeSoftReferences && softReferenceId != 0 || postponeWeakReferences && weakReferenceId != 0) {
+        references[nav.getSoftWeakReferenceIndex()] = 0L
+      }
+
+      slice.ids.add(id)
+      slice.classes.add(nav.getClass())
+      slice.sizes.add(nav.getObjectSize())
+      slice.softReferenceIds.add(softReferenceId)
+      slice.weakReferenceIds.add(weakReferenceId)
+      slice.referenceCounts.add(references.size())
+      for (j in 0 until references.size()) {
+        val referenceId = references[j].toInt()
+        // Parents are only ever set, never cleared, so an object that already has one will be skipped by the caller anyway.
+        if (referenceId != 0 && parentList[referenceId] == 0) {
+          slice.referenceIds.add(referenceId)
+          slice.referenceIndices.add(j)
+        }
+      }
+      slice.referencesEnd.add(slice.referenceIds.size())
+    }
+  }
+
+  /**
+   * Objects decoded by one thread. The candidate references of object `i` are stored at
+   * `referencesStart(i) until referencesEnd[i]` in [referenceIds], together with their index in the object's reference list.
+   */
+  internal class DecodedObjects {
+    val ids = TIntArrayList()
+    val classes = ArrayList<ClassDefinition>()
+    val sizes = TIntArrayList()
+    val softReferenceIds = TIntArrayList()
+    val weakReferenceIds = TIntArrayList()
+    val referenceCounts = TIntArrayList()
+    val referencesEnd = TIntArrayList()
+    val referenceIds = TIntArrayList()
+    val referenceIndices = TIntArrayList()
+    val scratchReferences = TLongArrayList()
+
+    val size: Int
+      get() = ids.size()
+
+    fun referencesStart(index: Int) = if (index == 0) 0 else referencesEnd[index - 1]
+
+    fun clear() {
+      ids.resetQuick()
+      classes.clear()
+      sizes.resetQuick()
+      softReferenceIds.resetQuick()
+      weakReferenceIds.resetQuick()
+      referenceCounts.resetQuick()
+      referencesEnd.resetQuick()
+      referenceIds.resetQuick()
+      referenceIndices.resetQuick()
+    }
+  }
+
+  companion object {
+    private val ourExecutor: ExecutorService =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("Heap analysis", maxOf(1, Runtime.getRuntime().availableProcessors() - 1))
+
+    // Objects decoded per thread and call. Bounds the memory held by decoded references.
+    private const val SLICE_SIZE = 16_384
+    // Levels smaller than that are not worth handing over to other threads.
+    private const val MIN_SLICE_SIZE = 1_024
+  }
+}
@@ -20,6 +20,7 @@ import com.android.tools.idea.diagnostics.hprof.histogram.Histogram
 import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
 import com.android.tools.idea.diagnostics.hprof.util.FileBackedIntList
+import com.android.tools.idea.diagnostics.hprof.util.FileBackedLongList
 import com.android.tools.idea.diagnostics.hprof.util.FileBackedUByteList
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.sectionHeader
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toShortStringAsCount
@@ -133,8 +134,15 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
       analysisStopwatch.start()
 
       val nominatedClassNames = nominatedClasses.map { it.classDefinition.name }
-      val analysisConfig = AnalysisConfig(perClassOptions = AnalysisConfig.PerClassOptions(classNames = nominatedClassNames),
-                                          metaInfoOptions = AnalysisConfig.MetaInfoOptions(include = includeMetaInfo))
+      val analysisConfig = AnalysisConfig.getDefaultConfig(nominatedClassNames, includeMetaInfo)
+      val dominatorLists = if (analysisConfig.retainedSizeOptions.include) {
+        DominatorLists(
+          FileBackedIntList.createEmpty(openTempEmptyFileChannel("dominators"), navigator.instanceCount + 1),
+          FileBackedIntList.createEmpty(openTempEmptyFileChannel("ranks"), navigator.instanceCount + 1),
+          FileBackedIntList.createEmpty(openTempEmptyFileChannel("dominatorOrder"), navigator.instanceCount + 1),
+          FileBackedLongList.createEmpty(openTempEmptyFileChannel("retainedSizes"), navigator.instanceCount + 1))
+      }
+      else null
       val analysisContext = AnalysisContext(
         navigator,
         analysisConfig,
@@ -142,6 +150,7 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
         sizesList,
         visitedList,
         refIndexList,
+        dominatorLists,
         histogram
       )
 
@@ -40,6 +40,11 @@ abstract class ObjectNavigator(val classStore: ClassStore, val instanceCount: Lo
 
   abstract fun createRootsIterator(): Iterator<RootObject>
 
+  /**
+   * Creates a navigator over the same heap with its own position, so that it can be used on another thread.
+   */
+  abstract fun createCopy(): ObjectNavigator
+
   abstract fun goTo(id: Long, referenceResolution: ReferenceResolution = ReferenceResolution.ONLY_STRONG_REFERENCES)
 
   abstract fun getClass(): ClassDefinition
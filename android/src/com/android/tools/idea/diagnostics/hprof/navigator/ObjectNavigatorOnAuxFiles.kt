@@ -71,6 +71,10 @@ class ObjectNavigatorOnAuxFiles(
     }
   }
 
+  override fun createCopy(): ObjectNavigator {
+    return ObjectNavigatorOnAuxFiles(roots, auxOffsets.duplicate(), aux.duplicate(), classStore, instanceCount, idSize)
+  }
+
   override fun getReferencesCopy(): TLongArrayList {
     val result = TLongArrayList()
     for (i in 0 until references.size()) {
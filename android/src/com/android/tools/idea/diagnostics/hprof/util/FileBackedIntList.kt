@@ -20,14 +20,13 @@ import java.nio.channels.FileChannel
 
 class FileBackedIntList(private val buffer: ByteBuffer) : IntList {
 
+  // Absolute accessors do not touch the buffer position, so reads may happen concurrently with each other.
   override operator fun get(index: Int): Int {
-    buffer.position(index * 4)
-    return buffer.int
+    return buffer.getInt(index * 4)
   }
 
   override operator fun set(index: Int, value: Int) {
-    buffer.position(index * 4)
-    buffer.putInt(value)
+    buffer.putInt(index * 4, value)
   }
 
   companion object {
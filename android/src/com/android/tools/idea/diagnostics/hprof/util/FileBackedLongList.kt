@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof.util
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+class FileBackedLongList(private val buffer: ByteBuffer) : LongList {
+
+  override operator fun get(index: Int): Long {
+    return buffer.getLong(index * 8)
+  }
+
+  override operator fun set(index: Int, value: Long) {
+    buffer.putLong(index * 8, value)
+  }
+
+  companion object {
+    fun createEmpty(channel: FileChannel, size: Long): LongList {
+      FileBackedHashMap.createEmptyFile(channel, size * 8)
+      return FileBackedLongList(channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()))
+    }
+  }
+}
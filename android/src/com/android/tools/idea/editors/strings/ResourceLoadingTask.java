@@ -59,10 +59,12 @@ final class ResourceLoadingTask extends Task.Backgroundable {
     myPanel.getTable().setModel(new StringResourceTableModel(myRepository, myPanel.getFacet().getModule().getProject()));
 
     myPanel.getLoadingPanel().stopLoading();
+    myPanel.applyPendingResourceChanges();
   }
 
   @Override
   public void onCancel() {
     myPanel.getLoadingPanel().stopLoading();
+    myPanel.applyPendingResourceChanges();
   }
 }
@@ -31,7 +31,10 @@ import com.intellij.psi.xml.XmlFile;
 import com.intellij.psi.xml.XmlTag;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -46,7 +49,12 @@ public final class StringResource {
   @NotNull
   private final String myResourceFolder;
 
-  private boolean myTranslatable;
+  /**
+   * Whether the key is translatable, or null if it has not been resolved yet. Resolving it needs the XML tag of every item, so it is only
+   * done when asked for.
+   */
+  @Nullable
+  private Boolean myTranslatable;
 
   @NotNull
   private ResourceItemEntry myDefaultValue;
@@ -59,19 +67,12 @@ public final class StringResource {
 
   public StringResource(@NotNull StringResourceKey key, @NotNull StringResourceData data) {
     Project project = data.getProject();
-    boolean translatable = true;
     ResourceItemEntry defaultValue = new ResourceItemEntry();
     StringResourceUnescaper unescaper = data.getUnescaper();
     Map<Locale, ResourceItemEntry> localeToTranslationMap = new HashMap<>();
 
     for (ResourceItem item : data.getRepository().getItems(key)) {
       assert item instanceof PsiResourceItem || item instanceof DynamicValueResourceItem : item.getClass();
-      XmlTag tag = AndroidResourceUtil.getItemTag(project, item);
-
-      if (tag != null && "false".equals(tag.getAttributeValue(SdkConstants.ATTR_TRANSLATABLE))) {
-        translatable = false;
-      }
-
       LocaleQualifier qualifier = item.getConfiguration().getLocaleQualifier();
 
       if (qualifier == null) {
@@ -87,7 +88,6 @@ public final class StringResource {
     VirtualFile folder = key.getDirectory();
     myResourceFolder = folder == null ? "" : VirtualFiles.toString(folder, project);
 
-    myTranslatable = translatable;
     myDefaultValue = defaultValue;
     myLocaleToTranslationMap = localeToTranslationMap;
     myData = data;
@@ -110,7 +110,7 @@ public final class StringResource {
 
   @NotNull
   public String getDefaultValueAsString() {
-    return myDefaultValue.myString;
+    return myDefaultValue.getString();
   }
 
   public boolean setDefaultValue(@NotNull String defaultValue) {
@@ -125,7 +125,7 @@ public final class StringResource {
       return true;
     }
 
-    if (myDefaultValue.myString.equals(defaultValue)) {
+    if (myDefaultValue.getString().equals(defaultValue)) {
       return false;
     }
 
@@ -160,7 +160,8 @@ public final class StringResource {
       return null;
     }
 
-    WriteCommandAction.runWriteCommandAction(project, null, null, () -> StringPsiUtils.addString(file, myKey, myTranslatable, value));
+    boolean translatable = isTranslatable();
+    WriteCommandAction.runWriteCommandAction(project, null, null, () -> StringPsiUtils.addString(file, myKey, translatable, value));
     return myData.getRepository().getDefaultValue(myKey);
   }
 
@@ -170,7 +171,7 @@ public final class StringResource {
       return "Key \"" + myKey.getName() + "\" is missing its default value";
     }
 
-    if (!myDefaultValue.myStringValid) {
+    if (!myDefaultValue.isStringValid()) {
       return "Invalid XML";
     }
 
@@ -178,9 +179,70 @@ public final class StringResource {
   }
 
   public boolean isTranslatable() {
+    if (myTranslatable == null) {
+      myTranslatable = computeTranslatable();
+    }
+
     return myTranslatable;
   }
 
+  private boolean computeTranslatable() {
+    Project project = myData.getProject();
+
+    for (ResourceItem item : myData.getRepository().getItems(myKey)) {
+      XmlTag tag = AndroidResourceUtil.getItemTag(project, item);
+
+      if (tag != null && "false".equals(tag.getAttributeValue(SdkConstants.ATTR_TRANSLATABLE))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Compares the values resolved so far with the current items of the key in the repository. Values not resolved yet are read from the
+   * current items anyway, so they never count as changed.
+   *
+   * @return the locales whose translation was added, removed or edited, plus null if the default value or the translatability changed
+   */
+  @NotNull
+  Set<Locale> getChangedLocales() {
+    ResourceItem defaultItem = null;
+    Map<Locale, ResourceItem> localeToItemMap = new HashMap<>();
+
+    for (ResourceItem item : myData.getRepository().getItems(myKey)) {
+      LocaleQualifier qualifier = item.getConfiguration().getLocaleQualifier();
+
+      if (qualifier == null) {
+        defaultItem = item;
+      }
+      else {
+        localeToItemMap.put(Locale.create(qualifier), item);
+      }
+    }
+
+    Set<Locale> changedLocales = new HashSet<>();
+
+    if (myDefaultValue.isChanged(defaultItem) || (myTranslatable != null && myTranslatable != computeTranslatable())) {
+      changedLocales.add(null);
+    }
+
+    Set<Locale> locales = new HashSet<>(myLocaleToTranslationMap.keySet());
+    locales.addAll(localeToItemMap.keySet());
+
+    for (Locale locale : locales) {
+      ResourceItemEntry entry = myLocaleToTranslationMap.get(locale);
+      ResourceItem item = localeToItemMap.get(locale);
+
+      if (entry == null || entry.isChanged(item)) {
+        changedLocales.add(locale);
+      }
+    }
+
+    return changedLocales;
+  }
+
   public void setTranslatable(boolean translatable) {
     myTranslatable = translatable;
   }
@@ -194,7 +256,7 @@ public final class StringResource {
   @NotNull
   public String getTranslationAsString(@NotNull Locale locale) {
     ResourceItemEntry resourceItemEntry = myLocaleToTranslationMap.get(locale);
-    return resourceItemEntry == null ? "" : resourceItemEntry.myString;
+    return resourceItemEntry == null ? "" : resourceItemEntry.getString();
   }
 
   public boolean putTranslation(@NotNull Locale locale, @NotNull String translation) {
@@ -206,6 +268,8 @@ public final class StringResource {
       }
 
       myLocaleToTranslationMap.put(locale, new ResourceItemEntry(item, myData.getUnescaper()));
+      myData.invalidateLocales();
+
       return true;
     }
 
@@ -224,6 +288,8 @@ public final class StringResource {
 
     if (translation.isEmpty()) {
       myLocaleToTranslationMap.remove(locale);
+      myData.invalidateLocales();
+
       return true;
     }
 
@@ -247,7 +313,8 @@ public final class StringResource {
       return null;
     }
 
-    WriteCommandAction.runWriteCommandAction(project, null, null, () -> StringPsiUtils.addString(file, myKey, myTranslatable, value));
+    boolean translatable = isTranslatable();
+    WriteCommandAction.runWriteCommandAction(project, null, null, () -> StringPsiUtils.addString(file, myKey, translatable, value));
     return myData.getRepository().getTranslation(myKey, locale);
   }
 
@@ -255,14 +322,16 @@ public final class StringResource {
   public String validateTranslation(@NotNull Locale locale) {
     ResourceItemEntry entry = myLocaleToTranslationMap.get(locale);
 
-    if (entry != null && !entry.myStringValid) {
+    if (entry != null && !entry.isStringValid()) {
       return "Invalid XML";
     }
 
-    if (myTranslatable && isTranslationMissing(locale)) {
+    boolean translatable = isTranslatable();
+
+    if (translatable && isTranslationMissing(locale)) {
       return "Key \"" + myKey.getName() + "\" is missing its " + LocaleMenuAction.getLocaleLabel(locale, false) + " translation";
     }
-    else if (!myTranslatable && !isTranslationMissing(locale)) {
+    else if (!translatable && !isTranslationMissing(locale)) {
       return "Key \"" + myKey.getName() + "\" is untranslatable and should not be translated to " +
              LocaleMenuAction.getLocaleLabel(locale, false);
     }
@@ -290,27 +359,75 @@ public final class StringResource {
   }
 
   private static boolean isTranslationMissing(@Nullable ResourceItemEntry item) {
-    return item == null || item.myString.isEmpty();
+    return item == null || item.getString().isEmpty();
   }
 
+  /**
+   * A resource item and its unescaped value. The value is only unescaped when first asked for.
+   */
   private static final class ResourceItemEntry {
     @Nullable
     private final ResourceItem myResourceItem;
 
-    @NotNull
-    private final String myString;
+    @Nullable
+    private final StringResourceUnescaper myUnescaper;
+
+    @Nullable
+    private String myString;
+
+    /**
+     * The raw XML value myString was unescaped from, used to tell whether the item was edited since.
+     */
+    @Nullable
+    private String myRawString;
 
-    private final boolean myStringValid;
+    private boolean myStringValid;
 
     private ResourceItemEntry() {
       myResourceItem = null;
+      myUnescaper = null;
       myString = "";
       myStringValid = true;
     }
 
     private ResourceItemEntry(@NotNull ResourceItem resourceItem, @NotNull StringResourceUnescaper unescaper) {
       myResourceItem = resourceItem;
-      ResourceValue value = resourceItem.getResourceValue();
+      myUnescaper = unescaper;
+    }
+
+    @NotNull
+    private String getString() {
+      resolve();
+
+      assert myString != null;
+      return myString;
+    }
+
+    private boolean isStringValid() {
+      resolve();
+      return myStringValid;
+    }
+
+    private boolean isChanged(@Nullable ResourceItem item) {
+      if (item != myResourceItem) {
+        return true;
+      }
+
+      if (item == null || myString == null) {
+        return false;
+      }
+
+      ResourceValue value = item.getResourceValue();
+      return !Objects.equals(value == null ? null : value.getRawXmlValue(), myRawString);
+    }
+
+    private void resolve() {
+      if (myString != null) {
+        return;
+      }
+
+      assert myResourceItem != null && myUnescaper != null;
+      ResourceValue value = myResourceItem.getResourceValue();
 
       if (value == null) {
         myString = "";
@@ -321,11 +438,12 @@ public final class StringResource {
 
       String string = value.getRawXmlValue();
       assert string != null;
+      myRawString = string;
 
       boolean stringValid;
 
       try {
-        string = unescaper.unescapeCharacterData(string);
+        string = myUnescaper.unescapeCharacterData(string);
         stringValid = true;
       }
       catch (IllegalArgumentException exception) {
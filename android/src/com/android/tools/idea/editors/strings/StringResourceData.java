@@ -32,13 +32,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.jetbrains.android.util.AndroidResourceUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -46,13 +47,27 @@ import org.jetbrains.annotations.Nullable;
 public final class StringResourceData {
   private static final int MAX_LOCALE_LABEL_COUNT = 3;
 
+  private final Set<StringResourceKey> myKeys;
+
+  /**
+   * The string resources created so far. A resource is only created, and its values resolved, when it's first asked for so that opening
+   * the editor on a project with many keys and locales only does the work needed for the visible cells.
+   */
   private final Map<StringResourceKey, StringResource> myKeyToResourceMap;
+
   private final Project myProject;
   private final StringResourceUnescaper myUnescaper;
   private final StringResourceRepository myRepository;
 
+  @Nullable
+  private List<Locale> myLocaleList;
+
+  @Nullable
+  private Set<Locale> myLocaleSet;
+
   private StringResourceData(@NotNull Project project, @NotNull StringResourceRepository repository) {
-    myKeyToResourceMap = new LinkedHashMap<>();
+    myKeys = new LinkedHashSet<>();
+    myKeyToResourceMap = new HashMap<>();
     myProject = project;
     myUnescaper = new StringResourceUnescaper();
     myRepository = repository;
@@ -61,11 +76,46 @@ public final class StringResourceData {
   @NotNull
   public static StringResourceData create(@NotNull Project project, @NotNull StringResourceRepository repository) {
     StringResourceData data = new StringResourceData(project, repository);
-    repository.getKeys().forEach(key -> data.myKeyToResourceMap.put(key, new StringResource(key, data)));
+    repository.getKeys().forEach(data.myKeys::add);
 
     return data;
   }
 
+  /**
+   * Picks up the changes made to the repository since the string resources were resolved, e.g. edits of the XML files. The keys and
+   * locales are read again. Only the string resources resolved so far are compared with the repository, since the others will be resolved
+   * from the current values anyway; the changed ones are dropped, to be resolved again when next asked for.
+   *
+   * @return the locales whose values changed, by key, where a null locale stands for the default value and the translatability
+   */
+  @NotNull
+  public Map<StringResourceKey, Set<Locale>> update() {
+    myKeys.clear();
+    myRepository.getKeys().forEach(myKeys::add);
+
+    myKeyToResourceMap.keySet().retainAll(myKeys);
+    invalidateLocales();
+
+    Map<StringResourceKey, Set<Locale>> changes = new HashMap<>();
+
+    for (Iterator<StringResource> iterator = myKeyToResourceMap.values().iterator(); iterator.hasNext(); ) {
+      StringResource resource = iterator.next();
+      Set<Locale> changedLocales = resource.getChangedLocales();
+
+      if (!changedLocales.isEmpty()) {
+        changes.put(resource.getKey(), changedLocales);
+        iterator.remove();
+      }
+    }
+
+    return changes;
+  }
+
+  final void invalidateLocales() {
+    myLocaleList = null;
+    myLocaleSet = null;
+  }
+
   @NotNull
   final Project getProject() {
     return myProject;
@@ -86,7 +136,7 @@ public final class StringResourceData {
       return;
     }
 
-    boolean mapContainsName = myKeyToResourceMap.keySet().stream()
+    boolean mapContainsName = myKeys.stream()
       .map(k -> k.getName())
       .anyMatch(n -> n.equals(name));
 
@@ -111,9 +161,10 @@ public final class StringResourceData {
 
     new RenameProcessor(myProject, nameAttributeValue, name, false, false).run();
 
+    myKeys.remove(key);
     myKeyToResourceMap.remove(key);
-    key = new StringResourceKey(name, key.getDirectory());
-    myKeyToResourceMap.put(key, new StringResource(key, this));
+
+    myKeys.add(new StringResourceKey(name, key.getDirectory()));
   }
 
   public boolean setTranslatable(@NotNull StringResourceKey key, boolean translatable) {
@@ -138,7 +189,7 @@ public final class StringResourceData {
 
   @Nullable
   public String validateKey(@NotNull StringResourceKey key) {
-    if (!myKeyToResourceMap.containsKey(key)) {
+    if (!myKeys.contains(key)) {
       throw new IllegalArgumentException("Key " + key + " does not exist.");
     }
 
@@ -168,8 +219,8 @@ public final class StringResourceData {
   @VisibleForTesting
   Collection<Locale> getMissingTranslations(@NotNull StringResourceKey key) {
     Set<Locale> missingTranslations = new HashSet<Locale>();
+    StringResource stringResource = getStringResource(key);
     for (Locale locale : getLocaleSet()) {
-      StringResource stringResource = getStringResource(key);
       if (stringResource.isTranslationMissing(locale)) {
         missingTranslations.add(locale);
       }
@@ -220,45 +271,50 @@ public final class StringResourceData {
   }
 
   boolean containsKey(@NotNull StringResourceKey key) {
-    return myKeyToResourceMap.containsKey(key);
+    return myKeys.contains(key);
   }
 
   @NotNull
   public StringResource getStringResource(@NotNull StringResourceKey key) {
-    StringResource resource = myKeyToResourceMap.get(key);
-
-    if (resource == null) {
+    if (!myKeys.contains(key)) {
       throw new IllegalArgumentException(key.toString());
     }
 
-    return resource;
+    return myKeyToResourceMap.computeIfAbsent(key, k -> new StringResource(k, this));
   }
 
+  /**
+   * Returns the string resources of all the keys. This resolves every key, so it should not be called on paths that only need a few.
+   */
   @NotNull
   public Collection<StringResource> getResources() {
-    return myKeyToResourceMap.values();
+    return myKeys.stream()
+      .map(this::getStringResource)
+      .collect(Collectors.toList());
   }
 
   @NotNull
   public List<StringResourceKey> getKeys() {
-    return new ArrayList<>(myKeyToResourceMap.keySet());
+    return new ArrayList<>(myKeys);
   }
 
   @NotNull
   public List<Locale> getLocaleList() {
-    return getTranslatedLocaleStream()
-      .distinct()
-      .sorted(Locale.LANGUAGE_NAME_COMPARATOR)
-      .collect(Collectors.toList());
+    if (myLocaleList == null) {
+      myLocaleList = getLocaleSet().stream()
+        .sorted(Locale.LANGUAGE_NAME_COMPARATOR)
+        .collect(Collectors.toList());
+    }
+
+    return myLocaleList;
   }
 
   @NotNull
   Set<Locale> getLocaleSet() {
-    return getTranslatedLocaleStream().collect(Collectors.toSet());
-  }
+    if (myLocaleSet == null) {
+      myLocaleSet = myRepository.getTranslatedLocales();
+    }
 
-  @NotNull
-  private Stream<Locale> getTranslatedLocaleStream() {
-    return myKeyToResourceMap.values().stream().flatMap(resource -> resource.getTranslatedLocales().stream());
+    return myLocaleSet;
   }
 }
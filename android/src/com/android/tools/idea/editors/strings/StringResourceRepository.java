@@ -28,13 +28,16 @@ import com.android.tools.idea.res.ResourceFolderRepository;
 import com.google.common.collect.Maps;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.vfs.VirtualFile;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -126,6 +129,37 @@ public final class StringResourceRepository {
       .map(name -> new StringResourceKey(name, directory));
   }
 
+  /**
+   * Returns the locales of all the translations in the repository. Only the configurations of the items are looked at, so this is much
+   * cheaper than resolving every key.
+   */
+  @NotNull
+  final Set<Locale> getTranslatedLocales() {
+    Collection<LocalResourceRepository> repositories = new ArrayList<>(myResourceDirectoryRepositoryMap.values());
+
+    if (myDynamicResourceRepository != null) {
+      repositories.add(myDynamicResourceRepository);
+    }
+
+    Set<LocaleQualifier> qualifiers = new HashSet<>();
+
+    for (LocalResourceRepository repository : repositories) {
+      repository.sync();
+
+      for (ResourceItem item : repository.getResources(ResourceNamespace.TODO(), ResourceType.STRING).values()) {
+        LocaleQualifier qualifier = item.getConfiguration().getLocaleQualifier();
+
+        if (qualifier != null) {
+          qualifiers.add(qualifier);
+        }
+      }
+    }
+
+    return qualifiers.stream()
+      .map(Locale::create)
+      .collect(Collectors.toSet());
+  }
+
   @NotNull
   public Collection<ResourceItem> getItems(@NotNull StringResourceKey key) {
     return getItems(getRepository(key), key);
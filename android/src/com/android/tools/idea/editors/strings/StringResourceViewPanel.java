@@ -21,6 +21,9 @@ import com.android.tools.idea.editors.strings.table.FrozenColumnTableListener;
 import com.android.tools.idea.editors.strings.table.StringResourceTable;
 import com.android.tools.idea.editors.strings.table.StringResourceTableModel;
 import com.android.tools.idea.rendering.Locale;
+import com.android.tools.idea.res.ResourceNotificationManager;
+import com.android.tools.idea.res.ResourceNotificationManager.Reason;
+import com.android.tools.idea.res.ResourceNotificationManager.ResourceChangeListener;
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.Disposable;
@@ -33,10 +36,14 @@ import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.components.JBLoadingPanel;
 import com.intellij.uiDesigner.core.GridConstraints;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
 import java.awt.BorderLayout;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.EnumSet;
+import java.util.Set;
 import javax.swing.JComponent;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
@@ -62,11 +69,21 @@ public final class StringResourceViewPanel implements Disposable {
   private GoToDeclarationAction myGoToAction;
   private DeleteStringAction myDeleteAction;
 
+  private final ResourceChangeListener myResourceChangeListener = this::resourcesChanged;
+  private final MergingUpdateQueue myResourceChangeQueue;
+
+  /**
+   * The reasons of the resource changes not applied to the table yet. Changes notified while the resources are loading are kept until
+   * they are loaded, since the loaded data might not include them.
+   */
+  private final Set<Reason> myPendingResourceChanges = EnumSet.noneOf(Reason.class);
+
   StringResourceViewPanel(AndroidFacet facet, Disposable parentDisposable) {
     myFacet = facet;
     Disposer.register(parentDisposable, this);
 
     myToolbarPanel.add(createToolbar().getComponent());
+    myResourceChangeQueue = new MergingUpdateQueue("Translations Editor Resource Changes", 300, true, null, this);
 
     GridConstraints constraints = new GridConstraints();
     constraints.setFill(GridConstraints.FILL_BOTH);
@@ -81,12 +98,17 @@ public final class StringResourceViewPanel implements Disposable {
     myLoadingPanel.startLoading();
 
     if (!ApplicationManager.getApplication().isUnitTestMode()) {
+      ResourceNotificationManager.getInstance(myFacet.getModule().getProject()).addListener(myResourceChangeListener, myFacet, null, null);
       new ResourceLoadingTask(this).queue();
     }
   }
 
   @Override
   public void dispose() {
+    if (!ApplicationManager.getApplication().isUnitTestMode()) {
+      ResourceNotificationManager manager = ResourceNotificationManager.getInstance(myFacet.getModule().getProject());
+      manager.removeListener(myResourceChangeListener, myFacet, null, null);
+    }
   }
 
   public void removeSelectedKeys() {
@@ -159,6 +181,31 @@ public final class StringResourceViewPanel implements Disposable {
     }
   }
 
+  private void resourcesChanged(@NotNull Set<Reason> reasons) {
+    myPendingResourceChanges.addAll(reasons);
+    myResourceChangeQueue.queue(Update.create("resourcesChanged", this::applyPendingResourceChanges));
+  }
+
+  /**
+   * Keeps the table up to date with edits made outside of it. Edits of existing resource folders only update the cells whose values
+   * changed; changes that can add or remove resource folders need the repository to be created again.
+   */
+  void applyPendingResourceChanges() {
+    if (myLoadingPanel.isLoading() || myPendingResourceChanges.isEmpty()) {
+      return;
+    }
+
+    Set<Reason> reasons = EnumSet.copyOf(myPendingResourceChanges);
+    myPendingResourceChanges.clear();
+
+    if (reasons.contains(Reason.GRADLE_SYNC) || reasons.contains(Reason.VARIANT_CHANGED)) {
+      reloadData();
+    }
+    else if (reasons.contains(Reason.RESOURCE_EDIT)) {
+      myTable.getModel().refresh();
+    }
+  }
+
   private ActionToolbar createToolbar() {
     myAddLocaleAction = new AddLocaleAction(this);
 
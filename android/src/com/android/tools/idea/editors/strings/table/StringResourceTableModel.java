@@ -25,6 +25,8 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.swing.table.AbstractTableModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -60,6 +62,52 @@ public class StringResourceTableModel extends AbstractTableModel {
     myLocales = data.getLocaleList();
   }
 
+  /**
+   * Picks up the changes made to the string resources since the model was created, e.g. edits made in the XML files. Only the cells whose
+   * values changed are updated, so edits of other resources don't fire any event and the selection is kept unless keys or locales were
+   * added or removed.
+   */
+  public void refresh() {
+    if (myData == null) {
+      return;
+    }
+
+    List<StringResourceKey> keys = myKeys;
+    List<Locale> locales = myLocales;
+
+    Map<StringResourceKey, Set<Locale>> changes = myData.update();
+
+    myKeys = myData.getKeys();
+    myLocales = myData.getLocaleList();
+
+    if (!myLocales.equals(locales)) {
+      fireTableStructureChanged();
+      return;
+    }
+
+    if (!myKeys.equals(keys)) {
+      fireTableDataChanged();
+      return;
+    }
+
+    changes.forEach((key, changedLocales) -> {
+      int row = myKeys.indexOf(key);
+
+      // The problems shown in the key column depend on the values of all the locales.
+      fireTableCellUpdated(row, KEY_COLUMN);
+
+      for (Locale locale : changedLocales) {
+        if (locale == null) {
+          fireTableCellUpdated(row, UNTRANSLATABLE_COLUMN);
+          fireTableCellUpdated(row, DEFAULT_VALUE_COLUMN);
+        }
+        else {
+          fireTableCellUpdated(row, FIXED_COLUMN_COUNT + myLocales.indexOf(locale));
+        }
+      }
+    });
+  }
+
   @NotNull
   public StringResourceRepository getRepository() {
     return myRepository;
@@ -19,14 +19,19 @@ import com.android.tools.idea.experimental.codeanalysis.PsiCFGScene;
 import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGClass;
 import com.android.tools.idea.experimental.codeanalysis.utils.PsiCFGAnalysisUtil;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.intellij.analysis.AnalysisScope;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 
 public final class CodeAnalysisMain {
@@ -37,6 +42,13 @@ public final class CodeAnalysisMain {
 
   private PsiCFGScene mScene;
 
+  //The java files the current scene was built from.
+  private Set<PsiFile> mSceneFiles = Collections.emptySet();
+
+  private long mScenePsiModificationCount = -1;
+
+  private long mSceneRootsModificationCount = -1;
+
   private CodeAnalysisMain(Project project) {
     mProject = project;
   }
@@ -53,21 +65,40 @@ public final class CodeAnalysisMain {
     }
   }
 
-  public void analyze(@NotNull AnalysisScope scope) {
+  /**
+   * Build the CFGs and the call graph of the java files in the scope and
+   * save them in the scene of the project.
+   *
+   * The scene is kept between invocations. It is reused as is if the scope
+   * has the same java files and neither the PSI of the project nor its
+   * roots changed since it was built. The CFGs also refer to classes
+   * outside the scope, so any PSI change in the project rebuilds it.
+   */
+  public synchronized void analyze(@NotNull AnalysisScope scope) {
 
 //    PsiDocumentManager.getInstance(mProject).commitAllDocuments();
-    //Create a mScene for this project.
-    //Each project has its own mScene.
-    mScene = PsiCFGScene.createFreshInstance(mProject);
-    PsiCFGAnalysisUtil AnalysisUtil = mScene.analysisUtil;
-
     //Get list of java files available in this project
-    int fileCount = scope.getFileCount();
-    //LOG.info("File count in scope " + fileCount);
     PsiFile[] allFilesInScope = findAllJavaFiles(mProject, scope);
     //LOG.info("File count in visitor " + allFilesInScope.length);
     //outputFileNames(allFilesInScope);
 
+    Set<PsiFile> files = Sets.newHashSet(allFilesInScope);
+    long psiModificationCount = PsiManager.getInstance(mProject).getModificationTracker().getModificationCount();
+    long rootsModificationCount = ProjectRootModificationTracker.getInstance(mProject).getModificationCount();
+    if (mScene != null && mScene == PsiCFGScene.getInstance(mProject) && mScene.getCallGraph() != null &&
+        psiModificationCount == mScenePsiModificationCount && rootsModificationCount == mSceneRootsModificationCount &&
+        files.equals(mSceneFiles)) {
+      //Nothing changed since the scene was built.
+      //Its CFGs and call graph are still valid.
+      return;
+    }
+
+    //Create a mScene for this project.
+    //Each project has its own mScene.
+    mScene = PsiCFGScene.createFreshInstance(mProject);
+    mSceneFiles = Collections.emptySet();
+    PsiCFGAnalysisUtil AnalysisUtil = mScene.analysisUtil;
+
     //Extract all java classes from java files.
     //Consider these classes are application classes.
     //As they are written by developer
@@ -83,6 +114,10 @@ public final class CodeAnalysisMain {
     //AnalysisUtil.summarizeStage();
     AnalysisUtil.performStage5();
     AnalysisUtil.performStage6();
+
+    mSceneFiles = files;
+    mScenePsiModificationCount = psiModificationCount;
+    mSceneRootsModificationCount = rootsModificationCount;
   }
 
   private void outputFileNames(PsiFile[] filesArray) {
@@ -34,6 +34,7 @@ import com.intellij.psi.PsiLambdaExpression;
 import com.intellij.psi.PsiMethod;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
@@ -42,6 +43,10 @@ import org.jetbrains.annotations.NotNull;
 /**
  * A class that saves all information of the interprocedural control
  * flow analysis
+ *
+ * The control flow graphs of the methods are built concurrently, so
+ * every method that reads or updates the class maps, the invocation
+ * nodes or the working list synchronizes on the scene.
  */
 public final class PsiCFGScene {
   private static ConcurrentMap<Project, PsiCFGScene> instanceMap = Maps.newConcurrentMap();
@@ -88,6 +93,17 @@ public final class PsiCFGScene {
     workingList = Queues.newArrayDeque();
   }
 
+  /**
+   * Remove all classes from the working list.
+   * @return The classes that were in the working list, in order.
+   */
+  @NotNull
+  public synchronized List<PsiCFGClass> drainWorkingList() {
+    List<PsiCFGClass> retList = new ArrayList<>(workingList);
+    workingList.clear();
+    return retList;
+  }
+
   public void setCallGraph(Callgraph callGraph) {
     mCallGraph = callGraph;
   }
@@ -96,11 +112,11 @@ public final class PsiCFGScene {
     return mCallGraph;
   }
 
-  public void addInvocationNode(GraphNode node) {
+  public synchronized void addInvocationNode(GraphNode node) {
     mInvocationNodes.add(node);
   }
 
-  public GraphNode[] getAllInvocationNode() {
+  public synchronized GraphNode[] getAllInvocationNode() {
     return mInvocationNodes.toArray(GraphNode.EMPTY_ARRAY);
   }
 
@@ -148,7 +164,7 @@ public final class PsiCFGScene {
    * Get all PsiClass instances found by visiting all java files in the project.
    * @return A new array of PsiClass instances which are application classes.
    */
-  public PsiClass[] getAllApplicationPsiClasses() {
+  public synchronized PsiClass[] getAllApplicationPsiClasses() {
     PsiClass[] retArray = new PsiClass[mAppClassNamePsiMap.size()];
     int i = 0;
     for (String className : mAppClassNamePsiMap.keySet()) {
@@ -163,7 +179,7 @@ public final class PsiCFGScene {
    * Get all PsiCFGClass instances constructed from the application classses.
    * @return A new array of PsiCFGClass instances which are application classes will be returned.
    */
-  public PsiCFGClass[] getAllApplicationClasses() {
+  public synchronized PsiCFGClass[] getAllApplicationClasses() {
     PsiCFGClass[] retArray = new PsiCFGClass[mAppClassNamePsiMap.size()];
     int i = 0;
     for (String className : mAppClassNamePsiMap.keySet()) {
@@ -177,7 +193,7 @@ public final class PsiCFGScene {
    * Get the set of PsiCFGClass instances which are application classes.
    * @return A new set of PsiCFGClass instances which are application classes will be returned.
    */
-  public Set<PsiClass> getAllLibraryClassPsiSet() {
+  public synchronized Set<PsiClass> getAllLibraryClassPsiSet() {
     return Sets.newHashSet(this.mLibraryPsiClassPsiCFGClassMap.keySet());
   }
 
@@ -185,7 +201,7 @@ public final class PsiCFGScene {
    * Get all PsiCFGClass instances constructed from the library classses.
    * @return A new array of PsiCFGClass instances which are library classes will be returned.
    */
-  public PsiCFGClass[] getAllLibraryClasses() {
+  public synchronized PsiCFGClass[] getAllLibraryClasses() {
     PsiCFGClass[] retArray = new PsiCFGClass[mLibraryClassNamePsiMap.size()];
     int i = 0;
     for (String className : mLibraryClassNamePsiMap.keySet()) {
@@ -200,7 +216,7 @@ public final class PsiCFGScene {
    * @return A new array of PsiCFGClass instances which are lambda anonymous classes will be
    * returned.
    */
-  public PsiCFGClass[] getAllLambdaClass() {
+  public synchronized PsiCFGClass[] getAllLambdaClass() {
     PsiCFGClass[] retArray = new PsiCFGClass[mLambdaPsiCFGClassMap.size()];
     int i = 0;
     for (PsiLambdaExpression lbdExpr : mLambdaPsiCFGClassMap.keySet()) {
@@ -216,7 +232,7 @@ public final class PsiCFGScene {
    * @param name The qualified name of the class
    * @return The PsiCFGClass instance.
    */
-  public PsiCFGClass getPsiCFGClass(String name) {
+  public synchronized PsiCFGClass getPsiCFGClass(String name) {
     if (mAppClassNamePsiMap.containsKey(name)) {
       return mAppClassNamePsiMap.get(name);
     }
@@ -235,7 +251,7 @@ public final class PsiCFGScene {
    * @param name The PsiClass
    * @return The PsiCFGClass instance.
    */
-  public PsiCFGClass getPsiCFGClass(PsiClass psiClazz) {
+  public synchronized PsiCFGClass getPsiCFGClass(PsiClass psiClazz) {
     if (mAppPsiClassPsiCFGClassMap.containsKey(psiClazz)) {
       return mAppPsiClassPsiCFGClassMap.get(psiClazz);
     }
@@ -248,7 +264,7 @@ public final class PsiCFGScene {
     }
   }
 
-  public PsiCFGClass getOrCreateCFGClass(PsiClass psiClazz) {
+  public synchronized PsiCFGClass getOrCreateCFGClass(PsiClass psiClazz) {
     PsiCFGClass retClass = getPsiCFGClass(psiClazz);
     if (retClass == null) {
       retClass = createAndParsePsiCFGClassOnTheFly(psiClazz);
@@ -256,9 +272,9 @@ public final class PsiCFGScene {
     return retClass;
   }
 
-  public PsiCFGClass createPsiCFGClass(PsiClass psiClass,
-                                       PsiFile declaringFile,
-                                       boolean bAppClass) {
+  public synchronized PsiCFGClass createPsiCFGClass(PsiClass psiClass,
+                                                    PsiFile declaringFile,
+                                                    boolean bAppClass) {
     String fullClassName = psiClass.getQualifiedName();
     if (fullClassName == null) {
       //TODO: Local or anonymous class
@@ -309,7 +325,7 @@ public final class PsiCFGScene {
    * @param psiClass
    * @return
    */
-  public PsiCFGClass createAndParsePsiCFGClassOnTheFly(PsiClass psiClass) {
+  public synchronized PsiCFGClass createAndParsePsiCFGClassOnTheFly(PsiClass psiClass) {
     //Sanity check. Make sure the psiClass param is really not in side the App classes.
     if (mAppPsiClassPsiCFGClassMap.containsKey(psiClass)) {
       //Not expected. Print a log
@@ -334,7 +350,7 @@ public final class PsiCFGScene {
    * @param clazz
    * @return
    */
-  public PsiCFGClass createLibraryCFGClassesWInnerClasses(PsiClass clazz) {
+  public synchronized PsiCFGClass createLibraryCFGClassesWInnerClasses(PsiClass clazz) {
     ArrayList<PsiClass> classList = new ArrayList<>();
     retriveClassAndInnerClass(classList, clazz);
     classList.remove(clazz);
@@ -363,10 +379,10 @@ public final class PsiCFGScene {
   }
 
 
-  public PsiCFGClass getOrCreateNestedClass(PsiClass nestedClass,
-                                            PsiCFGClass parentCFGClass,
-                                            PsiCFGMethod declaringMethod,
-                                            BlockGraph declaringBlock) {
+  public synchronized PsiCFGClass getOrCreateNestedClass(PsiClass nestedClass,
+                                                         PsiCFGClass parentCFGClass,
+                                                         PsiCFGMethod declaringMethod,
+                                                         BlockGraph declaringBlock) {
     PsiCFGClass currentNestedCFGClass =
       new PsiCFGClass(nestedClass, parentCFGClass.getDeclearingFile());
 
@@ -397,9 +413,9 @@ public final class PsiCFGScene {
     return currentNestedCFGClass;
   }
 
-  public PsiCFGClass createLambdaAnonymousClass(PsiLambdaExpression lambdaExpress,
-                                                PsiClass parentInterface,
-                                                PsiCFGClass declearingClass) {
+  public synchronized PsiCFGClass createLambdaAnonymousClass(PsiLambdaExpression lambdaExpress,
+                                                             PsiClass parentInterface,
+                                                             PsiCFGClass declearingClass) {
     PsiCFGClass parentInterfaceCFGClass = getOrCreateCFGClass(parentInterface);
     //PsiCFGMethod[] methodsArray = parentInterfaceCFGClass.getAllMethods();
     PsiMethod overridedMethod = extractLambdaMethod(parentInterface);
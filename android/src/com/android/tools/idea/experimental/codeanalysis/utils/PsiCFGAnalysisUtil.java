@@ -23,11 +23,16 @@ import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGField;
 import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGMethod;
 import com.android.tools.idea.experimental.codeanalysis.datastructs.graph.MethodGraph;
 import com.android.tools.idea.experimental.codeanalysis.datastructs.graph.node.GraphNode;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.*;
 import com.intellij.psi.search.GlobalSearchScope;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 public class PsiCFGAnalysisUtil {
@@ -79,40 +84,51 @@ public class PsiCFGAnalysisUtil {
    * The purpose of the Stage3 is create IntraProcedural
    * CFG for the methods and lambdas inside the app
    * class, including the constructor and the init code
+   *
+   * The CFGs of all methods in the working list are built
+   * concurrently. Nested classes found while building them
+   * are added to the working list and processed in the
+   * next round.
    */
   public void performStage3() {
     PsiCFGClass[] appClasses = mScene.getAllApplicationClasses();
 
-    mScene.workingList.clear();
-    mScene.workingList.addAll(Arrays.asList(appClasses));
-
-    while (!mScene.workingList.isEmpty()) {
-      //While the working list is not empty
-      //Process the working list
-      PsiCFGClass currentClass = mScene.workingList.removeFirst();
-      PsiCFGMethod[] allMethods = currentClass.getAllMethods();
-
-      for (PsiCFGMethod currentMethod : allMethods) {
-        //Abstract method does not have a body
-        //Lambda methods' CFG is created by the time it is decleared
-        if (currentMethod.isAbstract() || currentMethod.isLambda()) {
-          continue;
+    mScene.drainWorkingList();
+    List<PsiCFGClass> currentClasses = Arrays.asList(appClasses);
+    while (!currentClasses.isEmpty()) {
+      List<PsiCFGMethod> methods = new ArrayList<>();
+      for (PsiCFGClass currentClass : currentClasses) {
+        for (PsiCFGMethod currentMethod : currentClass.getAllMethods()) {
+          //Abstract method does not have a body
+          //Lambda methods' CFG is created by the time it is decleared
+          if (!currentMethod.isAbstract() && !currentMethod.isLambda()) {
+            methods.add(currentMethod);
+          }
         }
+      }
 
-        PsiMethod methodRef = currentMethod.getMethodRef();
-        if (methodRef != null) {
-          PsiCodeBlock codeBlock = methodRef.getBody();
+      JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+        methods, ProgressManager.getInstance().getProgressIndicator(), currentMethod -> {
+          ReadAction.run(() -> constructMethodGraph(currentMethod));
+          return true;
+        });
+      currentClasses = mScene.drainWorkingList();
+    }
+  }
 
-          if (codeBlock == null) {
-            PsiCFGDebugUtil.LOG.info("In " + currentClass.getQualifiedClassName() + "."
-                                     + currentMethod.getName() + "Code block is null");
-            continue;
-          }
+  private void constructMethodGraph(@NotNull PsiCFGMethod currentMethod) {
+    PsiMethod methodRef = currentMethod.getMethodRef();
+    if (methodRef != null) {
+      PsiCodeBlock codeBlock = methodRef.getBody();
 
-          MethodGraph cfg = CFGUtil.constructMethodGraph(mScene, codeBlock, currentMethod);
-          currentMethod.setControlFlowGraph(cfg);
-        }
+      if (codeBlock == null) {
+        PsiCFGDebugUtil.LOG.info("In " + currentMethod.getDeclaringClass().getQualifiedClassName() + "."
+                                 + currentMethod.getName() + "Code block is null");
+        return;
       }
+
+      MethodGraph cfg = CFGUtil.constructMethodGraph(mScene, codeBlock, currentMethod);
+      currentMethod.setControlFlowGraph(cfg);
     }
   }
 
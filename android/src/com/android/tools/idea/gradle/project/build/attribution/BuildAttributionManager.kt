@@ -19,7 +19,7 @@ import org.gradle.tooling.events.ProgressListener
 import java.io.File
 
 interface BuildAttributionManager : ProgressListener {
-  fun onBuildStart()
+  fun onBuildStart(requestedTasks: List<String>)
 
   fun onBuildSuccess(attributionFileDir: File)
 
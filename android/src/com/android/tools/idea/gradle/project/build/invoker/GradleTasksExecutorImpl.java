@@ -191,12 +191,13 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
   private static void setUpBuildAttributionManager(LongRunningOperation operation,
                                                    BuildAttributionManager buildAttributionManager,
+                                                   List<String> gradleTasks,
                                                    boolean skipIfNull) {
     if (skipIfNull && buildAttributionManager == null) {
       return;
     }
     operation.addProgressListener(buildAttributionManager, OperationType.PROJECT_CONFIGURATION, OperationType.TASK, OperationType.TEST);
-    buildAttributionManager.onBuildStart();
+    buildAttributionManager.onBuildStart(gradleTasks);
   }
 
   private void invokeGradleTasks() {
@@ -301,7 +302,7 @@ class GradleTasksExecutorImpl extends GradleTasksExecutor {
 
         if (enableBuildAttribution) {
           buildAttributionManager = ServiceManager.getService(myProject, BuildAttributionManager.class);
-          setUpBuildAttributionManager(operation, buildAttributionManager,
+          setUpBuildAttributionManager(operation, buildAttributionManager, gradleTasks,
                                        // In some tests we don't care about build attribution being setup
                                        ApplicationManager.getApplication().isUnitTestMode());
         }
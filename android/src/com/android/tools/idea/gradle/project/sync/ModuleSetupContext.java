@@ -27,13 +27,18 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModifiableRootModel;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderBase;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
 import java.util.List;
 
-public class ModuleSetupContext {
+/**
+ * State shared by the setup steps of a single module. Data computed while preparing the module setup (see
+ * {@link com.android.tools.idea.gradle.project.sync.setup.module.ModuleSetupStep#prepareModule}) is stored as user data.
+ */
+public class ModuleSetupContext extends UserDataHolderBase {
   public static final Key<ModuleFinder> MODULES_BY_GRADLE_PATH_KEY = Key.create("gradle.sync.modules.by.gradle.path");
 
   @NotNull private final Module myModule;
@@ -41,6 +46,10 @@ public class ModuleSetupContext {
 
   @Nullable private final GradleModuleModels myGradleModels;
 
+  // Set by resolveProviderState(), after which these are read without going through the (not thread-safe) models provider.
+  @Nullable private volatile ModuleFinder myResolvedModuleFinder;
+  @Nullable private volatile Boolean myResolvedHasNativeModel;
+
   @VisibleForTesting
   ModuleSetupContext(@NotNull Module module,
                      @NotNull IdeModifiableModelsProvider ideModelsProvider,
@@ -50,8 +59,23 @@ public class ModuleSetupContext {
     myGradleModels = gradleModels;
   }
 
+  /**
+   * Looks up, on the calling thread, everything this context would otherwise read lazily through the {@link IdeModifiableModelsProvider}.
+   * The provider and the facet models it creates on demand are not thread-safe, so this must be called on the thread that owns the
+   * provider before the context is used from other threads, e.g. by
+   * {@link com.android.tools.idea.gradle.project.sync.setup.module.ModuleSetupStep#prepareModule}.
+   */
+  public void resolveProviderState() {
+    myResolvedModuleFinder = getModuleFinder();
+    myResolvedHasNativeModel = hasNativeModel();
+  }
+
   @Nullable
   public ModuleFinder getModuleFinder() {
+    ModuleFinder resolvedModuleFinder = myResolvedModuleFinder;
+    if (resolvedModuleFinder != null) {
+      return resolvedModuleFinder;
+    }
     ModuleFinder moduleFinder = myModule.getProject().getUserData(MODULES_BY_GRADLE_PATH_KEY);
 
     if (moduleFinder == null) {
@@ -75,6 +99,10 @@ public class ModuleSetupContext {
   }
 
   public boolean hasNativeModel() {
+    Boolean resolvedHasNativeModel = myResolvedHasNativeModel;
+    if (resolvedHasNativeModel != null) {
+      return resolvedHasNativeModel;
+    }
     if (myGradleModels != null) {
       return myGradleModels.findModel(NativeAndroidProject.class) != null;
     }
@@ -20,6 +20,7 @@ import static com.intellij.util.ui.UIUtil.invokeAndWaitIfNeeded;
 import com.android.annotations.concurrency.WorkerThread;
 import com.android.tools.idea.gradle.project.sync.GradleSyncListener;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.idea.gradle.project.sync.idea.data.DataNodeCaches;
 import com.android.tools.idea.gradle.project.sync.messages.GradleSyncMessages;
 import com.android.tools.idea.gradle.project.sync.setup.post.PostSyncProjectSetup;
 import com.google.common.annotations.VisibleForTesting;
@@ -64,6 +65,15 @@ public class IdeaSyncPopulateProjectTask {
     });
     try {
       myDataManager.importData(projectInfo, myProject, true /* synchronous */);
+      if (setupRequest != null) {
+        // The Android and NDK models are persisted in the binary model cache instead of with the rest of the project data.
+        if (setupRequest.usingCachedGradleModels) {
+          DataNodeCaches.getInstance(myProject).removeModels(projectInfo);
+        }
+        else {
+          DataNodeCaches.getInstance(myProject).saveModels(projectInfo);
+        }
+      }
       if (syncListener != null) {
         if (setupRequest != null && setupRequest.usingCachedGradleModels) {
           syncListener.syncSkipped(myProject);
@@ -22,8 +22,12 @@ import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.model.GradleModuleModel;
 import com.android.tools.idea.gradle.project.model.JavaModuleModel;
 import com.android.tools.idea.gradle.project.model.NdkModuleModel;
+import com.android.builder.model.level2.Library;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.externalSystem.model.DataNode;
 import com.intellij.openapi.externalSystem.model.ExternalProjectInfo;
 import com.intellij.openapi.externalSystem.model.Key;
@@ -34,13 +38,25 @@ import com.intellij.openapi.externalSystem.service.project.manage.ProjectDataMan
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.gradle.util.GradleConstants;
 
+import java.io.IOException;
+import java.io.ObjectStreamClass;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static com.android.tools.idea.Projects.getBaseDirPath;
 import static com.android.tools.idea.gradle.project.sync.idea.data.service.AndroidProjectKeys.*;
@@ -48,6 +64,14 @@ import static com.intellij.openapi.externalSystem.model.ProjectKeys.MODULE;
 import static com.intellij.openapi.externalSystem.util.ExternalSystemApiUtil.*;
 
 public class DataNodeCaches {
+  private static final String MODEL_CACHE_DIRECTORY = "caches/gradle_models";
+  private static final int ANDROID_MODEL_INDEX = 0;
+  private static final int NDK_MODEL_INDEX = 1;
+
+  // Writes are serialized so that a sync finishing while the models of the previous one are being written doesn't race on the file.
+  private static final ExecutorService MODEL_CACHE_WRITER =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Gradle Model Cache Writer", 1);
+
   @NotNull private final Project myProject;
 
   @NotNull
@@ -142,6 +166,7 @@ public class DataNodeCaches {
   }
 
   public void clearCaches() {
+    deleteModelCache();
     ExternalProjectInfo projectInfo = getExternalProjectInfo();
     if (projectInfo == null) {
       return;
@@ -156,6 +181,122 @@ public class DataNodeCaches {
     myProject.save();
   }
 
+  /**
+   * Stores the Android and NDK models of every module in {@code cache} in the binary model cache, sharing identical dependency
+   * libraries between modules, and removes them from {@code cache} so that they are not serialized a second time with the rest of the
+   * project data. The models are serialized on the calling thread and the file is written on a background thread.
+   */
+  @NotNull
+  public Future<?> saveModels(@NotNull DataNode<ProjectData> cache) {
+    Map<String, List<Object>> modelsByModule = new LinkedHashMap<>();
+    for (DataNode<ModuleData> moduleDataNode : findAll(cache, MODULE)) {
+      DataNode<AndroidModuleModel> androidDataNode = find(moduleDataNode, ANDROID_MODEL);
+      DataNode<NdkModuleModel> ndkDataNode = find(moduleDataNode, NDK_MODEL);
+      if (androidDataNode != null || ndkDataNode != null) {
+        modelsByModule.put(moduleDataNode.getData().getInternalName(),
+                           Arrays.asList(androidDataNode != null ? androidDataNode.getData() : null,
+                                         ndkDataNode != null ? ndkDataNode.getData() : null));
+      }
+    }
+    byte[] contents;
+    try {
+      // The models are shared with the facets and change, e.g. when a different variant is selected, so they must not be read later.
+      contents = GradleModelBinaryCache.encode(getModelsVersion(), modelsByModule, object -> object instanceof Library);
+    }
+    catch (IOException e) {
+      // The models stay in the project data and are restored from there.
+      getLogger().warn("Failed to save Gradle models of project '" + myProject.getName() + "'", e);
+      return CompletableFuture.completedFuture(null);
+    }
+    removeModels(cache);
+    Path file = getModelCacheFile();
+    return MODEL_CACHE_WRITER.submit(() -> {
+      try {
+        GradleModelBinaryCache.write(file, contents);
+      }
+      catch (IOException e) {
+        // Without the file, the next project opening finds the models missing and requests a Gradle sync.
+        getLogger().warn("Failed to save Gradle models of project '" + myProject.getName() + "'", e);
+      }
+    });
+  }
+
+  /**
+   * Removes the Android and NDK models from {@code cache}, after they have been imported from a cache restored by
+   * {@link #restoreModels(DataNode)}. The binary model cache they were loaded from is still up to date.
+   */
+  public void removeModels(@NotNull DataNode<ProjectData> cache) {
+    clearCachesOfType(cache, ANDROID_MODEL);
+    clearCachesOfType(cache, NDK_MODEL);
+  }
+
+  /**
+   * Adds the Android and NDK models stored in the binary model cache to the modules in {@code cache}. The project data cache doesn't
+   * keep these models (see {@link #saveModels(DataNode)}), so this is where they are restored from when a project is opened. A module's
+   * record is only deserialized when the cache has a model that the module is missing, e.g. modules without native code never had an NDK
+   * model and are skipped.
+   */
+  public void restoreModels(@NotNull DataNode<ProjectData> cache) {
+    try {
+      GradleModelBinaryCache modelCache = GradleModelBinaryCache.open(getModelCacheFile(), getModelsVersion());
+      if (modelCache == null) {
+        return;
+      }
+      for (DataNode<ModuleData> moduleDataNode : findAll(cache, MODULE)) {
+        String moduleName = moduleDataNode.getData().getInternalName();
+        boolean missingAndroidModel =
+          find(moduleDataNode, ANDROID_MODEL) == null && modelCache.isModelPresent(moduleName, ANDROID_MODEL_INDEX);
+        boolean missingNdkModel = find(moduleDataNode, NDK_MODEL) == null && modelCache.isModelPresent(moduleName, NDK_MODEL_INDEX);
+        if (!missingAndroidModel && !missingNdkModel) {
+          continue;
+        }
+        List<Object> models = modelCache.load(moduleName);
+        if (models == null || models.size() != 2) {
+          continue;
+        }
+        if (missingAndroidModel && models.get(ANDROID_MODEL_INDEX) instanceof AndroidModuleModel) {
+          moduleDataNode.createChild(ANDROID_MODEL, (AndroidModuleModel)models.get(ANDROID_MODEL_INDEX));
+        }
+        if (missingNdkModel && models.get(NDK_MODEL_INDEX) instanceof NdkModuleModel) {
+          moduleDataNode.createChild(NDK_MODEL, (NdkModuleModel)models.get(NDK_MODEL_INDEX));
+        }
+      }
+    }
+    catch (IOException e) {
+      getLogger().warn("Failed to restore cached Gradle models of project '" + myProject.getName() + "'", e);
+    }
+  }
+
+  /**
+   * Identifies the serialized form of the top-level cached models. The classes nested in them are checked by {@link GradleModelBinaryCache}
+   * against the serialVersionUIDs recorded in the file, so files written by an IDE with different model classes are ignored.
+   */
+  @VisibleForTesting
+  static long getModelsVersion() {
+    long version = ObjectStreamClass.lookup(AndroidModuleModel.class).getSerialVersionUID();
+    return 31 * version + ObjectStreamClass.lookup(NdkModuleModel.class).getSerialVersionUID();
+  }
+
+  @VisibleForTesting
+  @NotNull
+  Path getModelCacheFile() {
+    return Paths.get(PathManager.getSystemPath(), MODEL_CACHE_DIRECTORY, myProject.getLocationHash() + ".bin");
+  }
+
+  private void deleteModelCache() {
+    try {
+      Files.deleteIfExists(getModelCacheFile());
+    }
+    catch (IOException e) {
+      getLogger().warn("Failed to delete cached Gradle models of project '" + myProject.getName() + "'", e);
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(DataNodeCaches.class);
+  }
+
   private static void clearCaches(@NotNull DataNode<ProjectData> cache) {
     clearCachesOfType(cache, GRADLE_MODULE_MODEL);
     clearCachesOfType(cache, ANDROID_MODEL);
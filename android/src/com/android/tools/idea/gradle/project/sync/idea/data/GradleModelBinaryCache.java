@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Versioned binary store for the per-module models of a synced project.
+ * <p>
+ * The file consists of a header, a module index, a pool of objects shared between modules and one record per module. Objects accepted
+ * by the "shareable" predicate (e.g. dependency libraries) are written to the pool once, and module records refer to them by index.
+ * After loading, every module referring to the same pooled object shares a single instance. Only the module index is read when the file
+ * is opened; a module record is read from disk and deserialized only when {@link #load(String)} is called for that module. The file is
+ * not kept open or mapped between calls, so it can be replaced or deleted at any time.
+ * <p>
+ * The index also lists every class written to the file with its serialVersionUID. A file is ignored when any of them, including the
+ * classes nested in the models, no longer matches the class loaded by the IDE.
+ */
+public final class GradleModelBinaryCache {
+  private static final int MAGIC = 0x474D4243; // "GMBC"
+  // Increase the value when changing the file layout or the set of shareable types.
+  @VisibleForTesting static final int VERSION = 3;
+  // MAGIC, VERSION, models version, file id and index length.
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+  private static final int FILE_ID_OFFSET = 4 + 4 + 8;
+
+  @NotNull private final Path myFile;
+  private final long myFileId;
+  private final long myBodyOffset;
+  @NotNull private final Map<String, Record> myRecordsByModule;
+  @NotNull private final Record myPoolRecord;
+
+  @Nullable private List<Object> myPool;
+
+  private GradleModelBinaryCache(@NotNull Path file,
+                                 long fileId,
+                                 long bodyOffset,
+                                 @NotNull Map<String, Record> recordsByModule,
+                                 @NotNull Record poolRecord) {
+    myFile = file;
+    myFileId = fileId;
+    myBodyOffset = bodyOffset;
+    myRecordsByModule = recordsByModule;
+    myPoolRecord = poolRecord;
+  }
+
+  /**
+   * Writes the models of the given modules to {@code file}, replacing any previous content. Same as encoding them with
+   * {@link #encode(long, Map, Predicate)} and writing the result with {@link #write(Path, byte[])}.
+   */
+  public static void write(@NotNull Path file,
+                           long modelsVersion,
+                           @NotNull Map<String, ? extends List<?>> modelsByModule,
+                           @NotNull Predicate<Object> shareable) throws IOException {
+    write(file, encode(modelsVersion, modelsByModule, shareable));
+  }
+
+  /**
+   * Serializes the models of the given modules into the content of a cache file. The returned bytes don't refer to the models, so they
+   * can be written to disk on another thread while the models keep changing.
+   *
+   * @param modelsVersion  identifies the serialized form of the model classes, e.g. derived from their serialVersionUIDs. Files written
+   *                       with a different value are ignored by {@link #open(Path, long)}.
+   * @param modelsByModule the models to store, indexed by module name. Entries in the lists may be {@code null}.
+   * @param shareable      decides which objects are stored once in the shared pool instead of inside each module record. Objects accepted
+   *                       by it must implement {@link Object#equals(Object)} and {@link Object#hashCode()} by value.
+   */
+  @NotNull
+  public static byte[] encode(long modelsVersion,
+                              @NotNull Map<String, ? extends List<?>> modelsByModule,
+                              @NotNull Predicate<Object> shareable) throws IOException {
+    Map<Object, Integer> poolIndices = new HashMap<>();
+    List<Object> pool = new ArrayList<>();
+    Map<String, Long> classVersions = new TreeMap<>();
+
+    Map<String, byte[]> moduleRecords = new LinkedHashMap<>();
+    for (Map.Entry<String, ? extends List<?>> entry : modelsByModule.entrySet()) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new InterningOutputStream(bytes, shareable, poolIndices, pool, classVersions)) {
+        out.writeObject(new ArrayList<>(entry.getValue()));
+      }
+      moduleRecords.put(entry.getKey(), bytes.toByteArray());
+    }
+
+    ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new InterningOutputStream(poolBytes, object -> false, poolIndices, pool, classVersions)) {
+      out.writeObject(pool);
+    }
+
+    // Offsets are relative to the end of the index; the shared pool comes first.
+    ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    try (DataOutputStream index = new DataOutputStream(indexBytes)) {
+      index.writeInt(moduleRecords.size());
+      long offset = 0;
+      index.writeLong(offset);
+      index.writeInt(poolBytes.size());
+      offset += poolBytes.size();
+      for (Map.Entry<String, byte[]> entry : moduleRecords.entrySet()) {
+        index.writeUTF(entry.getKey());
+        index.writeLong(offset);
+        index.writeInt(entry.getValue().length);
+        index.writeInt(getPresentModelsMask(modelsByModule.get(entry.getKey())));
+        offset += entry.getValue().length;
+      }
+      // Every class written to the file with its serialVersionUID, so that files are ignored as soon as any nested class changes.
+      index.writeInt(classVersions.size());
+      for (Map.Entry<String, Long> entry : classVersions.entrySet()) {
+        index.writeUTF(entry.getKey());
+        index.writeLong(entry.getValue());
+      }
+    }
+
+    ByteArrayOutputStream contents = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(contents)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(modelsVersion);
+      // Lets readers detect that the file was replaced after they read its index.
+      out.writeLong(ThreadLocalRandom.current().nextLong());
+      out.writeInt(indexBytes.size());
+      indexBytes.writeTo(out);
+      poolBytes.writeTo(out);
+      for (byte[] record : moduleRecords.values()) {
+        out.write(record);
+      }
+    }
+    return contents.toByteArray();
+  }
+
+  /**
+   * Replaces the content of {@code file} with {@code contents} returned by {@link #encode(long, Map, Predicate)}.
+   */
+  public static void write(@NotNull Path file, @NotNull byte[] contents) throws IOException {
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.createDirectories(file.getParent());
+    Files.write(tempFile, contents);
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static int getPresentModelsMask(@NotNull List<?> models) {
+    int mask = 0;
+    for (int i = 0; i < Math.min(models.size(), Integer.SIZE); i++) {
+      if (models.get(i) != null) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Opens a cache file previously written by {@link #write(Path, long, Map, Predicate)}. Only the module index is read; module records are
+   * read and deserialized on demand.
+   *
+   * @return the opened cache, or {@code null} if the file does not exist or was written by a different version or for different versions
+   * of the model classes.
+   */
+  @Nullable
+  public static GradleModelBinaryCache open(@NotNull Path file, long modelsVersion) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (Files.size(file) < HEADER_SIZE || in.readInt() != MAGIC) {
+        getLogger().info("Ignoring unrecognized model cache " + file);
+        return null;
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        getLogger().info("Ignoring model cache " + file + " with version " + version + " (expected " + VERSION + ")");
+        return null;
+      }
+      long fileModelsVersion = in.readLong();
+      if (fileModelsVersion != modelsVersion) {
+        getLogger().info("Ignoring model cache " + file + " written for other versions of the model classes");
+        return null;
+      }
+      long fileId = in.readLong();
+      int indexLength = in.readInt();
+      int moduleCount = in.readInt();
+      Record poolRecord = new Record(in.readLong(), in.readInt(), 0);
+      Map<String, Record> recordsByModule = new HashMap<>(moduleCount * 2);
+      for (int i = 0; i < moduleCount; i++) {
+        String moduleName = in.readUTF();
+        recordsByModule.put(moduleName, new Record(in.readLong(), in.readInt(), in.readInt()));
+      }
+      int classCount = in.readInt();
+      for (int i = 0; i < classCount; i++) {
+        String className = in.readUTF();
+        long serialVersionUID = in.readLong();
+        if (!isClassCompatible(className, serialVersionUID)) {
+          getLogger().info("Ignoring model cache " + file + " written for another version of " + className);
+          return null;
+        }
+      }
+      return new GradleModelBinaryCache(file, fileId, HEADER_SIZE + indexLength, recordsByModule, poolRecord);
+    }
+  }
+
+  private static boolean isClassCompatible(@NotNull String className, long serialVersionUID) {
+    try {
+      ObjectStreamClass descriptor =
+        ObjectStreamClass.lookup(Class.forName(className, false, GradleModelBinaryCache.class.getClassLoader()));
+      return descriptor != null && descriptor.getSerialVersionUID() == serialVersionUID;
+    }
+    catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  @NotNull
+  public Set<String> getModuleNames() {
+    return Collections.unmodifiableSet(myRecordsByModule.keySet());
+  }
+
+  /**
+   * Returns whether the model at the given position of the list written for the module was not {@code null}. Answered from the module
+   * index, without reading the module record.
+   */
+  public boolean isModelPresent(@NotNull String moduleName, int index) {
+    Record record = myRecordsByModule.get(moduleName);
+    return record != null && index < Integer.SIZE && (record.presentModelsMask & (1 << index)) != 0;
+  }
+
+  /**
+   * Deserializes the models stored for the given module.
+   *
+   * @return the models in the order they were written, or {@code null} if the module is not present in the cache.
+   */
+  @Nullable
+  public List<Object> load(@NotNull String moduleName) throws IOException {
+    Record record = myRecordsByModule.get(moduleName);
+    if (record == null) {
+      return null;
+    }
+    List<Object> pool = getPool();
+    try (ObjectInputStream in = new ResolvingInputStream(readRecord(record), pool)) {
+      //noinspection unchecked
+      return (List<Object>)in.readObject();
+    }
+    catch (ClassNotFoundException e) {
+      throw new IOException("Failed to load cached models of module '" + moduleName + "'", e);
+    }
+  }
+
+  @NotNull
+  private synchronized List<Object> getPool() throws IOException {
+    if (myPool == null) {
+      try (ObjectInputStream in = new ResolvingInputStream(readRecord(myPoolRecord), Collections.emptyList())) {
+        //noinspection unchecked
+        myPool = (List<Object>)in.readObject();
+      }
+      catch (ClassNotFoundException e) {
+        throw new IOException("Failed to load shared model objects", e);
+      }
+    }
+    return myPool;
+  }
+
+  @NotNull
+  private InputStream readRecord(@NotNull Record record) throws IOException {
+    try (FileChannel channel = FileChannel.open(myFile, StandardOpenOption.READ)) {
+      ByteBuffer fileId = ByteBuffer.allocate(Long.BYTES);
+      readFully(channel, fileId, FILE_ID_OFFSET);
+      if (fileId.getLong(0) != myFileId) {
+        throw new IOException("Model cache " + myFile + " was replaced after it was opened");
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(record.length);
+      readFully(channel, bytes, myBodyOffset + record.offset);
+      return new ByteArrayInputStream(bytes.array());
+    }
+  }
+
+  private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getSharedObjectCount() throws IOException {
+    return getPool().size();
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(GradleModelBinaryCache.class);
+  }
+
+  private static final class Record {
+    final long offset;
+    final int length;
+    final int presentModelsMask;
+
+    Record(long offset, int length, int presentModelsMask) {
+      this.offset = offset;
+      this.length = length;
+      this.presentModelsMask = presentModelsMask;
+    }
+  }
+
+  /**
+   * Placeholder written in module records in place of an object stored in the shared pool.
+   */
+  private static final class SharedRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int index;
+
+    SharedRef(int index) {
+      this.index = index;
+    }
+  }
+
+  private static final class InterningOutputStream extends ObjectOutputStream {
+    @NotNull private final Predicate<Object> myShareable;
+    @NotNull private final Map<Object, Integer> myPoolIndices;
+    @NotNull private final List<Object> myPool;
+    @NotNull private final Map<String, Long> myClassVersions;
+
+    InterningOutputStream(@NotNull OutputStream out,
+                          @NotNull Predicate<Object> shareable,
+                          @NotNull Map<Object, Integer> poolIndices,
+                          @NotNull List<Object> pool,
+                          @NotNull Map<String, Long> classVersions) throws IOException {
+      super(out);
+      myShareable = shareable;
+      myPoolIndices = poolIndices;
+      myPool = pool;
+      myClassVersions = classVersions;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+      myClassVersions.put(desc.getName(), desc.getSerialVersionUID());
+      super.writeClassDescriptor(desc);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (obj == null || !myShareable.test(obj)) {
+        return obj;
+      }
+      Integer index = myPoolIndices.get(obj);
+      if (index == null) {
+        index = myPool.size();
+        myPool.add(obj);
+        myPoolIndices.put(obj, index);
+      }
+      return new SharedRef(index);
+    }
+  }
+
+  private static final class ResolvingInputStream extends ObjectInputStream {
+    @NotNull private final List<Object> myPool;
+
+    ResolvingInputStream(@NotNull InputStream in, @NotNull List<Object> pool) throws IOException {
+      super(in);
+      myPool = pool;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      // Models are defined by the plugin, which may not be visible to the caller's class loader.
+      try {
+        return Class.forName(desc.getName(), false, GradleModelBinaryCache.class.getClassLoader());
+      }
+      catch (ClassNotFoundException e) {
+        return super.resolveClass(desc);
+      }
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      if (obj instanceof SharedRef) {
+        int index = ((SharedRef)obj).index;
+        if (index < 0 || index >= myPool.size()) {
+          throw new IOException("Invalid shared object reference: " + index);
+        }
+        return myPool.get(index);
+      }
+      return obj;
+    }
+  }
+}
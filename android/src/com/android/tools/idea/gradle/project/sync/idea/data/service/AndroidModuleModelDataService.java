@@ -21,6 +21,7 @@ import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
 import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetup;
 import com.android.tools.idea.gradle.project.sync.setup.module.android.AndroidModuleCleanupStep;
+import com.android.tools.idea.gradle.project.sync.setup.module.common.ModuleSetupPreparation;
 import com.android.tools.idea.gradle.project.sync.setup.post.MemorySettingsPostSyncChecker;
 import com.android.tools.idea.gradle.project.sync.setup.post.ProjectStructureUsageTracker;
 import com.android.tools.idea.gradle.project.sync.setup.post.TimeBasedReminder;
@@ -35,6 +36,7 @@ import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsPr
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.jetbrains.annotations.NotNull;
@@ -73,16 +75,34 @@ public class AndroidModuleModelDataService extends ModuleModelDataService<Androi
     return ANDROID_MODEL;
   }
 
+  @Override
+  @NotNull
+  protected Map<Module, ModuleSetupContext> prepareModules(@NotNull Project project,
+                                                           @NotNull IdeModifiableModelsProvider modelsProvider,
+                                                           @NotNull Map<String, AndroidModuleModel> modelsByModuleName) {
+    return ModuleSetupPreparation.prepareModules(myModuleSetup, myModuleSetupContextFactory, modelsProvider, modelsByModuleName);
+  }
+
   @Override
   protected void importData(@NotNull Collection<DataNode<AndroidModuleModel>> toImport,
                             @NotNull Project project,
                             @NotNull IdeModifiableModelsProvider modelsProvider,
                             @NotNull Map<String, AndroidModuleModel> modelsByModuleName) {
+    importData(toImport, project, modelsProvider, modelsByModuleName, Collections.emptyMap());
+  }
+
+  @Override
+  protected void importData(@NotNull Collection<DataNode<AndroidModuleModel>> toImport,
+                            @NotNull Project project,
+                            @NotNull IdeModifiableModelsProvider modelsProvider,
+                            @NotNull Map<String, AndroidModuleModel> modelsByModuleName,
+                            @NotNull Map<Module, ModuleSetupContext> preparedContexts) {
     AndroidModuleValidator moduleValidator = myModuleValidatorFactory.create(project);
     for (Module module : modelsProvider.getModules()) {
       AndroidModuleModel androidModel = modelsByModuleName.get(module.getName());
-      setUpModule(module, moduleValidator, modelsProvider, androidModel);
+      setUpModule(module, moduleValidator, modelsProvider, androidModel, preparedContexts.get(module));
     }
+    myModuleSetup.logTimings();
 
     if (!modelsByModuleName.isEmpty()) {
       moduleValidator.fixAndReportFoundIssues();
@@ -92,9 +112,11 @@ public class AndroidModuleModelDataService extends ModuleModelDataService<Androi
   private void setUpModule(@NotNull Module module,
                            @NotNull AndroidModuleValidator moduleValidator,
                            @NotNull IdeModifiableModelsProvider modelsProvider,
-                           @Nullable AndroidModuleModel androidModel) {
+                           @Nullable AndroidModuleModel androidModel,
+                           @Nullable ModuleSetupContext preparedContext) {
     if (androidModel != null) {
-      ModuleSetupContext context = myModuleSetupContextFactory.create(module, modelsProvider);
+      ModuleSetupContext context =
+        preparedContext != null ? preparedContext : myModuleSetupContextFactory.create(module, modelsProvider);
       myModuleSetup.setUpModule(context, androidModel);
       moduleValidator.validate(module, androidModel);
     }
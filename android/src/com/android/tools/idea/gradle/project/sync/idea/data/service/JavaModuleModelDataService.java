@@ -71,6 +71,7 @@ public class JavaModuleModelDataService extends ModuleModelDataService<JavaModul
         onModelNotFound(module, modelsProvider);
       }
     }
+    myModuleSetup.logTimings();
   }
 
   @Override
@@ -17,6 +17,7 @@ package com.android.tools.idea.gradle.project.sync.idea.data.service;
 
 import com.android.tools.idea.gradle.project.model.ModuleModel;
 import com.android.tools.idea.gradle.project.sync.GradleSyncState;
+import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
 import com.android.tools.idea.gradle.util.GradleUtil;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.diagnostic.Logger;
@@ -71,15 +72,40 @@ public abstract class ModuleModelDataService<T extends ModuleModel> extends Abst
   private void importData(@NotNull Collection<DataNode<T>> toImport,
                           @NotNull Project project,
                           @NotNull IdeModifiableModelsProvider modelsProvider) {
+    if (project.isDisposed()) {
+      return;
+    }
+    Map<String, T> modelsByModuleName = indexByModuleName(toImport, modelsProvider);
+    // Only committing the setup to the IDE models needs the write lock; the rest is prepared beforehand.
+    Map<Module, ModuleSetupContext> preparedContexts = prepareModules(project, modelsProvider, modelsByModuleName);
     WriteCommandAction.runWriteCommandAction(project, ()->  {
         if (project.isDisposed()) {
           return;
         }
-        Map<String, T> modelsByModuleName = indexByModuleName(toImport, modelsProvider);
-        importData(toImport, project, modelsProvider, modelsByModuleName);
+        importData(toImport, project, modelsProvider, modelsByModuleName, preparedContexts);
     });
   }
 
+  /**
+   * Prepares the setup of the modules that have a model, outside of the write action in which {@link #importData} runs.
+   *
+   * @return the setup contexts of the prepared modules.
+   */
+  @NotNull
+  protected Map<Module, ModuleSetupContext> prepareModules(@NotNull Project project,
+                                                           @NotNull IdeModifiableModelsProvider modelsProvider,
+                                                           @NotNull Map<String, T> modelsByModuleName) {
+    return Collections.emptyMap();
+  }
+
+  protected void importData(@NotNull Collection<DataNode<T>> toImport,
+                            @NotNull Project project,
+                            @NotNull IdeModifiableModelsProvider modelsProvider,
+                            @NotNull Map<String, T> modelsByModuleName,
+                            @NotNull Map<Module, ModuleSetupContext> preparedContexts) {
+    importData(toImport, project, modelsProvider, modelsByModuleName);
+  }
+
   protected abstract void importData(@NotNull Collection<DataNode<T>> toImport,
                                      @NotNull Project project,
                                      @NotNull IdeModifiableModelsProvider modelsProvider,
@@ -71,6 +71,7 @@ public class NdkModuleModelDataService extends ModuleModelDataService<NdkModuleM
         onModelNotFound(module, modelsProvider);
       }
     }
+    myModuleSetup.logTimings();
   }
 
   @Override
@@ -35,6 +35,21 @@ public abstract class ModuleSetupStep<T> {
 
   protected abstract void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull T gradleModel);
 
+  /**
+   * Computes data needed by {@link #doSetUpModule(ModuleSetupContext, Object)} before the write action that sets up the module starts.
+   * This method may be invoked concurrently for different modules from background threads holding a read lock. It must not modify the
+   * IDE models; computed data should be stored in {@code context} and {@link #doSetUpModule(ModuleSetupContext, Object)} must still work
+   * when this method has not been called.
+   */
+  public final void prepareModule(@NotNull ModuleSetupContext context, @Nullable T gradleModel) {
+    if (gradleModel != null) {
+      doPrepareModule(context, gradleModel);
+    }
+  }
+
+  protected void doPrepareModule(@NotNull ModuleSetupContext context, @NotNull T gradleModel) {
+  }
+
   public boolean invokeOnBuildVariantChange() {
     return false;
   }
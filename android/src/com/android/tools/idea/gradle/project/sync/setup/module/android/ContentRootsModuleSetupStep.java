@@ -23,13 +23,17 @@ import com.android.tools.idea.gradle.project.sync.setup.module.AndroidModuleSetu
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.roots.ContentEntry;
 import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.util.ArrayList;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ContentRootsModuleSetupStep extends AndroidModuleSetupStep {
+  private static final Key<VirtualFile> ROOT_DIR_KEY = Key.create("android.module.setup.root.dir");
+
   @NotNull private final AndroidContentEntriesSetup.Factory myContentEntriesSetupFactory;
 
   public ContentRootsModuleSetupStep() {
@@ -41,25 +45,34 @@ public class ContentRootsModuleSetupStep extends AndroidModuleSetupStep {
     myContentEntriesSetupFactory = contentEntriesSetupFactory;
   }
 
+  @Override
+  protected void doPrepareModule(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
+    // Refreshing the VFS is not allowed here, so only an already known root directory is looked up.
+    context.putUserData(ROOT_DIR_KEY, VfsUtil.findFileByIoFile(androidModel.getRootDirPath(), false));
+  }
+
   @Override
   protected void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
     ModifiableRootModel moduleModel = context.getModifiableRootModel();
     boolean hasNativeModel = context.hasNativeModel();
     AndroidContentEntriesSetup setup = myContentEntriesSetupFactory.create(androidModel, moduleModel, hasNativeModel);
-    List<ContentEntry> contentEntries = findContentEntries(moduleModel, androidModel, hasNativeModel);
+    List<ContentEntry> contentEntries = findContentEntries(moduleModel, androidModel, hasNativeModel, context.getUserData(ROOT_DIR_KEY));
     setup.execute(contentEntries);
   }
 
   @NotNull
   private static List<ContentEntry> findContentEntries(@NotNull ModifiableRootModel moduleModel,
                                                        @NotNull AndroidModuleModel androidModel,
-                                                       boolean hasNativeModel) {
+                                                       boolean hasNativeModel,
+                                                       @Nullable VirtualFile preparedRootDir) {
     if (!hasNativeModel) {
       removeExistingContentEntries(moduleModel);
     }
 
     List<ContentEntry> contentEntries = new ArrayList<>();
-    VirtualFile roootVirtualFile = VfsUtil.findFileByIoFile(androidModel.getRootDirPath(), true);
+    VirtualFile roootVirtualFile = preparedRootDir != null && preparedRootDir.isValid()
+                                   ? preparedRootDir
+                                   : VfsUtil.findFileByIoFile(androidModel.getRootDirPath(), true);
     assert roootVirtualFile != null;
     ContentEntry contentEntry = moduleModel.addContentEntry(roootVirtualFile);
     contentEntries.add(contentEntry);
@@ -49,6 +49,7 @@ import com.intellij.openapi.roots.ContentEntry;
 import com.intellij.openapi.roots.DependencyScope;
 import com.intellij.openapi.roots.ModifiableRootModel;
 import com.intellij.openapi.roots.ModuleOrderEntry;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.Arrays;
@@ -60,6 +61,7 @@ import org.jetbrains.android.sdk.AndroidSdkData;
 import org.jetbrains.annotations.NotNull;
 
 public class DependenciesAndroidModuleSetupStep extends AndroidModuleSetupStep {
+  private static final Key<DependencySet> DEPENDENCIES_KEY = Key.create("android.module.setup.dependencies");
 
   @NotNull private final DependenciesExtractor myDependenciesExtractor;
   @NotNull private final AndroidModuleDependenciesSetup myDependenciesSetup;
@@ -76,14 +78,18 @@ public class DependenciesAndroidModuleSetupStep extends AndroidModuleSetupStep {
   }
 
   @Override
-  protected void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
-    ModuleFinder moduleFinder = context.getModuleFinder();
-    assert moduleFinder != null;
+  protected void doPrepareModule(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
+    context.putUserData(DEPENDENCIES_KEY, extractDependencies(context, androidModel));
+  }
 
+  @Override
+  protected void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
     Module module = context.getModule();
     IdeModifiableModelsProvider ideModelsProvider = context.getIdeModelsProvider();
-    File projectBasePath = new File(Objects.requireNonNull(module.getProject().getBasePath()));
-    DependencySet dependencies = myDependenciesExtractor.extractFrom(projectBasePath, androidModel.getSelectedVariant(), moduleFinder);
+    DependencySet dependencies = context.getUserData(DEPENDENCIES_KEY);
+    if (dependencies == null) {
+      dependencies = extractDependencies(context, androidModel);
+    }
 
     for (LibraryDependency dependency : dependencies.onLibraries()) {
       updateLibraryDependency(module, ideModelsProvider, dependency, androidModel);
@@ -107,6 +113,15 @@ public class DependenciesAndroidModuleSetupStep extends AndroidModuleSetupStep {
     }
   }
 
+  @NotNull
+  private DependencySet extractDependencies(@NotNull ModuleSetupContext context, @NotNull AndroidModuleModel androidModel) {
+    ModuleFinder moduleFinder = context.getModuleFinder();
+    assert moduleFinder != null;
+
+    File projectBasePath = new File(Objects.requireNonNull(context.getModule().getProject().getBasePath()));
+    return myDependenciesExtractor.extractFrom(projectBasePath, androidModel.getSelectedVariant(), moduleFinder);
+  }
+
   /**
    * @return true if the module dependency is in test scope, and it is the current module.
    */
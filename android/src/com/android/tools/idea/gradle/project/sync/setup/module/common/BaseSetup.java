@@ -22,19 +22,33 @@ import org.jetbrains.annotations.Nullable;
 
 public abstract class BaseSetup<T extends ModuleSetupStep<M>, M> {
   protected final T[] mySetupSteps;
+  @NotNull private final SetupStepTimings myTimings;
 
   protected BaseSetup(T... steps) {
     mySetupSteps = steps;
+    myTimings = new SetupStepTimings(getClass().getSimpleName());
   }
 
   protected void beforeSetup(@NotNull ModuleSetupContext context, @Nullable M model) { }
 
+  /**
+   * Runs the read-only preparation of every step. May be called concurrently for different modules, see
+   * {@link ModuleSetupStep#prepareModule(ModuleSetupContext, Object)}.
+   */
+  public void prepareModule(@NotNull ModuleSetupContext context, @Nullable M model) {
+    for (T step : mySetupSteps) {
+      if (shouldRunSyncStep(step)) {
+        myTimings.record(step, "prepare", () -> step.prepareModule(context, model));
+      }
+    }
+  }
+
   public void setUpModule(@NotNull ModuleSetupContext context, @Nullable M model) {
     beforeSetup(context, model);
 
     for (T step : mySetupSteps) {
       if (shouldRunSyncStep(step)) {
-        step.setUpModule(context, model);
+        myTimings.record(step, "setup", () -> step.setUpModule(context, model));
         if (step.shouldTerminateSetup()) {
           return;
         }
@@ -45,4 +59,11 @@ public abstract class BaseSetup<T extends ModuleSetupStep<M>, M> {
   protected boolean shouldRunSyncStep(T step) {
     return true;
   }
+
+  /**
+   * Logs the time spent in each step since the last call.
+   */
+  public void logTimings() {
+    myTimings.logAndReset();
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.setup.module.common;
+
+import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the read-only preparation of module setup steps (see
+ * {@link com.android.tools.idea.gradle.project.sync.setup.module.ModuleSetupStep#prepareModule}) for all modules concurrently on a bounded
+ * pool, so that only committing the results to the IDE models happens inside the write action.
+ */
+public final class ModuleSetupPreparation {
+  private static final int PARALLELISM = SystemProperties.getIntProperty(
+    "studio.sync.module.setup.parallelism", Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8)));
+
+  private static final ExecutorService EXECUTOR =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Module Setup Preparation", PARALLELISM);
+
+  private ModuleSetupPreparation() {
+  }
+
+  /**
+   * Creates a setup context for every module in {@code modelsProvider} that has a model, and prepares the module setup of each of them.
+   * Preparation runs sequentially on the calling thread when it already holds a read or write lock, or when it is the EDT.
+   *
+   * @return the prepared contexts, to be passed to {@link BaseSetup#setUpModule(ModuleSetupContext, Object)} later.
+   */
+  @NotNull
+  public static <M> Map<Module, ModuleSetupContext> prepareModules(@NotNull BaseSetup<?, M> setup,
+                                                                   @NotNull ModuleSetupContext.Factory contextFactory,
+                                                                   @NotNull IdeModifiableModelsProvider modelsProvider,
+                                                                   @NotNull Map<String, M> modelsByModuleName) {
+    Map<Module, ModuleSetupContext> contextsByModule = new LinkedHashMap<>();
+    for (Module module : modelsProvider.getModules()) {
+      if (modelsByModuleName.get(module.getName()) != null) {
+        contextsByModule.put(module, contextFactory.create(module, modelsProvider));
+      }
+    }
+    if (contextsByModule.isEmpty()) {
+      return contextsByModule;
+    }
+    // Everything read through the models provider is looked up here, since the provider is not thread-safe.
+    contextsByModule.values().forEach(ModuleSetupContext::resolveProviderState);
+
+    Application application = ApplicationManager.getApplication();
+    if (PARALLELISM == 1 || application.isDispatchThread() || application.isReadAccessAllowed()) {
+      contextsByModule.forEach((module, context) -> prepareModule(setup, context, modelsByModuleName.get(module.getName())));
+      return contextsByModule;
+    }
+
+    List<Future<?>> futures = new ArrayList<>(contextsByModule.size());
+    contextsByModule.forEach((module, context) -> {
+      M model = modelsByModuleName.get(module.getName());
+      futures.add(EXECUTOR.submit(() -> ReadAction.run(() -> {
+        if (!module.isDisposed()) {
+          prepareModule(setup, context, model);
+        }
+      })));
+    });
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        futures.forEach(f -> f.cancel(false));
+        throw new ProcessCanceledException(e);
+      }
+      catch (ExecutionException e) {
+        // prepareModule already handles failures; anything else is unexpected but setup can still proceed without prepared data.
+        getLogger().warn("Failed to prepare module setup", e.getCause());
+      }
+    }
+    return contextsByModule;
+  }
+
+  private static <M> void prepareModule(@NotNull BaseSetup<?, M> setup, @NotNull ModuleSetupContext context, @NotNull M model) {
+    try {
+      setup.prepareModule(context, model);
+    }
+    catch (ProcessCanceledException e) {
+      throw e;
+    }
+    catch (Throwable e) {
+      // Setup steps compute anything that was not prepared, so a failure here is not fatal.
+      getLogger().warn("Failed to prepare setup of module '" + context.getModule().getName() + "'", e);
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(ModuleSetupPreparation.class);
+  }
+}
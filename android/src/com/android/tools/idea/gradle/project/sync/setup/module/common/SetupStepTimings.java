@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.setup.module.common;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Accumulates the time spent in each module setup step, across all modules and threads, and logs a summary once setup is done.
+ */
+public final class SetupStepTimings {
+  @NotNull private final String mySetupName;
+  @NotNull private final ConcurrentMap<String, LongAdder> myNanosByStep = new ConcurrentHashMap<>();
+
+  public SetupStepTimings(@NotNull String setupName) {
+    mySetupName = setupName;
+  }
+
+  public void record(@NotNull Object step, @NotNull String phase, @NotNull Runnable action) {
+    long start = System.nanoTime();
+    try {
+      action.run();
+    }
+    finally {
+      String key = step.getClass().getSimpleName() + " (" + phase + ")";
+      myNanosByStep.computeIfAbsent(key, k -> new LongAdder()).add(System.nanoTime() - start);
+    }
+  }
+
+  @NotNull
+  public Map<String, Long> getMillisByStep() {
+    Map<String, Long> millisByStep = new TreeMap<>();
+    myNanosByStep.forEach((step, nanos) -> millisByStep.put(step, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+    return millisByStep;
+  }
+
+  /**
+   * Logs the accumulated time of each step and starts accumulating from zero again.
+   */
+  public void logAndReset() {
+    Map<String, Long> millisByStep = getMillisByStep();
+    myNanosByStep.clear();
+    if (millisByStep.isEmpty()) {
+      return;
+    }
+    StringBuilder message = new StringBuilder(mySetupName).append(" step timings:");
+    millisByStep.forEach((step, millis) -> message.append("\n  ").append(step).append(": ").append(millis).append(" ms"));
+    Logger.getInstance(SetupStepTimings.class).info(message.toString());
+  }
+}
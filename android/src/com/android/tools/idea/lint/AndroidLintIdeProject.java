@@ -53,11 +53,16 @@ import com.intellij.facet.ProjectFacetManager;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.graph.Graph;
 import java.io.File;
@@ -85,6 +90,8 @@ import org.jetbrains.annotations.Nullable;
  * but can also correspond to a library "project" such as an {@link AndroidLibrary}.
  */
 public class AndroidLintIdeProject extends LintIdeProject {
+  private static final Key<CachedValue<Module>> ANDROID_MODULE_KEY = Key.create("AndroidLintIdeProject.androidModule");
+
   AndroidLintIdeProject(@NonNull LintClient client,
                         @NonNull File dir,
                         @NonNull File referenceDir) {
@@ -170,13 +177,22 @@ public class AndroidLintIdeProject extends LintIdeProject {
   }
 
   /**
-   * Find an Android module that depends on this module; prefer app modules over library modules
+   * Find an Android module that depends on this module; prefer app modules over library modules. The result is cached on the module
+   * until the project roots change, since the editor annotator asks for it on every run.
    */
   @Nullable
   private static Module findAndroidModule(@NonNull final Module module) {
     if (module.isDisposed()) {
       return null;
     }
+    return CachedValuesManager.getManager(module.getProject()).getCachedValue(
+      module, ANDROID_MODULE_KEY,
+      () -> CachedValueProvider.Result.create(computeAndroidModule(module), ProjectRootModificationTracker.getInstance(module.getProject())),
+      false);
+  }
+
+  @Nullable
+  private static Module computeAndroidModule(@NonNull final Module module) {
 
     // Search for dependencies of this module
     Graph<Module> graph = ApplicationManager.getApplication().runReadAction((Computable<Graph<Module>>)() -> {
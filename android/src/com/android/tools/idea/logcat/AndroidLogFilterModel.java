@@ -14,7 +14,9 @@ import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.ContainerUtil;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Pattern;
 import org.jetbrains.annotations.NotNull;
@@ -49,7 +51,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
   private boolean myCustomApplicable = false; // True if myCustomPattern matches this message
   private boolean myConfiguredApplicable = false;  // True if the active filter matches this message
 
-  @Nullable private AndroidLogcatFilter myConfiguredFilter;
+  @Nullable private IndexedFilter myConfiguredFilter;
 
   private final ImmutableList<AndroidLogLevelFilter> myLogLevelFilters;
   private final AndroidLogcatFormatter myFormatter;
@@ -80,7 +82,7 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
 
   public final void updateLogcatFilter(@Nullable AndroidLogcatFilter filter) {
     saveConfiguredFilterName(filter != null ? filter.getName() : "");
-    myConfiguredFilter = filter;
+    myConfiguredFilter = filter != null ? new IndexedFilter(filter) : null;
     fireTextFilterChange();
   }
 
@@ -150,8 +152,30 @@ public abstract class AndroidLogFilterModel extends LogFilterModel {
     }
 
     assert myPrevHeader != null; // We never call this method unless we already parsed a header
-    return myConfiguredFilter
-      .isApplicable(message, myPrevHeader.getTag(), myPrevHeader.getAppName(), myPrevHeader.getPid(), myPrevHeader.getLogLevel());
+    return myConfiguredFilter.isApplicable(message, myPrevHeader);
+  }
+
+  /**
+   * The configured filter together with its verdict for each tag, package and pid seen so far. A filter change replays the whole
+   * console backlog through {@link #processLine}, so lines of a rejected tag, package or process are skipped by a lookup instead of
+   * matching the filter patterns against every line.
+   */
+  private static final class IndexedFilter {
+    @NotNull private final AndroidLogcatFilter myFilter;
+    private final Map<String, Boolean> myTagVerdicts = new HashMap<>();
+    private final Map<String, Boolean> myPackageVerdicts = new HashMap<>();
+    private final Map<Integer, Boolean> myPidVerdicts = new HashMap<>();
+
+    private IndexedFilter(@NotNull AndroidLogcatFilter filter) {
+      myFilter = filter;
+    }
+
+    private boolean isApplicable(@NotNull String message, @NotNull LogCatHeader header) {
+      return myTagVerdicts.computeIfAbsent(header.getTag(), myFilter::isApplicableTag) &&
+             myPackageVerdicts.computeIfAbsent(header.getAppName(), myFilter::isApplicablePackage) &&
+             myPidVerdicts.computeIfAbsent(header.getPid(), myFilter::isApplicablePid) &&
+             myFilter.isApplicable(message, header.getTag(), header.getAppName(), header.getPid(), header.getLogLevel());
+    }
   }
 
   @Override
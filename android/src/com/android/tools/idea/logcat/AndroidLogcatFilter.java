@@ -33,4 +33,31 @@ public interface AndroidLogcatFilter {
    * Returns {@code true} if the current logcat message should be accepted, {@code false} otherwise.
    */
   boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull Log.LogLevel logLevel);
+
+  /**
+   * Returns {@code false} if no message with the given tag can be accepted. The result is remembered per tag and used to reject
+   * messages without calling {@link #isApplicable}, so it must only depend on the tag and never reject a tag which
+   * {@link #isApplicable} could accept.
+   */
+  default boolean isApplicableTag(@NotNull String tag) {
+    return true;
+  }
+
+  /**
+   * Returns {@code false} if no message from the given package can be accepted.
+   *
+   * @see #isApplicableTag(String)
+   */
+  default boolean isApplicablePackage(@NotNull String pkg) {
+    return true;
+  }
+
+  /**
+   * Returns {@code false} if no message from the given process can be accepted.
+   *
+   * @see #isApplicableTag(String)
+   */
+  default boolean isApplicablePid(int pid) {
+    return true;
+  }
 }
@@ -37,7 +37,8 @@ import java.util.regex.Pattern;
  * logcat console.
  *
  * <p>This class expects the logcat format to be 'logcat -v long' (which prints out a header and then
- * 1+ lines of log text below, for each log message).
+ * 1+ lines of log text below, for each log message). Messages read in binary format are passed to
+ * {@link #processMessage(LogCatHeader, String)} instead.
  */
 public final class AndroidLogcatReceiver extends AndroidOutputReceiver implements Disposable {
   /**
@@ -127,6 +128,44 @@ public final class AndroidLogcatReceiver extends AndroidOutputReceiver implement
     }
   }
 
+  /**
+   * Processes a complete message whose header was decoded elsewhere, e.g. by {@link BinaryLogcatReceiver}. Like the text format, the
+   * message is split into lines sharing the same header, and leading and trailing blank lines are dropped.
+   */
+  void processMessage(@NotNull LogCatHeader header, @NotNull String message) {
+    myStackTraceExpander.reset();
+    myActiveHeader = header;
+    myLineIndex = 0;
+    myDelayedNewlineCount = 0;
+
+    int start = 0;
+    int end = message.length();
+    while (start < end && isLineSeparator(message.charAt(start))) {
+      start++;
+    }
+    while (end > start && isLineSeparator(message.charAt(end - 1))) {
+      end--;
+    }
+    while (start < end) {
+      int lineEnd = message.indexOf('\n', start);
+      if (lineEnd < 0 || lineEnd > end) {
+        lineEnd = end;
+      }
+      int nextStart = lineEnd + 1;
+      if (lineEnd > start && message.charAt(lineEnd - 1) == '\r') {
+        lineEnd--;
+      }
+      for (String processedLine : myStackTraceExpander.process(message.substring(start, lineEnd))) {
+        notifyLine(header, processedLine);
+      }
+      start = nextStart;
+    }
+  }
+
+  private static boolean isLineSeparator(char c) {
+    return c == '\n' || c == '\r';
+  }
+
   // This method is package protected so other Logcat components can feed receiver processed log lines if they need to
   void notifyLine(@NotNull LogCatHeader header, @NotNull String line) {
     myLogcatListener.onLogLineReceived(new LogCatMessage(header, line));
@@ -20,6 +20,7 @@ import com.android.ddmlib.Log.LogLevel;
 import com.android.ddmlib.logcat.LogCatHeader;
 import com.android.ddmlib.logcat.LogCatMessage;
 import com.android.tools.idea.IdeInfo;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.run.LoggingReceiver;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
@@ -60,26 +61,6 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     return Logger.getInstance(AndroidLogcatService.class);
   }
 
-  private static class LogcatBuffer {
-    private int myBufferSize;
-    private final LinkedList<LogCatMessage> myMessages = new LinkedList<>();
-
-    public void addMessage(@NotNull LogCatMessage message) {
-      myMessages.add(message);
-      myBufferSize += message.getMessage().length();
-      if (ConsoleBuffer.useCycleBuffer()) {
-        while (myBufferSize > ConsoleBuffer.getCycleBufferSize()) {
-          myBufferSize -= myMessages.removeFirst().getMessage().length();
-        }
-      }
-    }
-
-    @NotNull
-    public List<LogCatMessage> getMessages() {
-      return myMessages;
-    }
-  }
-
   private static class ListenerConnector implements LogcatListener {
     @GuardedBy("myListenerLock")
     @Nullable private LogcatListener myListener; // Initially not null, set to null when disconnected.
@@ -212,7 +193,7 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
 
       AndroidLogcatReceiver receiver = newAndroidLogcatReceiver(device);
       myLogReceivers.put(device, receiver);
-      myLogBuffers.put(device, new LogcatBuffer());
+      myLogBuffers.put(device, new LogcatBuffer(ConsoleBuffer.useCycleBuffer() ? ConsoleBuffer.getCycleBufferSize() : Integer.MAX_VALUE));
       myExecutors.get(device).execute(() -> executeLogcat(device, receiver));
     }
   }
@@ -237,8 +218,12 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
     });
   }
 
-  private static void executeLogcat(@NotNull IShellEnabledDevice device, @NotNull AndroidLogcatReceiver receiver) {
+  private static void executeLogcat(@NotNull IDevice device, @NotNull AndroidLogcatReceiver receiver) {
     try {
+      if (StudioFlags.RUNDEBUG_LOGCAT_BINARY_INGESTION_ENABLED.get() && BinaryLogcatReceiver.isSupported(device)) {
+        execute(device, "logcat -B", new BinaryLogcatReceiver(device, receiver), receiver, Duration.ZERO);
+        return;
+      }
       execute(device, supportsEpochFormatModifier(device) ? "logcat -v long -v epoch" : "logcat -v long", receiver, Duration.ZERO);
     }
     catch (Throwable throwable) {
@@ -473,7 +458,19 @@ public final class AndroidLogcatService implements AndroidDebugBridge.IDeviceCha
                               @NotNull AndroidOutputReceiver receiver,
                               @NotNull Duration duration)
     throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
-    device.executeShellCommand(command, receiver, duration.toMillis(), TimeUnit.MILLISECONDS);
+    execute(device, command, receiver, receiver, duration);
+  }
+
+  /**
+   * Runs {@code command} with its output decoded by {@code outputReceiver}, which passes what it decodes on to {@code receiver}.
+   */
+  private static void execute(@NotNull IShellEnabledDevice device,
+                              @NotNull String command,
+                              @NotNull IShellOutputReceiver outputReceiver,
+                              @NotNull AndroidOutputReceiver receiver,
+                              @NotNull Duration duration)
+    throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException {
+    device.executeShellCommand(command, outputReceiver, duration.toMillis(), TimeUnit.MILLISECONDS);
 
     if (receiver.isCancelled()) {
       return;
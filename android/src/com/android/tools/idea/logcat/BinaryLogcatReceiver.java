@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.sdklib.AndroidVersion;
+import com.intellij.openapi.diagnostic.Logger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An {@link IShellOutputReceiver} which decodes the binary entries written by 'logcat -B' and hands each complete message to an
+ * {@link AndroidLogcatReceiver}.
+ *
+ * <p>Each entry is a little-endian {@code logger_entry} header followed by a payload made of a priority byte, a NUL terminated tag and a
+ * NUL terminated message. Unlike the 'logcat -v long' text format, the header fields are read directly from the stream, so no header
+ * matching or line splitting is needed to delimit messages.
+ */
+final class BinaryLogcatReceiver implements IShellOutputReceiver {
+  /**
+   * Size of the version 1 header, which has no header size field. Later versions store their header size in place of the padding
+   * following the payload length.
+   */
+  private static final int V1_HEADER_SIZE = 20;
+  private static final int MAX_HEADER_SIZE = 128;
+  private static final String UNKNOWN_APP_NAME = "?";
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+  private final IDevice myDevice;
+  private final AndroidLogcatReceiver myReceiver;
+
+  /**
+   * Bytes received but not yet decoded, between position 0 and the buffer's position. Data arrives in chunks which do not align with
+   * entries, so a partial entry is kept here until the rest of it is received.
+   */
+  private ByteBuffer myPending = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+  private boolean myCorrupted;
+
+  BinaryLogcatReceiver(@NotNull IDevice device, @NotNull AndroidLogcatReceiver receiver) {
+    myDevice = device;
+    myReceiver = receiver;
+  }
+
+  /**
+   * Returns true if the device sends the output of shell commands unaltered. Older devices run shell commands in a pty, which mangles
+   * line endings and therefore binary output.
+   */
+  static boolean isSupported(@NotNull IDevice device) {
+    AndroidVersion version = device.getVersion();
+    return version != null && version.isGreaterOrEqualThan(24);
+  }
+
+  @Override
+  public void addOutput(@NotNull byte[] data, int offset, int length) {
+    if (myCorrupted || isCancelled()) {
+      return;
+    }
+    if (myPending.remaining() < length) {
+      ByteBuffer pending = ByteBuffer.allocate(Math.max(myPending.capacity() * 2, myPending.position() + length));
+      myPending.flip();
+      myPending = pending.order(ByteOrder.LITTLE_ENDIAN).put(myPending);
+    }
+    myPending.put(data, offset, length);
+
+    myPending.flip();
+    boolean decoded = true;
+    while (decoded && !isCancelled()) {
+      decoded = decodeEntry();
+    }
+    myPending.compact();
+  }
+
+  /**
+   * Decodes the entry starting at the current position of {@link #myPending}.
+   *
+   * @return false if the buffer does not contain a complete entry
+   */
+  private boolean decodeEntry() {
+    ByteBuffer buffer = myPending;
+    int start = buffer.position();
+    if (buffer.remaining() < 4) {
+      return false;
+    }
+    int payloadLength = buffer.getShort(start) & 0xFFFF;
+    int headerSize = buffer.getShort(start + 2) & 0xFFFF;
+    if (headerSize == 0) {
+      headerSize = V1_HEADER_SIZE;
+    }
+    if (headerSize < V1_HEADER_SIZE || headerSize > MAX_HEADER_SIZE) {
+      Logger.getInstance(BinaryLogcatReceiver.class).warn("Unexpected logcat entry header size " + headerSize + ", dropping output");
+      myCorrupted = true;
+      buffer.position(buffer.limit());
+      return false;
+    }
+    if (buffer.remaining() < headerSize + payloadLength) {
+      return false;
+    }
+
+    int pid = buffer.getInt(start + 4);
+    int tid = buffer.getInt(start + 8);
+    long seconds = buffer.getInt(start + 12) & 0xFFFFFFFFL;
+    int nanos = buffer.getInt(start + 16);
+
+    int payloadStart = start + headerSize;
+    int payloadEnd = payloadStart + payloadLength;
+    buffer.position(payloadEnd);
+    if (payloadLength == 0) {
+      return true;
+    }
+
+    byte[] bytes = buffer.array();
+    int tagStart = buffer.arrayOffset() + payloadStart + 1;
+    int end = buffer.arrayOffset() + payloadEnd;
+    int tagEnd = indexOfNul(bytes, tagStart, end);
+    int messageStart = Math.min(tagEnd + 1, end);
+    int messageEnd = indexOfNul(bytes, messageStart, end);
+
+    LogLevel level = toLogLevel(bytes[tagStart - 1]);
+    String tag = new String(bytes, tagStart, tagEnd - tagStart, StandardCharsets.UTF_8);
+    String message = new String(bytes, messageStart, messageEnd - messageStart, StandardCharsets.UTF_8);
+    LogCatHeader header = new LogCatHeader(level, pid, tid, getAppName(pid), tag, Instant.ofEpochSecond(seconds, nanos));
+    myReceiver.processMessage(header, message);
+    return true;
+  }
+
+  private static int indexOfNul(@NotNull byte[] bytes, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (bytes[i] == 0) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  @NotNull
+  private static LogLevel toLogLevel(int priority) {
+    for (LogLevel level : LOG_LEVELS) {
+      if (level.getPriority() >= priority) {
+        return level;
+      }
+    }
+    return LogLevel.ASSERT;
+  }
+
+  @NotNull
+  private String getAppName(int pid) {
+    String name = myDevice.getClientName(pid);
+    return name == null || name.isEmpty() ? UNKNOWN_APP_NAME : name;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return myReceiver.isCancelled();
+  }
+}
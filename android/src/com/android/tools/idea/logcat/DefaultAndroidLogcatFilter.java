@@ -107,20 +107,23 @@ public final class DefaultAndroidLogcatFilter implements AndroidLogcatFilter {
       return false;
     }
 
-    if (myTagPattern != null && !myTagPattern.matcher(tag).find()) {
-      return false;
-    }
+    return isApplicableTag(tag) && isApplicablePackage(pkg) && isApplicablePid(pid);
+  }
 
-    if (myPkgNamePattern != null && !myPkgNamePattern.matcher(pkg).find()) {
-      return false;
-    }
+  @Override
+  public boolean isApplicableTag(@NotNull String tag) {
+    return myTagPattern == null || myTagPattern.matcher(tag).find();
+  }
 
-    // TODO: If we're always checking against an int pid anyway, why let myPid be a string?
-    if ((myPid != null && !myPid.isEmpty()) && !myPid.equals(Integer.toString(pid))) {
-      return false;
-    }
+  @Override
+  public boolean isApplicablePackage(@NotNull String pkg) {
+    return myPkgNamePattern == null || myPkgNamePattern.matcher(pkg).find();
+  }
 
-    return true;
+  @Override
+  public boolean isApplicablePid(int pid) {
+    // TODO: If we're always checking against an int pid anyway, why let myPid be a string?
+    return myPid == null || myPid.isEmpty() || myPid.equals(Integer.toString(pid));
   }
 
   @Override
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import com.google.common.annotations.VisibleForTesting;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounded backlog of the logcat messages received from a single device.
+ * <p>
+ * Messages are stored by column: tags and package names are interned, pid, tid, level and timestamp are kept in primitive arrays and
+ * message text is UTF-8 encoded into a shared byte arena. Rows live in a ring, so once the backlog exceeds its budget the oldest rows
+ * are dropped without shifting the others. The budget is counted in chars, like the console cycle buffer size it is given; the oldest
+ * rows are also dropped when the encoded text would not fit in the largest possible arena. Interned values are released with the last
+ * row using them, so a long session with many short-lived tags or packages does not accumulate them.
+ * <p>
+ * This class is not thread safe.
+ */
+final class LogcatBuffer {
+  private static final int INITIAL_ROW_CAPACITY = 256;
+  private static final int INITIAL_ARENA_CAPACITY = 16 * 1024;
+  private static final int MAX_ARENA_CAPACITY = Integer.MAX_VALUE - 8;
+  private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+  private final int myMaxChars;
+  private final int myMaxArenaCapacity;
+
+  // Rows, indexed by ring slot. The oldest row is at myHead.
+  private int myHead;
+  private int mySize;
+  private int[] myTagIds = new int[INITIAL_ROW_CAPACITY];
+  private int[] myAppIds = new int[INITIAL_ROW_CAPACITY];
+  private int[] myPids = new int[INITIAL_ROW_CAPACITY];
+  private int[] myTids = new int[INITIAL_ROW_CAPACITY];
+  private byte[] myLevels = new byte[INITIAL_ROW_CAPACITY];
+  private long[] myEpochSeconds = new long[INITIAL_ROW_CAPACITY];
+  private int[] myNanos = new int[INITIAL_ROW_CAPACITY];
+  private int[] myMessageOffsets = new int[INITIAL_ROW_CAPACITY];
+  private int[] myMessageLengths = new int[INITIAL_ROW_CAPACITY];
+  private int[] myMessageCharges = new int[INITIAL_ROW_CAPACITY];
+
+  // Message text. The arena is a ring as well; the oldest message starts at myMessageOffsets[myHead].
+  private byte[] myArena = new byte[INITIAL_ARENA_CAPACITY];
+  private int myArenaEnd;
+  private int myArenaUsed;
+
+  // Each row is charged its message length in chars plus one for the line terminator.
+  private long myUsedChars;
+
+  private final ValuePool myTags = new ValuePool();
+  private final ValuePool myApps = new ValuePool();
+
+  /**
+   * @param maxChars the budget of the backlog in chars; the oldest messages are dropped once the retained text exceeds it.
+   */
+  LogcatBuffer(int maxChars) {
+    this(maxChars, MAX_ARENA_CAPACITY);
+  }
+
+  @VisibleForTesting
+  LogcatBuffer(int maxChars, int maxArenaCapacity) {
+    myMaxChars = maxChars;
+    myMaxArenaCapacity = maxArenaCapacity;
+  }
+
+  void addMessage(@NotNull LogCatMessage message) {
+    String messageText = message.getMessage();
+    long charge = messageText.length() + 1L;
+    byte[] text = messageText.getBytes(StandardCharsets.UTF_8);
+    if (charge > myMaxChars || text.length > myMaxArenaCapacity) {
+      clear();
+      return;
+    }
+    while (myUsedChars + charge > myMaxChars || myMaxArenaCapacity - myArenaUsed < text.length) {
+      removeFirst();
+    }
+    if (mySize == myTagIds.length) {
+      growRows();
+    }
+    if (myArena.length - myArenaUsed < text.length) {
+      growArena(text.length);
+    }
+
+    LogCatHeader header = message.getHeader();
+    int slot = slot(mySize);
+    myTagIds[slot] = myTags.acquire(header.getTag());
+    myAppIds[slot] = myApps.acquire(header.getAppName());
+    myPids[slot] = header.getPid();
+    myTids[slot] = header.getTid();
+    myLevels[slot] = (byte)header.getLogLevel().ordinal();
+    Instant timestamp = header.getTimestamp();
+    myEpochSeconds[slot] = timestamp.getEpochSecond();
+    myNanos[slot] = timestamp.getNano();
+    myMessageOffsets[slot] = myArenaEnd;
+    myMessageLengths[slot] = text.length;
+    myMessageCharges[slot] = messageText.length() + 1;
+    writeText(text);
+    mySize++;
+    myUsedChars += charge;
+  }
+
+  int size() {
+    return mySize;
+  }
+
+  /**
+   * Returns all retained messages, oldest first.
+   */
+  @NotNull
+  List<LogCatMessage> getMessages() {
+    List<LogCatMessage> messages = new ArrayList<>(mySize);
+    for (int i = 0; i < mySize; i++) {
+      messages.add(getMessage(slot(i)));
+    }
+    return messages;
+  }
+
+  void clear() {
+    myHead = 0;
+    mySize = 0;
+    myArenaEnd = 0;
+    myArenaUsed = 0;
+    myUsedChars = 0;
+    myTags.clear();
+    myApps.clear();
+  }
+
+  @VisibleForTesting
+  int getTagCount() {
+    return myTags.size();
+  }
+
+  @VisibleForTesting
+  int getAppCount() {
+    return myApps.size();
+  }
+
+  @NotNull
+  private LogCatMessage getMessage(int slot) {
+    LogCatHeader header = new LogCatHeader(LOG_LEVELS[myLevels[slot]],
+                                           myPids[slot],
+                                           myTids[slot],
+                                           myApps.get(myAppIds[slot]),
+                                           myTags.get(myTagIds[slot]),
+                                           Instant.ofEpochSecond(myEpochSeconds[slot], myNanos[slot]));
+    return new LogCatMessage(header, readText(myMessageOffsets[slot], myMessageLengths[slot]));
+  }
+
+  private void removeFirst() {
+    int slot = myHead;
+    myTags.release(myTagIds[slot]);
+    myApps.release(myAppIds[slot]);
+    myArenaUsed -= myMessageLengths[slot];
+    myUsedChars -= myMessageCharges[slot];
+    myHead = (myHead + 1) % myTagIds.length;
+    mySize--;
+  }
+
+  private int slot(int index) {
+    return (myHead + index) % myTagIds.length;
+  }
+
+  /**
+   * Doubles the row capacity, moving the rows to the start of the new arrays.
+   */
+  private void growRows() {
+    int capacity = myTagIds.length * 2;
+    myTagIds = unwrap(myTagIds, capacity);
+    myAppIds = unwrap(myAppIds, capacity);
+    myPids = unwrap(myPids, capacity);
+    myTids = unwrap(myTids, capacity);
+    myMessageOffsets = unwrap(myMessageOffsets, capacity);
+    myMessageLengths = unwrap(myMessageLengths, capacity);
+    myMessageCharges = unwrap(myMessageCharges, capacity);
+    byte[] levels = new byte[capacity];
+    long[] epochSeconds = new long[capacity];
+    int[] nanos = new int[capacity];
+    for (int i = 0; i < mySize; i++) {
+      int slot = (myHead + i) % myLevels.length;
+      levels[i] = myLevels[slot];
+      epochSeconds[i] = myEpochSeconds[slot];
+      nanos[i] = myNanos[slot];
+    }
+    myLevels = levels;
+    myEpochSeconds = epochSeconds;
+    myNanos = nanos;
+    myHead = 0;
+  }
+
+  @NotNull
+  private int[] unwrap(@NotNull int[] values, int capacity) {
+    int[] result = new int[capacity];
+    for (int i = 0; i < mySize; i++) {
+      result[i] = values[(myHead + i) % values.length];
+    }
+    return result;
+  }
+
+  /**
+   * Grows the arena so that at least {@code required} more bytes fit, moving the retained text to the start of the new arena.
+   */
+  private void growArena(int required) {
+    if ((long)myArenaUsed + required > myMaxArenaCapacity) {
+      throw new IllegalStateException("Arena cannot hold " + required + " more bytes");
+    }
+    int capacity = myArena.length;
+    while (capacity - myArenaUsed < required) {
+      capacity = (int)Math.min(myMaxArenaCapacity, capacity * 2L);
+    }
+    byte[] arena = new byte[capacity];
+    int offset = 0;
+    for (int i = 0; i < mySize; i++) {
+      int slot = slot(i);
+      int length = myMessageLengths[slot];
+      copyFromArena(myMessageOffsets[slot], arena, offset, length);
+      myMessageOffsets[slot] = offset;
+      offset += length;
+    }
+    myArena = arena;
+    myArenaEnd = offset;
+  }
+
+  private void writeText(@NotNull byte[] text) {
+    int firstPart = Math.min(text.length, myArena.length - myArenaEnd);
+    System.arraycopy(text, 0, myArena, myArenaEnd, firstPart);
+    System.arraycopy(text, firstPart, myArena, 0, text.length - firstPart);
+    myArenaEnd = (myArenaEnd + text.length) % myArena.length;
+    myArenaUsed += text.length;
+  }
+
+  @NotNull
+  private String readText(int offset, int length) {
+    if (offset + length <= myArena.length) {
+      return new String(myArena, offset, length, StandardCharsets.UTF_8);
+    }
+    byte[] text = new byte[length];
+    copyFromArena(offset, text, 0, length);
+    return new String(text, StandardCharsets.UTF_8);
+  }
+
+  private void copyFromArena(int offset, @NotNull byte[] destination, int destinationOffset, int length) {
+    int firstPart = Math.min(length, myArena.length - offset);
+    System.arraycopy(myArena, offset, destination, destinationOffset, firstPart);
+    System.arraycopy(myArena, 0, destination, destinationOffset + firstPart, length - firstPart);
+  }
+
+  /**
+   * Interned values of a column, counted by the rows using them. The id of a value is reused once no row uses it anymore.
+   */
+  private static final class ValuePool {
+    private final List<String> myValues = new ArrayList<>();
+    private final Map<String, Integer> myIds = new HashMap<>();
+    private final Deque<Integer> myFreeIds = new ArrayDeque<>();
+    private int[] myRowCounts = new int[16];
+
+    int acquire(@NotNull String value) {
+      Integer id = myIds.get(value);
+      if (id == null) {
+        if (myFreeIds.isEmpty()) {
+          id = myValues.size();
+          myValues.add(value);
+          if (id == myRowCounts.length) {
+            myRowCounts = Arrays.copyOf(myRowCounts, id * 2);
+          }
+        }
+        else {
+          id = myFreeIds.pop();
+          myValues.set(id, value);
+        }
+        myIds.put(value, id);
+      }
+      myRowCounts[id]++;
+      return id;
+    }
+
+    void release(int id) {
+      if (--myRowCounts[id] == 0) {
+        myIds.remove(myValues.get(id));
+        myValues.set(id, null);
+        myFreeIds.push(id);
+      }
+    }
+
+    @NotNull
+    String get(int id) {
+      return myValues.get(id);
+    }
+
+    int size() {
+      return myIds.size();
+    }
+
+    void clear() {
+      myValues.clear();
+      myIds.clear();
+      myFreeIds.clear();
+      Arrays.fill(myRowCounts, 0);
+    }
+  }
+}
@@ -38,4 +38,9 @@ final class SelectedProcessFilter implements AndroidLogcatFilter {
   public boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String p, int processId, @NotNull LogLevel priority) {
     return myProcessId == processId;
   }
+
+  @Override
+  public boolean isApplicablePid(int pid) {
+    return myProcessId == pid;
+  }
 }
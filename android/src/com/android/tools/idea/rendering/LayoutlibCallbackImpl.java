@@ -965,6 +965,14 @@ public class LayoutlibCallbackImpl extends LayoutlibCallback {
     return myClassLoader.hasLoadedClass(classFqn);
   }
 
+  /**
+   * Returns false if the project classes used by this callback have been recompiled since they were loaded. Renders using this callback
+   * would then show outdated code.
+   */
+  public boolean isClassLoaderUpToDate() {
+    return myClassLoader.isClassLoaderUpToDate();
+  }
+
   private static class NamedXmlParser extends KXmlParser {
     @Nullable
     private final String myName;
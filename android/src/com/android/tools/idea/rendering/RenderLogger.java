@@ -142,6 +142,14 @@ public class RenderLogger extends LayoutLog implements IRenderLogger {
     this(name, module, null);
   }
 
+  /**
+   * Returns a new logger for the same layout, module and credential, without any of the messages logged to this one.
+   */
+  @NotNull
+  public RenderLogger createEmptyCopy() {
+    return new RenderLogger(myName, myModule, myCredential);
+  }
+
   /**
    * Clears all the fidelity warning ignores.
    * @see #ignoreAllFidelityWarnings()
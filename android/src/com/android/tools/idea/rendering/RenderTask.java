@@ -145,7 +145,7 @@ public class RenderTask {
 
   @NotNull private final ImagePool myImagePool;
   @NotNull private final RenderTaskContext myContext;
-  @NotNull private final RenderLogger myLogger;
+  @NotNull private RenderLogger myLogger;
   @NotNull private final LayoutlibCallbackImpl myLayoutlibCallback;
   @NotNull private final LayoutLibrary myLayoutLib;
   @NotNull private final HardwareConfigHelper myHardwareConfigHelper;
@@ -825,6 +825,32 @@ public class RenderTask {
     }
   }
 
+  /**
+   * Disposes the current render session, if any, while keeping this task usable. The next {@link #inflate()} or {@link #render()} creates
+   * a new session for the current {@link #getXmlFile()}, reusing the class loader and callbacks already set up by this task. This allows
+   * rendering a different file with the same task by calling {@link #setXmlFile(XmlFile)}.
+   */
+  @NotNull
+  public CompletableFuture<Void> disposeRenderSession() {
+    RenderSession renderSession = myRenderSession;
+    if (renderSession == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    myRenderSession = null;
+    return runAsyncRenderAction(() -> {
+      renderSession.dispose();
+      return null;
+    });
+  }
+
+  /**
+   * Replaces the logger of this task with an empty one, so that the problems logged by previous renders are not reported by the next one.
+   * The results of previous renders keep the logger they were created with. This must not be called while a render is in progress.
+   */
+  public void resetLogger() {
+    myLogger = myLogger.createEmptyCopy();
+  }
+
   /**
    * Only do a measure pass using the current render session.
    */
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persistent cache of APK content digests, keyed by path, size and modification time. An APK which has not been touched since it was
+ * last hashed is recognized without reading it again, even across IDE restarts.
+ * <p>
+ * Large files are hashed in fixed size chunks on several threads, and the chunk hashes are combined in order. The digest therefore
+ * depends only on the file content, not on the number of threads used.
+ */
+final class ApkDigestCache {
+  private static final int MAGIC = 0x41444743; // "ADGC"
+  // Increase the value when changing the file layout or the digest function.
+  @VisibleForTesting static final int VERSION = 1;
+
+  @VisibleForTesting static final int CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final int MAX_ENTRIES = 500;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  @NotNull private final Path myFile;
+
+  /** Entries by absolute path, least recently used first. */
+  @Nullable private Map<String, Entry> myEntries;
+  private int myComputedDigestCount;
+
+  ApkDigestCache(@NotNull Path file) {
+    myFile = file;
+  }
+
+  /**
+   * Returns the digest of the given file's content, computing it only if the file changed since it was last hashed.
+   */
+  @NotNull
+  synchronized HashCode getDigest(@NotNull File apk) throws IOException {
+    Map<String, Entry> entries = getEntries();
+    String path = apk.getAbsolutePath();
+    long size = apk.length();
+    long lastModified = apk.lastModified();
+    Entry entry = entries.get(path);
+    if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+      return entry.digest;
+    }
+
+    HashCode digest = computeDigest(apk.toPath(), size);
+    myComputedDigestCount++;
+    // The file may have been modified while it was read; only remember the digest if it was not.
+    if (apk.length() == size && apk.lastModified() == lastModified) {
+      entries.put(path, new Entry(size, lastModified, digest));
+      save(entries);
+    }
+    return digest;
+  }
+
+  @VisibleForTesting
+  synchronized int getComputedDigestCount() {
+    return myComputedDigestCount;
+  }
+
+  @NotNull
+  private static HashCode computeDigest(@NotNull Path file, long size) throws IOException {
+    int chunkCount = (int)Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (chunkCount == 1) {
+        return hashChunk(channel, 0, size);
+      }
+
+      ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+        "ApkDigestCache", Math.min(chunkCount, Runtime.getRuntime().availableProcessors()));
+      List<Future<HashCode>> futures = new ArrayList<>(chunkCount);
+      for (int i = 0; i < chunkCount; i++) {
+        long start = (long)i * CHUNK_SIZE;
+        long length = Math.min(CHUNK_SIZE, size - start);
+        futures.add(executor.submit(() -> hashChunk(channel, start, length)));
+      }
+      List<HashCode> chunkDigests = new ArrayList<>(chunkCount);
+      for (Future<HashCode> future : futures) {
+        chunkDigests.add(future.get());
+      }
+      return Hashing.combineOrdered(chunkDigests);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while hashing " + file, e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException)cause : new IOException("Failed to hash " + file, cause);
+    }
+  }
+
+  @NotNull
+  private static HashCode hashChunk(@NotNull FileChannel channel, long start, long length) throws IOException {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(length, 64 * 1024));
+    long position = start;
+    long end = start + length;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int)Math.min(buffer.capacity(), end - position));
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of file at offset " + position);
+      }
+      position += read;
+      buffer.flip();
+      hasher.putBytes(buffer);
+    }
+    return hasher.hash();
+  }
+
+  @NotNull
+  private Map<String, Entry> getEntries() {
+    if (myEntries == null) {
+      myEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+      try {
+        load(myEntries);
+      }
+      catch (IOException e) {
+        getLogger().info("Ignoring unreadable APK digest cache " + myFile, e);
+        myEntries.clear();
+      }
+    }
+    return myEntries;
+  }
+
+  private void load(@NotNull Map<String, Entry> entries) throws IOException {
+    if (!Files.isRegularFile(myFile)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(myFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        getLogger().info("Ignoring APK digest cache " + myFile + " written by a different version");
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        byte[] digest = new byte[in.readUnsignedByte()];
+        in.readFully(digest);
+        entries.put(path, new Entry(size, lastModified, HashCode.fromBytes(digest)));
+      }
+    }
+  }
+
+  private void save(@NotNull Map<String, Entry> entries) {
+    Path tempFile = myFile.resolveSibling(myFile.getFileName() + ".tmp");
+    try {
+      Files.createDirectories(myFile.getParent());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+          Entry entry = mapEntry.getValue();
+          byte[] digest = entry.digest.asBytes();
+          out.writeUTF(mapEntry.getKey());
+          out.writeLong(entry.size);
+          out.writeLong(entry.lastModified);
+          out.writeByte(digest.length);
+          out.write(digest);
+        }
+      }
+      Files.move(tempFile, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      // The digests are still cached in memory; they will just be recomputed after a restart.
+      getLogger().info("Failed to save APK digest cache " + myFile, e);
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(ApkDigestCache.class);
+  }
+
+  private static final class Entry {
+    final long size;
+    final long lastModified;
+    @NotNull final HashCode digest;
+
+    Entry(long size, long lastModified, @NotNull HashCode digest) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+  }
+}
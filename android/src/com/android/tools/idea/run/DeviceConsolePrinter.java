@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link ConsolePrinter} which prefixes each line with the serial number of a device, so that the output of launches running on
+ * several devices at the same time can be told apart.
+ */
+final class DeviceConsolePrinter implements ConsolePrinter {
+  @NotNull private final ConsolePrinter myDelegate;
+  @NotNull private final String myPrefix;
+
+  DeviceConsolePrinter(@NotNull ConsolePrinter delegate, @NotNull String serialNumber) {
+    myDelegate = delegate;
+    myPrefix = "[" + serialNumber + "] ";
+  }
+
+  @Override
+  public void stdout(@NotNull String message) {
+    myDelegate.stdout(addPrefix(message));
+  }
+
+  @Override
+  public void stderr(@NotNull String message) {
+    myDelegate.stderr(addPrefix(message));
+  }
+
+  @NotNull
+  private String addPrefix(@NotNull String message) {
+    StringBuilder builder = new StringBuilder(message.length() + myPrefix.length());
+    int start = 0;
+    while (start <= message.length()) {
+      int end = message.indexOf('\n', start);
+      if (end < 0) {
+        end = message.length();
+      }
+      if (end > start) {
+        builder.append(myPrefix).append(message, start, end);
+      }
+      if (end < message.length()) {
+        builder.append('\n');
+      }
+      start = end + 1;
+    }
+    return builder.toString();
+  }
+}
@@ -22,15 +22,17 @@ import com.android.ddmlib.ShellCommandUnresponsiveException;
 import com.android.ddmlib.TimeoutException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashCode;
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -39,12 +41,19 @@ import org.jetbrains.annotations.Nullable;
 
 public class InstalledApkCache implements Disposable {
   private final DeviceStateCache<CacheData> myCache;
+  private final ApkDigestCache myDigestCache;
 
   /** Diagnostic output set by {@link #getLastUpdateTime(com.android.ddmlib.IDevice, String)} */
   private String myDiagnosticOutput;
 
   public InstalledApkCache() {
+    this(new ApkDigestCache(new File(PathManager.getSystemPath(), "apk-digests.bin").toPath()));
+  }
+
+  @VisibleForTesting
+  InstalledApkCache(@NotNull ApkDigestCache digestCache) {
     myCache = new DeviceStateCache<CacheData>(this);
+    myDigestCache = digestCache;
   }
 
   @Override
@@ -56,12 +65,29 @@ public class InstalledApkCache implements Disposable {
       @NotNull File apk,
       @NotNull String pkgName,
       @Nullable Integer userId) throws IOException {
+    if (myCache.get(device, pkgName) == null) {
+      return false;
+    }
+    InstallState currentState = getInstallState(device, pkgName);
+    return isInstalled(currentState != null ? ImmutableMap.of(pkgName, currentState) : ImmutableMap.of(), device, apk, pkgName, userId);
+  }
+
+  /**
+   * Same as {@link #isInstalled(IDevice, File, String, Integer)}, but reads the current state of the package from the result of
+   * {@link #getInstallStates(IDevice)}, so that checking several APKs queries the device only once.
+   */
+  public boolean isInstalled(
+      @NotNull Map<String, InstallState> installStates,
+      @NotNull IDevice device,
+      @NotNull File apk,
+      @NotNull String pkgName,
+      @Nullable Integer userId) throws IOException {
     CacheData state = myCache.get(device, pkgName);
     if (state == null) {
       return false;
     }
 
-    InstallState currentState = getInstallState(device, pkgName);
+    InstallState currentState = installStates.get(pkgName);
     return currentState != null &&
            state.installState.lastUpdateTime.equals(currentState.lastUpdateTime) &&
            state.hash.equals(hash(apk)) &&
@@ -87,8 +113,8 @@ public class InstalledApkCache implements Disposable {
   }
 
   @NotNull
-  private static HashCode hash(@NotNull File apk) throws IOException {
-    return Files.hash(apk, Hashing.goodFastHash(32));
+  private HashCode hash(@NotNull File apk) throws IOException {
+    return myDigestCache.getDigest(apk);
   }
 
   @VisibleForTesting
@@ -102,7 +128,6 @@ public class InstalledApkCache implements Disposable {
    */
   @Nullable
   public InstallState getInstallState(@NotNull IDevice device, @NotNull String pkgName) {
-    boolean deviceHasPackage = false;
     myDiagnosticOutput = null;
 
     String output;
@@ -114,33 +139,66 @@ public class InstalledApkCache implements Disposable {
       return null;
     }
 
-    // The follow code assumes that the output of "dumpsys package <pkgname>" has at least the following line:
-    //       Package [pkgName]
-    // Optionally, if it also has a line of form:
-    //        lastUpdateTime=2014-09-29 11:58:19
-    // then that line is saved as is as the last updated time
-    Iterable<String> lines = Splitter.on("\n").split(output);
-    for (String line : lines) {
-      line = line.trim();
-      if (line.startsWith("Package [")) {
-        int startIndex = line.indexOf('[');
-        int endIndex = line.indexOf(']');
-        if (startIndex > 0 && endIndex > startIndex) {
-          deviceHasPackage = pkgName.equals(line.substring(startIndex + 1, endIndex));
-        }
-        break;
-      }
+    // The output of "dumpsys package <pkgname>" may list other packages, such as the ones sharing its user id.
+    InstallState state = parseInstallStates(output).get(pkgName);
+    if (state == null) {
+      myDiagnosticOutput = String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output);
     }
+    return state;
+  }
 
-    if (!deviceHasPackage) {
-      myDiagnosticOutput = String.format("Expected string 'Package [%1$s]' not found in output: %2$s", pkgName, output);
-      return null;
+  /**
+   * Returns the install states of all packages on the given device, read with a single 'dumpsys package' call. Packages are keyed by
+   * name; an empty map is returned if the device could not be queried.
+   */
+  @NotNull
+  public Map<String, InstallState> getInstallStates(@NotNull IDevice device) {
+    myDiagnosticOutput = null;
+
+    String output;
+    try {
+      output = executeShellCommand(device, "dumpsys package packages", 5, TimeUnit.SECONDS);
     }
+    catch (Exception e) {
+      myDiagnosticOutput = String.format("Error executing 'dumpsys package packages:\n%1$s'", e.getMessage());
+      return ImmutableMap.of();
+    }
+    return parseInstallStates(output);
+  }
 
+  /**
+   * Parses the package sections of dumpsys package's output. Each section starts with a line of the form
+   *       Package [pkgName]
+   * Optionally, if it also has a line of form:
+   *        lastUpdateTime=2014-09-29 11:58:19
+   * then that line is saved as is as the last updated time. Only the first section of a package is used: the ones listed later,
+   * such as hidden system packages, are not the installed version.
+   */
+  @NotNull
+  private static Map<String, InstallState> parseInstallStates(@NotNull String output) {
+    Map<String, InstallState> states = new HashMap<>();
+    String pkgName = null;
     String lastUpdateTime = "";
     Set<Integer> users = new HashSet<Integer>();
-    for (String line : lines) {
+    for (String line : Splitter.on("\n").split(output)) {
+      boolean topLevel = !line.isEmpty() && !Character.isWhitespace(line.charAt(0));
       line = line.trim();
+      if (line.startsWith("Package [") || topLevel) {
+        if (pkgName != null) {
+          states.putIfAbsent(pkgName, new InstallState(lastUpdateTime, users));
+        }
+        pkgName = null;
+        lastUpdateTime = "";
+        users = new HashSet<Integer>();
+
+        int startIndex = line.indexOf('[');
+        int endIndex = line.indexOf(']');
+        if (line.startsWith("Package [") && startIndex > 0 && endIndex > startIndex) {
+          pkgName = line.substring(startIndex + 1, endIndex);
+        }
+        continue;
+      }
+
       if (line.startsWith("lastUpdateTime")) {
         lastUpdateTime = line;
       }
@@ -153,8 +211,10 @@ public class InstalledApkCache implements Disposable {
         }
       }
     }
-
-    return new InstallState(lastUpdateTime, users);
+    if (pkgName != null) {
+      states.putIfAbsent(pkgName, new InstallState(lastUpdateTime, users));
+    }
+    return states;
   }
 
   protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
@@ -16,6 +16,7 @@
 package com.android.tools.idea.run;
 
 import com.android.annotations.NonNull;
+import com.android.annotations.concurrency.GuardedBy;
 import com.android.ddmlib.AndroidDebugBridge;
 import com.android.ddmlib.Client;
 import com.android.ddmlib.IDevice;
@@ -43,24 +44,33 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class LaunchTaskRunner extends Task.Backgroundable {
+  private static final int MAX_CONCURRENT_DEVICES = 8;
+
   @NotNull private final String myConfigName;
   @NotNull private final String myApplicationId;
   @Nullable private final String myExecutionTargetName; // Change to NotNull once everything is moved over to DeviceAndSnapshot
@@ -72,7 +82,9 @@ public class LaunchTaskRunner extends Task.Backgroundable {
   @NotNull private final BiConsumer<String, HyperlinkInfo> myConsoleConsumer;
   @NotNull private final List<Runnable> myOnFinished;
 
+  @GuardedBy("this")
   @Nullable private String myError;
+  @GuardedBy("this")
   @Nullable private NotificationListener myErrorNotificationListener;
 
   public LaunchTaskRunner(@NotNull Project project,
@@ -96,7 +108,7 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     myLaunchTasksProvider = launchTasksProvider;
     myStats = stats;
     myConsoleConsumer = consoleConsumer;
-    myOnFinished = new ArrayList<>();
+    myOnFinished = Collections.synchronizedList(new ArrayList<>());
   }
 
   @Override
@@ -159,13 +171,16 @@ public class LaunchTaskRunner extends Task.Backgroundable {
         }
       }
 
-      // Perform launch tasks for each device.
-      for (int deviceIndex = 0; deviceIndex < devices.size(); deviceIndex++) {
-        IDevice device = devices.get(deviceIndex);
-        List<LaunchTask> launchTasks = null;
+      // Collect the launch tasks of all devices up front, as task providers are not thread safe.
+      boolean multipleDevices = devices.size() > 1;
+      Map<IDevice, List<LaunchTask>> launchTasksByDevice = new LinkedHashMap<>();
+      Map<IDevice, ConsolePrinter> printersByDevice = new HashMap<>();
+      for (IDevice device : devices) {
+        ConsolePrinter devicePrinter = multipleDevices ? new DeviceConsolePrinter(consolePrinter, device.getSerialNumber()) : consolePrinter;
         try {
           myLaunchTasksProvider.fillStats(myStats);
-          launchTasks = myLaunchTasksProvider.getTasks(device, launchStatus, consolePrinter);
+          launchTasksByDevice.put(device, myLaunchTasksProvider.getTasks(device, launchStatus, devicePrinter));
+          printersByDevice.put(device, devicePrinter);
         }
         catch (com.intellij.execution.ExecutionException e) {
           launchStatus.terminateLaunch(e.getMessage(), !isSwap());
@@ -176,46 +191,24 @@ public class LaunchTaskRunner extends Task.Backgroundable {
           Logger.getInstance(LaunchTaskRunner.class).error(e);
           return;
         }
+      }
 
-        // This totalDuration and elapsed step count is used only for showing a progress bar.
-        int totalDuration = getTotalDuration(launchTasks, debugSessionTask);
-        int elapsed = 0;
-        for (LaunchTask task : launchTasks) {
-          if (!checkIfLaunchIsAliveAndTerminateIfCancelIsRequested(indicator, launchStatus, destroyProcessOnCancellation)) {
-            return;
-          }
-
-          LaunchTaskDetail.Builder details = myStats.beginLaunchTask(task);
-          indicator.setText(task.getDescription());
-          LaunchResult result = task.run(myLaunchInfo.executor, device, launchStatus, consolePrinter);
-          myOnFinished.addAll(result.onFinishedCallbacks());
-          boolean success = result.getSuccess();
-          myStats.endLaunchTask(task, details, success);
-          if (!success) {
-            myErrorNotificationListener = result.getNotificationListener();
-            myError = result.getError();
-            launchStatus.terminateLaunch(result.getConsoleError(), !isSwap());
-
-            // Append a footer hyperlink, if one was provided.
-            if (result.getConsoleHyperlinkInfo() != null) {
-              myConsoleConsumer.accept(result.getConsoleHyperlinkText() + "\n",
-                                       result.getConsoleHyperlinkInfo());
-            }
-
-            // Show the tool window when we have an error.
-            RunContentManager.getInstance(myProject).toFrontRunContent(myLaunchInfo.executor, myProcessHandler);
-
-            myStats.setErrorId(result.getErrorId());
-            return;
-          }
-
-          // Update progress.
-          elapsed += task.getDuration();
-          indicator.setFraction((double)(elapsed / totalDuration + deviceIndex) / devices.size());
-        }
+      // This total duration and elapsed step count are used only for showing a progress bar.
+      int totalDuration = 0;
+      for (List<LaunchTask> launchTasks : launchTasksByDevice.values()) {
+        totalDuration += getTotalDuration(launchTasks, debugSessionTask);
+      }
+      LaunchProgress progress = new LaunchProgress(indicator, totalDuration);
 
+      if (multipleDevices) {
+        runLaunchTasksOnAllDevices(launchTasksByDevice, printersByDevice, indicator, launchStatus, progress, destroyProcessOnCancellation);
+      }
+      else if (!devices.isEmpty()) {
+        IDevice device = devices.get(0);
+        boolean success = runLaunchTasks(device, launchTasksByDevice.get(device), indicator, launchStatus, consolePrinter, progress,
+                                         destroyProcessOnCancellation);
         // A debug session task should be performed at last.
-        if (debugSessionTask != null) {
+        if (success && debugSessionTask != null) {
           debugSessionTask.perform(myLaunchInfo, device, launchStatus, consolePrinter);
         }
       }
@@ -225,6 +218,107 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     }
   }
 
+  /**
+   * Runs the launch tasks of several devices at the same time, and waits for all of them to finish. Devices are independent of each
+   * other, so the launch time is bounded by the slowest device rather than by the sum of all devices.
+   */
+  private void runLaunchTasksOnAllDevices(@NotNull Map<IDevice, List<LaunchTask>> launchTasksByDevice,
+                                          @NotNull Map<IDevice, ConsolePrinter> printersByDevice,
+                                          @NotNull ProgressIndicator indicator,
+                                          @NotNull LaunchStatus launchStatus,
+                                          @NotNull LaunchProgress progress,
+                                          boolean destroyProcessOnCancellation) {
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "LaunchTaskRunner", Math.min(launchTasksByDevice.size(), MAX_CONCURRENT_DEVICES));
+    List<Future<?>> futures = new ArrayList<>();
+    launchTasksByDevice.forEach((device, launchTasks) -> {
+      ConsolePrinter devicePrinter = printersByDevice.get(device);
+      futures.add(executor.submit(() -> {
+        long startTimestampMs = System.currentTimeMillis();
+        boolean success =
+          runLaunchTasks(device, launchTasks, indicator, launchStatus, devicePrinter, progress, destroyProcessOnCancellation);
+        long endTimestampMs = System.currentTimeMillis();
+        myStats.addDeviceLaunchTasks(startTimestampMs, endTimestampMs);
+        devicePrinter.stdout(String.format("Launch %s in %s.", success ? "finished" : "stopped",
+                                           StringUtil.formatDuration(endTimestampMs - startTimestampMs)));
+      }));
+    });
+
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException e) {
+        launchStatus.terminateLaunch("Interrupted while launching", destroyProcessOnCancellation);
+        Thread.currentThread().interrupt();
+        return;
+      }
+      catch (ExecutionException e) {
+        String error = StringUtil.notNullize(e.getCause().getMessage(), e.getCause().toString());
+        synchronized (this) {
+          if (myError == null) {
+            myErrorNotificationListener = null;
+            myError = error;
+          }
+        }
+        launchStatus.terminateLaunch(error, !isSwap());
+        Logger.getInstance(LaunchTaskRunner.class).error(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Runs the launch tasks of a single device. This may be called for several devices concurrently.
+   *
+   * @return true if all tasks succeeded, false if a task failed or the launch was terminated
+   */
+  private boolean runLaunchTasks(@NotNull IDevice device,
+                                 @NotNull List<LaunchTask> launchTasks,
+                                 @NotNull ProgressIndicator indicator,
+                                 @NotNull LaunchStatus launchStatus,
+                                 @NotNull ConsolePrinter consolePrinter,
+                                 @NotNull LaunchProgress progress,
+                                 boolean destroyProcessOnCancellation) {
+    for (LaunchTask task : launchTasks) {
+      if (!checkIfLaunchIsAliveAndTerminateIfCancelIsRequested(indicator, launchStatus, destroyProcessOnCancellation)) {
+        return false;
+      }
+
+      LaunchTaskDetail.Builder details = myStats.beginLaunchTask(task);
+      indicator.setText(task.getDescription());
+      LaunchResult result = task.run(myLaunchInfo.executor, device, launchStatus, consolePrinter);
+      myOnFinished.addAll(result.onFinishedCallbacks());
+      boolean success = result.getSuccess();
+      myStats.endLaunchTask(task, details, success);
+      if (!success) {
+        synchronized (this) {
+          if (myError != null) {
+            // Another device already failed and reported its error.
+            return false;
+          }
+          myErrorNotificationListener = result.getNotificationListener();
+          myError = result.getError();
+        }
+        launchStatus.terminateLaunch(result.getConsoleError(), !isSwap());
+
+        // Append a footer hyperlink, if one was provided.
+        if (result.getConsoleHyperlinkInfo() != null) {
+          myConsoleConsumer.accept(result.getConsoleHyperlinkText() + "\n",
+                                   result.getConsoleHyperlinkInfo());
+        }
+
+        // Show the tool window when we have an error.
+        RunContentManager.getInstance(myProject).toFrontRunContent(myLaunchInfo.executor, myProcessHandler);
+
+        myStats.setErrorId(result.getErrorId());
+        return false;
+      }
+
+      progress.advance(task.getDuration());
+    }
+    return true;
+  }
+
   private void printLaunchTaskStartedMessage(ConsolePrinter consolePrinter) {
     StringBuilder launchString = new StringBuilder("\n");
     DateFormat dateFormat = new SimpleDateFormat("MM/dd HH:mm:ss");
@@ -240,7 +334,7 @@ public class LaunchTaskRunner extends Task.Backgroundable {
   }
 
   @Override
-  public void onSuccess() {
+  public synchronized void onSuccess() {
     if (myError == null) {
       myStats.success();
     }
@@ -344,6 +438,27 @@ public class LaunchTaskRunner extends Task.Backgroundable {
     return "Launching";
   }
 
+  /**
+   * Progress of the launch tasks of all devices, measured in task durations.
+   */
+  private static final class LaunchProgress {
+    @NotNull private final ProgressIndicator myIndicator;
+    private final int myTotalDuration;
+    private final AtomicInteger myElapsed = new AtomicInteger();
+
+    private LaunchProgress(@NotNull ProgressIndicator indicator, int totalDuration) {
+      myIndicator = indicator;
+      myTotalDuration = totalDuration;
+    }
+
+    void advance(int duration) {
+      int elapsed = myElapsed.addAndGet(duration);
+      if (myTotalDuration > 0) {
+        myIndicator.setFraction((double)elapsed / myTotalDuration);
+      }
+    }
+  }
+
   /**
    * A waiter to ensure that all existing Clients matching the application ID are fully terminated before proceeding with handoff to
    * AndroidProcessHandler.
@@ -42,8 +42,9 @@ final public class ProcessHandlerLaunchStatus implements LaunchStatus {
    * Indicates whether the process has been terminated or is in the process of termination.
    * Ideally, we'd rely solely on the Process Handler's termination status, but it turns out that calls to terminate a non-started
    * process to terminate never have any effect until after the process is started.
+   * Launches on several devices read it from their own threads.
    */
-  private boolean myTerminated;
+  private volatile boolean myTerminated;
 
   private final List<BooleanSupplier> launchTerminationConditions = ContainerUtil.createLockFreeCopyOnWriteList();
 
@@ -77,7 +77,7 @@ public class RunStats {
   public void markStateCreated() {
   }
 
-  public LaunchTaskDetail.Builder beginLaunchTask(LaunchTask task) {
+  public synchronized LaunchTaskDetail.Builder beginLaunchTask(LaunchTask task) {
     Trace.begin("begingLaunchtask" + task.getId());
     LaunchTaskDetail.Builder details = LaunchTaskDetail.newBuilder()
                                                        .setId(task.getId())
@@ -90,13 +90,24 @@ public class RunStats {
     return details;
   }
 
-  public void endLaunchTask(LaunchTask task, LaunchTaskDetail.Builder detail, boolean success) {
+  public synchronized void endLaunchTask(LaunchTask task, LaunchTaskDetail.Builder detail, boolean success) {
     Trace.end();
     detail.setEndTimestampMs(System.currentTimeMillis());
     myEvent.getRunEventBuilder().addLaunchTaskDetail(detail);
     myEvent.getRunEventBuilder().addAllLaunchTaskDetail(task.getSubTaskDetails());
   }
 
+  /**
+   * Records the time spent running the launch tasks of a single device, when launching on several devices at the same time.
+   */
+  public synchronized void addDeviceLaunchTasks(long startTimestampMs, long endTimestampMs) {
+    myEvent.getRunEventBuilder().addLaunchTaskDetail(LaunchTaskDetail.newBuilder()
+                                                       .setId("DEVICE_LAUNCH_TASKS")
+                                                       .setStartTimestampMs(startTimestampMs)
+                                                       .setEndTimestampMs(endTimestampMs)
+                                                       .setTid((int)Thread.currentThread().getId()));
+  }
+
   public void beginBeforeRunTasks() {
     Trace.begin("beforeRunktask.");
     myEvent.getRunEventBuilder().setBeginBeforeRunTasksTimestampMs(System.currentTimeMillis());
@@ -164,7 +175,7 @@ public class RunStats {
     myEvent.getRunEventBuilder().setDeployedFromBundle(fromBundle);
   }
 
-  public void setErrorId(String id) {
+  public synchronized void setErrorId(String id) {
     myEvent.getRunEventBuilder().setDeployFailureId(id);
   }
 
@@ -36,6 +36,8 @@ public class AndroidDexCompilerConfiguration implements PersistentStateComponent
   public boolean OPTIMIZE = true;
   public boolean FORCE_JUMBO = false;
   public boolean CORE_LIBRARY = false;
+  // Maximum number of library jars pre-dexed at the same time by the JPS builder, 0 picks a value based on the number of processors.
+  public int MAX_PARALLEL_PRE_DEX = 0;
   public String PROGUARD_VM_OPTIONS = "";
 
   @Override
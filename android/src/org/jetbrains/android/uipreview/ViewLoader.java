@@ -586,4 +586,11 @@ public class ViewLoader {
   public boolean hasLoadedClass(@NotNull String classFqn) {
     return myModuleClassLoader != null && myModuleClassLoader.isClassLoaded(classFqn);
   }
+
+  /**
+   * Returns false if any of the project classes loaded by this ViewLoader has been modified since it was loaded.
+   */
+  public boolean isClassLoaderUpToDate() {
+    return myModuleClassLoader == null || myModuleClassLoader.isUpToDate();
+  }
 }
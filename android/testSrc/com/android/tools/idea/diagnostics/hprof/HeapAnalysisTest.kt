@@ -20,27 +20,36 @@ import com.android.tools.idea.diagnostics.hprof.analysis.AnalysisConfig
 import com.android.tools.idea.diagnostics.hprof.analysis.AnalysisContext
 import com.android.tools.idea.diagnostics.hprof.analysis.AnalyzeGraph
 import com.android.tools.idea.diagnostics.hprof.analysis.ClassNomination
+import com.android.tools.idea.diagnostics.hprof.analysis.DominatorLists
 import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
 import com.android.tools.idea.diagnostics.hprof.histogram.Histogram
 import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
 import com.android.tools.idea.diagnostics.hprof.util.IntList
+import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.sectionHeader
+import com.android.tools.idea.diagnostics.hprof.util.LongList
 import com.android.tools.idea.diagnostics.hprof.util.UByteList
 import com.android.tools.idea.diagnostics.hprof.visitors.RemapIDsVisitor
 import com.android.tools.idea.util.AndroidTestPaths
+import com.intellij.openapi.progress.ProgressIndicator
 import com.intellij.openapi.progress.util.AbstractProgressIndicatorBase
+import gnu.trove.TDoubleArrayList
 import org.junit.After
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
 import org.junit.rules.TemporaryFolder
 import java.io.File
+import java.lang.ref.SoftReference
 import java.lang.ref.WeakReference
 import java.nio.channels.FileChannel
 import java.nio.charset.StandardCharsets
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.StandardOpenOption
+import java.util.ArrayDeque
+import java.util.Random
+import java.util.function.LongUnaryOperator
 
 class HeapAnalysisTest {
 
@@ -72,6 +81,15 @@ class HeapAnalysisTest {
     }
   }
 
+  class MemoryBackedLongList(size: Int) : LongList {
+    private val array = LongArray(size)
+
+    override fun get(index: Int): Long = array[index]
+    override fun set(index: Int, value: Long) {
+      array[index] = value
+    }
+  }
+
   class MemoryBackedUByteList(size: Int) : UByteList {
     private val array = ShortArray(size)
 
@@ -82,12 +100,26 @@ class HeapAnalysisTest {
   }
 
   private fun compareReportToBaseline(hprofFile: File, baselineFileName: String, nominatedClassNames: List<String>? = null) {
-    FileChannel.open(hprofFile.toPath(), StandardOpenOption.READ).use { hprofChannel ->
+    val progress = object : AbstractProgressIndicatorBase() {
+    }
+    progress.isIndeterminate = false
 
-      val progress = object : AbstractProgressIndicatorBase() {
-      }
-      progress.isIndeterminate = false
+    val analysisReport = analyzeHProf(hprofFile, nominatedClassNames, AnalysisConfig.TraverseOptions().parallelism, progress)
+
+    val baselinePath = getBaselinePath(baselineFileName)
+    val baseline = getBaselineContents(baselinePath)
+    Assert.assertEquals("Report doesn't match the baseline from file:\n$baselinePath",
+                        baseline,
+                        analysisReport)
+  }
 
+  private fun analyzeHProf(hprofFile: File,
+                           nominatedClassNames: List<String>?,
+                           parallelism: Int,
+                           progress: ProgressIndicator,
+                           includeRetainedSizes: Boolean = false,
+                           verify: (AnalysisContext, LongUnaryOperator) -> Unit = { _, _ -> }): String {
+    FileChannel.open(hprofFile.toPath(), StandardOpenOption.READ).use { hprofChannel ->
       val parser = HProfEventBasedParser(hprofChannel)
       val hprofMetadata = HProfMetadata.create(parser)
       val histogram = Histogram.create(parser, hprofMetadata.classStore)
@@ -110,6 +142,14 @@ class HeapAnalysisTest {
       val sizesList = MemoryBackedIntList(navigator.instanceCount.toInt() + 1)
       val visitedList = MemoryBackedIntList(navigator.instanceCount.toInt() + 1)
       val refIndexList = MemoryBackedUByteList(navigator.instanceCount.toInt() + 1)
+      val dominatorLists = if (includeRetainedSizes) {
+        DominatorLists(
+          MemoryBackedIntList(navigator.instanceCount.toInt() + 1),
+          MemoryBackedIntList(navigator.instanceCount.toInt() + 1),
+          MemoryBackedIntList(navigator.instanceCount.toInt() + 1),
+          MemoryBackedLongList(navigator.instanceCount.toInt() + 1))
+      }
+      else null
 
       val nominatedClassNamesLocal = nominatedClassNames ?: nominatedClasses.map { it.classDefinition.name }
       val analysisConfig = AnalysisConfig(
@@ -127,8 +167,14 @@ class HeapAnalysisTest {
           includeDisposedObjectsDetails = false,
           includeDisposedObjectsSummary = false
         ),
+        traverseOptions = AnalysisConfig.TraverseOptions(
+          parallelism = parallelism
+        ),
         metaInfoOptions = AnalysisConfig.MetaInfoOptions(
           include = false
+        ),
+        retainedSizeOptions = AnalysisConfig.RetainedSizeOptions(
+          include = includeRetainedSizes
         )
       )
       val analysisContext = AnalysisContext(
@@ -138,16 +184,13 @@ class HeapAnalysisTest {
         sizesList,
         visitedList,
         refIndexList,
+        dominatorLists,
         histogram
       )
 
-      val analysisReport = AnalyzeGraph(analysisContext).analyze(progress)
-
-      val baselinePath = getBaselinePath(baselineFileName)
-      val baseline = getBaselineContents(baselinePath)
-      Assert.assertEquals("Report doesn't match the baseline from file:\n$baselinePath",
-                          baseline,
-                          analysisReport)
+      val report = AnalyzeGraph(analysisContext).analyze(progress)
+      verify(analysisContext, remapIDsVisitor.getRemappingFunction())
+      return report
     }
   }
 
@@ -241,6 +284,165 @@ class HeapAnalysisTest {
     runHProfScenario(scenario, "testJavaFrameGCRootPriority.txt",
                      listOf("C1", "C2"))
   }
+
+  @Test
+  fun testDominatorsAndRetainedSizes() {
+    class Leaf
+    class Shared(val leaf: Leaf)
+    class Holder(val shared: Shared)
+    class Root(val holder1: Holder, val holder2: Holder, val own: Shared)
+
+    val shared = Shared(Leaf())
+    val holder1 = Holder(shared)
+    val holder2 = Holder(shared)
+    val own = Shared(Leaf())
+    val root = Root(holder1, holder2, own)
+    val ids = HashMap<Any, Long>()
+    val scenario: HProfBuilder.() -> Unit = {
+      addRootGlobalJNI(root)
+      listOf(root, holder1, holder2, shared, shared.leaf, own, own.leaf).forEach { ids[it] = addObject(it) }
+    }
+    val hprofFile = tmpFolder.newFile()
+    HProfTestUtils.createHProfOnFile(hprofFile, scenario)
+
+    val progress = object : AbstractProgressIndicatorBase() {
+    }
+    progress.isIndeterminate = false
+    val report = analyzeHProf(hprofFile, listOf("Root"), 1, progress, includeRetainedSizes = true) { context, remapping ->
+      fun id(o: Any) = remapping.applyAsLong(ids[o]!!).toInt()
+      fun dominator(o: Any) = context.dominatorLists!!.dominatorsList[id(o)]
+      fun retained(o: Any) = context.dominatorLists!!.retainedSizesList[id(o)]
+
+      // The GC root is dominated by the virtual root only.
+      Assert.assertEquals(0, dominator(root))
+      Assert.assertEquals(id(root), dominator(holder1))
+      Assert.assertEquals(id(root), dominator(holder2))
+      // Reachable through both holders, so neither of them dominates it.
+      Assert.assertEquals(id(root), dominator(shared))
+      Assert.assertEquals(id(shared), dominator(shared.leaf))
+      Assert.assertEquals(id(own), dominator(own.leaf))
+
+      // Holders only retain themselves, while the shared object retains its leaf too.
+      Assert.assertTrue(retained(shared) > retained(holder1))
+      Assert.assertEquals(retained(shared), retained(own))
+      Assert.assertTrue(retained(root) > retained(holder1) + retained(holder2) + retained(shared) + retained(own))
+    }
+    Assert.assertTrue(report.contains(sectionHeader("Retained sizes")))
+  }
+
+  @Test
+  fun testDominatorsOfCyclicGraph() {
+    class Node {
+      var a: Node? = null
+      var b: Node? = null
+      var c: Node? = null
+    }
+
+    // References go to any node, including earlier ones, so the graph is full of cycles and the parent of a node in the depth-first
+    // search is often not its immediate dominator.
+    val random = Random(7)
+    val nodes = List(200) { Node() }
+    fun randomNode() = if (random.nextInt(5) == 0) null else nodes[random.nextInt(nodes.size)]
+    for (node in nodes) {
+      node.a = randomNode()
+      node.b = randomNode()
+      node.c = randomNode()
+    }
+    val roots = nodes.take(3)
+
+    // Reference dominators: d dominates x when x can't be reached from the roots without going through d.
+    fun reachableWithout(removed: Node?): Set<Node> {
+      val reached = HashSet<Node>()
+      val queue = ArrayDeque<Node>(roots.filter { it !== removed })
+      while (queue.isNotEmpty()) {
+        val node = queue.removeFirst()
+        if (!reached.add(node)) continue
+        listOfNotNull(node.a, node.b, node.c).filter { it !== removed }.forEach { queue.add(it) }
+      }
+      return reached
+    }
+    val reachable = reachableWithout(null)
+    val dominatorsOf = reachable.associateWith { HashSet<Node>() }
+    for (d in reachable) {
+      val reachedWithoutD = reachableWithout(d)
+      reachable.filter { it !== d && it !in reachedWithoutD }.forEach { dominatorsOf.getValue(it).add(d) }
+    }
+
+    val ids = HashMap<Any, Long>()
+    val scenario: HProfBuilder.() -> Unit = {
+      roots.forEach { addRootGlobalJNI(it) }
+      nodes.forEach { ids[it] = addObject(it) }
+    }
+    val hprofFile = tmpFolder.newFile()
+    HProfTestUtils.createHProfOnFile(hprofFile, scenario)
+
+    val progress = object : AbstractProgressIndicatorBase() {
+    }
+    progress.isIndeterminate = false
+    analyzeHProf(hprofFile, listOf("Node"), 1, progress, includeRetainedSizes = true) { context, remapping ->
+      fun id(o: Any) = remapping.applyAsLong(ids[o]!!).toInt()
+
+      Assert.assertTrue(reachable.size > 100)
+      for (node in reachable) {
+        // The immediate dominator is the one dominated by all the others.
+        val expected = dominatorsOf.getValue(node).maxBy { dominatorsOf.getValue(it).size }?.let { id(it) } ?: 0
+        Assert.assertEquals(expected, context.dominatorLists!!.dominatorsList[id(node)])
+      }
+    }
+  }
+
+  @Test
+  fun testParallelTraversalMatchesSequentialTraversal() {
+    class Node(val id: Int) {
+      var children: Array<Node?> = emptyArray()
+      var soft: SoftReference<Node>? = null
+    }
+
+    // Synthetic heap: every node references a few random nodes created before it, so the graph is wide (large traversal levels)
+    // and adding nodes in creation order keeps the recursion of HProfBuilder shallow.
+    val random = Random(42)
+    val nodes = ArrayList<Node>()
+    ReferenceStore().use { refStore ->
+      val scenario: HProfBuilder.() -> Unit = {
+        for (i in 0 until 60_000) {
+          val node = Node(i)
+          if (i > 0) {
+            node.children = Array(random.nextInt(4)) { nodes[random.nextInt(i)] }
+            if (random.nextInt(10) == 0) {
+              node.soft = SoftReference(refStore.keep(nodes[random.nextInt(i)]))
+            }
+          }
+          nodes.add(node)
+          addObject(node)
+        }
+        for (i in nodes.size - 100 until nodes.size) {
+          addRootGlobalJNI(nodes[i])
+        }
+      }
+      val hprofFile = tmpFolder.newFile()
+      HProfTestUtils.createHProfOnFile(hprofFile, scenario)
+
+      val reports = listOf(1, 4).map { parallelism ->
+        val fractions = TDoubleArrayList()
+        val progress = object : AbstractProgressIndicatorBase() {
+          override fun setFraction(fraction: Double) {
+            super.setFraction(fraction)
+            fractions.add(fraction)
+          }
+        }
+        progress.isIndeterminate = false
+        val report = analyzeHProf(hprofFile, listOf("Node"), parallelism, progress, includeRetainedSizes = true)
+
+        // Progress must be reported while traversing and never go backwards.
+        Assert.assertTrue(fractions.size() > 1)
+        for (i in 1 until fractions.size()) {
+          Assert.assertTrue(fractions[i] >= fractions[i - 1])
+        }
+        report
+      }
+      Assert.assertEquals(reports[0], reports[1])
+    }
+  }
 }
 
 /**
@@ -254,6 +456,11 @@ private class ReferenceStore : AutoCloseable {
     return WeakReference(obj)
   }
 
+  fun <T> keep(obj: T): T {
+    set.add(obj)
+    return obj
+  }
+
   override fun close() {
     set.clear()
   }
@@ -26,6 +26,7 @@ import com.android.tools.idea.res.LocalResourceRepository;
 import com.android.tools.idea.res.ResourcesTestsUtil;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
@@ -249,6 +250,28 @@ public class StringResourceDataTest extends AndroidTestCase {
     assertEquals("Hello", tag.getValue().getText());
   }
 
+  public void testUpdatePicksUpEditsMadeOutsideTheEditor() {
+    StringResourceKey key = newStringResourceKey("key2");
+    Locale locale = Locale.create("hi");
+
+    assertEquals("Key 2 hi", data.getStringResource(key).getTranslationAsString(locale));
+    assertEquals(Collections.emptyMap(), data.update());
+
+    VirtualFile file = resourceDirectory.findFileByRelativePath("values-hi/strings.xml");
+    assert file != null;
+
+    XmlTag tag = getNthXmlTag(file, 0);
+    WriteCommandAction.runWriteCommandAction(myFacet.getModule().getProject(), () -> tag.getValue().setText("Key 2 hi edited"));
+
+    // Only the resolved key is reported, with only the locale that was edited.
+    assertEquals(Collections.singletonMap(key, Collections.singleton(locale)), data.update());
+    assertEquals("Key 2 hi edited", data.getStringResource(key).getTranslationAsString(locale));
+    assertEquals(Collections.emptyMap(), data.update());
+    assertEquals(ImmutableSet.of("en", "en-GB", "en-IN", "fr", "hi"), data.getLocaleSet().stream()
+      .map(Locale::toLocaleId)
+      .collect(Collectors.toSet()));
+  }
+
   @NotNull
   private StringResourceKey newStringResourceKey(@NotNull String name) {
     return new StringResourceKey(name, resourceDirectory);
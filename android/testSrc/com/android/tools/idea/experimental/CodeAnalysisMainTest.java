@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.experimental;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.tools.idea.experimental.codeanalysis.PsiCFGScene;
+import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGClass;
+import com.android.tools.idea.experimental.codeanalysis.datastructs.PsiCFGMethod;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import org.jetbrains.android.AndroidTestCase;
+
+public class CodeAnalysisMainTest extends AndroidTestCase {
+  private static final int METHOD_COUNT = 20;
+
+  public void testNestedClassesOfEveryRoundGetTheirGraphs() {
+    StringBuilder source = new StringBuilder("package p1.p2;\n\npublic class Outer {\n");
+    for (int i = 0; i < METHOD_COUNT; i++) {
+      source.append("  public void method").append(i).append("() {\n")
+        .append("    Runnable r = new Runnable() {\n")
+        .append("      public void run() {\n")
+        .append("        Runnable s = new Runnable() {\n")
+        .append("          public void run() { int x = ").append(i).append("; }\n")
+        .append("        };\n")
+        .append("      }\n")
+        .append("    };\n")
+        .append("  }\n");
+    }
+    source.append("}\n");
+    PsiFile file = myFixture.addFileToProject("src/p1/p2/Outer.java", source.toString());
+
+    CodeAnalysisMain.getInstance(getProject()).analyze(new AnalysisScope(file));
+
+    PsiCFGClass[] classes = PsiCFGScene.getInstance(getProject()).getAllApplicationClasses();
+    // The outer class, an anonymous class per method found in the first round
+    // and the anonymous class nested in each of those found in the second one.
+    assertThat(classes).hasLength(1 + 2 * METHOD_COUNT);
+    for (PsiCFGClass cfgClass : classes) {
+      for (PsiCFGMethod method : cfgClass.getAllMethods()) {
+        PsiMethod methodRef = method.getMethodRef();
+        if (methodRef != null && methodRef.getBody() != null) {
+          assertNotNull(method.toString(), method.getControlFlowGraph());
+        }
+      }
+    }
+  }
+
+  public void testSceneIsReusedUntilThePsiChanges() {
+    PsiFile file = myFixture.addFileToProject("src/p1/p2/A.java",
+                                              "package p1.p2;\n\npublic class A {\n  public void a() { new B().b(); }\n}\n");
+    PsiFile other = myFixture.addFileToProject("src/p1/p2/B.java",
+                                               "package p1.p2;\n\npublic class B {\n  public void b() {}\n}\n");
+    CodeAnalysisMain analysisMain = CodeAnalysisMain.getInstance(getProject());
+    AnalysisScope scope = new AnalysisScope(file);
+
+    analysisMain.analyze(scope);
+    PsiCFGScene scene = PsiCFGScene.getInstance(getProject());
+    analysisMain.analyze(scope);
+    assertSame(scene, PsiCFGScene.getInstance(getProject()));
+
+    // B is outside the scope, but the graphs of A refer to it.
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+      documentManager.getDocument(other).insertString(0, "// Changed\n");
+      documentManager.commitAllDocuments();
+    });
+    analysisMain.analyze(scope);
+    assertNotSame(scene, PsiCFGScene.getInstance(getProject()));
+  }
+}
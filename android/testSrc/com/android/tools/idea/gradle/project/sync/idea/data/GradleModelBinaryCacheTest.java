@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.idea.data;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.android.builder.model.level2.Library;
+import com.android.ide.common.gradle.model.IdeAndroidProject;
+import com.android.ide.common.gradle.model.IdeAndroidProjectImpl;
+import com.android.ide.common.gradle.model.IdeNativeAndroidProjectImpl;
+import com.android.ide.common.gradle.model.ModelCache;
+import com.android.ide.common.gradle.model.level2.IdeDependenciesFactory;
+import com.android.ide.common.gradle.model.stubs.AndroidProjectStub;
+import com.android.ide.common.gradle.model.stubs.NativeAndroidProjectStub;
+import com.android.ide.common.gradle.model.stubs.ProjectSyncIssuesStub;
+import com.android.ide.common.gradle.model.stubs.SyncIssueStub;
+import com.android.ide.common.gradle.model.stubs.VariantStub;
+import com.android.tools.idea.gradle.project.model.AndroidModuleModel;
+import com.android.tools.idea.gradle.project.model.NdkModuleModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link GradleModelBinaryCache}.
+ */
+public class GradleModelBinaryCacheTest {
+  private static final long MODELS_VERSION = 42;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testModelsAreRestoredPerModule() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList("appModel", null));
+    models.put("lib", Arrays.asList("libModel", "libNdkModel"));
+    GradleModelBinaryCache.write(file, MODELS_VERSION, models, object -> false);
+
+    GradleModelBinaryCache cache = GradleModelBinaryCache.open(file, MODELS_VERSION);
+    assertThat(cache).isNotNull();
+    assertThat(cache.getModuleNames()).containsExactly("app", "lib");
+    assertThat(cache.load("app")).containsExactly("appModel", null).inOrder();
+    assertThat(cache.load("lib")).containsExactly("libModel", "libNdkModel").inOrder();
+    assertThat(cache.load("missing")).isNull();
+    assertThat(cache.isModelPresent("app", 0)).isTrue();
+    assertThat(cache.isModelPresent("app", 1)).isFalse();
+    assertThat(cache.isModelPresent("lib", 1)).isTrue();
+    assertThat(cache.isModelPresent("missing", 0)).isFalse();
+  }
+
+  @Test
+  public void testAndroidAndNdkModelsAreRestored() throws Exception {
+    IdeAndroidProject androidProject = IdeAndroidProjectImpl.create(
+      new AndroidProjectStub("3.6.0"),
+      new ModelCache(),
+      new IdeDependenciesFactory(),
+      Collections.singletonList(new VariantStub()),
+      new ProjectSyncIssuesStub(Collections.singletonList(new SyncIssueStub())));
+    AndroidModuleModel androidModel = AndroidModuleModel.create("app", new File("app"), androidProject, "debug");
+    NdkModuleModel ndkModel =
+      new NdkModuleModel("app", new File("app"), new IdeNativeAndroidProjectImpl(new NativeAndroidProjectStub()), Collections.emptyList());
+
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList(androidModel, ndkModel));
+    GradleModelBinaryCache.write(file, DataNodeCaches.getModelsVersion(), models, object -> object instanceof Library);
+
+    GradleModelBinaryCache cache = GradleModelBinaryCache.open(file, DataNodeCaches.getModelsVersion());
+    assertThat(cache).isNotNull();
+    List<Object> loaded = cache.load("app");
+    assertThat(loaded).hasSize(2);
+    assertThat(loaded.get(0)).isInstanceOf(AndroidModuleModel.class);
+    assertThat(((AndroidModuleModel)loaded.get(0)).getModuleName()).isEqualTo("app");
+    assertThat(((AndroidModuleModel)loaded.get(0)).getSelectedVariant().getName()).isEqualTo(androidModel.getSelectedVariant().getName());
+    assertThat(loaded.get(1)).isInstanceOf(NdkModuleModel.class);
+    assertThat(((NdkModuleModel)loaded.get(1)).getModuleName()).isEqualTo("app");
+  }
+
+  @Test
+  public void testFileWrittenForOtherModelVersionsIsIgnored() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    GradleModelBinaryCache.write(file, MODELS_VERSION, new LinkedHashMap<>(), object -> false);
+
+    assertThat(GradleModelBinaryCache.open(file, MODELS_VERSION + 1)).isNull();
+  }
+
+  @Test
+  public void testLoadFailsIfFileWasReplacedAfterOpening() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList("appModel", null));
+    GradleModelBinaryCache.write(file, MODELS_VERSION, models, object -> false);
+    GradleModelBinaryCache cache = GradleModelBinaryCache.open(file, MODELS_VERSION);
+    assertThat(cache).isNotNull();
+
+    GradleModelBinaryCache.write(file, MODELS_VERSION, models, object -> false);
+
+    try {
+      cache.load("app");
+      fail();
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void testShareableObjectsAreStoredOnceAndSharedAfterLoading() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList(new File("guava.jar"), new File("app.jar")));
+    models.put("lib", Arrays.asList(new File("guava.jar"), new File("lib.jar")));
+    GradleModelBinaryCache.write(file, MODELS_VERSION, models, object -> object instanceof File && ((File)object).getName().equals("guava.jar"));
+
+    GradleModelBinaryCache cache = GradleModelBinaryCache.open(file, MODELS_VERSION);
+    assertThat(cache).isNotNull();
+    assertThat(cache.getSharedObjectCount()).isEqualTo(1);
+    List<Object> appModels = cache.load("app");
+    List<Object> libModels = cache.load("lib");
+    assertThat(appModels.get(0)).isEqualTo(new File("guava.jar"));
+    assertThat(appModels.get(0)).isSameAs(libModels.get(0));
+    assertThat(libModels.get(1)).isEqualTo(new File("lib.jar"));
+  }
+
+  @Test
+  public void testFileWrittenForOtherVersionOfNestedClassIsIgnored() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList(new ArrayList<>(Collections.singletonList(new File("app.jar"))), null));
+    GradleModelBinaryCache.write(file, MODELS_VERSION, models, object -> false);
+    assertThat(GradleModelBinaryCache.open(file, MODELS_VERSION)).isNotNull();
+
+    // The serialVersionUID recorded for java.io.File follows its name in the index.
+    byte[] bytes = Files.readAllBytes(file);
+    byte[] className = File.class.getName().getBytes(StandardCharsets.UTF_8);
+    int uidEnd = indexOf(bytes, className) + className.length + Long.BYTES;
+    bytes[uidEnd - 1]++;
+    Files.write(file, bytes);
+
+    assertThat(GradleModelBinaryCache.open(file, MODELS_VERSION)).isNull();
+  }
+
+  @Test
+  public void testEncodedModelsDoNotChangeWithTheModels() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    List<String> appModel = new ArrayList<>(Collections.singletonList("debug"));
+    Map<String, List<?>> models = new LinkedHashMap<>();
+    models.put("app", Arrays.asList(appModel, null));
+    byte[] contents = GradleModelBinaryCache.encode(MODELS_VERSION, models, object -> false);
+    appModel.set(0, "release");
+    GradleModelBinaryCache.write(file, contents);
+
+    GradleModelBinaryCache cache = GradleModelBinaryCache.open(file, MODELS_VERSION);
+    assertThat(cache).isNotNull();
+    assertThat(cache.load("app").get(0)).isEqualTo(Collections.singletonList("debug"));
+  }
+
+  private static int indexOf(byte[] bytes, byte[] target) {
+    for (int i = 0; i + target.length <= bytes.length; i++) {
+      if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + target.length), target)) {
+        return i;
+      }
+    }
+    throw new AssertionError("Not found");
+  }
+
+  @Test
+  public void testFileFromOtherVersionIsIgnored() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("models.bin");
+    GradleModelBinaryCache.write(file, MODELS_VERSION, new LinkedHashMap<>(), object -> false);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[7] = (byte)(GradleModelBinaryCache.VERSION + 1);
+    Files.write(file, bytes);
+
+    assertThat(GradleModelBinaryCache.open(file, MODELS_VERSION)).isNull();
+  }
+
+  @Test
+  public void testMissingFileIsIgnored() throws Exception {
+    assertThat(GradleModelBinaryCache.open(temporaryFolder.getRoot().toPath().resolve("missing.bin"), MODELS_VERSION)).isNull();
+  }
+}
@@ -17,6 +17,7 @@ package com.android.tools.idea.gradle.project.sync.setup.module;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -61,6 +62,15 @@ public class AndroidModuleSetupTest extends PlatformTestCase {
     verify(mySetupStep2, times(1)).setUpModule(myModuleSetupContext, myAndroidModel);
   }
 
+  public void testPrepareAndroidModule() {
+    myModuleSetup.prepareModule(myModuleSetupContext, myAndroidModel);
+
+    verify(mySetupStep1, times(1)).prepareModule(myModuleSetupContext, myAndroidModel);
+    verify(mySetupStep2, times(1)).prepareModule(myModuleSetupContext, myAndroidModel);
+    verify(mySetupStep1, never()).setUpModule(myModuleSetupContext, myAndroidModel);
+    verify(mySetupStep2, never()).setUpModule(myModuleSetupContext, myAndroidModel);
+  }
+
   public void testSetUpAndroidModuleRegistersSyncIssues() {
     SyncIssue syncIssue = mock(SyncIssue.class);
     when(myAndroidProject.getSyncIssues()).thenReturn(ImmutableList.of(syncIssue));
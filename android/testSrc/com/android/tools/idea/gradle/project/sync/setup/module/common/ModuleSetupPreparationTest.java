@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.setup.module.common;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.tools.idea.gradle.project.sync.ModuleSetupContext;
+import com.android.tools.idea.gradle.project.sync.setup.module.ModuleSetupStep;
+import com.intellij.facet.ModifiableFacetModel;
+import com.intellij.openapi.externalSystem.service.project.IdeModifiableModelsProvider;
+import com.intellij.openapi.module.Module;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.PlatformTestCase;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tests for {@link ModuleSetupPreparation}.
+ */
+public class ModuleSetupPreparationTest extends PlatformTestCase {
+  private static final int MODULE_COUNT = 8;
+
+  @Override
+  protected boolean runInDispatchThread() {
+    // Preparation only fans out when called from a background thread that doesn't hold a lock, like the data services during sync.
+    return false;
+  }
+
+  public void testProviderIsOnlyUsedOnCallingThread() {
+    Map<String, String> modelsByModuleName = new LinkedHashMap<>();
+    Module[] modules = new Module[MODULE_COUNT];
+    for (int i = 0; i < MODULE_COUNT; i++) {
+      String name = "module" + i;
+      modules[i] = EdtTestUtil.runInEdtAndGet(() -> createModule(name));
+      modelsByModuleName.put(name, "model" + i);
+    }
+
+    Thread callingThread = Thread.currentThread();
+    Set<Thread> providerThreads = ConcurrentHashMap.newKeySet();
+    IdeModifiableModelsProvider modelsProvider = mock(IdeModifiableModelsProvider.class);
+    when(modelsProvider.getModules()).thenReturn(modules);
+    when(modelsProvider.getModifiableFacetModel(any())).thenAnswer(invocation -> {
+      providerThreads.add(Thread.currentThread());
+      return mock(ModifiableFacetModel.class);
+    });
+
+    PreparingStep step = new PreparingStep();
+    Map<Module, ModuleSetupContext> contexts =
+      ModuleSetupPreparation.prepareModules(new TestSetup(step), new ModuleSetupContext.Factory(), modelsProvider, modelsByModuleName);
+
+    assertThat(contexts.keySet()).containsExactly((Object[])modules).inOrder();
+    assertThat(step.myPreparedModels).containsExactlyElementsIn(modelsByModuleName.values());
+    assertThat(providerThreads).containsExactly(callingThread);
+  }
+
+  public void testModulesWithoutModelsAreSkipped() {
+    Module module = EdtTestUtil.runInEdtAndGet(() -> createModule("withoutModel"));
+    IdeModifiableModelsProvider modelsProvider = mock(IdeModifiableModelsProvider.class);
+    when(modelsProvider.getModules()).thenReturn(new Module[]{module});
+
+    PreparingStep step = new PreparingStep();
+    Map<Module, ModuleSetupContext> contexts =
+      ModuleSetupPreparation.prepareModules(new TestSetup(step), new ModuleSetupContext.Factory(), modelsProvider, new LinkedHashMap<>());
+
+    assertThat(contexts).isEmpty();
+    assertThat(step.myPreparedModels).isEmpty();
+  }
+
+  private static final class PreparingStep extends ModuleSetupStep<String> {
+    final Set<String> myPreparedModels = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected void doPrepareModule(@NotNull ModuleSetupContext context, @NotNull String gradleModel) {
+      // Both are read through the models provider unless they were resolved before fanning out.
+      context.getModuleFinder();
+      context.hasNativeModel();
+      myPreparedModels.add(gradleModel);
+    }
+
+    @Override
+    protected void doSetUpModule(@NotNull ModuleSetupContext context, @NotNull String gradleModel) {
+    }
+  }
+
+  private static final class TestSetup extends BaseSetup<ModuleSetupStep<String>, String> {
+    @SafeVarargs
+    private TestSetup(@NotNull ModuleSetupStep<String>... steps) {
+      super(steps);
+    }
+  }
+}
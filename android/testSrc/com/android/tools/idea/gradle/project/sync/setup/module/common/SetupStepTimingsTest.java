@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync.setup.module.common;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SetupStepTimings}.
+ */
+public class SetupStepTimingsTest {
+  @Test
+  public void testTimingsAreRecordedPerStepAndPhase() {
+    SetupStepTimings timings = new SetupStepTimings("TestSetup");
+    Object step = new Object();
+    timings.record(step, "prepare", () -> {});
+    timings.record(step, "setup", () -> {});
+    timings.record(step, "setup", () -> {});
+
+    assertThat(timings.getMillisByStep().keySet()).containsExactly("Object (prepare)", "Object (setup)");
+  }
+
+  @Test
+  public void testTimingIsRecordedWhenStepFails() {
+    SetupStepTimings timings = new SetupStepTimings("TestSetup");
+    try {
+      timings.record(new Object(), "setup", () -> { throw new IllegalStateException(); });
+    }
+    catch (IllegalStateException expected) {
+    }
+
+    assertThat(timings.getMillisByStep()).containsKey("Object (setup)");
+  }
+
+  @Test
+  public void testLogAndResetClearsTimings() {
+    SetupStepTimings timings = new SetupStepTimings("TestSetup");
+    timings.record(new Object(), "setup", () -> {});
+    timings.logAndReset();
+
+    assertThat(timings.getMillisByStep()).isEmpty();
+  }
+}
@@ -23,6 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -176,6 +178,37 @@ public class AndroidLogFilterModelTest {
     assertThat(result.isApplicable()).isFalse();
   }
 
+  @Test
+  public void configuredFilterChecksEachTagOnce() {
+    List<String> checkedTags = new ArrayList<>();
+    myFilterModel.updateLogcatFilter(new AndroidLogcatFilter() {
+      @NotNull
+      @Override
+      public String getName() {
+        return "(Unused Name)";
+      }
+
+      @Override
+      public boolean isApplicable(@NotNull String message, @NotNull String tag, @NotNull String pkg, int pid, @NotNull LogLevel logLevel) {
+        return isApplicableTag(tag);
+      }
+
+      @Override
+      public boolean isApplicableTag(@NotNull String tag) {
+        checkedTags.add(tag);
+        return tag.equals("DummyTag");
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(myFilterModel.processLine("2018-01-23 12:34:56.789 1234-5678/? I/DummyTag: Dummy Message").isApplicable()).isTrue();
+      assertThat(myFilterModel.processLine("2018-01-23 12:34:56.789 1234-5678/? I/OtherTag: Dummy Message").isApplicable()).isFalse();
+    }
+
+    // The accepted tag is checked again by isApplicable for every line, the rejected one only once.
+    assertThat(checkedTags).containsExactly("DummyTag", "DummyTag", "OtherTag", "DummyTag", "DummyTag").inOrder();
+  }
+
   private static final class TestFilterModel extends AndroidLogFilterModel {
     @NotNull private LogLevel myMinimumLevel = LogLevel.VERBOSE; // Allow all messages by default
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.Log.LogLevel;
+import com.android.sdklib.AndroidVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryLogcatReceiverTest {
+  private TestFormattedLogcatReceiver myLogcatListener;
+  private BinaryLogcatReceiver myReceiver;
+
+  @Before
+  public void setUp() {
+    IDevice device = AndroidLogcatReceiverTest.createMockDevice();
+    myLogcatListener = new TestFormattedLogcatReceiver();
+    myReceiver = new BinaryLogcatReceiver(device, new AndroidLogcatReceiver(device, myLogcatListener));
+  }
+
+  @Test
+  public void addOutputDecodesEntries() {
+    byte[] bytes = new TestLogcatEntries()
+      .add(LogLevel.WARN, 1493, 1595, 1534635551L, 439_000_000, "EDMNativeHelper", "EDMNativeHelperService is published")
+      .add(LogLevel.VERBOSE, 99, 99, 1516739696L, 789_000_000, "UnknownClient", "Dummy Message")
+      .toByteArray();
+
+    myReceiver.addOutput(bytes, 0, bytes.length);
+
+    assertThat(myLogcatListener.toString()).isEqualTo(
+      "2018-08-18 16:39:11.439 1493-1595/dummy.client.name W/EDMNativeHelper: EDMNativeHelperService is published\n" +
+      "2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Dummy Message\n");
+  }
+
+  @Test
+  public void addOutputHandlesEntriesSplitAcrossChunks() {
+    TestLogcatEntries entries = new TestLogcatEntries();
+    for (int i = 0; i < 100; i++) {
+      entries.add(LogLevel.INFO, 99, 99, 1516739696L, 789_000_000, "Tag", "Message " + i);
+    }
+    byte[] bytes = entries.toByteArray();
+
+    for (int offset = 0; offset < bytes.length; offset += 7) {
+      myReceiver.addOutput(bytes, offset, Math.min(7, bytes.length - offset));
+    }
+
+    String output = myLogcatListener.toString();
+    assertThat(output.split("\n")).hasLength(100);
+    assertThat(output).endsWith("2018-01-23 12:34:56.789 99-99/? I/Tag: Message 99\n");
+  }
+
+  @Test
+  public void addOutputHandlesMultilineMessages() {
+    byte[] bytes = new TestLogcatEntries()
+      .add(LogLevel.VERBOSE, 99, 99, 1516739696L, 789_000_000, "UnknownClient", "\nLine 1\r\nLine 2\n\nLine 3\n\n")
+      .toByteArray();
+
+    myReceiver.addOutput(bytes, 0, bytes.length);
+
+    assertThat(myLogcatListener.toString()).isEqualTo("2018-01-23 12:34:56.789 99-99/? V/UnknownClient: Line 1\n" +
+                                                     "+ Line 2\n" +
+                                                     "+ \n" +
+                                                     "+ Line 3\n");
+  }
+
+  @Test
+  public void binaryFormatIsOnlyUsedOnDevicesWithRawShellOutput() {
+    IDevice device = mock(IDevice.class);
+    when(device.getVersion()).thenReturn(new AndroidVersion(23, null));
+    assertThat(BinaryLogcatReceiver.isSupported(device)).isFalse();
+
+    when(device.getVersion()).thenReturn(new AndroidVersion(24, null));
+    assertThat(BinaryLogcatReceiver.isSupported(device)).isTrue();
+  }
+}
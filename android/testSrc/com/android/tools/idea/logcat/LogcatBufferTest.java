@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.android.ddmlib.Log.LogLevel;
+import com.android.ddmlib.logcat.LogCatHeader;
+import com.android.ddmlib.logcat.LogCatMessage;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class LogcatBufferTest {
+  @Test
+  public void testMessagesAreRestoredInOrder() {
+    LogcatBuffer buffer = new LogcatBuffer(Integer.MAX_VALUE);
+    Instant timestamp = Instant.ofEpochSecond(1_500_000_000L, 123_456_789);
+    buffer.addMessage(new LogCatMessage(new LogCatHeader(LogLevel.WARN, 13, 14, "com.example", "Tag", timestamp), "héllo"));
+    buffer.addMessage(message(LogLevel.DEBUG, 15, "Other", "world"));
+
+    List<LogCatMessage> messages = buffer.getMessages();
+    assertThat(messages).hasSize(2);
+    LogCatHeader header = messages.get(0).getHeader();
+    assertThat(header.getLogLevel()).isEqualTo(LogLevel.WARN);
+    assertThat(header.getPid()).isEqualTo(13);
+    assertThat(header.getTid()).isEqualTo(14);
+    assertThat(header.getAppName()).isEqualTo("com.example");
+    assertThat(header.getTag()).isEqualTo("Tag");
+    assertThat(header.getTimestamp()).isEqualTo(timestamp);
+    assertThat(messages.get(0).getMessage()).isEqualTo("héllo");
+    assertThat(messages.get(1).getMessage()).isEqualTo("world");
+  }
+
+  @Test
+  public void testOldestMessagesAreDroppedWhenFull() {
+    // Every message is charged its length plus a line terminator: 5 messages of 9 chars fit.
+    LogcatBuffer buffer = new LogcatBuffer(50);
+    for (int i = 0; i < 1000; i++) {
+      buffer.addMessage(message(LogLevel.INFO, i % 7, "Tag" + i % 3, String.format("msg %04d", i)));
+    }
+
+    assertThat(texts(buffer.getMessages())).containsExactly("msg 0995", "msg 0996", "msg 0997", "msg 0998", "msg 0999").inOrder();
+    assertThat(buffer.getTagCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void testMessageLargerThanBufferClearsIt() {
+    LogcatBuffer buffer = new LogcatBuffer(10);
+    buffer.addMessage(message(LogLevel.INFO, 1, "Tag", "short"));
+    buffer.addMessage(message(LogLevel.INFO, 1, "Tag", "much too long"));
+
+    assertThat(buffer.getMessages()).isEmpty();
+  }
+
+  @Test
+  public void testBudgetIsCountedInChars() {
+    // "ééé" is 3 chars but 6 bytes: 5 messages of 4 chars fit.
+    LogcatBuffer buffer = new LogcatBuffer(20);
+    for (int i = 0; i < 10; i++) {
+      buffer.addMessage(message(LogLevel.INFO, 1, "Tag", "ééé"));
+    }
+
+    assertThat(buffer.size()).isEqualTo(5);
+  }
+
+  @Test
+  public void testOldestMessagesAreDroppedWhenArenaIsFull() {
+    LogcatBuffer buffer = new LogcatBuffer(Integer.MAX_VALUE, 20);
+    for (int i = 0; i < 10; i++) {
+      buffer.addMessage(message(LogLevel.INFO, 1, "Tag", "éééé" + i));
+    }
+
+    assertThat(texts(buffer.getMessages())).containsExactly("éééé8", "éééé9").inOrder();
+  }
+
+  @Test
+  public void testValuesOfDroppedMessagesAreReleased() {
+    LogcatBuffer buffer = new LogcatBuffer(50);
+    for (int i = 0; i < 1000; i++) {
+      LogCatHeader header = new LogCatHeader(LogLevel.INFO, i, i, "com.example" + i, "Tag" + i, Instant.EPOCH);
+      buffer.addMessage(new LogCatMessage(header, String.format("msg %04d", i)));
+    }
+
+    assertThat(buffer.getTagCount()).isEqualTo(5);
+    assertThat(buffer.getAppCount()).isEqualTo(5);
+    List<LogCatMessage> messages = buffer.getMessages();
+    assertThat(messages.stream().map(message -> message.getHeader().getTag()).collect(Collectors.toList()))
+      .containsExactly("Tag995", "Tag996", "Tag997", "Tag998", "Tag999").inOrder();
+    assertThat(messages.get(0).getHeader().getAppName()).isEqualTo("com.example995");
+  }
+
+  @NotNull
+  private static LogCatMessage message(@NotNull LogLevel level, int pid, @NotNull String tag, @NotNull String text) {
+    return new LogCatMessage(new LogCatHeader(level, pid, pid, "com.example", tag, Instant.EPOCH), text);
+  }
+
+  @NotNull
+  private static List<String> texts(@NotNull List<LogCatMessage> messages) {
+    return messages.stream().map(LogCatMessage::getMessage).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat;
+
+import com.android.ddmlib.Log.LogLevel;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes logcat entries in the binary format produced by 'logcat -B'.
+ */
+public final class TestLogcatEntries {
+  private static final int V4_HEADER_SIZE = 28;
+
+  private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+
+  @NotNull
+  public TestLogcatEntries add(@NotNull LogLevel level,
+                               int pid,
+                               int tid,
+                               long seconds,
+                               int nanos,
+                               @NotNull String tag,
+                               @NotNull String message) {
+    byte[] tagBytes = tag.getBytes(StandardCharsets.UTF_8);
+    byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+    int payloadLength = 1 + tagBytes.length + 1 + messageBytes.length + 1;
+    ByteBuffer entry = ByteBuffer.allocate(V4_HEADER_SIZE + payloadLength).order(ByteOrder.LITTLE_ENDIAN);
+    entry.putShort((short)payloadLength);
+    entry.putShort((short)V4_HEADER_SIZE);
+    entry.putInt(pid);
+    entry.putInt(tid);
+    entry.putInt((int)seconds);
+    entry.putInt(nanos);
+    entry.putInt(0); // Log id: main.
+    entry.putInt(10000); // Uid.
+    entry.put((byte)level.getPriority());
+    entry.put(tagBytes).put((byte)0);
+    entry.put(messageBytes).put((byte)0);
+    myBytes.write(entry.array(), 0, entry.capacity());
+    return this;
+  }
+
+  @NotNull
+  public byte[] toByteArray() {
+    return myBytes.toByteArray();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import com.google.common.hash.HashCode;
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link ApkDigestCache}.
+ */
+public class ApkDigestCacheTest extends TestCase {
+  private File myDir;
+  private Path myCacheFile;
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("apk-digests", null);
+    myCacheFile = new File(myDir, "apk-digests.bin").toPath();
+  }
+
+  public void testUnchangedFileIsNotHashedAgain() throws Exception {
+    File apk = createApk("app.apk", 1000);
+    ApkDigestCache cache = new ApkDigestCache(myCacheFile);
+    HashCode digest = cache.getDigest(apk);
+
+    assertEquals(digest, cache.getDigest(apk));
+    assertEquals(1, cache.getComputedDigestCount());
+  }
+
+  public void testDigestsArePersisted() throws Exception {
+    File apk = createApk("app.apk", 1000);
+    HashCode digest = new ApkDigestCache(myCacheFile).getDigest(apk);
+
+    ApkDigestCache reopened = new ApkDigestCache(myCacheFile);
+    assertEquals(digest, reopened.getDigest(apk));
+    assertEquals(0, reopened.getComputedDigestCount());
+  }
+
+  public void testModifiedFileIsHashedAgain() throws Exception {
+    File apk = createApk("app.apk", 1000);
+    ApkDigestCache cache = new ApkDigestCache(myCacheFile);
+    HashCode digest = cache.getDigest(apk);
+
+    FileUtil.writeToFile(apk, "changed!");
+    assertFalse(digest.equals(cache.getDigest(apk)));
+    assertEquals(2, cache.getComputedDigestCount());
+  }
+
+  public void testLargeFilesAreHashedByContent() throws Exception {
+    int size = ApkDigestCache.CHUNK_SIZE * 2 + 12345;
+    File apk1 = createApk("app1.apk", size);
+    File apk2 = new File(myDir, "app2.apk");
+    FileUtil.copy(apk1, apk2);
+    ApkDigestCache cache = new ApkDigestCache(myCacheFile);
+
+    assertEquals(cache.getDigest(apk1), cache.getDigest(apk2));
+
+    // Change a single byte of the last chunk.
+    byte[] bytes = Files.readAllBytes(apk2.toPath());
+    bytes[size - 1]++;
+    Files.write(apk2.toPath(), bytes);
+    // Make sure the modification is noticed even on file systems with a coarse timestamp resolution.
+    assertTrue(apk2.setLastModified(apk2.lastModified() + 2000));
+    assertFalse(cache.getDigest(apk1).equals(cache.getDigest(apk2)));
+  }
+
+  public void testCacheFromOtherVersionIsIgnored() throws Exception {
+    File apk = createApk("app.apk", 1000);
+    new ApkDigestCache(myCacheFile).getDigest(apk);
+    byte[] bytes = Files.readAllBytes(myCacheFile);
+    bytes[7] = (byte)(ApkDigestCache.VERSION + 1);
+    Files.write(myCacheFile, bytes);
+
+    ApkDigestCache reopened = new ApkDigestCache(myCacheFile);
+    reopened.getDigest(apk);
+    assertEquals(1, reopened.getComputedDigestCount());
+  }
+
+  private File createApk(String name, int size) throws Exception {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    File file = new File(myDir, name);
+    Files.write(file.toPath(), bytes);
+    return file;
+  }
+}
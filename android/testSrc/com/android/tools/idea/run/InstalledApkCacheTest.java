@@ -28,6 +28,10 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("StaticMethodReferencedViaSubclass")
@@ -38,6 +42,7 @@ public class InstalledApkCacheTest extends TestCase {
   private File myFile;
   private String myPkgName;
   private String myDumpSysOutput;
+  private final List<String> myCommands = new ArrayList<>();
 
   @Override
   public void setUp() throws Exception {
@@ -61,10 +66,12 @@ public class InstalledApkCacheTest extends TestCase {
     EasyMock.expectLastCall().anyTimes();
 
     myDumpSysOutput = "Package [com.foo.bar]";
-    myService = new InstalledApkCache() {
+    File digestCacheFile = new File(FileUtil.createTempDirectory("apk-digests", null), "apk-digests.bin");
+    myService = new InstalledApkCache(new ApkDigestCache(digestCacheFile.toPath())) {
       @Override
       protected String executeShellCommand(@NotNull IDevice device, @NotNull String cmd, long timeout, @NotNull TimeUnit timeUnit)
         throws TimeoutException, AdbCommandRejectedException, ShellCommandUnresponsiveException, IOException, InterruptedException {
+        myCommands.add(cmd);
         return myDumpSysOutput;
       }
     };
@@ -148,6 +155,35 @@ public class InstalledApkCacheTest extends TestCase {
     assertNull(getLastUpdateTime(myDevice1, "xyz"));
   }
 
+  public void testInstallStatesOfAllPackagesAreQueriedAtOnce() throws Exception {
+    myDumpSysOutput = "Packages:\n" +
+                      "  Package [com.foo.bar] (423123d0):\n" +
+                      "    lastUpdateTime=2014-09-29 11:58:19\n" +
+                      "    User 0: installed=true\n" +
+                      "  Package [com.foo.bar.test] (423123d1):\n" +
+                      "    lastUpdateTime=2014-09-30 08:00:00\n" +
+                      "\n" +
+                      "Hidden system packages:\n" +
+                      "  Package [com.foo.bar] (423123d2):\n" +
+                      "    lastUpdateTime=2010-01-01 00:00:00\n";
+    File testFile = FileUtil.createTempFile("test", ".apk");
+    FileUtil.writeToFile(testFile, "test apk");
+    myService.setInstalled(myDevice1, myFile, "com.foo.bar");
+    myService.setInstalled(myDevice1, testFile, "com.foo.bar.test");
+    myCommands.clear();
+
+    Map<String, InstalledApkCache.InstallState> states = myService.getInstallStates(myDevice1);
+    assertTrue(myService.isInstalled(states, myDevice1, myFile, "com.foo.bar", 0));
+    assertTrue(myService.isInstalled(states, myDevice1, testFile, "com.foo.bar.test", null));
+    assertFalse(myService.isInstalled(states, myDevice1, testFile, "com.foo.missing", null));
+
+    assertEquals(Collections.singletonList("dumpsys package packages"), myCommands);
+    assertEquals(2, states.size());
+    assertEquals("lastUpdateTime=2014-09-29 11:58:19", states.get("com.foo.bar").lastUpdateTime);
+    assertEquals(Collections.singleton(0), states.get("com.foo.bar").users);
+    assertEquals("lastUpdateTime=2014-09-30 08:00:00", states.get("com.foo.bar.test").lastUpdateTime);
+  }
+
   @Nullable
   private String getLastUpdateTime(IDevice device, String pkgName) {
     InstalledApkCache.InstallState state = myService.getInstallState(device, pkgName);
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.run;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.android.ddmlib.IDevice;
+import com.android.sdklib.AndroidVersion;
+import com.android.tools.idea.run.tasks.DebugConnectorTask;
+import com.android.tools.idea.run.tasks.LaunchResult;
+import com.android.tools.idea.run.tasks.LaunchTask;
+import com.android.tools.idea.run.tasks.LaunchTasksProvider;
+import com.android.tools.idea.run.util.LaunchStatus;
+import com.android.tools.idea.stats.RunStats;
+import com.google.common.collect.ImmutableList;
+import com.intellij.execution.Executor;
+import com.intellij.execution.executors.DefaultRunExecutor;
+import com.intellij.execution.process.ProcessHandler;
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.execution.runners.ExecutionEnvironment;
+import com.intellij.execution.runners.ProgramRunner;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.util.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import org.jetbrains.android.AndroidTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests for {@link LaunchTaskRunner} launching on several devices at the same time.
+ */
+public class LaunchTaskRunnerTest extends AndroidTestCase {
+  private ProcessHandler myProcessHandler;
+  private final Map<IDevice, List<LaunchTask>> myTasks = new HashMap<>();
+  private final List<String> myStartedTasks = Collections.synchronizedList(new ArrayList<>());
+
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myProcessHandler = mock(ProcessHandler.class);
+  }
+
+  public void testConsoleOutputOfEachDeviceIsPrefixedAndInOrder() {
+    IDevice device1 = createDevice("device-1");
+    IDevice device2 = createDevice("device-2");
+    // Neither device finishes its first task before the other one has printed, so their output is interleaved in the console.
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    for (IDevice device : ImmutableList.of(device1, device2)) {
+      myTasks.put(device, ImmutableList.of(
+        new TestLaunchTask("first", (launchStatus, printer) -> {
+          printer.stdout("first line");
+          bothStarted.countDown();
+          await(bothStarted);
+          return LaunchResult.success();
+        }),
+        new TestLaunchTask("second", (launchStatus, printer) -> {
+          printer.stdout("second line\nthird line");
+          return LaunchResult.success();
+        })));
+    }
+
+    createRunner(device1, device2).run(new EmptyProgressIndicator());
+
+    List<String> lines = getLines(ProcessOutputTypes.STDOUT);
+    for (String serial : ImmutableList.of("device-1", "device-2")) {
+      String prefix = "[" + serial + "] ";
+      List<String> deviceLines = lines.stream().filter(line -> line.startsWith(prefix)).collect(Collectors.toList());
+      assertThat(deviceLines).hasSize(4);
+      assertThat(deviceLines.subList(0, 3)).containsExactly(prefix + "first line", prefix + "second line", prefix + "third line").inOrder();
+      assertThat(deviceLines.get(3)).startsWith(prefix + "Launch finished in ");
+    }
+  }
+
+  public void testFirstFailureStopsTheOtherDevices() {
+    IDevice failing = createDevice("failing");
+    IDevice running = createDevice("running");
+    IDevice failingLater = createDevice("failing-later");
+    CountDownLatch othersStarted = new CountDownLatch(2);
+    myTasks.put(failing, ImmutableList.of(
+      new TestLaunchTask("fail", (launchStatus, printer) -> {
+        await(othersStarted);
+        return LaunchResult.error("FIRST_ERROR", "failing first");
+      })));
+    // The other devices are in the middle of a task when the first one fails, like a long install would be.
+    myTasks.put(running, ImmutableList.of(
+      new TestLaunchTask("wait", (launchStatus, printer) -> {
+        othersStarted.countDown();
+        awaitTermination(launchStatus);
+        return LaunchResult.success();
+      }),
+      new TestLaunchTask("next", (launchStatus, printer) -> LaunchResult.success())));
+    myTasks.put(failingLater, ImmutableList.of(
+      new TestLaunchTask("fail later", (launchStatus, printer) -> {
+        othersStarted.countDown();
+        awaitTermination(launchStatus);
+        return LaunchResult.error("SECOND_ERROR", "failing second");
+      })));
+
+    createRunner(failing, running, failingLater).run(new EmptyProgressIndicator());
+
+    // No task starts after the first failure, and only that failure is reported.
+    assertThat(myStartedTasks).containsExactly("fail", "wait", "fail later");
+    assertThat(getLines(ProcessOutputTypes.STDERR)).containsExactly("Error while failing first");
+    List<String> lines = getLines(ProcessOutputTypes.STDOUT);
+    for (String serial : ImmutableList.of("failing", "running", "failing-later")) {
+      String prefix = "[" + serial + "] ";
+      assertThat(lines.stream().filter(line -> line.startsWith(prefix + "Launch stopped in ")).count()).isEqualTo(1);
+    }
+  }
+
+  public void testExceptionInTaskFailsTheLaunch() {
+    IDevice device = createDevice("device");
+    myTasks.put(device, ImmutableList.of(
+      new TestLaunchTask("crash", (launchStatus, printer) -> {
+        throw new IllegalStateException("task crashed");
+      })));
+    RunStats stats = mock(RunStats.class);
+    LaunchTaskRunner runner = createRunner(stats, device);
+
+    try {
+      runner.run(new EmptyProgressIndicator());
+    }
+    catch (AssertionError ignored) {
+      // The exception is logged as an error, which fails the logger in tests.
+    }
+    runner.onSuccess();
+
+    verify(stats).fail();
+    verify(stats, never()).success();
+  }
+
+  @NotNull
+  private static IDevice createDevice(@NotNull String serialNumber) {
+    IDevice device = mock(IDevice.class);
+    when(device.getSerialNumber()).thenReturn(serialNumber);
+    return device;
+  }
+
+  @NotNull
+  private LaunchTaskRunner createRunner(@NotNull IDevice... devices) {
+    return createRunner(mock(RunStats.class), devices);
+  }
+
+  @NotNull
+  private LaunchTaskRunner createRunner(@NotNull RunStats stats, @NotNull IDevice... devices) {
+    LaunchInfo launchInfo = new LaunchInfo(DefaultRunExecutor.getRunExecutorInstance(), mock(ProgramRunner.class),
+                                           mock(ExecutionEnvironment.class), mock(ConsoleProvider.class));
+    LaunchTasksProvider launchTasksProvider = new LaunchTasksProvider() {
+      @NotNull
+      @Override
+      public List<LaunchTask> getTasks(@NotNull IDevice device, @NotNull LaunchStatus launchStatus, @NotNull ConsolePrinter consolePrinter) {
+        return myTasks.get(device);
+      }
+
+      @Nullable
+      @Override
+      public DebugConnectorTask getConnectDebuggerTask(@NotNull LaunchStatus launchStatus, @Nullable AndroidVersion version) {
+        return null;
+      }
+    };
+    return new LaunchTaskRunner(getProject(), "app", "com.example.app", null, launchInfo, myProcessHandler,
+                                DeviceFutures.forDevices(Arrays.asList(devices)), launchTasksProvider, stats,
+                                (text, hyperlinkInfo) -> {});
+  }
+
+  /**
+   * Returns the lines printed to the console with the given output type, in the order they were printed.
+   */
+  @NotNull
+  private List<String> getLines(@NotNull Key outputType) {
+    ArgumentCaptor<String> text = ArgumentCaptor.forClass(String.class);
+    verify(myProcessHandler, atLeastOnce()).notifyTextAvailable(text.capture(), eq(outputType));
+    return text.getAllValues().stream()
+      .flatMap(value -> Arrays.stream(value.split("\n")))
+      .filter(line -> !line.isEmpty())
+      .collect(Collectors.toList());
+  }
+
+  private static void await(@NotNull CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void awaitTermination(@NotNull LaunchStatus launchStatus) {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+    while (!launchStatus.isLaunchTerminated()) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      try {
+        Thread.sleep(10);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  private final class TestLaunchTask implements LaunchTask {
+    @NotNull private final String myId;
+    @NotNull private final BiFunction<LaunchStatus, ConsolePrinter, LaunchResult> myRun;
+
+    private TestLaunchTask(@NotNull String id, @NotNull BiFunction<LaunchStatus, ConsolePrinter, LaunchResult> run) {
+      myId = id;
+      myRun = run;
+    }
+
+    @NotNull
+    @Override
+    public String getDescription() {
+      return "Running " + myId;
+    }
+
+    @Override
+    public int getDuration() {
+      return 1;
+    }
+
+    @Override
+    public LaunchResult run(@NotNull Executor executor,
+                            @NotNull IDevice device,
+                            @NotNull LaunchStatus launchStatus,
+                            @NotNull ConsolePrinter printer) {
+      myStartedTasks.add(myId);
+      return myRun.apply(launchStatus, printer);
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return myId;
+    }
+  }
+}
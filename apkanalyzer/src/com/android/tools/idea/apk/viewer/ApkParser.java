@@ -39,21 +39,24 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 public class ApkParser {
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
 
   private final ArchiveContext myArchiveContext;
-  private final ApkSizeCalculator myApkSizeCalculator;
+  private final IndexedApkSizeCalculator myApkSizeCalculator;
 
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructure;
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructureWithDownloadSizes;
+  @Nullable private ListenableFuture<Map<String, Long>> myDownloadFileSizes;
   @Nullable private ListenableFuture<Long> myRawFullApkSize;
   @Nullable private ListenableFuture<Long> myCompressedFullApkSize;
 
   public ApkParser(@NotNull ArchiveContext archiveContext, @NotNull ApkSizeCalculator sizeCalculator) {
     myArchiveContext = archiveContext;
-    myApkSizeCalculator = sizeCalculator;
+    // Share a single index of the archive between the tree and all the size computations.
+    myApkSizeCalculator = IndexedApkSizeCalculator.wrap(sizeCalculator);
   }
 
   @NotNull
@@ -61,9 +64,18 @@ public class ApkParser {
     return myArchiveContext.getArchive();
   }
 
+  /**
+   * Cancels the pending computations and releases the index of the archive. The parser must not be used afterwards.
+   */
+  public synchronized void dispose() {
+    cancelAll();
+    myApkSizeCalculator.close();
+  }
+
   public synchronized void cancelAll(){
     ListenableFuture[] futures = {
       myTreeStructureWithDownloadSizes,
+      myDownloadFileSizes,
       myTreeStructure,
       myRawFullApkSize,
       myCompressedFullApkSize
@@ -87,7 +99,12 @@ public class ApkParser {
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> updateTreeWithDownloadSizes() {
     if (myTreeStructureWithDownloadSizes == null) {
-      myTreeStructureWithDownloadSizes = Futures.transform(constructTreeStructure(), input -> {
+      // Download sizes do not depend on the tree, so compute them while the tree is being built. The calculator keeps the result, and
+      // updating the tree afterwards only looks it up.
+      myDownloadFileSizes = ourExecutorService.submit(() -> myApkSizeCalculator.getDownloadSizePerFile(getArchive().getPath()));
+      ListenableFuture<ArchiveNode> treeStructure = constructTreeStructure();
+      myTreeStructureWithDownloadSizes = Futures.whenAllSucceed(treeStructure, myDownloadFileSizes).call(() -> {
+        ArchiveNode input = Futures.getDone(treeStructure);
         ArchiveTreeStructure.updateDownloadFileSizes(input, myApkSizeCalculator);
         return input;
       }, PooledThreadExecutor.INSTANCE);
@@ -267,7 +267,7 @@ public class ApkViewPanel implements TreeSelectionListener {
 
   public void clearArchive() {
     myArchiveDisposed = true;
-    myApkParser.cancelAll();
+    myApkParser.dispose();
     setRootNode(null);
     Logger.getInstance(ApkViewPanel.class).info("Cleared Archive on ApkViewPanel: " + this);
   }
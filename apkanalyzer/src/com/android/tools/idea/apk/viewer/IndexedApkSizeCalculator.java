@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import com.android.tools.apk.analyzer.ApkSizeCalculator;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link ApkSizeCalculator} that answers per-file queries from a {@link ZipCentralDirectoryIndex} of the archive instead of walking it
+ * again for every query.
+ * <p>
+ * The index and the per-file download sizes are computed once per archive and shared by every view using this calculator. Download sizes
+ * are computed in parallel, in chunks of entries of roughly equal size. Queries the index cannot answer (full download size, archives not
+ * on the local file system, ZIP64 archives) are forwarded to the wrapped calculator.
+ * <p>
+ * The indexed archives are kept open until the calculator is {@link #close() closed}; afterwards every query is forwarded.
+ */
+public class IndexedApkSizeCalculator implements ApkSizeCalculator, Closeable {
+  private static final long CHUNK_SIZE = 4 * 1024 * 1024;
+  private static final ExecutorService ourExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("APK Size Calculator", Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+  @NotNull private final ApkSizeCalculator myDelegate;
+  @NotNull private final Map<Path, ZipCentralDirectoryIndex> myIndices = new HashMap<>();
+  @NotNull private final Map<Path, Map<String, Long>> myDownloadSizes = new HashMap<>();
+  private boolean myClosed;
+
+  @VisibleForTesting
+  IndexedApkSizeCalculator(@NotNull ApkSizeCalculator delegate) {
+    myDelegate = delegate;
+  }
+
+  @NotNull
+  public static IndexedApkSizeCalculator wrap(@NotNull ApkSizeCalculator calculator) {
+    return calculator instanceof IndexedApkSizeCalculator ? (IndexedApkSizeCalculator)calculator : new IndexedApkSizeCalculator(calculator);
+  }
+
+  /**
+   * Returns the central directory index of the given archive, or {@code null} if it cannot be indexed.
+   */
+  @Nullable
+  public synchronized ZipCentralDirectoryIndex getIndex(@NotNull Path apk) {
+    if (myClosed) {
+      return null;
+    }
+    if (myIndices.containsKey(apk)) {
+      return myIndices.get(apk);
+    }
+    ZipCentralDirectoryIndex index = null;
+    if (apk.getFileSystem() == FileSystems.getDefault()) {
+      try {
+        index = ZipCentralDirectoryIndex.open(apk);
+      }
+      catch (IOException e) {
+        getLog().info("Unable to index " + apk + ", falling back to " + myDelegate.getClass().getSimpleName(), e);
+      }
+    }
+    myIndices.put(apk, index);
+    return index;
+  }
+
+  @Override
+  public long getFullApkDownloadSize(@NotNull Path apk) {
+    return myDelegate.getFullApkDownloadSize(apk);
+  }
+
+  @Override
+  public long getFullApkRawSize(@NotNull Path apk) {
+    ZipCentralDirectoryIndex index = getIndex(apk);
+    return index != null ? index.getFileSize() : myDelegate.getFullApkRawSize(apk);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, Long> getDownloadSizePerFile(@NotNull Path apk) {
+    synchronized (this) {
+      Map<String, Long> sizes = myDownloadSizes.get(apk);
+      if (sizes != null) {
+        return sizes;
+      }
+    }
+    ZipCentralDirectoryIndex index = getIndex(apk);
+    Map<String, Long> sizes = null;
+    if (index != null) {
+      try {
+        sizes = computeDownloadSizes(index);
+      }
+      catch (IOException e) {
+        synchronized (this) {
+          if (myClosed) {
+            // The viewer went away while the sizes were computed, don't recompute them with the delegate.
+            return Collections.emptyMap();
+          }
+        }
+        getLog().warn("Unable to compute download sizes of " + apk, e);
+      }
+    }
+    if (sizes == null) {
+      sizes = myDelegate.getDownloadSizePerFile(apk);
+    }
+    synchronized (this) {
+      if (!myClosed) {
+        myDownloadSizes.put(apk, sizes);
+      }
+    }
+    return sizes;
+  }
+
+  @NotNull
+  @Override
+  public Map<String, Long> getRawSizePerFile(@NotNull Path apk) {
+    ZipCentralDirectoryIndex index = getIndex(apk);
+    if (index == null) {
+      return myDelegate.getRawSizePerFile(apk);
+    }
+    Map<String, Long> sizes = new HashMap<>(index.getEntryCount() * 2);
+    for (int i = 0; i < index.getEntryCount(); i++) {
+      if (!index.isDirectory(i)) {
+        sizes.put(getKey(index, i), index.getCompressedSize(i));
+      }
+    }
+    return Collections.unmodifiableMap(sizes);
+  }
+
+  /**
+   * Closes the indexed archives and drops the cached sizes.
+   */
+  @Override
+  public synchronized void close() {
+    myClosed = true;
+    for (ZipCentralDirectoryIndex index : myIndices.values()) {
+      if (index != null) {
+        try {
+          index.close();
+        }
+        catch (IOException e) {
+          getLog().warn("Unable to close " + index.getPath(), e);
+        }
+      }
+    }
+    myIndices.clear();
+    myDownloadSizes.clear();
+  }
+
+  @NotNull
+  private static Map<String, Long> computeDownloadSizes(@NotNull ZipCentralDirectoryIndex index) throws IOException {
+    List<Future<long[]>> futures = new ArrayList<>();
+    List<int[]> chunks = splitIntoChunks(index);
+    for (int[] chunk : chunks) {
+      futures.add(ourExecutor.submit(() -> {
+        long[] sizes = new long[chunk.length];
+        for (int i = 0; i < chunk.length; i++) {
+          sizes[i] = index.getMaxCompressedSize(chunk[i]);
+        }
+        return sizes;
+      }));
+    }
+
+    Map<String, Long> sizes = new HashMap<>(index.getEntryCount() * 2);
+    try {
+      for (int i = 0; i < chunks.size(); i++) {
+        int[] chunk = chunks.get(i);
+        long[] chunkSizes = futures.get(i).get();
+        for (int j = 0; j < chunk.length; j++) {
+          sizes.put(getKey(index, chunk[j]), chunkSizes[j]);
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while computing download sizes", e);
+    }
+    catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+    }
+    return Collections.unmodifiableMap(sizes);
+  }
+
+  /**
+   * Groups the file entries of the archive into chunks of at most {@link #CHUNK_SIZE} uncompressed bytes, so that a few large entries
+   * (e.g. dex files, native libraries) do not end up in the same task.
+   */
+  @VisibleForTesting
+  @NotNull
+  static List<int[]> splitIntoChunks(@NotNull ZipCentralDirectoryIndex index) {
+    List<int[]> chunks = new ArrayList<>();
+    int[] current = new int[index.getEntryCount()];
+    int currentCount = 0;
+    long currentSize = 0;
+    for (int i = 0; i < index.getEntryCount(); i++) {
+      if (index.isDirectory(i)) {
+        continue;
+      }
+      long size = index.getUncompressedSize(i);
+      if (currentCount > 0 && currentSize + size > CHUNK_SIZE) {
+        chunks.add(Arrays.copyOf(current, currentCount));
+        currentCount = 0;
+        currentSize = 0;
+      }
+      current[currentCount++] = i;
+      currentSize += size;
+    }
+    if (currentCount > 0) {
+      chunks.add(Arrays.copyOf(current, currentCount));
+    }
+    return chunks;
+  }
+
+  @NotNull
+  private static String getKey(@NotNull ZipCentralDirectoryIndex index, int entry) {
+    // Sizes are looked up by the path of the entry in the archive file system, which starts with "/".
+    return "/" + index.getName(entry);
+  }
+
+  @NotNull
+  private static Logger getLog() {
+    return Logger.getInstance(IndexedApkSizeCalculator.class);
+  }
+}
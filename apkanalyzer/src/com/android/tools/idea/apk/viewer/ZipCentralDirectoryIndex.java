@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Index of the entries of a zip archive (APK, app bundle) built from a single pass over its central directory.
+ * <p>
+ * Only the end of the archive and its central directory are read to build the index. The archive stays open so that the data of individual
+ * entries can later be read without re-opening it, until the index is {@link #close() closed}. ZIP64 archives are not supported;
+ * {@link #open(Path)} fails with an {@link IOException} for them and callers are expected to fall back to a regular zip reader.
+ */
+public final class ZipCentralDirectoryIndex implements Closeable {
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int EOCD_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public static final int METHOD_STORED = 0;
+  public static final int METHOD_DEFLATED = 8;
+
+  @NotNull private final Path myPath;
+  @NotNull private final FileChannel myChannel;
+  private final long myFileSize;
+  @NotNull private final String[] myNames;
+  @NotNull private final int[] myMethods;
+  @NotNull private final long[] myCrcs;
+  @NotNull private final long[] myCompressedSizes;
+  @NotNull private final long[] myUncompressedSizes;
+  @NotNull private final long[] myLocalHeaderOffsets;
+
+  private ZipCentralDirectoryIndex(@NotNull Path path, @NotNull FileChannel channel, long fileSize, int entryCount) {
+    myPath = path;
+    myChannel = channel;
+    myFileSize = fileSize;
+    myNames = new String[entryCount];
+    myMethods = new int[entryCount];
+    myCrcs = new long[entryCount];
+    myCompressedSizes = new long[entryCount];
+    myUncompressedSizes = new long[entryCount];
+    myLocalHeaderOffsets = new long[entryCount];
+  }
+
+  @NotNull
+  public static ZipCentralDirectoryIndex open(@NotNull Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return readCentralDirectory(path, channel);
+    }
+    catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @NotNull
+  private static ZipCentralDirectoryIndex readCentralDirectory(@NotNull Path path, @NotNull FileChannel channel) throws IOException {
+    long fileSize = channel.size();
+    long tailStart = Math.max(0, fileSize - EOCD_SIZE - MAX_COMMENT_SIZE);
+    ByteBuffer tail = read(channel, tailStart, (int)(fileSize - tailStart));
+    int eocd = findEndOfCentralDirectory(tail);
+    if (eocd < 0) {
+      throw new IOException("Not a zip archive: " + path);
+    }
+    int entryCount = Short.toUnsignedInt(tail.getShort(eocd + 10));
+    long directorySize = Integer.toUnsignedLong(tail.getInt(eocd + 12));
+    long directoryOffset = Integer.toUnsignedLong(tail.getInt(eocd + 16));
+    if (entryCount == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+      throw new IOException("ZIP64 archives are not supported: " + path);
+    }
+    if (directoryOffset + directorySize > tailStart + eocd) {
+      throw new IOException("Corrupt central directory in " + path);
+    }
+
+    ByteBuffer directory = read(channel, directoryOffset, (int)directorySize);
+    ZipCentralDirectoryIndex index = new ZipCentralDirectoryIndex(path, channel, fileSize, entryCount);
+    int offset = 0;
+    for (int i = 0; i < entryCount; i++) {
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > directory.limit() || directory.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new IOException("Corrupt central directory in " + path + " at entry " + i);
+      }
+      int nameLength = Short.toUnsignedInt(directory.getShort(offset + 28));
+      int extraLength = Short.toUnsignedInt(directory.getShort(offset + 30));
+      int commentLength = Short.toUnsignedInt(directory.getShort(offset + 32));
+      index.myMethods[i] = Short.toUnsignedInt(directory.getShort(offset + 10));
+      index.myCrcs[i] = Integer.toUnsignedLong(directory.getInt(offset + 16));
+      index.myCompressedSizes[i] = Integer.toUnsignedLong(directory.getInt(offset + 20));
+      index.myUncompressedSizes[i] = Integer.toUnsignedLong(directory.getInt(offset + 24));
+      index.myLocalHeaderOffsets[i] = Integer.toUnsignedLong(directory.getInt(offset + 42));
+
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength > directory.limit()) {
+        throw new IOException("Corrupt central directory in " + path + " at entry " + i);
+      }
+      byte[] name = new byte[nameLength];
+      ByteBuffer nameBuffer = directory.duplicate();
+      nameBuffer.position(offset + CENTRAL_DIRECTORY_HEADER_SIZE);
+      nameBuffer.get(name);
+      index.myNames[i] = new String(name, StandardCharsets.UTF_8);
+
+      offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return index;
+  }
+
+  private static int findEndOfCentralDirectory(@NotNull ByteBuffer buffer) {
+    int last = buffer.limit() - EOCD_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int offset = last; offset >= first; offset--) {
+      if (buffer.getInt(offset) == EOCD_SIGNATURE) {
+        return offset;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads {@code length} bytes of the file starting at {@code position} into a little-endian buffer.
+   */
+  @NotNull
+  private static ByteBuffer read(@NotNull FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, buffer, position);
+    buffer.flip();
+    return buffer;
+  }
+
+  private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int count = channel.read(buffer, position);
+      if (count < 0) {
+        throw new EOFException();
+      }
+      position += count;
+    }
+  }
+
+  @NotNull
+  public Path getPath() {
+    return myPath;
+  }
+
+  public long getFileSize() {
+    return myFileSize;
+  }
+
+  public int getEntryCount() {
+    return myNames.length;
+  }
+
+  /**
+   * Returns the name of the entry as stored in the archive, i.e. without a leading "/".
+   */
+  @NotNull
+  public String getName(int entry) {
+    return myNames[entry];
+  }
+
+  public boolean isDirectory(int entry) {
+    return myNames[entry].endsWith("/");
+  }
+
+  public int getMethod(int entry) {
+    return myMethods[entry];
+  }
+
+  public long getCrc(int entry) {
+    return myCrcs[entry];
+  }
+
+  public long getCompressedSize(int entry) {
+    return myCompressedSizes[entry];
+  }
+
+  public long getUncompressedSize(int entry) {
+    return myUncompressedSizes[entry];
+  }
+
+  /**
+   * Returns the position in the archive of the data of the entry, which is still compressed when the entry is deflated.
+   */
+  private long getDataOffset(int entry) throws IOException {
+    long header = myLocalHeaderOffsets[entry];
+    ByteBuffer localHeader = read(myChannel, header, (int)Math.min(LOCAL_HEADER_SIZE, Math.max(0, myFileSize - header)));
+    if (localHeader.limit() < LOCAL_HEADER_SIZE || localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Corrupt local header for " + myNames[entry] + " in " + myPath);
+    }
+    int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+    int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+    long start = header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    if (start + myCompressedSizes[entry] > myFileSize) {
+      throw new IOException("Truncated data for " + myNames[entry] + " in " + myPath);
+    }
+    return start;
+  }
+
+  /**
+   * Estimates the download size of the entry by compressing its uncompressed content at the best compression level, the same way
+   * the whole archive would be compressed for download.
+   */
+  public long getMaxCompressedSize(int entry) throws IOException {
+    int method = myMethods[entry];
+    if (method != METHOD_STORED && method != METHOD_DEFLATED) {
+      return myCompressedSizes[entry];
+    }
+
+    long position = getDataOffset(entry);
+    long remaining = myCompressedSizes[entry];
+    ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] input = data.array();
+    byte[] inflated = new byte[BUFFER_SIZE];
+    byte[] output = new byte[BUFFER_SIZE];
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    Inflater inflater = method == METHOD_DEFLATED ? new Inflater(true) : null;
+    try {
+      long compressedSize = 0;
+      while (remaining > 0) {
+        int count = (int)Math.min(input.length, remaining);
+        data.clear().limit(count);
+        readFully(myChannel, data, position);
+        position += count;
+        remaining -= count;
+        if (inflater == null) {
+          deflater.setInput(input, 0, count);
+          compressedSize += deflate(deflater, output);
+          continue;
+        }
+        inflater.setInput(input, 0, count);
+        while (!inflater.needsInput() && !inflater.finished()) {
+          int inflatedCount = inflater.inflate(inflated);
+          if (inflatedCount == 0 && inflater.needsDictionary()) {
+            throw new DataFormatException("Preset dictionaries are not supported");
+          }
+          deflater.setInput(inflated, 0, inflatedCount);
+          compressedSize += deflate(deflater, output);
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        compressedSize += deflater.deflate(output);
+      }
+      return compressedSize;
+    }
+    catch (DataFormatException e) {
+      throw new IOException("Failed to inflate " + myNames[entry] + " in " + myPath, e);
+    }
+    finally {
+      deflater.end();
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  /**
+   * Writes the uncompressed content of the entry to {@code out}, e.g. to open an archive nested in this one.
+   */
+  public void extract(int entry, @NotNull OutputStream out) throws IOException {
+    int method = myMethods[entry];
+    if (method != METHOD_STORED && method != METHOD_DEFLATED) {
+      throw new IOException("Unsupported compression method " + method + " for " + myNames[entry] + " in " + myPath);
+    }
+
+    long position = getDataOffset(entry);
+    long remaining = myCompressedSizes[entry];
+    ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+    byte[] input = data.array();
+    byte[] inflated = new byte[BUFFER_SIZE];
+    Inflater inflater = method == METHOD_DEFLATED ? new Inflater(true) : null;
+    try {
+      while (remaining > 0) {
+        int count = (int)Math.min(input.length, remaining);
+        data.clear().limit(count);
+        readFully(myChannel, data, position);
+        position += count;
+        remaining -= count;
+        if (inflater == null) {
+          out.write(input, 0, count);
+          continue;
+        }
+        inflater.setInput(input, 0, count);
+        while (!inflater.needsInput() && !inflater.finished()) {
+          int inflatedCount = inflater.inflate(inflated);
+          if (inflatedCount == 0 && inflater.needsDictionary()) {
+            throw new DataFormatException("Preset dictionaries are not supported");
+          }
+          out.write(inflated, 0, inflatedCount);
+        }
+      }
+    }
+    catch (DataFormatException e) {
+      throw new IOException("Failed to inflate " + myNames[entry] + " in " + myPath, e);
+    }
+    finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    myChannel.close();
+  }
+
+  private static long deflate(@NotNull Deflater deflater, @NotNull byte[] output) {
+    long count = 0;
+    while (!deflater.needsInput()) {
+      count += deflater.deflate(output);
+    }
+    return count;
+  }
+}
@@ -24,20 +24,24 @@ import com.android.tools.apk.analyzer.internal.ApkDiffParser;
 import com.android.tools.apk.analyzer.internal.ApkEntry;
 import com.android.tools.apk.analyzer.internal.ApkFileByFileDiffParser;
 import com.android.tools.idea.apk.viewer.ApkViewPanel.FutureCallBackAdapter;
+import com.android.tools.idea.apk.viewer.ZipCentralDirectoryIndex;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.LoadingNode;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.Function;
 import com.intellij.util.concurrency.EdtExecutorService;
 import com.intellij.util.containers.Convertor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
 
 import javax.swing.*;
@@ -46,12 +50,15 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import static com.android.tools.idea.apk.viewer.ApkViewPanel.getHumanizedSize;
 
 public class ApkDiffPanel {
 
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
+  private ListenableFuture<DefaultMutableTreeNode> myTreeStructureFuture;
   private ListenableFuture<DefaultMutableTreeNode> myFbfTreeStructureFuture;
 
   private JPanel myContainer;
@@ -106,12 +113,24 @@ public class ApkDiffPanel {
 
   private void constructDiffTree(){
     // construct the main tree
-    ListenableFuture<DefaultMutableTreeNode> treeStructureFuture = ourExecutorService.submit(() -> {
-      try (ArchiveContext archiveContext1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
-           ArchiveContext archiveContext2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
-        return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
-      }
-    });
+    if (myTreeStructureFuture == null) {
+      myTreeStructureFuture = ourExecutorService.submit(() -> {
+        Path oldPath = VfsUtilCore.virtualToIoFile(myOldApk).toPath();
+        Path newPath = VfsUtilCore.virtualToIoFile(myNewApk).toPath();
+        // The tree only keeps names and sizes, so the archives are closed as soon as it is built.
+        try (ZipCentralDirectoryIndex oldIndex = ZipCentralDirectoryIndex.open(oldPath);
+             ZipCentralDirectoryIndex newIndex = ZipCentralDirectoryIndex.open(newPath)) {
+          return ArchiveDiffTree.createTreeNode(oldIndex, newIndex);
+        }
+        catch (IOException e) {
+          Logger.getInstance(ApkDiffPanel.class).info("Unable to compare central directories, comparing full archives instead", e);
+        }
+        try (ArchiveContext archiveContext1 = Archives.open(oldPath);
+             ArchiveContext archiveContext2 = Archives.open(newPath)) {
+          return ApkDiffParser.createTreeNode(archiveContext1, archiveContext2);
+        }
+      });
+    }
     FutureCallBackAdapter<DefaultMutableTreeNode> setRootNode = new FutureCallBackAdapter<DefaultMutableTreeNode>() {
       @Override
       public void onSuccess(DefaultMutableTreeNode result) {
@@ -119,7 +138,7 @@ public class ApkDiffPanel {
         myCalculateFileByFileCheckBox.setEnabled(true);
       }
     };
-    Futures.addCallback(treeStructureFuture, setRootNode, EdtExecutorService.getInstance());
+    Futures.addCallback(myTreeStructureFuture, setRootNode, EdtExecutorService.getInstance());
   }
 
   private void createUIComponents() {
@@ -132,6 +151,11 @@ public class ApkDiffPanel {
     Convertor<TreePath, String> convertor = new Convertor<TreePath, String>() {
       @Override
       public String convert(TreePath path) {
+        ArchiveDiffEntry diffEntry = ArchiveDiffEntry.fromNode(path.getLastPathComponent());
+        if (diffEntry != null) {
+          return diffEntry.getPath();
+        }
+
         ApkEntry e = ApkEntry.fromNode(path.getLastPathComponent());
         if (e == null) {
           return null;
@@ -153,17 +177,17 @@ public class ApkDiffPanel {
                    .setName("Old Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getOldSize, ArchiveDiffEntry::getOldSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("New Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize)))
+                   .setRenderer(new SizeRenderer(ApkDiffEntry::getNewSize, ArchiveDiffEntry::getNewSize)))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("Diff Size")
                    .setPreferredWidth(150)
                    .setHeaderAlignment(SwingConstants.TRAILING)
-                   .setRenderer(new SizeRenderer(ApkEntry::getSize)));
+                   .setRenderer(new SizeRenderer(ApkEntry::getSize, ArchiveDiffEntry::getSize)));
     myColumnTreePane = builder.build();
   }
 
@@ -180,8 +204,7 @@ public class ApkDiffPanel {
   private void setRootNode(@NotNull DefaultMutableTreeNode root) {
     myTreeModel = new DefaultTreeModel(root);
 
-    ApkEntry entry = ApkEntry.fromNode(root);
-    assert entry != null;
+    assert ApkEntry.fromNode(root) != null || ArchiveDiffEntry.fromNode(root) != null;
 
     myTree.setPaintBusy(false);
     myTree.setRootVisible(true);
@@ -192,9 +215,11 @@ public class ApkDiffPanel {
   // Duplicated from ApkViewPanel.SizeRenderer until the diff entries are unified into the ArchiveEntry data class.
   public static class SizeRenderer extends ColoredTreeCellRenderer {
     private Function<ApkEntry, Long> mySizeMapper;
+    private Function<ArchiveDiffEntry, Long> myDiffSizeMapper;
 
-    public SizeRenderer(Function<ApkEntry, Long> sizeMapper) {
+    public SizeRenderer(Function<ApkEntry, Long> sizeMapper, Function<ArchiveDiffEntry, Long> diffSizeMapper) {
       mySizeMapper = sizeMapper;
+      myDiffSizeMapper = diffSizeMapper;
       setTextAlign(SwingConstants.RIGHT);
     }
 
@@ -206,14 +231,21 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      Long size = null;
+      ArchiveDiffEntry diffEntry = ArchiveDiffEntry.fromNode(value);
       ApkEntry entry = ApkEntry.fromNode(value);
-      ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
+      if (diffEntry != null) {
+        size = myDiffSizeMapper.fun(diffEntry);
+      }
+      else if (entry != null && ApkEntry.fromNode(tree.getModel().getRoot()) != null) {
+        size = mySizeMapper.fun(entry);
+      }
 
-      if (entry == null || root == null) {
+      if (size == null) {
         return;
       }
 
-      append(getHumanizedSize(mySizeMapper.fun(entry)));
+      append(getHumanizedSize(size), getAttributes(diffEntry));
     }
   }
 
@@ -229,14 +261,26 @@ public class ApkDiffPanel {
                                       boolean leaf,
                                       int row,
                                       boolean hasFocus) {
+      String name = null;
+      ArchiveDiffEntry diffEntry = ArchiveDiffEntry.fromNode(value);
       ApkEntry entry = ApkEntry.fromNode(value);
-      ApkEntry root = ApkEntry.fromNode(tree.getModel().getRoot());
+      if (diffEntry != null) {
+        name = diffEntry.getName();
+      }
+      else if (entry != null && ApkEntry.fromNode(tree.getModel().getRoot()) != null) {
+        name = entry.getName();
+      }
 
-      if (entry == null || root == null) {
+      if (name == null) {
         return;
       }
 
-      append(entry.getName());
+      append(name, getAttributes(diffEntry));
     }
   }
+
+  @NotNull
+  private static SimpleTextAttributes getAttributes(@Nullable ArchiveDiffEntry diffEntry) {
+    return diffEntry != null && diffEntry.isUnchanged() ? SimpleTextAttributes.GRAYED_ATTRIBUTES : SimpleTextAttributes.REGULAR_ATTRIBUTES;
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Node data of the tree built by {@link ArchiveDiffTree}. Sizes are the uncompressed sizes of the entries in the archives.
+ */
+final class ArchiveDiffEntry {
+  @NotNull private final String myName;
+  @NotNull private final String myPath;
+  private final long myOldSize;
+  private final long myNewSize;
+  private final boolean myUnchanged;
+
+  ArchiveDiffEntry(@NotNull String name, @NotNull String path, long oldSize, long newSize, boolean unchanged) {
+    myName = name;
+    myPath = path;
+    myOldSize = oldSize;
+    myNewSize = newSize;
+    myUnchanged = unchanged;
+  }
+
+  @Nullable
+  static ArchiveDiffEntry fromNode(@Nullable Object node) {
+    if (!(node instanceof DefaultMutableTreeNode)) {
+      return null;
+    }
+    Object userObject = ((DefaultMutableTreeNode)node).getUserObject();
+    return userObject instanceof ArchiveDiffEntry ? (ArchiveDiffEntry)userObject : null;
+  }
+
+  @NotNull
+  String getName() {
+    return myName;
+  }
+
+  @NotNull
+  String getPath() {
+    return myPath;
+  }
+
+  long getOldSize() {
+    return myOldSize;
+  }
+
+  long getNewSize() {
+    return myNewSize;
+  }
+
+  long getSize() {
+    return myNewSize - myOldSize;
+  }
+
+  /**
+   * Whether the entry, and everything below it for a folder, is identical in both archives. The children of unchanged folders are only
+   * created when they are first asked for.
+   */
+  boolean isUnchanged() {
+    return myUnchanged;
+  }
+
+  @Override
+  public String toString() {
+    return myName;
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.idea.apk.viewer.ZipCentralDirectoryIndex;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds the diff tree of two archives from their central directories.
+ * <p>
+ * Every folder gets a fingerprint derived from the CRCs and sizes of all the entries below it. Folders with the same fingerprint in both
+ * archives are added as a single unchanged node whose children are only created when the folder is expanded, and only folders that differ
+ * are descended into, so comparing two builds of a large APK only materializes the parts that actually changed. Sizes are the uncompressed
+ * sizes of the entries. Archives nested in the compared ones, e.g. the APKs of an app bundle, are compared the same way when they differ.
+ */
+final class ArchiveDiffTree {
+  private static final Comparator<DefaultMutableTreeNode> BY_SIZE_DIFFERENCE = Comparator
+    .comparingLong((DefaultMutableTreeNode node) -> -Math.abs(((ArchiveDiffEntry)node.getUserObject()).getSize()))
+    .thenComparing(node -> ((ArchiveDiffEntry)node.getUserObject()).getName());
+
+  private ArchiveDiffTree() {
+  }
+
+  @NotNull
+  static DefaultMutableTreeNode createTreeNode(@NotNull ZipCentralDirectoryIndex oldArchive, @NotNull ZipCentralDirectoryIndex newArchive) {
+    Node oldRoot = buildTree(oldArchive);
+    Node newRoot = buildTree(newArchive);
+    return createTreeNode(newArchive.getPath().getFileName().toString(), "/", oldRoot, oldArchive, newRoot, newArchive);
+  }
+
+  @NotNull
+  private static DefaultMutableTreeNode createTreeNode(@NotNull String name,
+                                                       @NotNull String path,
+                                                       @Nullable Node oldNode,
+                                                       @Nullable ZipCentralDirectoryIndex oldArchive,
+                                                       @Nullable Node newNode,
+                                                       @Nullable ZipCentralDirectoryIndex newArchive) {
+    boolean unchanged = oldNode != null && newNode != null && oldNode.isFolder() == newNode.isFolder() && oldNode.fingerprint == newNode.fingerprint;
+    ArchiveDiffEntry entry = new ArchiveDiffEntry(name, path, oldNode != null ? oldNode.size : 0, newNode != null ? newNode.size : 0, unchanged);
+    if (unchanged) {
+      return newNode.isFolder() ? new UnchangedFolderTreeNode(entry, newNode) : new DefaultMutableTreeNode(entry);
+    }
+
+    DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(entry);
+    if (isNestedArchive(name, oldNode, newNode)) {
+      try (NestedArchive oldNested = NestedArchive.open(oldArchive, oldNode);
+           NestedArchive newNested = NestedArchive.open(newArchive, newNode)) {
+        addChildren(treeNode, path, oldNested != null ? oldNested.root : null, oldNested != null ? oldNested.index : null,
+                    newNested != null ? newNested.root : null, newNested != null ? newNested.index : null);
+      }
+      catch (IOException e) {
+        // Shown as a single changed file.
+        Logger.getInstance(ArchiveDiffTree.class).info("Unable to compare the content of " + path, e);
+        treeNode.removeAllChildren();
+      }
+      return treeNode;
+    }
+    addChildren(treeNode, path, oldNode, oldArchive, newNode, newArchive);
+    return treeNode;
+  }
+
+  private static void addChildren(@NotNull DefaultMutableTreeNode treeNode,
+                                  @NotNull String path,
+                                  @Nullable Node oldNode,
+                                  @Nullable ZipCentralDirectoryIndex oldArchive,
+                                  @Nullable Node newNode,
+                                  @Nullable ZipCentralDirectoryIndex newArchive) {
+    TreeSet<String> childNames = new TreeSet<>();
+    if (oldNode != null && oldNode.isFolder()) {
+      childNames.addAll(oldNode.children.keySet());
+    }
+    if (newNode != null && newNode.isFolder()) {
+      childNames.addAll(newNode.children.keySet());
+    }
+    List<DefaultMutableTreeNode> children = new ArrayList<>(childNames.size());
+    for (String childName : childNames) {
+      children.add(createTreeNode(childName, getChildPath(path, childName), getChild(oldNode, childName), oldArchive,
+                                  getChild(newNode, childName), newArchive));
+    }
+    children.sort(BY_SIZE_DIFFERENCE);
+    children.forEach(treeNode::add);
+  }
+
+  @NotNull
+  private static String getChildPath(@NotNull String path, @NotNull String childName) {
+    return path.endsWith("/") ? path + childName : path + "/" + childName;
+  }
+
+  @Nullable
+  private static Node getChild(@Nullable Node node, @NotNull String name) {
+    return node != null && node.isFolder() ? node.children.get(name) : null;
+  }
+
+  private static boolean isNestedArchive(@NotNull String name, @Nullable Node oldNode, @Nullable Node newNode) {
+    return (name.endsWith(".apk") || name.endsWith(".zip")) &&
+           (oldNode == null || !oldNode.isFolder()) && (newNode == null || !newNode.isFolder());
+  }
+
+  @NotNull
+  private static Node buildTree(@NotNull ZipCentralDirectoryIndex archive) {
+    Node root = new Node(new TreeMap<>(), -1);
+    for (int i = 0; i < archive.getEntryCount(); i++) {
+      if (archive.isDirectory(i)) {
+        continue;
+      }
+      String[] segments = archive.getName(i).split("/");
+      Node folder = root;
+      for (int j = 0; j < segments.length - 1; j++) {
+        if (segments[j].isEmpty()) {
+          continue;
+        }
+        folder = folder.children.computeIfAbsent(segments[j], key -> new Node(new TreeMap<>(), -1));
+        if (!folder.isFolder()) {
+          // A file and a folder with the same name; keep the file, which is what the archive file system shows.
+          break;
+        }
+      }
+      if (folder.isFolder()) {
+        Node file = new Node(null, i);
+        file.size = archive.getUncompressedSize(i);
+        file.fingerprint = mix(archive.getCrc(i), archive.getUncompressedSize(i));
+        folder.children.put(segments[segments.length - 1], file);
+      }
+    }
+    root.computeFolderSummary();
+    return root;
+  }
+
+  private static long mix(long hash, long value) {
+    long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 31);
+  }
+
+  private static final class Node {
+    /** Children by name for folders, {@code null} for files. Sorted, so that fingerprints do not depend on the order of entries. */
+    @Nullable final TreeMap<String, Node> children;
+    /** Index of the entry in the archive for files, -1 for folders. */
+    final int entry;
+    long size;
+    long fingerprint;
+
+    Node(@Nullable TreeMap<String, Node> children, int entry) {
+      this.children = children;
+      this.entry = entry;
+    }
+
+    boolean isFolder() {
+      return children != null;
+    }
+
+    void computeFolderSummary() {
+      if (children == null) {
+        return;
+      }
+      long hash = 17;
+      for (Map.Entry<String, Node> child : children.entrySet()) {
+        child.getValue().computeFolderSummary();
+        size += child.getValue().size;
+        hash = mix(mix(hash, child.getKey().hashCode()), child.getValue().fingerprint);
+      }
+      fingerprint = hash;
+    }
+  }
+
+  /**
+   * An archive stored in one of the compared archives, extracted to a temporary file for as long as it is being compared.
+   */
+  private static final class NestedArchive implements Closeable {
+    @NotNull final Path file;
+    @NotNull final ZipCentralDirectoryIndex index;
+    @NotNull final Node root;
+
+    private NestedArchive(@NotNull Path file, @NotNull ZipCentralDirectoryIndex index) {
+      this.file = file;
+      this.index = index;
+      root = buildTree(index);
+    }
+
+    @Nullable
+    static NestedArchive open(@Nullable ZipCentralDirectoryIndex archive, @Nullable Node node) throws IOException {
+      if (archive == null || node == null) {
+        return null;
+      }
+      Path file = Files.createTempFile("nested", ".zip");
+      try {
+        try (OutputStream out = Files.newOutputStream(file)) {
+          archive.extract(node.entry, out);
+        }
+        return new NestedArchive(file, ZipCentralDirectoryIndex.open(file));
+      }
+      catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(file);
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        index.close();
+      }
+      finally {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * Tree node of a folder that is identical in both archives. Its children, all unchanged as well, are only created when they are first
+   * asked for, e.g. when the folder is expanded.
+   */
+  private static final class UnchangedFolderTreeNode extends DefaultMutableTreeNode {
+    @Nullable private Node myFolder;
+
+    UnchangedFolderTreeNode(@NotNull ArchiveDiffEntry entry, @NotNull Node folder) {
+      super(entry);
+      myFolder = folder;
+    }
+
+    private void createChildren() {
+      Node folder = myFolder;
+      if (folder == null) {
+        return;
+      }
+      // Cleared first, since adding children calls back into getChildCount().
+      myFolder = null;
+      String path = ((ArchiveDiffEntry)getUserObject()).getPath();
+      for (Map.Entry<String, Node> child : folder.children.entrySet()) {
+        Node node = child.getValue();
+        ArchiveDiffEntry entry = new ArchiveDiffEntry(child.getKey(), getChildPath(path, child.getKey()), node.size, node.size, true);
+        add(node.isFolder() ? new UnchangedFolderTreeNode(entry, node) : new DefaultMutableTreeNode(entry));
+      }
+    }
+
+    @Override
+    public int getChildCount() {
+      createChildren();
+      return super.getChildCount();
+    }
+
+    @Override
+    public TreeNode getChildAt(int index) {
+      createChildren();
+      return super.getChildAt(index);
+    }
+
+    @Override
+    public int getIndex(TreeNode child) {
+      createChildren();
+      return super.getIndex(child);
+    }
+
+    @Override
+    public Enumeration children() {
+      createChildren();
+      return super.children();
+    }
+  }
+}
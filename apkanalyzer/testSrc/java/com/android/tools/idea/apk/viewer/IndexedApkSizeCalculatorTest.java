@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer;
+
+import com.android.tools.apk.analyzer.internal.GzipSizeCalculator;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IndexedApkSizeCalculatorTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void indexReadsCentralDirectory() throws Exception {
+    Path apk = writeZip("app.apk", createEntries(), true, Deflater.DEFAULT_COMPRESSION);
+
+    try (ZipCentralDirectoryIndex index = ZipCentralDirectoryIndex.open(apk)) {
+      assertEquals(4, index.getEntryCount());
+      assertEquals("AndroidManifest.xml", index.getName(0));
+      assertEquals(ZipCentralDirectoryIndex.METHOD_DEFLATED, index.getMethod(0));
+      assertEquals("res/raw/data.bin", index.getName(2));
+      assertEquals(ZipCentralDirectoryIndex.METHOD_STORED, index.getMethod(2));
+      assertEquals(index.getUncompressedSize(2), index.getCompressedSize(2));
+      assertTrue(index.isDirectory(3));
+      assertEquals(Files.size(apk), index.getFileSize());
+    }
+  }
+
+  @Test
+  public void sizesMatchRecompressedArchive() throws Exception {
+    Path apk = writeZip("app.apk", createEntries(), true, Deflater.BEST_SPEED);
+    GzipSizeCalculator gzipCalculator = new GzipSizeCalculator();
+
+    try (IndexedApkSizeCalculator calculator = new IndexedApkSizeCalculator(gzipCalculator)) {
+      assertNotNull(calculator.getIndex(apk));
+      assertEquals(gzipCalculator.getDownloadSizePerFile(apk), calculator.getDownloadSizePerFile(apk));
+      assertEquals(gzipCalculator.getRawSizePerFile(apk), calculator.getRawSizePerFile(apk));
+      assertEquals(gzipCalculator.getFullApkRawSize(apk), calculator.getFullApkRawSize(apk));
+      assertFalse(calculator.getRawSizePerFile(apk).containsKey("/res/raw/"));
+    }
+  }
+
+  @Test
+  public void closedCalculatorForwardsToDelegate() throws Exception {
+    Path apk = writeZip("app.apk", createEntries(), true, Deflater.DEFAULT_COMPRESSION);
+    IndexedApkSizeCalculator calculator = new IndexedApkSizeCalculator(new GzipSizeCalculator());
+    ZipCentralDirectoryIndex index = calculator.getIndex(apk);
+    assertNotNull(index);
+    Map<String, Long> rawSizes = calculator.getRawSizePerFile(apk);
+
+    calculator.close();
+
+    assertNull(calculator.getIndex(apk));
+    assertEquals(rawSizes, calculator.getRawSizePerFile(apk));
+    try {
+      index.getMaxCompressedSize(0);
+      fail("The index should have been closed");
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void chunksKeepEntriesInOrder() throws Exception {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      entries.put("lib/" + i + ".so", new byte[1024 * 1024]);
+    }
+    try (ZipCentralDirectoryIndex index = ZipCentralDirectoryIndex.open(writeZip("app.apk", entries, true, Deflater.BEST_SPEED))) {
+      int next = 0;
+      for (int[] chunk : IndexedApkSizeCalculator.splitIntoChunks(index)) {
+        assertTrue(chunk.length > 0 && chunk.length <= 4);
+        for (int entry : chunk) {
+          assertEquals(next++, entry);
+        }
+      }
+      assertEquals(10, next);
+    }
+  }
+
+  @Test
+  public void indexIsSharedBetweenQueries() throws Exception {
+    Path apk = writeZip("app.apk", createEntries(), true, Deflater.DEFAULT_COMPRESSION);
+    try (IndexedApkSizeCalculator calculator = IndexedApkSizeCalculator.wrap(new GzipSizeCalculator())) {
+      ZipCentralDirectoryIndex index = calculator.getIndex(apk);
+      assertNotNull(index);
+      calculator.getRawSizePerFile(apk);
+      assertTrue(index == calculator.getIndex(apk));
+      assertTrue(calculator == IndexedApkSizeCalculator.wrap(calculator));
+    }
+  }
+
+  @NotNull
+  private static Map<String, byte[]> createEntries() {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("AndroidManifest.xml", repeat("<manifest package=\"com.example\"/>", 100));
+    entries.put("res/layout/main.xml", repeat("<LinearLayout/>", 1000));
+    entries.put("res/raw/data.bin", repeat("0123456789abcdef", 5000));
+    entries.put("res/raw/", new byte[0]);
+    return entries;
+  }
+
+  @NotNull
+  private static byte[] repeat(@NotNull String s, int count) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      builder.append(s).append(i);
+    }
+    return builder.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @NotNull
+  private Path writeZip(@NotNull String name, @NotNull Map<String, byte[]> entries, boolean storeBinaries, int level) throws IOException {
+    Path path = myTemporaryFolder.getRoot().toPath().resolve(name);
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+      out.setLevel(level);
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        if (storeBinaries && entry.getKey().endsWith(".bin")) {
+          CRC32 crc = new CRC32();
+          crc.update(entry.getValue());
+          zipEntry.setMethod(ZipEntry.STORED);
+          zipEntry.setSize(entry.getValue().length);
+          zipEntry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(zipEntry);
+        out.write(entry.getValue());
+        out.closeEntry();
+      }
+    }
+    return path;
+  }
+}
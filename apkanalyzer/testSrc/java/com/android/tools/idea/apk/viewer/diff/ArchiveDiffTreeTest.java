@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.tools.idea.apk.viewer.ZipCentralDirectoryIndex;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveDiffTreeTest {
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void onlyChangedFoldersAreExpanded() throws Exception {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("classes.dex", "dex");
+    entries.put("res/layout/main.xml", "<LinearLayout/>");
+    entries.put("res/layout/item.xml", "<TextView/>");
+    entries.put("res/values/strings.xml", "<resources/>");
+    Path oldApk = writeZip("old.apk", entries);
+    entries.put("res/values/strings.xml", "<resources><string name=\"app\"/></resources>");
+    entries.put("lib/x86/libfoo.so", "foo");
+    Path newApk = writeZip("new.apk", entries);
+
+    DefaultMutableTreeNode root = createTreeNode(oldApk, newApk);
+    assertFalse(getEntry(root).isUnchanged());
+
+    DefaultMutableTreeNode res = findChild(root, "res");
+    assertFalse(getEntry(res).isUnchanged());
+    DefaultMutableTreeNode layout = findChild(res, "layout");
+    assertTrue(getEntry(layout).isUnchanged());
+    assertEquals(0, getEntry(layout).getSize());
+    // Unchanged folders can still be expanded.
+    assertEquals(2, layout.getChildCount());
+    ArchiveDiffEntry main = getEntry(findChild(layout, "main.xml"));
+    assertTrue(main.isUnchanged());
+    assertEquals("/res/layout/main.xml", main.getPath());
+
+    ArchiveDiffEntry strings = getEntry(findChild(findChild(res, "values"), "strings.xml"));
+    assertFalse(strings.isUnchanged());
+    assertEquals("/res/values/strings.xml", strings.getPath());
+
+    ArchiveDiffEntry lib = getEntry(findChild(root, "lib"));
+    assertEquals(0, lib.getOldSize());
+    assertTrue(lib.getNewSize() > 0);
+    assertTrue(getEntry(findChild(root, "classes.dex")).isUnchanged());
+  }
+
+  @Test
+  public void identicalArchivesAreUnchanged() throws Exception {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("classes.dex", "dex");
+    entries.put("res/layout/main.xml", "<LinearLayout/>");
+
+    DefaultMutableTreeNode root = createTreeNode(writeZip("old.apk", entries), writeZip("new.apk", entries));
+    assertTrue(getEntry(root).isUnchanged());
+    assertTrue(getEntry(findChild(findChild(root, "res"), "layout")).isUnchanged());
+  }
+
+  @Test
+  public void sizesAreUncompressedSizes() throws Exception {
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("classes.dex", "dex");
+    Path oldApk = writeZip("old.apk", entries);
+    entries.put("assets/text.txt", String.join("", Collections.nCopies(1000, "a")));
+    Path newApk = writeZip("new.apk", entries);
+
+    DefaultMutableTreeNode root = createTreeNode(oldApk, newApk);
+    assertEquals(1000, getEntry(findChild(findChild(root, "assets"), "text.txt")).getNewSize());
+    assertEquals(1003, getEntry(root).getNewSize());
+    assertEquals(3, getEntry(root).getOldSize());
+  }
+
+  @Test
+  public void nestedArchivesAreCompared() throws Exception {
+    Map<String, String> apkEntries = new LinkedHashMap<>();
+    apkEntries.put("classes.dex", "dex");
+    apkEntries.put("res/layout/main.xml", "<LinearLayout/>");
+    byte[] oldNestedApk = toZip(apkEntries);
+    apkEntries.put("classes.dex", "dex2");
+    byte[] newNestedApk = toZip(apkEntries);
+
+    DefaultMutableTreeNode root = createTreeNode(writeZip("old.apks", Collections.singletonMap("splits/base.apk", oldNestedApk)),
+                                                 writeZip("new.apks", Collections.singletonMap("splits/base.apk", newNestedApk)));
+    DefaultMutableTreeNode nested = findChild(findChild(root, "splits"), "base.apk");
+    assertFalse(getEntry(nested).isUnchanged());
+    assertEquals(newNestedApk.length, getEntry(nested).getNewSize());
+
+    ArchiveDiffEntry dex = getEntry(findChild(nested, "classes.dex"));
+    assertFalse(dex.isUnchanged());
+    assertEquals("/splits/base.apk/classes.dex", dex.getPath());
+    assertEquals(1, dex.getSize());
+    assertTrue(getEntry(findChild(nested, "res")).isUnchanged());
+  }
+
+  @NotNull
+  private static DefaultMutableTreeNode createTreeNode(@NotNull Path oldApk, @NotNull Path newApk) throws IOException {
+    try (ZipCentralDirectoryIndex oldIndex = ZipCentralDirectoryIndex.open(oldApk);
+         ZipCentralDirectoryIndex newIndex = ZipCentralDirectoryIndex.open(newApk)) {
+      return ArchiveDiffTree.createTreeNode(oldIndex, newIndex);
+    }
+  }
+
+  @NotNull
+  private static ArchiveDiffEntry getEntry(@NotNull DefaultMutableTreeNode node) {
+    ArchiveDiffEntry entry = ArchiveDiffEntry.fromNode(node);
+    assertNotNull(entry);
+    return entry;
+  }
+
+  @NotNull
+  private static DefaultMutableTreeNode findChild(@NotNull DefaultMutableTreeNode node, @NotNull String name) {
+    for (int i = 0; i < node.getChildCount(); i++) {
+      DefaultMutableTreeNode child = (DefaultMutableTreeNode)node.getChildAt(i);
+      if (getEntry(child).getName().equals(name)) {
+        return child;
+      }
+    }
+    throw new AssertionError("No child named " + name);
+  }
+
+  @NotNull
+  private Path writeZip(@NotNull String name, @NotNull Map<String, ?> entries) throws IOException {
+    Path path = myTemporaryFolder.getRoot().toPath().resolve(name);
+    Files.write(path, toZip(entries));
+    return path;
+  }
+
+  @NotNull
+  private static byte[] toZip(@NotNull Map<String, ?> entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      for (Map.Entry<String, ?> entry : entries.entrySet()) {
+        out.putNextEntry(new ZipEntry(entry.getKey()));
+        Object content = entry.getValue();
+        out.write(content instanceof byte[] ? (byte[])content : content.toString().getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -20,6 +20,7 @@ import com.android.build.attribution.analyzers.BuildEventsAnalyzersProxy
 import com.android.build.attribution.analyzers.BuildEventsAnalyzersWrapper
 import com.android.build.attribution.data.PluginContainer
 import com.android.build.attribution.data.TaskContainer
+import com.android.build.attribution.history.BuildAttributionHistory
 import com.android.build.attribution.ui.BuildAttributionUiManager
 import com.android.build.attribution.ui.analytics.BuildAttributionUiAnalytics
 import com.android.build.attribution.ui.data.builder.BuildAttributionReportBuilder
@@ -42,7 +43,10 @@ class BuildAttributionManagerImpl(private val project: Project) : BuildAttributi
     analyzersProxy.getBuildAttributionReportAnalyzers()
   )
 
-  override fun onBuildStart() {
+  private var requestedTasks: List<String> = emptyList()
+
+  override fun onBuildStart(requestedTasks: List<String>) {
+    this.requestedTasks = requestedTasks
     analyzersWrapper.onBuildStart()
   }
 
@@ -61,6 +65,8 @@ class BuildAttributionManagerImpl(private val project: Project) : BuildAttributi
 
       analyticsManager.logAnalyzersData(analyzersProxy)
 
+      BuildAttributionHistory.getInstance(project).recordBuild(analyzersProxy, requestedTasks, buildFinishedTimestamp)
+
       BuildAttributionUiManager.getInstance(project).showNewReport(
         BuildAttributionReportBuilder(analyzersProxy, buildFinishedTimestamp).build(), buildSessionId)
     }
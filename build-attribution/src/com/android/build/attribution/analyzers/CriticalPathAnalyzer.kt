@@ -26,7 +26,6 @@ import org.gradle.tooling.events.ProgressEvent
 import org.gradle.tooling.events.task.TaskFinishEvent
 import org.gradle.tooling.events.task.TaskOperationDescriptor
 import org.gradle.tooling.events.task.TaskSuccessResult
-import kotlin.math.max
 
 /**
  * An analyzer for calculating the critical path, that is the path of tasks determining the total build duration.
@@ -35,11 +34,11 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
                            taskContainer: TaskContainer,
                            pluginContainer: PluginContainer)
   : BaseAnalyzer(taskContainer, pluginContainer), BuildEventsAnalyzer {
-  private val tasksSet = HashSet<TaskData>()
   /**
-   * Contains for each task, a list of tasks that this task depends on.
+   * Critical path of the dependency graph, updated as tasks finish. Also keeps the finished tasks for filling the gaps of the critical path
+   * at the end of the build.
    */
-  private val dependenciesMap = HashMap<TaskData, List<TaskData>>()
+  private val dependenciesCriticalPath = IncrementalCriticalPath()
 
   val tasksDeterminingBuildDuration = ArrayList<TaskData>()
   val pluginsDeterminingBuildDuration = ArrayList<PluginBuildData>()
@@ -70,77 +69,14 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
         }
       }
 
-      tasksSet.add(task)
-      dependenciesMap[task] = dependenciesList
+      dependenciesCriticalPath.onTaskFinished(task, dependenciesList)
     }
   }
 
   /**
-   * returns the duration of the critical path that starts from task [startTask]
+   * Returns the critical path of the tasks that finished so far, following task dependencies. Available while the build is running.
    */
-  private fun calculateCriticalPathStartingFromTask(
-    startTask: TaskData,
-    criticalPathFromTaskMap: MutableMap<TaskData, Long>
-  ): Long {
-    // Avoid recomputing the subpath critical path if it's already calculated
-    criticalPathFromTaskMap[startTask]?.let { return it }
-
-    var criticalPathDuration = 0L
-    dependenciesMap[startTask]!!.forEach { dependency ->
-      criticalPathDuration = max(criticalPathDuration, calculateCriticalPathStartingFromTask(dependency, criticalPathFromTaskMap))
-    }
-
-    // Add task execution time
-    criticalPathDuration += startTask.executionTime
-    // Memoize the calculated value in the map
-    criticalPathFromTaskMap[startTask] = criticalPathDuration
-
-    return criticalPathDuration
-  }
-
-  /**
-   * We are using dynamic programming to calculate the critical path for the task graph that is a direct acyclic graph.
-   *
-   * The algorithm should run in linear time of the number of tasks and the number of dependencies in the graph. The memory used is in order
-   * of the number of tasks in the graph.
-   */
-  private fun calculateTasksCriticalPathBasedOnDependencies(): List<TaskData> {
-    val tasksCriticalPath = ArrayList<TaskData>()
-    val criticalPathFromTaskMap = HashMap<TaskData, Long>()
-
-    var startTask: TaskData? = null
-    var currentCriticalPathDuration = -1L
-
-    // Calculate the critical path starting from each task
-    tasksSet.forEach {
-      val criticalPathFromTask = calculateCriticalPathStartingFromTask(it, criticalPathFromTaskMap)
-      if (currentCriticalPathDuration < criticalPathFromTask) {
-        currentCriticalPathDuration = criticalPathFromTask
-        startTask = it
-      }
-    }
-
-    // Construct critical path
-    while (startTask != null) {
-      tasksCriticalPath.add(startTask!!)
-
-      var nextTask: TaskData? = null
-      currentCriticalPathDuration = -1
-
-      dependenciesMap[startTask!!]!!.forEach { dependency ->
-        val criticalPathFromTask = criticalPathFromTaskMap[dependency]!!
-        if (currentCriticalPathDuration < criticalPathFromTask) {
-          currentCriticalPathDuration = criticalPathFromTask
-          nextTask = dependency
-        }
-      }
-
-      startTask = nextTask
-    }
-
-    tasksCriticalPath.reverse()
-    return tasksCriticalPath
-  }
+  fun getCurrentCriticalPath(): List<TaskData> = dependenciesCriticalPath.getCriticalPath()
 
   /**
    * Runs binary search to find the first task that starts at or after the given [timestamp], if there is no such task returns -1.
@@ -289,7 +225,7 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
    * graph.
    */
   private fun calculateTasksDeterminingBuildDuration(tasksCriticalPath: List<TaskData>) {
-    val taskListSortedByStartTime = tasksSet.sortedBy { it.executionStartTime }
+    val taskListSortedByStartTime = dependenciesCriticalPath.finishedTasks.sortedBy { it.executionStartTime }
 
     // Since the critical path tasks are not intersecting, and we iterate through them in start time order, we are able to reuse the
     // iterator across all queries without having to iterate through the whole list each time
@@ -344,8 +280,7 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
 
   override fun onBuildStart() {
     super.onBuildStart()
-    tasksSet.clear()
-    dependenciesMap.clear()
+    dependenciesCriticalPath.clear()
     tasksDeterminingBuildDuration.clear()
     pluginsDeterminingBuildDuration.clear()
     buildStartedTimestamp = Long.MAX_VALUE
@@ -353,14 +288,12 @@ class CriticalPathAnalyzer(override val warningsFilter: BuildAttributionWarnings
   }
 
   override fun onBuildSuccess() {
-    calculateTasksDeterminingBuildDuration(calculateTasksCriticalPathBasedOnDependencies())
+    calculateTasksDeterminingBuildDuration(dependenciesCriticalPath.getCriticalPath())
     calculatePluginsDeterminingBuildDuration()
-    tasksSet.clear()
-    dependenciesMap.clear()
+    dependenciesCriticalPath.clear()
   }
 
   override fun onBuildFailure() {
-    tasksSet.clear()
-    dependenciesMap.clear()
+    dependenciesCriticalPath.clear()
   }
 }
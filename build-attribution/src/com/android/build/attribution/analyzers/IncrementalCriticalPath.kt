@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.analyzers
+
+import com.android.build.attribution.data.TaskData
+import com.intellij.openapi.diagnostic.Logger
+import gnu.trove.TIntArrayList
+import gnu.trove.TLongArrayList
+import gnu.trove.TObjectIntHashMap
+
+/**
+ * Maintains the critical path of the task dependency graph while task finish events arrive.
+ *
+ * Gradle only starts a task once all its dependencies finished, so when a task finishes the length of the longest path ending at each of
+ * its dependencies is already known. For each task only that length and the dependency it was reached from are kept, in primitive arrays,
+ * instead of the dependency edges. This makes [onTaskFinished] run in time linear in the number of the task's dependencies, and the
+ * current critical path can be queried at any time during the build.
+ *
+ * At most [maxTasks] tasks are kept. Tasks finishing after the limit was reached are dropped and treated like unknown dependencies by the
+ * tasks depending on them, so the memory used by a pathological build stays bounded at the cost of a partial critical path.
+ */
+class IncrementalCriticalPath(private val maxTasks: Int = DEFAULT_MAX_TASKS) {
+  private val taskIds = TObjectIntHashMap<TaskData>()
+  private val tasks = ArrayList<TaskData>()
+  /** Total execution time of the longest dependency path ending at each task, including the task itself. */
+  private val pathDurations = TLongArrayList()
+  /** Id of the dependency preceding each task on its longest path, or -1 for none. */
+  private val predecessors = TIntArrayList()
+
+  private var lastTaskId = -1
+
+  val criticalPathDuration: Long
+    get() = if (lastTaskId == -1) 0 else pathDurations[lastTaskId]
+
+  val size: Int
+    get() = tasks.size
+
+  /**
+   * The finished tasks, in the order they finished.
+   */
+  val finishedTasks: List<TaskData>
+    get() = tasks
+
+  /**
+   * Whether tasks were dropped because more than [maxTasks] finished.
+   */
+  var isTruncated = false
+    private set
+
+  /**
+   * Adds a finished task. Dependencies that were not added before (e.g. tasks that did not execute successfully) are ignored.
+   */
+  fun onTaskFinished(task: TaskData, dependencies: List<TaskData>) {
+    var predecessor = -1
+    var longestDependencyPath = -1L
+    dependencies.forEach { dependency ->
+      val dependencyId = taskIds.getIdOrMinusOne(dependency)
+      if (dependencyId != -1 && longestDependencyPath < pathDurations[dependencyId]) {
+        longestDependencyPath = pathDurations[dependencyId]
+        predecessor = dependencyId
+      }
+    }
+    val pathDuration = longestDependencyPath.coerceAtLeast(0) + task.executionTime
+
+    val existingId = taskIds.getIdOrMinusOne(task)
+    if (existingId == -1 && tasks.size >= maxTasks) {
+      if (!isTruncated) {
+        LOG.warn("More than $maxTasks tasks finished, ignoring the remaining tasks when computing the critical path")
+        isTruncated = true
+      }
+      return
+    }
+    val id = if (existingId != -1) existingId else tasks.size
+    if (existingId == -1) {
+      taskIds.put(task, id)
+      tasks.add(task)
+      pathDurations.add(pathDuration)
+      predecessors.add(predecessor)
+    }
+    else {
+      // The same task is not expected to finish twice in a build; keep the latest result.
+      pathDurations[id] = pathDuration
+      predecessors[id] = predecessor
+    }
+
+    if (lastTaskId == -1 || pathDurations[lastTaskId] < pathDuration) {
+      lastTaskId = id
+    }
+  }
+
+  /**
+   * Returns the tasks on the current critical path, in execution order.
+   */
+  fun getCriticalPath(): List<TaskData> {
+    val criticalPath = ArrayList<TaskData>()
+    var id = lastTaskId
+    while (id != -1) {
+      criticalPath.add(tasks[id])
+      id = predecessors[id]
+    }
+    criticalPath.reverse()
+    return criticalPath
+  }
+
+  fun clear() {
+    taskIds.clear()
+    tasks.clear()
+    pathDurations.resetQuick()
+    predecessors.resetQuick()
+    lastTaskId = -1
+    isTruncated = false
+  }
+
+  private fun TObjectIntHashMap<TaskData>.getIdOrMinusOne(task: TaskData): Int = if (containsKey(task)) get(task) else -1
+
+  companion object {
+    private val LOG = Logger.getInstance(IncrementalCriticalPath::class.java)
+
+    const val DEFAULT_MAX_TASKS = 100_000
+  }
+}
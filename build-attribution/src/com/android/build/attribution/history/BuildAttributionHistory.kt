@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+import com.android.build.attribution.analyzers.BuildEventsAnalysisResult
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.components.ServiceManager
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.project.Project
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.Future
+
+/**
+ * Records the timings of each successful build of a project and detects regressions against the previous builds.
+ */
+class BuildAttributionHistory(project: Project) {
+  private val store = BuildAttributionHistoryStore(
+    File(PathManager.getSystemPath(), "build-attribution/history/${project.locationHash}.bin"))
+  private val detector = BuildRegressionDetector()
+  // A single thread keeps the appends in build order.
+  private val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Build Attribution History", 1)
+
+  /**
+   * Stores the timings of a finished build and compares them with the previous builds of the same [requestedTasks].
+   *
+   * The timings are taken from [analysisResult] on the calling thread; the history file is updated on a background thread so that the
+   * build listener isn't blocked on disk I/O. The returned future completes with the detected regressions.
+   */
+  fun recordBuild(analysisResult: BuildEventsAnalysisResult,
+                  requestedTasks: List<String>,
+                  buildFinishedTimestamp: Long): Future<List<BuildRegression>> {
+    val record = BuildTimingsRecord.fromAnalysisResult(analysisResult, requestedTasks, buildFinishedTimestamp)
+    return executor.submit(Callable {
+      val history = store.append(record)
+      val regressions = detector.detect(history, record)
+      if (regressions.isNotEmpty()) {
+        LOG.info(regressions.joinToString(prefix = "Build duration regressions:\n", separator = "\n") {
+          "  ${it.kind} ${it.name}: ${it.baselineMs} ms -> ${it.currentMs} ms"
+        })
+      }
+      regressions
+    })
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(BuildAttributionHistory::class.java)
+
+    fun getInstance(project: Project): BuildAttributionHistory {
+      return ServiceManager.getService(project, BuildAttributionHistory::class.java)
+    }
+  }
+}
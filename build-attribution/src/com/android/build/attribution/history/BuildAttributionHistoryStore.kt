@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+import com.intellij.openapi.diagnostic.Logger
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Keeps the timings of the last [maxRecords] builds in a compact binary file.
+ *
+ * Task paths, plugin names and annotation processor names repeat across builds, so they are written once to a string table at the start
+ * of the file and records refer to them by index. Indices and durations are written as variable-length integers.
+ */
+class BuildAttributionHistoryStore(private val file: File, private val maxRecords: Int = DEFAULT_MAX_RECORDS) {
+
+  /**
+   * Returns the stored records, oldest first. Returns an empty list if the file is missing, unreadable or written by a different version.
+   */
+  @Synchronized
+  fun load(): List<BuildTimingsRecord> {
+    if (!file.isFile) return emptyList()
+    return try {
+      DataInputStream(BufferedInputStream(file.inputStream())).use { readRecords(it) }
+    }
+    catch (e: IOException) {
+      LOG.warn("Failed to read build attribution history from $file", e)
+      emptyList()
+    }
+  }
+
+  /**
+   * Appends [record] to the history, dropping the oldest records beyond [maxRecords], and returns the records stored before it.
+   */
+  @Synchronized
+  fun append(record: BuildTimingsRecord): List<BuildTimingsRecord> {
+    val previousRecords = load()
+    val records = (previousRecords + record).takeLast(maxRecords)
+    try {
+      file.parentFile?.mkdirs()
+      val tempFile = File(file.path + ".tmp")
+      DataOutputStream(BufferedOutputStream(tempFile.outputStream())).use { writeRecords(it, records) }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+    catch (e: IOException) {
+      LOG.warn("Failed to write build attribution history to $file", e)
+    }
+    return previousRecords
+  }
+
+  @Synchronized
+  fun clear() {
+    file.delete()
+  }
+
+  private fun writeRecords(output: DataOutput, records: List<BuildTimingsRecord>) {
+    val strings = LinkedHashMap<String, Int>()
+    fun index(name: String) = strings.getOrPut(name) { strings.size }
+    records.forEach { record ->
+      index(record.requestedTasks)
+      record.taskDurations.keys.forEach { index(it) }
+      record.pluginDurations.keys.forEach { index(it) }
+      record.annotationProcessorDurations.keys.forEach { index(it) }
+    }
+
+    output.writeInt(MAGIC)
+    output.writeInt(VERSION)
+    writeVarLong(output, strings.size.toLong())
+    strings.keys.forEach { output.writeUTF(it) }
+    writeVarLong(output, records.size.toLong())
+    records.forEach { record ->
+      output.writeLong(record.buildFinishedTimestamp)
+      writeVarLong(output, strings.getValue(record.requestedTasks).toLong())
+      writeVarLong(output, record.totalBuildTimeMs)
+      writeDurations(output, record.taskDurations, strings)
+      writeDurations(output, record.pluginDurations, strings)
+      writeDurations(output, record.annotationProcessorDurations, strings)
+    }
+  }
+
+  private fun readRecords(input: DataInput): List<BuildTimingsRecord> {
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      LOG.info("Ignoring build attribution history in an unknown format: $file")
+      return emptyList()
+    }
+    val strings = List(readCount(input, MAX_STRINGS)) { input.readUTF() }
+    return List(readCount(input, maxRecords)) {
+      BuildTimingsRecord(
+        buildFinishedTimestamp = input.readLong(),
+        requestedTasks = readString(input, strings),
+        totalBuildTimeMs = readVarLong(input),
+        taskDurations = readDurations(input, strings),
+        pluginDurations = readDurations(input, strings),
+        annotationProcessorDurations = readDurations(input, strings)
+      )
+    }
+  }
+
+  private fun writeDurations(output: DataOutput, durations: Map<String, Long>, strings: Map<String, Int>) {
+    writeVarLong(output, durations.size.toLong())
+    durations.forEach { (name, duration) ->
+      writeVarLong(output, strings.getValue(name).toLong())
+      writeVarLong(output, duration.coerceAtLeast(0))
+    }
+  }
+
+  private fun readDurations(input: DataInput, strings: List<String>): Map<String, Long> {
+    val size = readCount(input, strings.size)
+    val durations = LinkedHashMap<String, Long>(size)
+    repeat(size) {
+      durations[readString(input, strings)] = readVarLong(input)
+    }
+    return durations
+  }
+
+  private fun readString(input: DataInput, strings: List<String>): String {
+    val index = readVarLong(input)
+    if (index < 0 || index >= strings.size) throw IOException("Invalid string index $index")
+    return strings[index.toInt()]
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(BuildAttributionHistoryStore::class.java)
+
+    private const val MAGIC = 0x42414853 // "BAHS"
+    // Increase the value when changing the file format.
+    private const val VERSION = 2
+    const val DEFAULT_MAX_RECORDS = 50
+    // Upper bound for the size of the string table, so a corrupt file can't make us allocate huge lists.
+    private const val MAX_STRINGS = 1 shl 20
+
+    private fun writeVarLong(output: DataOutput, value: Long) {
+      var remaining = value
+      while (remaining and 0x7FL.inv() != 0L) {
+        output.writeByte(((remaining and 0x7FL) or 0x80L).toInt())
+        remaining = remaining ushr 7
+      }
+      output.writeByte(remaining.toInt())
+    }
+
+    /**
+     * Reads a count of elements that follow in the file, rejecting values that can't be valid.
+     */
+    private fun readCount(input: DataInput, max: Int): Int {
+      val count = readVarLong(input)
+      if (count < 0 || count > max) throw IOException("Invalid element count $count, expected at most $max")
+      return count.toInt()
+    }
+
+    private fun readVarLong(input: DataInput): Long {
+      var result = 0L
+      var shift = 0
+      while (shift < 64) {
+        val b = input.readUnsignedByte()
+        result = result or ((b and 0x7F).toLong() shl shift)
+        if (b and 0x80 == 0) return result
+        shift += 7
+      }
+      throw IOException("Malformed variable-length integer")
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+/**
+ * A task, plugin or annotation processor whose contribution to the build duration grew compared to the baseline of previous builds.
+ */
+data class BuildRegression(val kind: Kind, val name: String, val baselineMs: Long, val currentMs: Long) {
+  enum class Kind {
+    TASK,
+    PLUGIN,
+    ANNOTATION_PROCESSOR
+  }
+
+  val increaseMs: Long get() = currentMs - baselineMs
+}
+
+/**
+ * Compares the timings of a build with a rolling baseline made of the medians of the previous [baselineSize] builds of the same requested
+ * tasks. Builds of other tasks run a different task graph and are not comparable.
+ *
+ * The baseline of an entry only uses the builds in which it was on the critical path; entries with fewer than [minBaselineBuilds] such
+ * builds are not reported, since a task that is missing from a build was either not run or did not determine its duration. An entry is
+ * flagged only if its time grew by more than [absoluteThresholdMs] and by more than [relativeThreshold] of its baseline, so small
+ * fluctuations of short tasks don't show up.
+ */
+class BuildRegressionDetector(
+  private val baselineSize: Int = 10,
+  private val minBaselineBuilds: Int = 3,
+  private val relativeThreshold: Double = 0.2,
+  private val absoluteThresholdMs: Long = 500
+) {
+  /**
+   * Returns the regressions of [current] compared to [history] (oldest first), sorted by decreasing time increase. Returns no
+   * regressions while the history has fewer than [minBaselineBuilds] builds of the same requested tasks.
+   */
+  fun detect(history: List<BuildTimingsRecord>, current: BuildTimingsRecord): List<BuildRegression> {
+    val baseline = history.filter { it.requestedTasks == current.requestedTasks }.takeLast(baselineSize)
+    if (baseline.size < minBaselineBuilds) return emptyList()
+
+    val regressions = ArrayList<BuildRegression>()
+    collect(BuildRegression.Kind.TASK, baseline.map { it.taskDurations }, current.taskDurations, regressions)
+    collect(BuildRegression.Kind.PLUGIN, baseline.map { it.pluginDurations }, current.pluginDurations, regressions)
+    collect(BuildRegression.Kind.ANNOTATION_PROCESSOR, baseline.map { it.annotationProcessorDurations },
+            current.annotationProcessorDurations, regressions)
+    regressions.sortByDescending { it.increaseMs }
+    return regressions
+  }
+
+  private fun collect(kind: BuildRegression.Kind,
+                      baseline: List<Map<String, Long>>,
+                      current: Map<String, Long>,
+                      regressions: MutableList<BuildRegression>) {
+    current.forEach { (name, currentMs) ->
+      val baselineDurations = baseline.mapNotNull { it[name] }
+      if (baselineDurations.size < minBaselineBuilds) return@forEach
+      val baselineMs = median(baselineDurations)
+      val increase = currentMs - baselineMs
+      if (increase > absoluteThresholdMs && increase > baselineMs * relativeThreshold) {
+        regressions.add(BuildRegression(kind, name, baselineMs, currentMs))
+      }
+    }
+  }
+
+  private fun median(values: List<Long>): Long {
+    val sorted = values.sorted()
+    val middle = sorted.size / 2
+    return if (sorted.size % 2 == 1) sorted[middle] else (sorted[middle - 1] + sorted[middle]) / 2
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+import com.android.build.attribution.analyzers.BuildEventsAnalysisResult
+
+/**
+ * Timings of a single successful build, as persisted by [BuildAttributionHistoryStore].
+ *
+ * @param buildFinishedTimestamp the timestamp when the build finished
+ * @param requestedTasks the tasks the build was invoked with, see [requestedTasksKey]; only builds of the same tasks are comparable
+ * @param totalBuildTimeMs the total duration of the build
+ * @param taskDurations for each task determining the build duration, keyed by task path, its execution time
+ * @param pluginDurations for each plugin, keyed by display name, the time its tasks contributed to the build duration
+ * @param annotationProcessorDurations for each annotation processor, keyed by class name, its compilation time
+ */
+data class BuildTimingsRecord(
+  val buildFinishedTimestamp: Long,
+  val requestedTasks: String,
+  val totalBuildTimeMs: Long,
+  val taskDurations: Map<String, Long>,
+  val pluginDurations: Map<String, Long>,
+  val annotationProcessorDurations: Map<String, Long>
+) {
+  companion object {
+    fun fromAnalysisResult(analysisResult: BuildEventsAnalysisResult,
+                           requestedTasks: List<String>,
+                           buildFinishedTimestamp: Long): BuildTimingsRecord {
+      return BuildTimingsRecord(
+        buildFinishedTimestamp,
+        requestedTasksKey(requestedTasks),
+        analysisResult.getTotalBuildTimeMs(),
+        analysisResult.getTasksDeterminingBuildDuration().associate { it.getTaskPath() to it.executionTime },
+        analysisResult.getPluginsDeterminingBuildDuration().associate { it.plugin.toString() to it.buildDuration },
+        analysisResult.getAnnotationProcessorsData().associate { it.className to it.compilationDuration.toMillis() }
+      )
+    }
+
+    /**
+     * Returns a key identifying the set of [requestedTasks], independent of the order they were requested in.
+     */
+    fun requestedTasksKey(requestedTasks: List<String>): String = requestedTasks.distinct().sorted().joinToString(" ")
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.analyzers
+
+import com.android.build.attribution.data.PluginData
+import com.android.build.attribution.data.TaskData
+import com.google.common.truth.Truth.assertThat
+import org.jetbrains.kotlin.utils.addToStdlib.sumByLong
+import org.junit.Test
+import java.util.Random
+
+class IncrementalCriticalPathTest {
+  private val plugin = PluginData(PluginData.PluginType.PLUGIN, "pluginA")
+
+  private fun task(name: String, start: Long, end: Long) =
+    TaskData(name, ":app", plugin, start, end, TaskData.TaskExecutionMode.FULL, emptyList())
+
+  @Test
+  fun testEmpty() {
+    val criticalPath = IncrementalCriticalPath()
+
+    assertThat(criticalPath.getCriticalPath()).isEmpty()
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(0)
+  }
+
+  @Test
+  fun testCriticalPathIsUpdatedAsTasksFinish() {
+    // A(10) -> B(20) -> D(20)
+    //       -> C(30) ---^
+    val taskA = task("A", 0, 10)
+    val taskB = task("B", 10, 30)
+    val taskC = task("C", 10, 40)
+    val taskD = task("D", 40, 60)
+    val criticalPath = IncrementalCriticalPath()
+
+    criticalPath.onTaskFinished(taskA, emptyList())
+    criticalPath.onTaskFinished(taskB, listOf(taskA))
+    assertThat(criticalPath.getCriticalPath()).containsExactly(taskA, taskB).inOrder()
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(30)
+
+    criticalPath.onTaskFinished(taskC, listOf(taskA))
+    assertThat(criticalPath.getCriticalPath()).containsExactly(taskA, taskC).inOrder()
+
+    criticalPath.onTaskFinished(taskD, listOf(taskB, taskC))
+    assertThat(criticalPath.getCriticalPath()).containsExactly(taskA, taskC, taskD).inOrder()
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(60)
+  }
+
+  @Test
+  fun testUnknownDependenciesAreIgnored() {
+    val taskA = task("A", 0, 10)
+    val taskB = task("B", 10, 15)
+    val criticalPath = IncrementalCriticalPath()
+
+    criticalPath.onTaskFinished(taskB, listOf(taskA))
+
+    assertThat(criticalPath.getCriticalPath()).containsExactly(taskB)
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(5)
+  }
+
+  @Test
+  fun testClear() {
+    val criticalPath = IncrementalCriticalPath()
+    criticalPath.onTaskFinished(task("A", 0, 10), emptyList())
+    criticalPath.clear()
+
+    assertThat(criticalPath.size).isEqualTo(0)
+    assertThat(criticalPath.getCriticalPath()).isEmpty()
+  }
+
+  @Test
+  fun testMatchesFullRecomputationOnRandomGraphs() {
+    val random = Random(42)
+    repeat(20) {
+      assertMatchesFullRecomputation(generateEventStream(random, 500))
+    }
+  }
+
+  /**
+   * Checks the result for a synthetic event stream of the size of a very large build. This is a functional test; it does not measure how
+   * long the replay takes. The stream is generated instead of recorded so that the test does not depend on checked-in build logs.
+   */
+  @Test
+  fun testLargeBuildMatchesFullRecomputation() {
+    val stream = generateEventStream(Random(7), 200_000)
+
+    val criticalPath = assertMatchesFullRecomputation(stream)
+
+    assertThat(criticalPath.size).isEqualTo(stream.size)
+    assertThat(criticalPath.finishedTasks).containsExactlyElementsIn(stream.map { it.first }).inOrder()
+    assertThat(criticalPath.isTruncated).isFalse()
+  }
+
+  @Test
+  fun testTasksBeyondTheLimitAreDropped() {
+    // A(10) -> B(20) -> C(30)
+    val taskA = task("A", 0, 10)
+    val taskB = task("B", 10, 30)
+    val taskC = task("C", 30, 60)
+    val criticalPath = IncrementalCriticalPath(maxTasks = 2)
+
+    criticalPath.onTaskFinished(taskA, emptyList())
+    criticalPath.onTaskFinished(taskB, listOf(taskA))
+    criticalPath.onTaskFinished(taskC, listOf(taskB))
+
+    assertThat(criticalPath.isTruncated).isTrue()
+    assertThat(criticalPath.finishedTasks).containsExactly(taskA, taskB).inOrder()
+    assertThat(criticalPath.getCriticalPath()).containsExactly(taskA, taskB).inOrder()
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(30)
+
+    criticalPath.clear()
+    assertThat(criticalPath.isTruncated).isFalse()
+  }
+
+  /**
+   * Feeds [stream] to a new [IncrementalCriticalPath] and checks its result against a recomputation of the longest path ending at every
+   * task. Also checks that the returned path follows dependency edges and starts at a task without dependencies.
+   */
+  private fun assertMatchesFullRecomputation(stream: List<Pair<TaskData, List<TaskData>>>): IncrementalCriticalPath {
+    val criticalPath = IncrementalCriticalPath(maxTasks = stream.size)
+    stream.forEach { (task, dependencies) -> criticalPath.onTaskFinished(task, dependencies) }
+
+    val expectedDurations = HashMap<TaskData, Long>()
+    stream.forEach { (task, dependencies) ->
+      expectedDurations[task] = task.executionTime + (dependencies.map { expectedDurations.getValue(it) }.max() ?: 0L)
+    }
+    assertThat(criticalPath.criticalPathDuration).isEqualTo(expectedDurations.values.max())
+
+    val path = criticalPath.getCriticalPath()
+    assertThat(path.sumByLong { it.executionTime }).isEqualTo(criticalPath.criticalPathDuration)
+    val dependenciesByTask = stream.toMap()
+    path.zipWithNext().forEach { (previous, next) ->
+      assertThat(dependenciesByTask.getValue(next)).contains(previous)
+    }
+    assertThat(dependenciesByTask.getValue(path.first())).isEmpty()
+    return criticalPath
+  }
+
+  /**
+   * Generates task finish events in the order Gradle would send them: every task finishes after all its dependencies.
+   */
+  private fun generateEventStream(random: Random, taskCount: Int): List<Pair<TaskData, List<TaskData>>> {
+    val events = ArrayList<Pair<TaskData, List<TaskData>>>(taskCount)
+    val endTimes = HashMap<TaskData, Long>()
+    for (i in 0 until taskCount) {
+      val dependencies = if (i == 0) emptyList() else List(random.nextInt(5)) { events[random.nextInt(i)].first }.distinct()
+      val start = dependencies.map { endTimes.getValue(it) }.max() ?: 0L
+      val task = task("task$i", start, start + random.nextInt(1000))
+      endTimes[task] = task.executionEndTime
+      events.add(task to dependencies)
+    }
+    return events
+  }
+}
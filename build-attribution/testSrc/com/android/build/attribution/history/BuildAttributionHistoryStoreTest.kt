@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class BuildAttributionHistoryStoreTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  private fun record(timestamp: Long, compileTime: Long) = BuildTimingsRecord(
+    buildFinishedTimestamp = timestamp,
+    requestedTasks = BuildTimingsRecord.requestedTasksKey(listOf(":app:assembleDebug", ":lib:assembleDebug")),
+    totalBuildTimeMs = 1000 + compileTime,
+    taskDurations = mapOf(":app:compileDebugJavaWithJavac" to compileTime, ":app:mergeDebugResources" to 300L),
+    pluginDurations = mapOf("plugin com.android.application" to compileTime + 300),
+    annotationProcessorDurations = mapOf("com.google.auto.value.processor.AutoValueProcessor" to 150L)
+  )
+
+  @Test
+  fun testRecordsAreRestored() {
+    val store = BuildAttributionHistoryStore(File(temporaryFolder.root, "history.bin"))
+    val first = record(1, 100)
+    val second = record(2, 1_000_000)
+
+    assertThat(store.append(first)).isEmpty()
+    assertThat(store.append(second)).containsExactly(first)
+    assertThat(store.load()).containsExactly(first, second).inOrder()
+  }
+
+  @Test
+  fun testOldestRecordsAreDropped() {
+    val store = BuildAttributionHistoryStore(File(temporaryFolder.root, "history.bin"), maxRecords = 3)
+    val records = (1L..5L).map { record(it, it * 10) }
+    records.forEach { store.append(it) }
+
+    assertThat(store.load()).containsExactlyElementsIn(records.takeLast(3)).inOrder()
+  }
+
+  @Test
+  fun testMissingOrCorruptFileIsEmpty() {
+    val file = File(temporaryFolder.root, "history.bin")
+    val store = BuildAttributionHistoryStore(file)
+    assertThat(store.load()).isEmpty()
+
+    file.writeText("not a history file")
+    assertThat(store.load()).isEmpty()
+  }
+
+  @Test
+  fun testCorruptCountsAreRejected() {
+    val file = File(temporaryFolder.root, "history.bin")
+    val store = BuildAttributionHistoryStore(file)
+    store.append(record(1, 100))
+    val bytes = file.readBytes()
+    // The string table size follows the magic number and the version; make it claim 2^34 entries.
+    val corrupt = bytes.copyOfRange(0, 8) + byteArrayOf(0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 0x80.toByte(), 0x40) +
+                  bytes.copyOfRange(9, bytes.size)
+    file.writeBytes(corrupt)
+
+    assertThat(store.load()).isEmpty()
+  }
+
+  @Test
+  fun testRequestedTasksKeyIgnoresOrder() {
+    assertThat(BuildTimingsRecord.requestedTasksKey(listOf(":lib:assembleDebug", ":app:assembleDebug")))
+      .isEqualTo(BuildTimingsRecord.requestedTasksKey(listOf(":app:assembleDebug", ":lib:assembleDebug", ":app:assembleDebug")))
+  }
+
+  @Test
+  fun testClear() {
+    val store = BuildAttributionHistoryStore(File(temporaryFolder.root, "history.bin"))
+    store.append(record(1, 100))
+    store.clear()
+
+    assertThat(store.load()).isEmpty()
+  }
+}
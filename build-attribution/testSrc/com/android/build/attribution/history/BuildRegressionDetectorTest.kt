@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.build.attribution.history
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class BuildRegressionDetectorTest {
+  private val detector = BuildRegressionDetector(baselineSize = 5, minBaselineBuilds = 3, relativeThreshold = 0.2,
+                                                 absoluteThresholdMs = 500)
+
+  private fun record(tasks: Map<String, Long>,
+                     plugins: Map<String, Long> = emptyMap(),
+                     processors: Map<String, Long> = emptyMap(),
+                     requestedTasks: String = ":app:assembleDebug") =
+    BuildTimingsRecord(0, requestedTasks, tasks.values.sum(), tasks, plugins, processors)
+
+  @Test
+  fun testNoRegressionsWithoutEnoughHistory() {
+    val history = listOf(record(mapOf(":app:compile" to 1000L)), record(mapOf(":app:compile" to 1000L)))
+
+    assertThat(detector.detect(history, record(mapOf(":app:compile" to 10_000L)))).isEmpty()
+  }
+
+  @Test
+  fun testRegressedTaskIsDetected() {
+    val history = List(4) { record(mapOf(":app:compile" to 2000L + it * 10, ":app:merge" to 800L)) }
+
+    val regressions = detector.detect(history, record(mapOf(":app:compile" to 4000L, ":app:merge" to 850L)))
+
+    assertThat(regressions).containsExactly(BuildRegression(BuildRegression.Kind.TASK, ":app:compile", 2015, 4000))
+  }
+
+  @Test
+  fun testSmallIncreasesAreIgnored() {
+    val history = List(4) { record(mapOf(":app:compile" to 10_000L, ":app:lint" to 100L)) }
+
+    // 10% slower and 400ms slower are both below the thresholds.
+    assertThat(detector.detect(history, record(mapOf(":app:compile" to 11_000L, ":app:lint" to 500L)))).isEmpty()
+  }
+
+  @Test
+  fun testEntriesMissingFromTheBaselineAreSkipped() {
+    val history = List(4) { record(mapOf(":app:compile" to 1000L)) }
+
+    val regressions = detector.detect(history, record(
+      mapOf(":app:compile" to 1000L, ":app:kapt" to 3000L),
+      plugins = mapOf("plugin kotlin-kapt" to 3000L),
+      processors = mapOf("dagger.internal.codegen.ComponentProcessor" to 2000L)))
+
+    assertThat(regressions).isEmpty()
+  }
+
+  @Test
+  fun testBaselineOnlyUsesBuildsContainingTheEntry() {
+    // :app:kapt was only on the critical path in three of the builds; the others must not pull its baseline down to zero.
+    val detector = BuildRegressionDetector(baselineSize = 10, minBaselineBuilds = 3, relativeThreshold = 0.2, absoluteThresholdMs = 100)
+    val history = List(3) { record(mapOf(":app:compile" to 1000L, ":app:kapt" to 3000L)) } +
+                  List(4) { record(mapOf(":app:compile" to 1000L)) }
+
+    assertThat(detector.detect(history, record(mapOf(":app:compile" to 1000L, ":app:kapt" to 3200L)))).isEmpty()
+    assertThat(detector.detect(history, record(mapOf(":app:compile" to 1000L, ":app:kapt" to 4000L))))
+      .containsExactly(BuildRegression(BuildRegression.Kind.TASK, ":app:kapt", 3000, 4000))
+  }
+
+  @Test
+  fun testRegressionsAreDetectedPerKind() {
+    val history = List(4) {
+      record(mapOf(":app:kapt" to 1000L),
+             plugins = mapOf("plugin kotlin-kapt" to 1000L),
+             processors = mapOf("dagger.internal.codegen.ComponentProcessor" to 800L))
+    }
+
+    val regressions = detector.detect(history, record(
+      mapOf(":app:kapt" to 3000L),
+      plugins = mapOf("plugin kotlin-kapt" to 3000L),
+      processors = mapOf("dagger.internal.codegen.ComponentProcessor" to 2000L)))
+
+    assertThat(regressions).containsExactly(
+      BuildRegression(BuildRegression.Kind.TASK, ":app:kapt", 1000, 3000),
+      BuildRegression(BuildRegression.Kind.PLUGIN, "plugin kotlin-kapt", 1000, 3000),
+      BuildRegression(BuildRegression.Kind.ANNOTATION_PROCESSOR, "dagger.internal.codegen.ComponentProcessor", 800, 2000)
+    ).inOrder()
+  }
+
+  @Test
+  fun testOnlyBuildsOfTheSameTasksFormTheBaseline() {
+    val assembleBuilds = List(4) { record(mapOf(":app:compile" to 1000L)) }
+    val testBuilds = List(4) { record(mapOf(":app:compile" to 5000L), requestedTasks = ":app:testDebugUnitTest") }
+
+    val regressions = detector.detect(assembleBuilds + testBuilds, record(mapOf(":app:compile" to 5000L)))
+
+    assertThat(regressions).containsExactly(BuildRegression(BuildRegression.Kind.TASK, ":app:compile", 1000, 5000))
+    assertThat(detector.detect(testBuilds, record(mapOf(":app:compile" to 5000L)))).isEmpty()
+  }
+
+  @Test
+  fun testOnlyRecentBuildsFormTheBaseline() {
+    val fastBuilds = List(5) { record(mapOf(":app:compile" to 1000L)) }
+    val slowBuilds = List(5) { record(mapOf(":app:compile" to 5000L)) }
+
+    assertThat(detector.detect(fastBuilds + slowBuilds, record(mapOf(":app:compile" to 5000L)))).isEmpty()
+  }
+}
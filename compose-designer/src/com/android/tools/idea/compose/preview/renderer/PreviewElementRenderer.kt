@@ -25,6 +25,7 @@ import com.android.tools.idea.configurations.Configuration
 import com.android.tools.idea.configurations.ConfigurationManager
 import com.android.tools.idea.rendering.RenderService
 import com.android.tools.idea.rendering.RenderTask
+import com.intellij.psi.xml.XmlFile
 import com.intellij.util.concurrency.AppExecutorUtil
 import org.jetbrains.android.facet.AndroidFacet
 import java.awt.image.BufferedImage
@@ -42,22 +43,34 @@ fun renderPreviewElement(facet: AndroidFacet,
   val project = facet.module.project
 
   val file = ComposeAdapterLightVirtualFile("singlePreviewElement.xml", previewElement.toPreviewXmlString())
-  val psiFile = AndroidPsiUtils.getPsiFileSafely(project, file) ?: return CompletableFuture.completedFuture(null)
+  val psiFile = AndroidPsiUtils.getPsiFileSafely(project, file) as? XmlFile ?: return CompletableFuture.completedFuture(null)
   val configuration = Configuration.create(ConfigurationManager.getOrCreateInstance(facet), null, FolderConfiguration.createDefault())
 
-  val renderTaskFuture = RenderService.getInstance(project)
-    .taskBuilder(facet, configuration)
-    .withPsiFile(psiFile)
-    .disableDecorations()
-    .withRenderingMode(SessionParams.RenderingMode.SHRINK)
-    .build()
+  // Previews of the same module share their configuration, so a task used for a previous render can be reused for this one.
+  val taskPool = PreviewRenderTaskPool.getInstance(project)
+  val renderTaskFuture = taskPool.acquire(facet, configuration, psiFile) {
+    RenderService.getInstance(project)
+      .taskBuilder(facet, configuration)
+      .withPsiFile(psiFile)
+      .disableDecorations()
+      .withRenderingMode(SessionParams.RenderingMode.SHRINK)
+      .build()
+  }
 
-  val renderedImageFuture = CompletableFuture.supplyAsync(Supplier<RenderTask> { renderTaskFuture.get() },
+  val renderedImageFuture = CompletableFuture.supplyAsync(Supplier<RenderTask?> { renderTaskFuture.get() },
                                                           executor)
-    .thenCompose { it.render() }
-    .thenApply { if (it.renderResult.isSuccess && it.hasImage() && it.logger.brokenClasses.isEmpty()) it.renderedImage.copy else null }
+    .thenCompose { it?.render() ?: CompletableFuture.completedFuture(null) }
+    .thenApply {
+      if (it != null && it.renderResult.isSuccess && it.hasImage() && it.logger.brokenClasses.isEmpty()) it.renderedImage.copy else null
+    }
 
-  CompletableFuture.allOf(renderTaskFuture, renderedImageFuture).handle { _, _ -> renderTaskFuture.get().dispose() }
+  // The render future usually completes on the render thread, which release needs to dispose the render session, so release elsewhere.
+  CompletableFuture.allOf(renderTaskFuture, renderedImageFuture).handleAsync({ _, _ ->
+    if (renderTaskFuture.isCompletedExceptionally) return@handleAsync
+    val task = renderTaskFuture.get() ?: return@handleAsync
+    // Only tasks that rendered cleanly are reused, failed renders might have left the task in an unknown state.
+    taskPool.release(facet, configuration, task, !renderedImageFuture.isCompletedExceptionally && renderedImageFuture.get() != null)
+  }, AppExecutorUtil.getAppExecutorService())
 
   return renderedImageFuture
-}
\ No newline at end of file
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview.renderer
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.rendering.RenderTask
+import com.android.tools.idea.res.ResourceRepositoryManager
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.ServiceManager
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.psi.xml.XmlFile
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.android.facet.AndroidFacet
+import org.jetbrains.annotations.TestOnly
+import java.util.ArrayDeque
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+/** Maximum number of idle tasks kept for each module and configuration. */
+private const val MAX_IDLE_TASKS_PER_KEY = 2
+
+/** Idle tasks not reused within this time are disposed, so that their memory is not held while previews are not being rendered. */
+private val IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1)
+
+/**
+ * Keeps the [RenderTask]s used by [renderPreviewElement] after a render, so that rendering the next `@Preview` for the same module and
+ * configuration can reuse them. A reused task only needs a new render session for the new preview; its layoutlib callback, project
+ * class loader and parsed R classes are kept.
+ *
+ * Tasks are discarded instead of reused when their render failed, when the app resources changed or when the project classes they
+ * loaded were recompiled.
+ */
+class PreviewRenderTaskPool(project: Project) : Disposable {
+  private data class Key(val module: Module, val configuration: String)
+
+  private class IdleTask(val task: RenderTask, val resourcesVersion: Long, val idleSinceMs: Long)
+
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private val idleTasks = HashMap<Key, ArrayDeque<IdleTask>>()
+
+  @GuardedBy("lock")
+  private var disposed = false
+
+  /**
+   * Returns an idle task for the given [facet] and [configuration] retargeted to [xmlFile], or calls [createTask] if there is none.
+   * The task must be handed back with [release] once the caller is done with it.
+   */
+  fun acquire(facet: AndroidFacet,
+              configuration: Configuration,
+              xmlFile: XmlFile,
+              createTask: () -> CompletableFuture<RenderTask?>): CompletableFuture<RenderTask?> {
+    val key = keyOf(facet, configuration)
+    val resourcesVersion = ResourceRepositoryManager.getAppResources(facet).modificationCount
+    val stale = mutableListOf<RenderTask>()
+    var reused: RenderTask? = null
+    synchronized(lock) {
+      val tasks = idleTasks[key]
+      while (tasks != null && tasks.isNotEmpty() && reused == null) {
+        val idle = tasks.pop()
+        if (idle.resourcesVersion == resourcesVersion && idle.task.layoutlibCallback.isClassLoaderUpToDate) {
+          reused = idle.task
+        }
+        else {
+          stale.add(idle.task)
+        }
+      }
+    }
+    stale.forEach { it.dispose() }
+
+    val task = reused ?: return createTask()
+    task.xmlFile = xmlFile
+    return CompletableFuture.completedFuture(task)
+  }
+
+  /**
+   * Hands back a [task] obtained from [acquire]. If [reusable] is false, for example because the render failed, the task is disposed.
+   *
+   * This waits for the render session of the task to be disposed, so it must not be called from the render thread.
+   */
+  fun release(facet: AndroidFacet, configuration: Configuration, task: RenderTask, reusable: Boolean) {
+    if (!reusable || task.isDisposed) {
+      if (!task.isDisposed) task.dispose()
+      return
+    }
+
+    // Release the memory used by the rendered views and image, and forget the problems of the previous render, before the task can be
+    // handed to another caller.
+    task.disposeRenderSession().join()
+    task.resetLogger()
+
+    val key = keyOf(facet, configuration)
+    val resourcesVersion = ResourceRepositoryManager.getAppResources(facet).modificationCount
+    val kept = synchronized(lock) {
+      val tasks = idleTasks.getOrPut(key) { ArrayDeque() }
+      if (disposed || tasks.size >= MAX_IDLE_TASKS_PER_KEY) {
+        false
+      }
+      else {
+        tasks.push(IdleTask(task, resourcesVersion, System.currentTimeMillis()))
+        true
+      }
+    }
+    if (!kept) {
+      task.dispose()
+      return
+    }
+
+    AppExecutorUtil.getAppScheduledExecutorService().schedule({ disposeExpired() }, IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+  }
+
+  private fun disposeExpired() {
+    val expired = mutableListOf<RenderTask>()
+    val now = System.currentTimeMillis()
+    synchronized(lock) {
+      idleTasks.values.forEach { tasks ->
+        tasks.removeIf { idle -> (now - idle.idleSinceMs >= IDLE_TIMEOUT_MS).also { if (it) expired.add(idle.task) } }
+      }
+      idleTasks.values.removeIf { it.isEmpty() }
+    }
+    expired.forEach { it.dispose() }
+  }
+
+  /**
+   * Returns the number of idle tasks kept for the given [facet] and [configuration].
+   */
+  @TestOnly
+  fun idleTaskCount(facet: AndroidFacet, configuration: Configuration): Int = synchronized(lock) {
+    idleTasks[keyOf(facet, configuration)]?.size ?: 0
+  }
+
+  /**
+   * Disposes all the idle tasks.
+   */
+  @TestOnly
+  fun clear() = disposeIdleTasks()
+
+  override fun dispose() {
+    synchronized(lock) {
+      disposed = true
+    }
+    disposeIdleTasks()
+  }
+
+  private fun disposeIdleTasks() {
+    val tasks = synchronized(lock) {
+      idleTasks.values.flatten().map { it.task }.also { idleTasks.clear() }
+    }
+    tasks.forEach { it.dispose() }
+  }
+
+  private fun keyOf(facet: AndroidFacet, configuration: Configuration) =
+    Key(facet.module, listOf(configuration.device?.id,
+                             configuration.fullConfig.qualifierString,
+                             configuration.theme,
+                             configuration.target?.hashString()).joinToString("|"))
+
+  companion object {
+    @JvmStatic
+    fun getInstance(project: Project): PreviewRenderTaskPool = ServiceManager.getService(project, PreviewRenderTaskPool::class.java)
+  }
+}
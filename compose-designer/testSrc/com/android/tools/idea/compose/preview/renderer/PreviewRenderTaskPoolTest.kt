@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.compose.preview.renderer
+
+import com.android.ide.common.resources.configuration.FolderConfiguration
+import com.android.testutils.TestUtils
+import com.android.tools.idea.AndroidPsiUtils
+import com.android.tools.idea.compose.preview.ComposeAdapterLightVirtualFile
+import com.android.tools.idea.compose.preview.PreviewElement
+import com.android.tools.idea.compose.preview.SIMPLE_COMPOSE_PROJECT_PATH
+import com.android.tools.idea.compose.preview.toPreviewXmlString
+import com.android.tools.idea.configurations.Configuration
+import com.android.tools.idea.configurations.ConfigurationManager
+import com.android.tools.idea.rendering.NoSecurityManagerRenderService
+import com.android.tools.idea.rendering.RenderLogger
+import com.android.tools.idea.rendering.RenderService
+import com.android.tools.idea.rendering.RenderTask
+import com.android.tools.idea.testing.AndroidGradleProjectRule
+import com.intellij.openapi.util.Disposer
+import com.intellij.psi.xml.XmlFile
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import java.util.concurrent.CompletableFuture
+
+class PreviewRenderTaskPoolTest {
+  @get:Rule
+  val projectRule = AndroidGradleProjectRule()
+
+  private lateinit var pool: PreviewRenderTaskPool
+  private lateinit var configuration: Configuration
+  private lateinit var xmlFile: XmlFile
+
+  @Before
+  fun setUp() {
+    RenderService.shutdownRenderExecutor(5)
+    RenderService.initializeRenderExecutor()
+    RenderService.setForTesting(projectRule.project, NoSecurityManagerRenderService(projectRule.project))
+    projectRule.fixture.testDataPath = TestUtils.getWorkspaceFile("tools/adt/idea/compose-designer/testData").path
+    projectRule.load(SIMPLE_COMPOSE_PROJECT_PATH)
+    projectRule.requestSyncAndWait()
+
+    pool = PreviewRenderTaskPool(projectRule.project)
+    configuration = Configuration.create(ConfigurationManager.getOrCreateInstance(projectRule.androidFacet), null,
+                                         FolderConfiguration.createDefault())
+    val previewElement = PreviewElement.forTesting("google.simpleapplication.MainActivityKt.DefaultPreview")
+    val file = ComposeAdapterLightVirtualFile("singlePreviewElement.xml", previewElement.toPreviewXmlString())
+    xmlFile = AndroidPsiUtils.getPsiFileSafely(projectRule.project, file) as XmlFile
+  }
+
+  @After
+  fun tearDown() {
+    Disposer.dispose(pool)
+    RenderService.setForTesting(projectRule.project, null)
+  }
+
+  private fun createTask(): CompletableFuture<RenderTask?> =
+    RenderService.getInstance(projectRule.project)
+      .taskBuilder(projectRule.androidFacet, configuration)
+      .withPsiFile(xmlFile)
+      .disableDecorations()
+      .build()
+
+  private fun acquire(createTask: () -> CompletableFuture<RenderTask?> = ::createTask): RenderTask =
+    pool.acquire(projectRule.androidFacet, configuration, xmlFile, createTask).get()!!
+
+  private fun release(task: RenderTask, reusable: Boolean = true) =
+    pool.release(projectRule.androidFacet, configuration, task, reusable)
+
+  private fun idleTaskCount() = pool.idleTaskCount(projectRule.androidFacet, configuration)
+
+  @Test
+  fun testReleasedTaskIsReusedWithAnEmptyLogger() {
+    val task = acquire()
+    (task.logger as RenderLogger).addBrokenClass("google.simpleapplication.Broken", IllegalStateException())
+    release(task)
+    assertEquals(1, idleTaskCount())
+
+    val reused = acquire { throw AssertionError("The idle task should have been reused") }
+    assertSame(task, reused)
+    assertEquals(0, idleTaskCount())
+    assertTrue((reused.logger as RenderLogger).brokenClasses.isEmpty())
+    release(reused, false)
+  }
+
+  @Test
+  fun testTaskIsDisposedWhenNotReusable() {
+    val task = acquire()
+    release(task, false)
+
+    assertTrue(task.isDisposed)
+    assertEquals(0, idleTaskCount())
+  }
+
+  @Test
+  fun testIdleTasksAreCappedPerKey() {
+    val tasks = listOf(acquire(), acquire(), acquire())
+    tasks.forEach { release(it) }
+
+    assertEquals(2, idleTaskCount())
+    assertFalse(tasks[0].isDisposed)
+    assertFalse(tasks[1].isDisposed)
+    assertTrue(tasks[2].isDisposed)
+  }
+
+  @Test
+  fun testDisposingThePoolDisposesIdleAndReleasedTasks() {
+    val idle = acquire()
+    val inUse = acquire()
+    release(idle)
+
+    Disposer.dispose(pool)
+    assertTrue(idle.isDisposed)
+    assertEquals(0, idleTaskCount())
+
+    release(inUse)
+    assertTrue(inUse.isDisposed)
+  }
+}
@@ -36,3 +36,12 @@ fun DefaultPreview() {
         Greeting("Android")
     }
 }
+
+@Preview
+@Composable
+fun TwoGreetingsPreview() {
+    MaterialTheme {
+        Greeting("Android")
+        Greeting("Compose")
+    }
+}
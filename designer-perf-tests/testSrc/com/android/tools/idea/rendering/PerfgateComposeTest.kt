@@ -17,6 +17,7 @@ package com.android.tools.idea.rendering
 
 import com.android.testutils.TestUtils
 import com.android.tools.idea.compose.preview.PreviewElement
+import com.android.tools.idea.compose.preview.renderer.PreviewRenderTaskPool
 import com.android.tools.idea.compose.preview.renderer.renderPreviewElement
 import com.android.tools.idea.testing.AndroidGradleProjectRule
 import com.android.tools.perflogger.Benchmark
@@ -61,6 +62,7 @@ class PerfgateComposeTest {
 
   @After
   fun tearDown() {
+    PreviewRenderTaskPool.getInstance(projectRule.project).clear()
     ApplicationManager.getApplication().invokeAndWait {
       RenderTestUtil.afterRenderTestCase()
     }
@@ -103,4 +105,29 @@ class PerfgateComposeTest {
       assertNotNull(defaultRender)
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  fun firstPreviewRenderPerf() {
+    val taskPool = PreviewRenderTaskPool.getInstance(projectRule.project)
+    composeTimeBenchmark.measureOperation(listOf(
+      ElapsedTimeMeasurement(Metric("first_preview_render_time")))) {
+      // Make sure no render task can be reused so every sample creates its own.
+      taskPool.clear()
+      val render = renderPreviewElement(projectRule.androidFacet,
+                                        PreviewElement.forTesting("google.simpleapplication.MainActivityKt.DefaultPreview")).get()
+      assertNotNull(render)
+    }
+  }
+
+  @Test
+  fun subsequentPreviewRenderPerf() {
+    assertNotNull(renderPreviewElement(projectRule.androidFacet,
+                                       PreviewElement.forTesting("google.simpleapplication.MainActivityKt.DefaultPreview")).get())
+    composeTimeBenchmark.measureOperation(listOf(
+      ElapsedTimeMeasurement(Metric("subsequent_preview_render_time")))) {
+      val render = renderPreviewElement(projectRule.androidFacet,
+                                        PreviewElement.forTesting("google.simpleapplication.MainActivityKt.TwoGreetingsPreview")).get()
+      assertNotNull(render)
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint
+
+import com.android.tools.idea.benchmarks.EDITOR_PERFGATE_PROJECT_NAME
+import com.android.tools.idea.benchmarks.measureTimeMs
+import com.android.tools.idea.lint.common.AndroidLintUseValueOfInspection
+import com.android.tools.idea.lint.common.LintGlobalInspectionContext
+import com.android.tools.idea.testing.AndroidGradleProjectRule
+import com.android.tools.idea.testing.TestProjectPaths
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.intellij.analysis.AnalysisScope
+import com.intellij.codeInspection.ex.GlobalInspectionToolWrapper
+import com.intellij.testFramework.EdtRule
+import com.intellij.testFramework.InspectionTestUtil
+import com.intellij.testFramework.RunsInEdt
+import com.intellij.testFramework.createGlobalContextForTool
+import org.junit.After
+import org.junit.Rule
+import org.junit.Test
+
+/**
+ * Measures the wall-clock time of running batch lint (Analyze > Inspect Code) over a whole multi-module project, with the independent
+ * module groups analyzed one after the other and concurrently.
+ */
+class LintBatchBenchmark {
+  @get:Rule
+  val gradleRule = AndroidGradleProjectRule()
+
+  @get:Rule
+  val edtRule = EdtRule()
+
+  @After
+  fun tearDown() {
+    LintGlobalInspectionContext.setAnalyzeModuleGroupsConcurrently(true)
+  }
+
+  @Test
+  @RunsInEdt
+  fun inspectCodeOnMultiModuleProject() {
+    gradleRule.load(TestProjectPaths.SYNC_MULTIPROJECT)
+    val project = gradleRule.project
+    val inspection = AndroidLintUseValueOfInspection()
+    gradleRule.fixture.enableInspections(inspection)
+    val wrapper = GlobalInspectionToolWrapper(inspection)
+
+    val benchmark = Benchmark.Builder("Lint Inspect Code multiproject")
+      .setDescription("Wall-clock time of batch lint over every module of a multi-module project.")
+      .setProject(EDITOR_PERFGATE_PROJECT_NAME)
+      .build()
+    for ((metricName, concurrent) in listOf("sequential_batch_lint_ms" to false, "concurrent_batch_lint_ms" to true)) {
+      LintGlobalInspectionContext.setAnalyzeModuleGroupsConcurrently(concurrent)
+      val samples = measureTimeMs(
+        warmupIterations = 2,
+        mainIterations = 5,
+        action = {
+          val scope = AnalysisScope(project)
+          InspectionTestUtil.runTool(wrapper, scope, createGlobalContextForTool(scope, project, listOf(wrapper)))
+        }
+      )
+      val metric = Metric(metricName)
+      metric.addSamples(benchmark, *samples.toTypedArray())
+      metric.commit()
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat
+
+import com.android.ddmlib.IDevice
+import com.android.ddmlib.IShellOutputReceiver
+import com.android.ddmlib.Log.LogLevel
+import com.android.ddmlib.logcat.LogCatMessage
+import com.android.tools.idea.benchmarks.measureTimeMs
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.perflogger.Metric
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.mockito.Mockito.mock
+import org.mockito.Mockito.`when`
+
+/**
+ * Compares reading a logcat dump in the 'logcat -v long -v epoch' text format with reading the same entries in the binary
+ * 'logcat -B' format.
+ */
+class LogcatIngestionBenchmark {
+  companion object {
+    private const val ENTRY_COUNT = 200_000
+    private const val CHUNK_SIZE = 16 * 1024
+    private val LEVELS = arrayOf(LogLevel.VERBOSE, LogLevel.DEBUG, LogLevel.INFO, LogLevel.WARN, LogLevel.ERROR)
+  }
+
+  private val device = mock(IDevice::class.java).also { `when`(it.getClientName(1234)).thenReturn("com.example.chatty") }
+
+  @Test
+  fun textAndBinaryIngestion() {
+    val binaryDump = TestLogcatEntries()
+    val textDump = StringBuilder()
+    for (i in 0 until ENTRY_COUNT) {
+      val level = LEVELS[i % LEVELS.size]
+      val tag = "ChattyTag${i % 50}"
+      val message = if (i % 20 == 0) "Multi-line message $i\n  second line\n  third line" else "Message number $i from a chatty app"
+      val seconds = 1_600_000_000L + i / 1000
+      val millis = i % 1000
+      binaryDump.add(level, 1234, 1234 + i % 8, seconds, millis * 1_000_000, tag, message)
+      textDump.append(String.format("[ %d.%03d %5d:%5d %s/%-8s ]\n%s\n\n", seconds, millis, 1234, 1234 + i % 8,
+                                    level.priorityLetter, tag, message))
+    }
+
+    val benchmark = Benchmark.Builder("Logcat ingestion")
+      .setDescription("Time to decode $ENTRY_COUNT logcat entries received from a device.")
+      .setProject("Android Studio Logcat")
+      .build()
+    measure(benchmark, "text_ingestion_ms", textDump.toString().toByteArray()) { listener ->
+      AndroidLogcatReceiver(device, listener)
+    }
+    measure(benchmark, "binary_ingestion_ms", binaryDump.toByteArray()) { listener ->
+      BinaryLogcatReceiver(device, AndroidLogcatReceiver(device, listener))
+    }
+  }
+
+  private fun measure(benchmark: Benchmark,
+                      metricName: String,
+                      dump: ByteArray,
+                      createReceiver: (AndroidLogcatService.LogcatListener) -> IShellOutputReceiver) {
+    var messageCount = 0
+    val listener = object : AndroidLogcatService.LogcatListener {
+      override fun onLogLineReceived(line: LogCatMessage) {
+        messageCount++
+      }
+    }
+    val samples = measureTimeMs(
+      warmupIterations = 5,
+      mainIterations = 10,
+      setUp = { messageCount = 0 },
+      action = {
+        val receiver = createReceiver(listener)
+        var offset = 0
+        while (offset < dump.size) {
+          val length = minOf(CHUNK_SIZE, dump.size - offset)
+          receiver.addOutput(dump, offset, length)
+          offset += length
+        }
+        receiver.flush()
+      },
+      tearDown = { assertThat(messageCount).isEqualTo(ENTRY_COUNT + ENTRY_COUNT / 20 * 2) }
+    )
+    val metric = Metric(metricName)
+    metric.addSamples(benchmark, *samples.toTypedArray())
+    metric.commit()
+  }
+}
@@ -9,11 +9,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.android.util.ResourceEntry;
 import org.jetbrains.android.util.ValueResourcesFileParser;
 import org.jetbrains.annotations.NotNull;
@@ -31,18 +31,19 @@ import org.jetbrains.jps.model.module.JpsModuleDependency;
 public class AndroidBuildDataCache {
   private static AndroidBuildDataCache ourInstance;
 
-  private final Map<JpsModule, MyAndroidDeps> myModule2AndroidDeps = new HashMap<JpsModule, MyAndroidDeps>();
-  private final Map<String, List<ResourceEntry>> myParsedValueResourceFiles = new HashMap<String, List<ResourceEntry>>();
+  // JPS may build independent chunks in parallel, so the maps are accessed from several threads.
+  private final Map<JpsModule, MyAndroidDeps> myModule2AndroidDeps = new ConcurrentHashMap<JpsModule, MyAndroidDeps>();
+  private final Map<String, List<ResourceEntry>> myParsedValueResourceFiles = new ConcurrentHashMap<String, List<ResourceEntry>>();
 
   @NotNull
-  public static AndroidBuildDataCache getInstance() {
+  public static synchronized AndroidBuildDataCache getInstance() {
     if (ourInstance == null) {
       ourInstance = new AndroidBuildDataCache();
     }
     return ourInstance;
   }
 
-  public static void clean() {
+  public static synchronized void clean() {
     ourInstance = null;
   }
 
@@ -373,7 +373,10 @@ public class AndroidDexBuilder extends AndroidTargetBuilder<BuildRootDescriptor,
           });
         }
       }
-      outputConsumer.registerOutputFile(outFile, srcFiles);
+      // Pre-dexing runs several dx processes at the same time and registers their outputs from different threads.
+      synchronized (outputConsumer) {
+        outputConsumer.registerOutputFile(outFile, srcFiles);
+      }
     }
     return success;
   }
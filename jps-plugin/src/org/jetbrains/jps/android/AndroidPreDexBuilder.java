@@ -1,20 +1,26 @@
 package org.jetbrains.jps.android;
 
 import com.android.tools.idea.jps.AndroidTargetBuilder;
+import com.android.sdklib.BuildToolInfo;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.util.ConcurrencyUtil;
 import org.jetbrains.android.util.AndroidBuildTestingManager;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.android.builder.AndroidPreDexBuildTarget;
+import org.jetbrains.jps.android.model.JpsAndroidDexCompilerConfiguration;
+import org.jetbrains.jps.android.model.JpsAndroidExtensionService;
+import org.jetbrains.jps.api.CanceledStatus;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
 import org.jetbrains.jps.builders.FileProcessor;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.ProjectBuildException;
 import org.jetbrains.jps.incremental.StopBuildException;
+import org.jetbrains.jps.incremental.Utils;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
 import org.jetbrains.jps.incremental.messages.ProgressMessage;
@@ -26,6 +32,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Eugene.Kudelevsky
@@ -33,6 +45,10 @@ import java.util.List;
 public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget> {
 
   @NonNls private static final String BUILDER_NAME = "Android Pre Dex";
+  @NonNls private static final String PRE_DEX_CACHE_DIR_NAME = "android-pre-dex-cache";
+  // Increase the value when the content of pre-dexed files changes for the same dx version and options.
+  private static final int PRE_DEX_CACHE_VERSION = 1;
+  private static final int DEFAULT_MAX_PARALLEL_PRE_DEX = 4;
 
   protected AndroidPreDexBuilder() {
     super(Collections.singletonList(AndroidPreDexBuildTarget.MyTargetType.INSTANCE));
@@ -65,8 +81,8 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
 
   private static boolean doBuild(@NotNull AndroidPreDexBuildTarget target,
                                  @NotNull DirtyFilesHolder<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget> holder,
-                                 @NotNull BuildOutputConsumer outputConsumer,
-                                 @NotNull CompileContext context) throws IOException, ProjectBuildException {
+                                 @NotNull final BuildOutputConsumer outputConsumer,
+                                 @NotNull final CompileContext context) throws IOException, ProjectBuildException {
     final List<Pair<File, String>> filesToPreDex = new ArrayList<Pair<File, String>>();
 
     holder.processDirtyFiles(new FileProcessor<AndroidPreDexBuildTarget.MyRootDescriptor, AndroidPreDexBuildTarget>() {
@@ -79,58 +95,216 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
       }
     });
     final JpsProject project = target.getProject();
-    AndroidPlatform platform = null;
+    AndroidPlatform foundPlatform = null;
 
     for (JpsModule module : project.getModules()) {
       if (AndroidJpsUtil.getExtension(module) != null) {
-        platform = AndroidJpsUtil.getAndroidPlatform(module, context, BUILDER_NAME);
+        foundPlatform = AndroidJpsUtil.getAndroidPlatform(module, context, BUILDER_NAME);
         break;
       }
     }
 
-    if (platform == null) {
+    if (foundPlatform == null) {
       return false;
     }
-    if (!filesToPreDex.isEmpty()) {
-      final File outputDir = target.getOutputFile(context);
-
-      for (Pair<File, String> pair : filesToPreDex) {
-        context.checkCanceled();
+    final AndroidPlatform platform = foundPlatform;
+    if (filesToPreDex.isEmpty()) {
+      return true;
+    }
+    final File outputDir = target.getOutputFile(context);
+    final List<PreDexJob> jobs = new ArrayList<PreDexJob>();
 
-        final File srcFile = pair.getFirst();
-        final String moduleName = pair.getSecond();
-        final String srcFilePath = srcFile.getAbsolutePath();
-        final File outputFile;
+    for (Pair<File, String> pair : filesToPreDex) {
+      final File srcFile = pair.getFirst();
+      final String moduleName = pair.getSecond();
+      final File outputFile;
+      final String progressText;
 
-        if (moduleName != null) {
-          context.processMessage(new ProgressMessage("Pre-dex [" + moduleName + "]"));
-          outputFile = new File(new File(outputDir, moduleName), srcFile.getName());
-        }
-        else {
-          context.processMessage(new ProgressMessage("Pre-dex: " + srcFile.getName()));
-          final String outputFileName = getOutputFileNameForExternalJar(srcFile);
-
-          if (outputFileName == null) {
-            context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
-                                                       "Cannot pre-dex file " + srcFilePath + ": incorrect path", srcFilePath));
-            return false;
-          }
-          outputFile = new File(outputDir, outputFileName);
-        }
+      if (moduleName != null) {
+        outputFile = new File(new File(outputDir, moduleName), srcFile.getName());
+        progressText = "Pre-dex [" + moduleName + "]";
+      }
+      else {
+        final String outputFileName = getOutputFileNameForExternalJar(srcFile);
 
-        if (AndroidJpsUtil.createDirIfNotExist(outputFile.getParentFile(), context, BUILDER_NAME) == null) {
+        if (outputFileName == null) {
+          final String srcFilePath = srcFile.getAbsolutePath();
+          context.processMessage(new CompilerMessage(BUILDER_NAME, BuildMessage.Kind.ERROR,
+                                                     "Cannot pre-dex file " + srcFilePath + ": incorrect path", srcFilePath));
           return false;
         }
+        outputFile = new File(outputDir, outputFileName);
+        progressText = "Pre-dex: " + srcFile.getName();
+      }
 
-        if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
-          project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
+      if (AndroidJpsUtil.createDirIfNotExist(outputFile.getParentFile(), context, BUILDER_NAME) == null) {
+        return false;
+      }
+      jobs.add(new PreDexJob(srcFile, outputFile, progressText));
+    }
+
+    final AndroidPreDexCache cache = createCache(platform, project);
+    if (cache != null) {
+      cache.removeUnusedEntries();
+    }
+    final int parallelism = getParallelism(project, jobs.size());
+
+    if (parallelism == 1) {
+      for (PreDexJob job : jobs) {
+        context.checkCanceled();
+
+        if (!preDex(platform, job, cache, context, project, outputConsumer)) {
           return false;
         }
       }
+      return true;
+    }
+
+    // Every dx invocation runs in its own process, so several jars can be pre-dexed at the same time.
+    final boolean success = runConcurrently(jobs, parallelism, context.getCancelStatus(), new JobProcessor<PreDexJob>() {
+      @Override
+      public boolean process(@NotNull PreDexJob job) throws IOException {
+        return preDex(platform, job, cache, context, project, outputConsumer);
+      }
+    });
+    context.checkCanceled();
+    return success;
+  }
+
+  /**
+   * Processes the given jobs on at most {@code parallelism} threads. After a job fails or the build is canceled, the jobs that have not
+   * started yet are skipped. A job throwing an exception counts as a failure.
+   *
+   * @return true if all the jobs succeeded
+   */
+  static <T> boolean runConcurrently(@NotNull List<T> jobs,
+                                     int parallelism,
+                                     @NotNull final CanceledStatus cancelStatus,
+                                     @NotNull final JobProcessor<? super T> processor) throws IOException, ProjectBuildException {
+    final ExecutorService executor = Executors.newFixedThreadPool(parallelism, ConcurrencyUtil.newNamedThreadFactory(BUILDER_NAME));
+    final AtomicBoolean failed = new AtomicBoolean();
+    try {
+      final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+
+      for (final T job : jobs) {
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            if (failed.get() || cancelStatus.isCanceled()) {
+              return false;
+            }
+            boolean success = false;
+            try {
+              success = processor.process(job);
+              return success;
+            }
+            finally {
+              if (!success) {
+                failed.set(true);
+              }
+            }
+          }
+        }));
+      }
+      boolean success = true;
+
+      for (Future<Boolean> future : futures) {
+        success &= waitFor(future);
+      }
+      return success;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static boolean preDex(@NotNull AndroidPlatform platform,
+                                @NotNull PreDexJob job,
+                                @Nullable AndroidPreDexCache cache,
+                                @NotNull CompileContext context,
+                                @NotNull JpsProject project,
+                                @NotNull BuildOutputConsumer outputConsumer) throws IOException {
+    final File srcFile = job.srcFile;
+    final File outputFile = job.outputFile;
+    context.processMessage(new ProgressMessage(job.progressText));
+    final String srcFilePath = srcFile.getAbsolutePath();
+    final String cacheKey = cache != null ? cache.computeKey(srcFile) : null;
+
+    if (cacheKey != null && cache.restore(cacheKey, outputFile)) {
+      synchronized (outputConsumer) {
+        outputConsumer.registerOutputFile(outputFile, Collections.singletonList(srcFilePath));
+      }
+      return true;
+    }
+
+    if (!AndroidDexBuilder.runDex(platform, outputFile.getPath(), new String[]{srcFilePath}, context,
+                                  project, outputConsumer, BUILDER_NAME, srcFile.getName(), null)) {
+      return false;
+    }
+    if (cacheKey != null) {
+      cache.store(cacheKey, outputFile);
     }
     return true;
   }
 
+  private static boolean waitFor(@NotNull Future<Boolean> future) throws IOException, ProjectBuildException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProjectBuildException(e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      if (cause instanceof ProjectBuildException) {
+        throw (ProjectBuildException)cause;
+      }
+      throw new ProjectBuildException(cause);
+    }
+  }
+
+  private static int getParallelism(@NotNull JpsProject project, int jobCount) {
+    if (AndroidBuildTestingManager.getTestingManager() != null) {
+      // Tests check the order of the dx invocations.
+      return 1;
+    }
+    final JpsAndroidDexCompilerConfiguration configuration =
+      JpsAndroidExtensionService.getInstance().getDexCompilerConfiguration(project);
+    int limit = configuration != null ? configuration.getMaxParallelPreDex() : 0;
+
+    if (limit <= 0) {
+      // Each dx process has its own heap, so the default stays well below the number of processors.
+      limit = Math.min(DEFAULT_MAX_PARALLEL_PRE_DEX, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+    return Math.max(1, Math.min(limit, jobCount));
+  }
+
+  @Nullable
+  private static AndroidPreDexCache createCache(@NotNull AndroidPlatform platform, @NotNull JpsProject project) {
+    final BuildToolInfo buildToolInfo = platform.getTarget().getBuildToolInfo();
+
+    if (buildToolInfo == null || AndroidBuildTestingManager.getTestingManager() != null) {
+      return null;
+    }
+    final JpsAndroidDexCompilerConfiguration configuration =
+      JpsAndroidExtensionService.getInstance().getDexCompilerConfiguration(project);
+    final StringBuilder toolKey = new StringBuilder()
+      .append(PRE_DEX_CACHE_VERSION).append('\n')
+      .append(buildToolInfo.getRevision()).append('\n')
+      .append(FileUtil.toCanonicalPath(buildToolInfo.getPath(BuildToolInfo.PathId.DX_JAR))).append('\n');
+
+    if (configuration != null) {
+      toolKey.append(configuration.isOptimize()).append('\n')
+        .append(configuration.isForceJumbo()).append('\n')
+        .append(configuration.isCoreLibrary()).append('\n');
+    }
+    return new AndroidPreDexCache(new File(Utils.getSystemRoot(), PRE_DEX_CACHE_DIR_NAME), toolKey.toString());
+  }
+
   public static boolean canBePreDexed(@NotNull File file) {
     return "jar".equals(FileUtilRt.getExtension(file.getName()));
   }
@@ -140,4 +314,20 @@ public class AndroidPreDexBuilder extends AndroidTargetBuilder<AndroidPreDexBuil
   public String getPresentableName() {
     return BUILDER_NAME;
   }
+
+  interface JobProcessor<T> {
+    boolean process(@NotNull T job) throws IOException, ProjectBuildException;
+  }
+
+  private static final class PreDexJob {
+    final File srcFile;
+    final File outputFile;
+    final String progressText;
+
+    PreDexJob(@NotNull File srcFile, @NotNull File outputFile, @NotNull String progressText) {
+      this.srcFile = srcFile;
+      this.outputFile = outputFile;
+      this.progressText = progressText;
+    }
+  }
 }
@@ -0,0 +1,129 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Pre-dexed library jars stored by the hash of their content and of the dx settings used to produce them. The cache directory is shared
+ * by all the projects built by the compile server, so a library used by several modules or projects is only pre-dexed once.
+ */
+final class AndroidPreDexCache {
+  private static final Logger LOG = Logger.getInstance(AndroidPreDexCache.class);
+
+  private static final long UNUSED_ENTRY_EXPIRATION_MS = TimeUnit.DAYS.toMillis(30);
+
+  private final File myDir;
+  private final String myToolKey;
+
+  /**
+   * @param dir     the cache directory
+   * @param toolKey identifies the dx version and options; entries stored with a different key are never returned
+   */
+  AndroidPreDexCache(@NotNull File dir, @NotNull String toolKey) {
+    myDir = dir;
+    myToolKey = toolKey;
+  }
+
+  /**
+   * Returns the key of the cache entry for the given library jar, or null if it cannot be computed.
+   */
+  @Nullable
+  String computeKey(@NotNull File jar) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(myToolKey.getBytes(StandardCharsets.UTF_8));
+      byte[] buffer = new byte[64 * 1024];
+      try (InputStream in = Files.newInputStream(jar.toPath())) {
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          digest.update(buffer, 0, read);
+        }
+      }
+      return StringUtil.toHexString(digest.digest());
+    }
+    catch (IOException | NoSuchAlgorithmException e) {
+      LOG.info("Cannot compute pre-dex cache key of " + jar.getPath(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Copies the cached entry with the given key to {@code outputFile}.
+   *
+   * @return false if there is no such entry or it could not be copied
+   */
+  boolean restore(@NotNull String key, @NotNull File outputFile) {
+    File entry = getEntryFile(key);
+    if (!entry.isFile()) {
+      return false;
+    }
+    try {
+      FileUtil.copy(entry, outputFile);
+      // The modification time records the last use, so that entries of libraries no longer used can be removed.
+      //noinspection ResultOfMethodCallIgnored
+      entry.setLastModified(System.currentTimeMillis());
+      return true;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot restore pre-dexed file " + outputFile.getPath() + " from cache", e);
+      return false;
+    }
+  }
+
+  /**
+   * Stores {@code dexedFile} as the entry with the given key. Failures are logged and ignored since they only affect later builds.
+   */
+  void store(@NotNull String key, @NotNull File dexedFile) {
+    File entry = getEntryFile(key);
+    try {
+      FileUtil.createDirectory(myDir);
+      // Other builds may be reading or writing the same entry, so it is written to a temporary file and moved in place.
+      File tempFile = FileUtil.createTempFile(myDir, key, ".tmp", true, false);
+      FileUtil.copy(dexedFile, tempFile);
+      try {
+        Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot store pre-dexed file " + dexedFile.getPath() + " in cache", e);
+    }
+  }
+
+  /**
+   * Deletes the entries that have not been used for a long time.
+   */
+  void removeUnusedEntries() {
+    File[] files = myDir.listFiles();
+    if (files == null) {
+      return;
+    }
+    long threshold = System.currentTimeMillis() - UNUSED_ENTRY_EXPIRATION_MS;
+    for (File file : files) {
+      if (file.lastModified() < threshold) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  @NotNull
+  private File getEntryFile(@NotNull String key) {
+    return new File(myDir, key + ".jar");
+  }
+}
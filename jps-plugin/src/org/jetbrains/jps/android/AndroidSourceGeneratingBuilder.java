@@ -35,6 +35,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import gnu.trove.THashSet;
 import gnu.trove.TObjectLongHashMap;
 import org.jetbrains.android.compiler.artifact.AndroidArtifactSigningMode;
@@ -216,22 +218,29 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
     if (!success) {
       return ExitCode.ABORT;
     }
+    final ToolTimings timings = new ToolTimings();
     boolean didSomething = false;
 
     if (!idlFilesToCompile.isEmpty()) {
+      final long start = System.nanoTime();
       if (!runAidlCompiler(context, idlFilesToCompile, moduleDataMap)) {
         success = false;
       }
+      timings.add(ANDROID_IDL_COMPILER, System.nanoTime() - start);
       didSomething = true;
     }
 
     if (!rsFilesToCompile.isEmpty()) {
+      final long start = System.nanoTime();
       if (!runRenderscriptCompiler(context, rsFilesToCompile, moduleDataMap)) {
         success = false;
       }
+      timings.add(ANDROID_RENDERSCRIPT_COMPILER, System.nanoTime() - start);
       didSomething = true;
     }
+    long start = System.nanoTime();
     MyExitStatus status = runAaptCompiler(context, moduleDataMap);
+    timings.add(ANDROID_APT_COMPILER, System.nanoTime() - start);
 
     if (status == MyExitStatus.FAIL) {
       success = false;
@@ -239,7 +248,9 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
     else if (status == MyExitStatus.OK) {
       didSomething = true;
     }
+    start = System.nanoTime();
     status = runBuildConfigGeneration(context, moduleDataMap);
+    timings.add(ANDROID_BUILD_CONFIG_GENERATOR, System.nanoTime() - start);
 
     if (status == MyExitStatus.FAIL) {
       success = false;
@@ -247,6 +258,7 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
     else if (status == MyExitStatus.OK) {
       didSomething = true;
     }
+    timings.log(chunk);
 
     if (!success) {
       return ExitCode.ABORT;
@@ -1588,4 +1600,27 @@ public class AndroidSourceGeneratingBuilder extends ModuleLevelBuilder {
   private static enum MyExitStatus {
     OK, FAIL, NOTHING_CHANGED
   }
+
+  /**
+   * Time spent in each generation tool while building a chunk.
+   */
+  private static final class ToolTimings {
+    private final Map<String, Long> myNanosByTool = new HashMap<>();
+
+    void add(@NotNull String toolName, long nanos) {
+      final Long previous = myNanosByTool.get(toolName);
+      myNanosByTool.put(toolName, previous != null ? previous + nanos : nanos);
+    }
+
+    void log(@NotNull ModuleChunk chunk) {
+      if (myNanosByTool.isEmpty()) {
+        return;
+      }
+      final StringBuilder builder = new StringBuilder("Android source generation times for ").append(chunk.getPresentableShortName());
+      for (Map.Entry<String, Long> entry : new TreeMap<>(myNanosByTool).entrySet()) {
+        builder.append(", ").append(entry.getKey()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(entry.getValue())).append(" ms");
+      }
+      LOG.info(builder.toString());
+    }
+  }
 }
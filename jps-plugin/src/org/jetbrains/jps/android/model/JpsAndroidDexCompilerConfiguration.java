@@ -26,6 +26,13 @@ public interface JpsAndroidDexCompilerConfiguration extends JpsElement {
 
   void setCoreLibrary(boolean value);
 
+  /**
+   * Returns the maximum number of library jars pre-dexed at the same time, or 0 to pick a value based on the number of processors.
+   */
+  int getMaxParallelPreDex();
+
+  void setMaxParallelPreDex(int value);
+
   String getProguardVmOptions();
 
   void setProguardVmOptions(String value);
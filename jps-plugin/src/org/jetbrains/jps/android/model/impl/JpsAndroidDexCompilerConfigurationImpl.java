@@ -26,6 +26,7 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     myState.VM_OPTIONS = state.VM_OPTIONS;
     myState.FORCE_JUMBO = state.FORCE_JUMBO;
     myState.CORE_LIBRARY = state.CORE_LIBRARY;
+    myState.MAX_PARALLEL_PRE_DEX = state.MAX_PARALLEL_PRE_DEX;
     myState.PROGUARD_VM_OPTIONS = state.PROGUARD_VM_OPTIONS;
   }
 
@@ -94,6 +95,19 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     }
   }
 
+  @Override
+  public int getMaxParallelPreDex() {
+    return myState.MAX_PARALLEL_PRE_DEX;
+  }
+
+  @Override
+  public void setMaxParallelPreDex(int value) {
+    if (myState.MAX_PARALLEL_PRE_DEX != value) {
+      myState.MAX_PARALLEL_PRE_DEX = value;
+      fireElementChanged();
+    }
+  }
+
   @Override
   public String getProguardVmOptions() {
     return myState.PROGUARD_VM_OPTIONS;
@@ -120,6 +134,7 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     setOptimize(modified.isOptimize());
     setForceJumbo(modified.isForceJumbo());
     setCoreLibrary(modified.isCoreLibrary());
+    setMaxParallelPreDex(modified.getMaxParallelPreDex());
     setProguardVmOptions(modified.getProguardVmOptions());
   }
 
@@ -135,5 +150,6 @@ public class JpsAndroidDexCompilerConfigurationImpl extends JpsElementBase<JpsAn
     public boolean OPTIMIZE = true;
     public boolean FORCE_JUMBO = false;
     public boolean CORE_LIBRARY = false;
+    public int MAX_PARALLEL_PRE_DEX = 0;
   }
 }
@@ -0,0 +1,122 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.jps.android;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.api.CanceledStatus;
+
+public class AndroidPreDexBuilderTest extends TestCase {
+  private static final List<Integer> JOBS = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+  private static final CanceledStatus NOT_CANCELED = new CanceledStatus() {
+    @Override
+    public boolean isCanceled() {
+      return false;
+    }
+  };
+
+  private final Set<Integer> myProcessed = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+  public void testAllJobsRunConcurrently() throws Exception {
+    // Every job waits for a second one to start, which only completes if two jobs run at the same time.
+    final CountDownLatch started = new CountDownLatch(2);
+    boolean success = AndroidPreDexBuilder.runConcurrently(JOBS, 2, NOT_CANCELED, new AndroidPreDexBuilder.JobProcessor<Integer>() {
+      @Override
+      public boolean process(@NotNull Integer job) throws IOException {
+        myProcessed.add(job);
+        started.countDown();
+        try {
+          return started.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+    });
+
+    assertTrue(success);
+    assertEquals(JOBS.size(), myProcessed.size());
+  }
+
+  public void testJobsAfterFirstFailureAreSkipped() throws Exception {
+    boolean success = AndroidPreDexBuilder.runConcurrently(JOBS, 1, NOT_CANCELED, new AndroidPreDexBuilder.JobProcessor<Integer>() {
+      @Override
+      public boolean process(@NotNull Integer job) {
+        myProcessed.add(job);
+        return job != 2;
+      }
+    });
+
+    assertFalse(success);
+    assertEquals(Arrays.asList(0, 1, 2), sortedProcessed());
+  }
+
+  public void testConcurrentJobsAfterFirstFailureAreSkipped() throws Exception {
+    // Each thread stops after its first job since every job fails.
+    boolean success = AndroidPreDexBuilder.runConcurrently(JOBS, 3, NOT_CANCELED, new AndroidPreDexBuilder.JobProcessor<Integer>() {
+      @Override
+      public boolean process(@NotNull Integer job) {
+        myProcessed.add(job);
+        return false;
+      }
+    });
+
+    assertFalse(success);
+    assertFalse(myProcessed.isEmpty());
+    assertTrue(myProcessed.size() <= 3);
+  }
+
+  public void testExceptionStopsLaterJobsAndIsRethrown() throws Exception {
+    try {
+      AndroidPreDexBuilder.runConcurrently(JOBS, 1, NOT_CANCELED, new AndroidPreDexBuilder.JobProcessor<Integer>() {
+        @Override
+        public boolean process(@NotNull Integer job) throws IOException {
+          myProcessed.add(job);
+          if (job == 1) {
+            throw new IOException("dx failed");
+          }
+          return true;
+        }
+      });
+      fail("The exception of the failed job should be rethrown");
+    }
+    catch (IOException e) {
+      assertEquals("dx failed", e.getMessage());
+    }
+    assertEquals(Arrays.asList(0, 1), sortedProcessed());
+  }
+
+  public void testNoJobStartsOnceCanceled() throws Exception {
+    CanceledStatus canceled = new CanceledStatus() {
+      @Override
+      public boolean isCanceled() {
+        return true;
+      }
+    };
+    boolean success = AndroidPreDexBuilder.runConcurrently(JOBS, 2, canceled, new AndroidPreDexBuilder.JobProcessor<Integer>() {
+      @Override
+      public boolean process(@NotNull Integer job) {
+        myProcessed.add(job);
+        return true;
+      }
+    });
+
+    assertFalse(success);
+    assertTrue(myProcessed.isEmpty());
+  }
+
+  @NotNull
+  private List<Integer> sortedProcessed() {
+    Integer[] processed = myProcessed.toArray(new Integer[0]);
+    Arrays.sort(processed);
+    return Arrays.asList(processed);
+  }
+}
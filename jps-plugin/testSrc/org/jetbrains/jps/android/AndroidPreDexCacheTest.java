@@ -0,0 +1,103 @@
+// Copyright 2000-2020 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be found in the LICENSE file.
+package org.jetbrains.jps.android;
+
+import com.intellij.openapi.util.io.FileUtil;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+public class AndroidPreDexCacheTest extends TestCase {
+  private File myTempDir;
+  private File myCacheDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTempDir = FileUtil.createTempDirectory("pre_dex_cache_test", "tmp");
+    myCacheDir = new File(myTempDir, "cache");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(myTempDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  private File createFile(String name, String content) throws IOException {
+    File file = new File(myTempDir, name);
+    FileUtil.writeToFile(file, content);
+    return file;
+  }
+
+  public void testComputeKey() throws Exception {
+    File jar = createFile("lib.jar", "classes");
+    File copy = createFile("copy.jar", "classes");
+    File other = createFile("other.jar", "other classes");
+    AndroidPreDexCache cache = new AndroidPreDexCache(myCacheDir, "dx 1");
+
+    String key = cache.computeKey(jar);
+    assertNotNull(key);
+    assertEquals(key, cache.computeKey(copy));
+    assertFalse(key.equals(cache.computeKey(other)));
+    assertFalse(key.equals(new AndroidPreDexCache(myCacheDir, "dx 2").computeKey(jar)));
+    assertNull(cache.computeKey(new File(myTempDir, "missing.jar")));
+  }
+
+  public void testStoreAndRestore() throws Exception {
+    AndroidPreDexCache cache = new AndroidPreDexCache(myCacheDir, "dx");
+    String key = cache.computeKey(createFile("lib.jar", "classes"));
+    File output = new File(myTempDir, "out/lib.jar");
+    FileUtil.createParentDirs(output);
+    assertFalse(cache.restore(key, output));
+    assertFalse(output.exists());
+
+    cache.store(key, createFile("dexed.jar", "dexed classes"));
+    assertTrue(cache.restore(key, output));
+    assertEquals("dexed classes", FileUtil.loadFile(output));
+
+    // Storing an entry again replaces it, and leaves no temporary files behind.
+    cache.store(key, createFile("dexed2.jar", "new dexed classes"));
+    assertTrue(cache.restore(key, output));
+    assertEquals("new dexed classes", FileUtil.loadFile(output));
+    File[] entries = myCacheDir.listFiles();
+    assertNotNull(entries);
+    assertEquals(1, entries.length);
+  }
+
+  public void testRestoreUpdatesLastModified() throws Exception {
+    AndroidPreDexCache cache = new AndroidPreDexCache(myCacheDir, "dx");
+    String key = cache.computeKey(createFile("lib.jar", "classes"));
+    cache.store(key, createFile("dexed.jar", "dexed classes"));
+    File entry = new File(myCacheDir, key + ".jar");
+    long lastWeek = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7);
+    assertTrue(entry.setLastModified(lastWeek));
+
+    assertTrue(cache.restore(key, new File(myTempDir, "lib-dexed.jar")));
+    assertTrue(entry.lastModified() > lastWeek + TimeUnit.DAYS.toMillis(6));
+  }
+
+  public void testRemoveUnusedEntries() throws Exception {
+    AndroidPreDexCache cache = new AndroidPreDexCache(myCacheDir, "dx");
+    String usedKey = cache.computeKey(createFile("used.jar", "used classes"));
+    String unusedKey = cache.computeKey(createFile("unused.jar", "unused classes"));
+    cache.store(usedKey, createFile("used-dexed.jar", "used dexed classes"));
+    cache.store(unusedKey, createFile("unused-dexed.jar", "unused dexed classes"));
+    long now = System.currentTimeMillis();
+    assertTrue(new File(myCacheDir, usedKey + ".jar").setLastModified(now - TimeUnit.DAYS.toMillis(29)));
+    assertTrue(new File(myCacheDir, unusedKey + ".jar").setLastModified(now - TimeUnit.DAYS.toMillis(31)));
+
+    cache.removeUnusedEntries();
+    assertTrue(new File(myCacheDir, usedKey + ".jar").isFile());
+    assertFalse(new File(myCacheDir, unusedKey + ".jar").exists());
+  }
+
+  public void testRemoveUnusedEntriesWithoutCacheDir() {
+    new AndroidPreDexCache(myCacheDir, "dx").removeUnusedEntries();
+    assertFalse(myCacheDir.exists());
+  }
+}
@@ -25,6 +25,7 @@ import com.google.common.annotations.VisibleForTesting
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.ui.Messages
 import com.intellij.openapi.util.Disposer
 import java.util.concurrent.atomic.AtomicLong
@@ -32,11 +33,14 @@ import java.util.concurrent.atomic.AtomicLong
 @VisibleForTesting
 const val SHOW_ERROR_MESSAGES_IN_DIALOG = false
 
+private val LOG = Logger.getInstance(LayoutInspector::class.java)
+
 class LayoutInspector(val layoutInspectorModel: InspectorModel, parentDisposable: Disposable) : Disposable {
   var currentClient: InspectorClient = DisconnectedClient
     private set(client) {
       if (field != client) {
         field.disconnect()
+        field.treeLoader.reset()
         field = client
         layoutInspectorModel.updateConnection(client)
       }
@@ -73,6 +77,7 @@ class LayoutInspector(val layoutInspectorModel: InspectorModel, parentDisposable
     val allIds = currentClient.treeLoader.getAllWindowIds(event, currentClient)
     val (root, rootId) = currentClient.treeLoader.loadComponentTree(event, layoutInspectorModel.resourceLookup,
                                                                     currentClient, layoutInspectorModel.project) ?: return
+    val loadTime = System.currentTimeMillis() - time
     if (rootId != null && allIds != null) {
       ApplicationManager.getApplication().invokeLater {
         synchronized(latestLoadTime) {
@@ -82,6 +87,8 @@ class LayoutInspector(val layoutInspectorModel: InspectorModel, parentDisposable
           latestLoadTime.set(time)
           layoutInspectorModel.update(root, rootId, allIds)
         }
+        val latency = System.currentTimeMillis() - time
+        LOG.debug { "Component tree of window $rootId loaded in ${loadTime}ms, shown after ${latency}ms" }
       }
     }
   }
@@ -29,6 +29,7 @@ import com.android.tools.layoutinspector.proto.LayoutInspectorProto.ComponentTre
 import com.android.tools.layoutinspector.proto.LayoutInspectorProto.ComponentTreeEvent.PayloadType.PNG_SKP_TOO_LARGE
 import com.android.tools.layoutinspector.proto.LayoutInspectorProto.ComponentTreeEvent.PayloadType.SKP
 import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.LowMemoryWatcher
@@ -36,6 +37,8 @@ import com.intellij.util.ui.UIUtil
 import java.awt.Image
 import java.awt.Rectangle
 import java.io.ByteArrayInputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicLong
 import javax.imageio.ImageIO
@@ -46,6 +49,8 @@ private val LOAD_TIMEOUT = TimeUnit.SECONDS.toMillis(20)
  * A [TreeLoader] that uses a [DefaultInspectorClient] to fetch a view tree from an API 29+ device, and parses it into [ViewNode]s
  */
 object ComponentTreeLoader : TreeLoader {
+  // The last frame loaded for each window, by root draw id. Used to skip frames identical to the one already in the model.
+  private val lastFrames = ConcurrentHashMap<Long, FrameDigest>()
 
   override fun loadComponentTree(
     data: Any?, resourceLookup: ResourceLookup, client: InspectorClient, project: Project
@@ -58,7 +63,13 @@ object ComponentTreeLoader : TreeLoader {
     maybeEvent: Any?, resourceLookup: ResourceLookup, client: InspectorClient, skiaParser: SkiaParserService, project: Project
   ): ViewNode? {
     val event = maybeEvent as? LayoutInspectorProto.LayoutInspectorEvent ?: return null
-    return ComponentTreeLoaderImpl(event.tree, resourceLookup).loadComponentTree(client, skiaParser, project)
+    // Windows that are gone from the device are removed from the model as well: forget their last frames.
+    lastFrames.keys.retainAll(event.tree.allWindowIdsList.toSet())
+    return ComponentTreeLoaderImpl(event.tree, resourceLookup, lastFrames).loadComponentTree(client, skiaParser, project)
+  }
+
+  override fun reset() {
+    lastFrames.clear()
   }
 
   override fun getAllWindowIds(data: Any?, client: InspectorClient): List<Long>? {
@@ -67,8 +78,21 @@ object ComponentTreeLoader : TreeLoader {
   }
 }
 
+/**
+ * The parts of a [LayoutInspectorProto.ComponentTreeEvent] that determine the loaded tree: the event itself without its payload id,
+ * and a hash of the payload.
+ */
+private class FrameDigest(tree: LayoutInspectorProto.ComponentTreeEvent, payload: ByteArray, val time: Long) {
+  private val tree = tree.toBuilder().clearPayloadId().build()
+  private val payloadHash = Hashing.murmur3_128().hashBytes(payload)
+
+  fun isSameFrame(other: FrameDigest?) = other != null && payloadHash == other.payloadHash && tree == other.tree
+}
+
 private class ComponentTreeLoaderImpl(
-  private val tree: LayoutInspectorProto.ComponentTreeEvent, private val resourceLookup: ResourceLookup?
+  private val tree: LayoutInspectorProto.ComponentTreeEvent,
+  private val resourceLookup: ResourceLookup?,
+  private val lastFrames: ConcurrentMap<Long, FrameDigest>
 ) {
   private val loadStartTime = AtomicLong(-1)
   private val stringTable = StringTableImpl(tree.stringList)
@@ -89,9 +113,15 @@ private class ComponentTreeLoaderImpl(
       return null
     }
     return try {
+      val bytes = defaultClient.getPayload(tree.payloadId)
+      val windowId = tree.root.drawId
+      val digest = FrameDigest(tree, bytes, time)
+      if (tree.hasRoot() && digest.isSameFrame(lastFrames[windowId])) {
+        // The device sent the same picture and tree again: there is nothing to parse, composite or update.
+        return null
+      }
       val rootView = loadRootView() ?: return null
       rootView.imageType = tree.payloadType
-      val bytes = defaultClient.getPayload(tree.payloadId)
       if (bytes.isNotEmpty()) {
         try {
           when (tree.payloadType) {
@@ -104,6 +134,10 @@ private class ComponentTreeLoaderImpl(
           Logger.getInstance(LayoutInspector::class.java).warn(ex)
         }
       }
+      if (!isInterrupted) {
+        // Frames loaded concurrently may finish out of order: only remember the latest one.
+        lastFrames.merge(windowId, digest) { old, new -> if (new.time >= old.time) new else old }
+      }
       rootView
     }
     finally {
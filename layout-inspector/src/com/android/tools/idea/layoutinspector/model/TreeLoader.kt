@@ -30,4 +30,10 @@ interface TreeLoader {
   fun loadComponentTree(data: Any?, resourceLookup: ResourceLookup, client: InspectorClient, project: Project): Pair<ViewNode, *>?
 
   fun getAllWindowIds(data: Any?, client: InspectorClient): List<*>?
+
+  /**
+   * Forget any state kept from previously loaded trees, e.g. after the model was cleared. The next call to [loadComponentTree] for
+   * each window will return a complete tree.
+   */
+  fun reset() {}
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import com.android.tools.layoutinspector.proto.LayoutInspectorProto
 import com.android.tools.layoutinspector.proto.LayoutInspectorProto.ComponentTreeEvent.PayloadType.PNG_AS_REQUESTED
 import com.google.common.truth.Truth.assertThat
 import com.intellij.testFramework.ProjectRule
+import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
 import org.mockito.ArgumentMatchers
@@ -113,6 +114,11 @@ class ComponentTreeLoaderTest {
   @get:Rule
   val projectRule = ProjectRule()
 
+  @Before
+  fun setUp() {
+    ComponentTreeLoader.reset()
+  }
+
   @Test
   fun testLoad() {
     val image1 = mock(Image::class.java)
@@ -174,6 +180,64 @@ class ComponentTreeLoaderTest {
     assertThat(node4.children).isEmpty()
   }
 
+  @Test
+  fun testIdenticalFrameIsSkipped() {
+    val client = mock(DefaultInspectorClient::class.java)
+    val payload = "samplepicture".toByteArray()
+    `when`(client.getPayload(111)).thenReturn(payload)
+    val skiaParser = mock(SkiaParserService::class.java)!!
+    `when`(skiaParser.getViewTree(eq(payload), any())).thenReturn(
+      InspectorView("1", "com.example.MyViewClass1", 0, 0, 100, 200, mock(Image::class.java)))
+    val resourceLookup = ResourceLookup(projectRule.project)
+
+    val firstEvent = windowEvent(1, 111, 1, 456)
+    assertThat(ComponentTreeLoader.loadComponentTree(firstEvent, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+    // The same tree sent again with a new payload id but the same picture
+    val sameEvent = windowEvent(1, 222, 1, 456)
+    `when`(client.getPayload(222)).thenReturn(payload.copyOf())
+    assertThat(ComponentTreeLoader.loadComponentTree(sameEvent, resourceLookup, client, skiaParser, projectRule.project)).isNull()
+    verify(skiaParser, Times(1)).getViewTree(any(), any())
+
+    // A different picture is loaded again
+    `when`(client.getPayload(222)).thenReturn("otherpicture".toByteArray())
+    assertThat(ComponentTreeLoader.loadComponentTree(sameEvent, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+
+    // After a reset the same frame is loaded again
+    ComponentTreeLoader.reset()
+    assertThat(ComponentTreeLoader.loadComponentTree(sameEvent, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+  }
+
+  @Test
+  fun testFrameOfClosedWindowIsForgotten() {
+    val client = mock(DefaultInspectorClient::class.java)
+    val payload = "samplepicture".toByteArray()
+    `when`(client.getPayload(111)).thenReturn(payload)
+    `when`(client.getPayload(222)).thenReturn(payload)
+    val skiaParser = mock(SkiaParserService::class.java)!!
+    `when`(skiaParser.getViewTree(eq(payload), any())).thenReturn(
+      InspectorView("1", "com.example.MyViewClass1", 0, 0, 100, 200, mock(Image::class.java)))
+    val resourceLookup = ResourceLookup(projectRule.project)
+
+    val window1Event = windowEvent(1, 111, 1, 456)
+    assertThat(ComponentTreeLoader.loadComponentTree(window1Event, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+    // Window 1 is closed
+    val window456Event = windowEvent(456, 222, 456)
+    assertThat(ComponentTreeLoader.loadComponentTree(window456Event, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+    // When it is opened again with the same content, it is loaded as a new window
+    assertThat(ComponentTreeLoader.loadComponentTree(window1Event, resourceLookup, client, skiaParser, projectRule.project)).isNotNull()
+    verify(skiaParser, Times(3)).getViewTree(any(), any())
+  }
+
+  private fun windowEvent(windowId: Long, payloadId: Int, vararg allWindowIds: Long) =
+    LayoutInspectorProto.LayoutInspectorEvent.newBuilder(event).apply {
+      tree = LayoutInspectorProto.ComponentTreeEvent.newBuilder(tree).apply {
+        root = root.toBuilder().setDrawId(windowId).build()
+        setPayloadId(payloadId)
+        clearAllWindowIds()
+        addAllAllWindowIds(allWindowIds.asList())
+      }.build()
+    }.build()
+
   @Test
   fun testFallback() {
     val imageFile = File(TestUtils.getWorkspaceRoot(), "$TEST_DATA_PATH/image1.png")
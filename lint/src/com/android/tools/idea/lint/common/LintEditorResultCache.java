@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common;
+
+import com.android.tools.lint.detector.api.Issue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ProjectRootModificationTracker;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Per-module cache of the problems found by {@link LintExternalAnnotator} in a single file.
+ * <p>
+ * An entry is only reused if the modification stamp and content of the file, the project-wide PSI modification count and the set of
+ * enabled issues are the same as when the entry was computed. This makes re-running the annotator when nothing changed (e.g. after
+ * switching editors, or after the daemon restarts for a reason other than a PSI change) free. Any PSI change in the project invalidates
+ * the entry, as a problem may depend on other files (e.g. through a resolved call). The cache is discarded when the project roots
+ * change.
+ */
+final class LintEditorResultCache {
+  private static final Key<CachedValue<LintEditorResultCache>> KEY = Key.create("LintEditorResultCache");
+  private static final int MAX_ENTRIES = 50;
+
+  private final Map<String, Entry> myEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  private int myHitCount;
+
+  @NotNull
+  static LintEditorResultCache getInstance(@NotNull Module module) {
+    return CachedValuesManager.getManager(module.getProject()).getCachedValue(
+      module, KEY,
+      () -> CachedValueProvider.Result.create(new LintEditorResultCache(), ProjectRootModificationTracker.getInstance(module.getProject())),
+      false);
+  }
+
+  /**
+   * Returns the problems previously stored for the given file, or {@code null} if there are none or they no longer apply.
+   *
+   * @param modificationStamp    the modification stamp of the file when {@code content} was read
+   * @param psiModificationCount the project-wide PSI modification count when {@code content} was read
+   */
+  @Nullable
+  synchronized List<LintProblemData> get(@NotNull VirtualFile file,
+                                         @NotNull String content,
+                                         @NotNull Set<Issue> issues,
+                                         long modificationStamp,
+                                         long psiModificationCount) {
+    Entry entry = myEntries.get(file.getPath());
+    if (entry == null || !entry.matches(modificationStamp, psiModificationCount, hash(content), issues)) {
+      return null;
+    }
+    myHitCount++;
+    return entry.problems;
+  }
+
+  synchronized void put(@NotNull VirtualFile file,
+                        @NotNull String content,
+                        @NotNull Set<Issue> issues,
+                        long modificationStamp,
+                        long psiModificationCount,
+                        @NotNull List<LintProblemData> problems) {
+    myEntries.put(file.getPath(), new Entry(modificationStamp, psiModificationCount, hash(content), ImmutableSet.copyOf(issues),
+                                            ImmutableList.copyOf(problems)));
+  }
+
+  @VisibleForTesting
+  synchronized int getHitCount() {
+    return myHitCount;
+  }
+
+  @NotNull
+  private static HashCode hash(@NotNull String content) {
+    return Hashing.murmur3_128().hashUnencodedChars(content);
+  }
+
+  private static final class Entry {
+    final long modificationStamp;
+    final long psiModificationCount;
+    @NotNull final HashCode contentHash;
+    @NotNull final Set<Issue> issues;
+    @NotNull final List<LintProblemData> problems;
+
+    Entry(long modificationStamp,
+          long psiModificationCount,
+          @NotNull HashCode contentHash,
+          @NotNull Set<Issue> issues,
+          @NotNull List<LintProblemData> problems) {
+      this.modificationStamp = modificationStamp;
+      this.psiModificationCount = psiModificationCount;
+      this.contentHash = contentHash;
+      this.issues = issues;
+      this.problems = problems;
+    }
+
+    boolean matches(long modificationStamp, long psiModificationCount, @NotNull HashCode contentHash, @NotNull Set<Issue> issues) {
+      return this.modificationStamp == modificationStamp &&
+             this.psiModificationCount == psiModificationCount &&
+             this.contentHash.equals(contentHash) &&
+             this.issues.equals(issues);
+    }
+  }
+}
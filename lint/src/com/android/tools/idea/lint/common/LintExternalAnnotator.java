@@ -119,7 +119,8 @@ public class LintExternalAnnotator extends ExternalAnnotator<LintEditorResult, L
     }
 
     final Set<Issue> issues = getIssuesFromInspections(file.getProject(), file);
-    return new LintEditorResult(module, vFile, file.getText(), issues);
+    return new LintEditorResult(module, vFile, file.getText(), issues, file.getModificationStamp(),
+                                file.getManager().getModificationTracker().getModificationCount());
   }
 
   @Override
@@ -173,6 +174,14 @@ public class LintExternalAnnotator extends ExternalAnnotator<LintEditorResult, L
         return lintResult; // Lint cannot run in dumb mode.
       }
 
+      LintEditorResultCache cache = LintEditorResultCache.getInstance(lintResult.getModule());
+      List<LintProblemData> cachedProblems = cache.get(mainFile, lintResult.getMainFileContent(), lintResult.getIssues(),
+                                                       lintResult.getMainFileModificationStamp(), lintResult.getPsiModificationCount());
+      if (cachedProblems != null) {
+        lintResult.getProblems().addAll(cachedProblems);
+        return lintResult;
+      }
+
       List<VirtualFile> files = Collections.singletonList(mainFile);
       LintRequest request = new LintIdeRequest(client, project, files,
                                                Collections.singletonList(lintResult.getModule()), true /* incremental */);
@@ -183,6 +192,12 @@ public class LintExternalAnnotator extends ExternalAnnotator<LintEditorResult, L
 
       lint.setAnalysisStartTime(startTime);
       LintIdeSupport.get().logSession(lint, lintResult);
+
+      // Don't remember results for a file that was edited while lint was running.
+      if (!lintResult.isDirty()) {
+        cache.put(mainFile, lintResult.getMainFileContent(), lintResult.getIssues(), lintResult.getMainFileModificationStamp(),
+                  lintResult.getPsiModificationCount(), lintResult.getProblems());
+      }
     }
     finally {
       Disposer.dispose(client);
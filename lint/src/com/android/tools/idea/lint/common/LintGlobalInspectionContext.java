@@ -39,6 +39,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.module.impl.scopes.ModuleWithDependenciesScope;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.util.ProgressWrapper;
@@ -52,21 +53,30 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 public class LintGlobalInspectionContext implements GlobalInspectionContextExtension<LintGlobalInspectionContext> {
   static final Key<LintGlobalInspectionContext> ID = Key.create("LintGlobalInspectionContext");
+  private static volatile boolean ourAnalyzeModuleGroupsConcurrently = true;
   private Map<Issue, Map<File, List<LintProblemData>>> myResults;
   private LintBaseline myBaseline;
   private Issue myEnabledIssue;
@@ -252,10 +262,6 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    LintRequest request = new LintIdeRequest(client, project, files, modules, false);
-    request.setScope(lintScope);
-    final LintDriver lint = new LintDriver(LintIdeIssueRegistry.get(), client, request);
-
     // Baseline analysis?
     myBaseline = null;
     Module severityModule = null;
@@ -274,7 +280,6 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
           }
         }
         myBaseline = new LintBaseline(client, baselineFile);
-        lint.setBaseline(myBaseline);
         if (!baselineFile.isFile()) {
           myBaseline.setWriteOnClose(true);
         }
@@ -286,7 +291,22 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    // Modules which no other module depends on can be analyzed concurrently, each with its dependencies. A baseline is shared by the
+    // whole run, so it forces a single analysis.
+    List<List<Module>> moduleGroups = files == null && myBaseline == null && ourAnalyzeModuleGroupsConcurrently
+                                      ? groupIndependentModules(modules)
+                                      : Collections.singletonList(modules);
+    final LintDriver lint;
+    if (moduleGroups.size() <= 1) {
+      lint = createDriver(client, project, files, modules, lintScope);
+      if (myBaseline != null) {
+        lint.setBaseline(myBaseline);
+      }
+      lint.analyze();
+    }
+    else {
+      lint = analyzeConcurrently(ideSupport, project, moduleGroups, lintScope, lintResult, indicator);
+    }
 
     // Running all detectors? Then add dynamically registered detectors too.
     if (!runningSingleInspection) {
@@ -329,6 +349,134 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
     myResults = problemMap;
   }
 
+  @NotNull
+  private static LintDriver createDriver(@NotNull LintIdeClient client,
+                                         @NotNull Project project,
+                                         @Nullable List<VirtualFile> files,
+                                         @NotNull List<Module> modules,
+                                         @Nullable EnumSet<Scope> lintScope) {
+    LintRequest request = new LintIdeRequest(client, project, files, modules, false);
+    request.setScope(lintScope);
+    return new LintDriver(LintIdeIssueRegistry.get(), client, request);
+  }
+
+  /**
+   * Runs one lint driver per module group on a bounded pool and merges the problems found into the problem map of {@code lintResult}.
+   * Modules shared by several groups are analyzed by each of them, so their problems are only added once.
+   *
+   * @return the driver of the first (largest) group, used for logging the session
+   */
+  @NotNull
+  private static LintDriver analyzeConcurrently(@NotNull LintIdeSupport ideSupport,
+                                                @NotNull Project project,
+                                                @NotNull List<List<Module>> moduleGroups,
+                                                @Nullable EnumSet<Scope> lintScope,
+                                                @NotNull LintBatchResult lintResult,
+                                                @Nullable ProgressIndicator indicator) {
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "Android Lint", Math.min(moduleGroups.size(), Runtime.getRuntime().availableProcessors()));
+    List<LintBatchResult> groupResults = new ArrayList<>(moduleGroups.size());
+    List<Future<LintDriver>> futures = new ArrayList<>(moduleGroups.size());
+    for (List<Module> group : moduleGroups) {
+      LintBatchResult groupResult = new LintBatchResult(project, new HashMap<>(), lintResult.getScope(), lintResult.getIssues());
+      groupResults.add(groupResult);
+      futures.add(executor.submit(() -> {
+        LintDriver lint = createDriver(ideSupport.createBatchClient(groupResult), project, null, group, lintScope);
+        if (indicator != null) {
+          ProgressManager.getInstance().runProcess(lint::analyze, indicator);
+        }
+        else {
+          lint.analyze();
+        }
+        return lint;
+      }));
+    }
+
+    List<LintDriver> drivers = new ArrayList<>(futures.size());
+    try {
+      for (Future<LintDriver> future : futures) {
+        drivers.add(future.get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      futures.forEach(future -> future.cancel(false));
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(false));
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+
+    Map<Issue, Map<File, List<LintProblemData>>> problemMap = lintResult.getProblemMap();
+    Set<List<Object>> addedProblems = new HashSet<>();
+    for (LintBatchResult groupResult : groupResults) {
+      for (Map.Entry<Issue, Map<File, List<LintProblemData>>> issueEntry : groupResult.getProblemMap().entrySet()) {
+        Map<File, List<LintProblemData>> file2ProblemList = problemMap.computeIfAbsent(issueEntry.getKey(), issue -> new HashMap<>());
+        for (Map.Entry<File, List<LintProblemData>> fileEntry : issueEntry.getValue().entrySet()) {
+          List<LintProblemData> problems = file2ProblemList.computeIfAbsent(fileEntry.getKey(), file -> new ArrayList<>());
+          for (LintProblemData problem : fileEntry.getValue()) {
+            if (addedProblems.add(Arrays.asList(issueEntry.getKey(), fileEntry.getKey(), problem.getTextRange(), problem.getMessage()))) {
+              problems.add(problem);
+            }
+          }
+        }
+      }
+    }
+    return drivers.get(0);
+  }
+
+  /**
+   * Partitions {@code modules} into groups which can be analyzed independently: one group for each module no other module in
+   * {@code modules} depends on, together with all the modules it depends on, directly or not. Checks looking at a project together with
+   * its libraries therefore see the same projects as when everything is analyzed at once. A module shared by several of those modules is
+   * part of each of their groups. Larger groups come first.
+   */
+  @NotNull
+  static List<List<Module>> groupIndependentModules(@NotNull List<Module> modules) {
+    Map<Module, Set<Module>> dependenciesByModule = new HashMap<>();
+    ApplicationManager.getApplication().runReadAction(() -> {
+      for (Module module : modules) {
+        Set<Module> dependencies = new HashSet<>();
+        ModuleUtilCore.getDependencies(module, dependencies);
+        dependenciesByModule.put(module, dependencies);
+      }
+    });
+
+    Set<Module> roots = new LinkedHashSet<>(modules);
+    dependenciesByModule.forEach((module, dependencies) -> {
+      for (Module dependency : dependencies) {
+        if (dependency != module) {
+          roots.remove(dependency);
+        }
+      }
+    });
+
+    List<List<Module>> groups = new ArrayList<>(roots.size());
+    Set<Module> groupedModules = new HashSet<>();
+    for (Module root : roots) {
+      Set<Module> dependencies = dependenciesByModule.get(root);
+      List<Module> group = ContainerUtil.filter(modules, dependencies::contains);
+      groupedModules.addAll(group);
+      groups.add(group);
+    }
+    if (groupedModules.size() < modules.size()) {
+      // Modules in a dependency cycle which nothing else depends on belong to no group.
+      return Collections.singletonList(modules);
+    }
+    groups.sort((group1, group2) -> Integer.compare(group2.size(), group1.size()));
+    return groups;
+  }
+
+  @TestOnly
+  public static void setAnalyzeModuleGroupsConcurrently(boolean analyzeModuleGroupsConcurrently) {
+    ourAnalyzeModuleGroupsConcurrently = analyzeModuleGroupsConcurrently;
+  }
+
   @Nullable
   public Map<Issue, Map<File, List<LintProblemData>>> getResults() {
     return myResults;
@@ -48,7 +48,11 @@ data class LintBatchResult(val project: Project,
 class LintEditorResult constructor(private val myModule: Module,
                                             val mainFile: VirtualFile,
                                             val mainFileContent: String,
-                                            private val myIssues: Set<Issue>) : LintResult() {
+                                            private val myIssues: Set<Issue>,
+                                            /** The modification stamp of the main file when [mainFileContent] was read. */
+                                            val mainFileModificationStamp: Long = 0,
+                                            /** The project-wide PSI modification count when [mainFileContent] was read. */
+                                            val psiModificationCount: Long = 0) : LintResult() {
   val problems: List<LintProblemData> = ArrayList()
 
   @Volatile
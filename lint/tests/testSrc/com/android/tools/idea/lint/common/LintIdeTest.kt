@@ -32,14 +32,18 @@ import com.intellij.codeInspection.ex.InspectionToolWrapper
 import com.intellij.ide.highlighter.ModuleFileType
 import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.application.ex.PathManagerEx
+import com.intellij.openapi.application.runWriteAction
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.module.ModuleManager
 import com.intellij.openapi.module.ModuleTypeId
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ModuleRootModificationUtil
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.vfs.newvfs.impl.VfsRootAccess
+import com.intellij.psi.PsiDocumentManager
 import com.intellij.testFramework.InspectionTestUtil
+import com.intellij.testFramework.PsiTestUtil
 import com.intellij.testFramework.UsefulTestCase
 import com.intellij.testFramework.builders.JavaModuleFixtureBuilder
 import com.intellij.testFramework.createGlobalContextForTool
@@ -178,6 +182,52 @@ class LintIdeTest : UsefulTestCase() {
                   "java")
   }
 
+  fun testEditorResultsAreReusedForUnchangedFiles() {
+    myFixture.enableInspections(AndroidLintUseValueOfInspection())
+    val file = addValueOfFile()
+    val annotator = LintExternalAnnotator()
+    val first = annotator.doAnnotate(annotator.collectInformation(file))
+    assertThat(first.problems).hasSize(1)
+
+    val second = annotator.doAnnotate(annotator.collectInformation(file))
+    assertThat(second.problems).containsExactlyElementsIn(first.problems)
+    assertThat(LintEditorResultCache.getInstance(myModule).hitCount).isEqualTo(1)
+
+    WriteCommandAction.runWriteCommandAction(project) {
+      val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+      document.setText(document.text.replace("new Integer(42)", "Integer.valueOf(42)"))
+      PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+    val third = annotator.doAnnotate(annotator.collectInformation(file))
+    assertThat(third.problems).isEmpty()
+    assertThat(LintEditorResultCache.getInstance(myModule).hitCount).isEqualTo(1)
+  }
+
+  fun testEditorResultsAreInvalidatedByEditsInOtherFiles() {
+    myFixture.enableInspections(AndroidLintUseValueOfInspection())
+    val file = addValueOfFile()
+    val other = myFixture.addFileToProject("src/p1/p2/Other.java", "package p1.p2;\npublic class Other {}")
+    val annotator = LintExternalAnnotator()
+    val first = annotator.doAnnotate(annotator.collectInformation(file))
+    assertThat(first.problems).hasSize(1)
+
+    WriteCommandAction.runWriteCommandAction(project) {
+      val document = PsiDocumentManager.getInstance(project).getDocument(other)!!
+      document.insertString(document.textLength, "\n")
+      PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+    val afterOtherEdit = annotator.doAnnotate(annotator.collectInformation(file))
+    assertThat(afterOtherEdit.problems).containsExactlyElementsIn(first.problems)
+    assertThat(LintEditorResultCache.getInstance(myModule).hitCount).isEqualTo(0)
+  }
+
+  private fun addValueOfFile() = myFixture.addFileToProject("src/p1/p2/ValueOf.java", """
+      package p1.p2;
+      public class ValueOf {
+        Integer value = new Integer(42);
+      }
+    """.trimIndent())
+
   fun testDisabledTestsEnabledOnTheFly() {
     // If this changes test no longer applies; pick different disabled issue
     assertThat(CommentDetector.STOP_SHIP.isEnabledByDefault()).isFalse()
@@ -202,6 +252,65 @@ class LintIdeTest : UsefulTestCase() {
     doGlobalInspectionTest(AndroidLintUseValueOfInspection())
   }
 
+  fun testModulesAreGroupedWithTheirDependencies() {
+    val lib = createModule("lib")
+    val app2 = createModule("app2")
+    val other = createModule("other")
+    ModuleRootModificationUtil.addDependency(myModule, lib)
+    ModuleRootModificationUtil.addDependency(app2, lib)
+
+    val groups = LintGlobalInspectionContext.groupIndependentModules(listOf(other, myModule, lib, app2))
+    assertThat(groups).containsExactly(listOf(myModule, lib), listOf(lib, app2), listOf(other)).inOrder()
+  }
+
+  fun testConcurrentAnalysisFindsTheSameProblemsAsSerialAnalysis() {
+    val lib = createModule("lib")
+    val app2 = createModule("app2")
+    ModuleRootModificationUtil.addDependency(myModule, lib)
+    ModuleRootModificationUtil.addDependency(app2, lib)
+    assertThat(LintGlobalInspectionContext.groupIndependentModules(listOf(myModule, lib, app2))).hasSize(2)
+    for ((module, name) in listOf(myModule to "App", lib to "Lib", app2 to "App2")) {
+      val path = if (module == myModule) "src/p1/$name.java" else "${module.name}/src/p1/$name.java"
+      myFixture.addFileToProject(path, """
+        package p1;
+        public class $name {
+          Integer value = new Integer(42);
+          Long other = new Long(42);
+        }
+      """.trimIndent())
+    }
+
+    val inspection = AndroidLintUseValueOfInspection()
+    myFixture.enableInspections(inspection)
+    val wrapper = GlobalInspectionToolWrapper(inspection)
+    fun analyze(concurrent: Boolean): List<String> {
+      LintGlobalInspectionContext.setAnalyzeModuleGroupsConcurrently(concurrent)
+      try {
+        val scope = AnalysisScope(project)
+        val globalContext = createGlobalContextForTool(scope, project, listOf<InspectionToolWrapper<*, *>>(wrapper))
+        InspectionTestUtil.runTool(wrapper, scope, globalContext)
+        val results = globalContext.getExtension(LintGlobalInspectionContext.ID)!!.results!!
+        return results.flatMap { (issue, problemsByFile) ->
+          problemsByFile.flatMap { (file, problems) -> problems.map { "${issue.id} ${file.name} ${it.textRange} ${it.message}" } }
+        }.sorted()
+      }
+      finally {
+        LintGlobalInspectionContext.setAnalyzeModuleGroupsConcurrently(true)
+      }
+    }
+
+    val serial = analyze(false)
+    assertThat(serial).hasSize(6)
+    assertThat(analyze(true)).containsExactlyElementsIn(serial).inOrder()
+  }
+
+  private fun createModule(name: String): Module {
+    val moduleFilePath = "${myFixture.tempDirPath}/$name/$name${ModuleFileType.DOT_DEFAULT_EXTENSION}"
+    val module = runWriteAction { ModuleManager.getInstance(project).newModule(moduleFilePath, ModuleTypeId.JAVA_MODULE) }
+    PsiTestUtil.addSourceRoot(module, myFixture.tempDirFixture.findOrCreateDir("$name/src"))
+    return module
+  }
+
   private fun doGlobalInspectionTest(inspection: AndroidLintInspectionBase) {
     myFixture.enableInspections(inspection)
     doGlobalInspectionTest(inspection, globalTestDir, AnalysisScope(myModule))
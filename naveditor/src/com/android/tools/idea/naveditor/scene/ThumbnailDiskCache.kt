@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene
+
+import com.android.tools.adtui.ImageUtils
+import com.android.tools.idea.configurations.Configuration
+import com.google.common.annotations.VisibleForTesting
+import com.google.common.hash.Hashing
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.diagnostic.Logger
+import java.awt.image.BufferedImage
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.stream.Collectors
+import javax.imageio.ImageIO
+
+private const val CACHE_DIR_NAME = "nav-thumbnails"
+private const val MAX_IMAGE_SIZE = 512
+private const val MAX_ENTRIES = 2000
+private const val WRITES_BETWEEN_PRUNES = 100
+
+/**
+ * Stores rendered destination thumbnails on disk, so that they can be displayed immediately when a navigation graph is opened again,
+ * while the layouts are being re-rendered.
+ *
+ * Entries are keyed by a hash of the layout text and the parts of the [Configuration] affecting rendering (see [computeKey]). The
+ * resources referenced by the layout are not part of the key, so a cached image may be out of date and is only suitable as a
+ * placeholder. Images are downscaled to at most [MAX_IMAGE_SIZE] pixels before being stored, and the least recently used entries are
+ * removed once there are more than [MAX_ENTRIES].
+ */
+class ThumbnailDiskCache @VisibleForTesting constructor(private val directory: Path) {
+  private val writesSincePrune = AtomicInteger()
+
+  /**
+   * Returns the image stored for [key], or null if there is none or it could not be read. Must not be called on the UI thread.
+   */
+  fun get(key: String): BufferedImage? {
+    val file = directory.resolve("$key.png")
+    if (!Files.isRegularFile(file)) {
+      return null
+    }
+    return try {
+      ImageIO.read(file.toFile())?.also {
+        // Track usage for pruning.
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()))
+      }
+    }
+    catch (e: IOException) {
+      Logger.getInstance(ThumbnailDiskCache::class.java).debug("Failed to read cached thumbnail $file", e)
+      null
+    }
+  }
+
+  /**
+   * Stores [image] for [key], replacing any previous entry. Must not be called on the UI thread.
+   */
+  fun put(key: String, image: BufferedImage) {
+    val file = directory.resolve("$key.png")
+    val tempFile = directory.resolve("$key.png.tmp")
+    try {
+      Files.createDirectories(directory)
+      ImageIO.write(downscale(image), "png", tempFile.toFile())
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+    catch (e: IOException) {
+      Logger.getInstance(ThumbnailDiskCache::class.java).debug("Failed to write cached thumbnail $file", e)
+      tempFile.toFile().delete()
+      return
+    }
+    if (writesSincePrune.incrementAndGet() >= WRITES_BETWEEN_PRUNES) {
+      writesSincePrune.set(0)
+      prune()
+    }
+  }
+
+  @VisibleForTesting
+  fun prune(maxEntries: Int = MAX_ENTRIES) {
+    try {
+      val entries = Files.list(directory).use { files ->
+        files.filter { it.fileName.toString().endsWith(".png") }.collect(Collectors.toList())
+      }
+      if (entries.size <= maxEntries) {
+        return
+      }
+      entries.sortedBy { Files.getLastModifiedTime(it) }.take(entries.size - maxEntries).forEach { Files.deleteIfExists(it) }
+    }
+    catch (e: IOException) {
+      Logger.getInstance(ThumbnailDiskCache::class.java).debug("Failed to prune thumbnail cache $directory", e)
+    }
+  }
+
+  private fun downscale(image: BufferedImage): BufferedImage {
+    val scale = MAX_IMAGE_SIZE.toDouble() / maxOf(image.width, image.height)
+    return if (scale < 1) ImageUtils.scale(image, scale, scale) else image
+  }
+
+  companion object {
+    private val instance by lazy { ThumbnailDiskCache(Paths.get(PathManager.getSystemPath(), CACHE_DIR_NAME)) }
+
+    @JvmStatic
+    fun getInstance(): ThumbnailDiskCache = instance
+
+    /**
+     * Computes the key under which the thumbnail of a layout with the given [layoutText] is stored when rendered with [configuration].
+     */
+    @JvmStatic
+    fun computeKey(layoutPath: String, layoutText: String, configuration: Configuration): String =
+      computeKey(layoutPath, layoutText, listOf(configuration.device?.id,
+                                                configuration.fullConfig.qualifierString,
+                                                configuration.theme,
+                                                configuration.target?.hashString()))
+
+    @VisibleForTesting
+    @JvmStatic
+    fun computeKey(layoutPath: String, layoutText: String, configurationParts: List<String?>): String {
+      val hasher = Hashing.sha256().newHasher()
+        .putString(layoutPath, StandardCharsets.UTF_8).putByte(0)
+        .putString(layoutText, StandardCharsets.UTF_8).putByte(0)
+      for (part in configurationParts) {
+        hasher.putString(part.orEmpty(), StandardCharsets.UTF_8).putByte(0)
+      }
+      return hasher.hash().toString()
+    }
+  }
+}
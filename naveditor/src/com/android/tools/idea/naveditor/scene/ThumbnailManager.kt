@@ -26,10 +26,12 @@ import com.android.tools.idea.res.LocalResourceRepository
 import com.android.tools.idea.res.ResourceRepositoryManager
 import com.google.common.collect.HashBasedTable
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.runReadAction
 import com.intellij.openapi.util.Key
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.xml.XmlFile
 import com.intellij.reference.SoftReference
+import com.intellij.util.concurrency.AppExecutorUtil
 import com.intellij.util.ui.ImageUtil
 import com.intellij.util.ui.UIUtil
 import org.jetbrains.android.facet.AndroidFacet
@@ -39,9 +41,16 @@ import java.awt.image.BufferedImage
 import java.util.*
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
 
 private val KEY = Key.create<ThumbnailManager>(ThumbnailManager::class.java.name)
 
+/**
+ * Maximum number of layouts rendered at the same time. Opening a graph requests the thumbnails of all its destinations at once; without
+ * a bound each of them would occupy a pooled thread while waiting for the render thread.
+ */
+private val MAX_CONCURRENT_RENDERS = minOf(4, Runtime.getRuntime().availableProcessors())
+
 data class RefinableImage(val image: BufferedImage? = null, val refined: CompletableFuture<RefinableImage?>? = null) {
   val lastCompleted
     get() = generateSequence(this) { if (it.refined?.isDone == true) it.refined.get() else null }.last()
@@ -60,6 +69,14 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   private val myRenderVersions = HashBasedTable.create<VirtualFile, Configuration, Long>()
   private val myRenderModStamps = HashBasedTable.create<VirtualFile, Configuration, Long>()
   private val myResourceRepository: LocalResourceRepository = ResourceRepositoryManager.getAppResources(facet)
+  private val myRenderExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Navigation Thumbnail Renderer",
+                                                                                       MAX_CONCURRENT_RENDERS)
+
+  /**
+   * Cache providing placeholders while layouts are rendered for the first time in this session, or null if it should not be used.
+   */
+  protected open val diskCache: ThumbnailDiskCache?
+    get() = if (ApplicationManager.getApplication().isUnitTestMode) null else ThumbnailDiskCache.getInstance()
 
   @GuardedBy("disposalLock")
   private val myPendingFutures = HashMap<VirtualFile, CompletableFuture<RefinableImage?>>()
@@ -103,10 +120,41 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
       RefinableImage(cached)
     }
     else {
-      RefinableImage(cached, getScaledImage(xmlFile, configuration, dimensions))
+      val scaled = getScaledImage(xmlFile, configuration, dimensions)
+      if (cached != null) {
+        RefinableImage(cached, scaled)
+      }
+      else {
+        RefinableImage(null, withDiskPlaceholder(xmlFile, configuration, dimensions, scaled))
+      }
     }
   }
 
+  /**
+   * Returns a future completing with the image stored in [diskCache], refined by [rendered], or directly with the result of [rendered]
+   * if nothing is stored or rendering completes first.
+   */
+  private fun withDiskPlaceholder(
+    xmlFile: XmlFile,
+    configuration: Configuration,
+    dimensions: Dimension,
+    rendered: CompletableFuture<RefinableImage?>
+  ): CompletableFuture<RefinableImage?> {
+    val diskCache = diskCache ?: return rendered
+    return CompletableFuture.supplyAsync(Supplier {
+      if (rendered.isDone) null else getDiskCacheKey(xmlFile, configuration)?.let { diskCache.get(it) }
+    }, AppExecutorUtil.getAppExecutorService())
+      .thenCompose { stored ->
+        if (stored == null || rendered.isDone) rendered
+        else CompletableFuture.completedFuture<RefinableImage?>(RefinableImage(previewScaleImage(stored, dimensions), rendered))
+      }
+  }
+
+  private fun getDiskCacheKey(xmlFile: XmlFile, configuration: Configuration): String? {
+    val text = runReadAction { if (xmlFile.isValid) xmlFile.text else null } ?: return null
+    return ThumbnailDiskCache.computeKey(xmlFile.virtualFile.path, text, configuration)
+  }
+
   private fun getScaledImage(
     xmlFile: XmlFile,
     configuration: Configuration,
@@ -186,7 +234,7 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
       val result = CompletableFuture<BufferedImage?>()
       // TODO we run in a separate thread because task.render() currently isn't asynchronous
       // if inflate() (which is itself synchronous) hasn't already been called.
-      ApplicationManager.getApplication().executeOnPooledThread {
+      myRenderExecutor.execute {
         try {
           val image = getImage(xmlFile, file, configuration)
           result.complete(image)
@@ -225,6 +273,9 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
   }
 
   private fun getImage(xmlFile: XmlFile, file: VirtualFile, configuration: Configuration): BufferedImage? {
+    val diskCache = diskCache
+    // Compute the key before rendering, so that it matches the rendered content even if the layout is modified in the meantime.
+    val diskCacheKey = if (diskCache != null) getDiskCacheKey(xmlFile, configuration) else null
     val renderService = RenderService.getInstance(module.project)
     val task = createTask(facet, xmlFile, configuration, renderService)
     var renderResult: CompletableFuture<RenderResult>? = null
@@ -232,12 +283,22 @@ open class ThumbnailManager protected constructor(facet: AndroidFacet) : Android
       renderResult = task.render()
     }
     var image: BufferedImage? = null
-    if (renderResult != null) {
-      // This should also be done in a listener if task.render() were actually async.
-      image = renderResult.get().renderedImage.copy
-      myImages.put(file, configuration, SoftReference<BufferedImage>(image))
-      myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
-      myRenderModStamps.put(file, configuration, file.timeStamp)
+    try {
+      if (renderResult != null) {
+        // This should also be done in a listener if task.render() were actually async.
+        image = renderResult.get().renderedImage.copy
+        myImages.put(file, configuration, SoftReference<BufferedImage>(image))
+        myRenderVersions.put(file, configuration, myResourceRepository.modificationCount)
+        myRenderModStamps.put(file, configuration, file.timeStamp)
+      }
+    }
+    finally {
+      task?.dispose()
+    }
+    val rendered = image
+    if (rendered != null && diskCache != null && diskCacheKey != null) {
+      // Encoding is slow compared to the render itself, don't hold a render slot for it.
+      AppExecutorUtil.getAppExecutorService().execute { diskCache.put(diskCacheKey, rendered) }
     }
     return image
   }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.naveditor.scene
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.awt.image.BufferedImage
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+class ThumbnailDiskCacheTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  @Test
+  fun testStoredImagesAreDownscaled() {
+    val cache = ThumbnailDiskCache(temporaryFolder.root.toPath())
+    assertNull(cache.get("key"))
+
+    cache.put("key", BufferedImage(1024, 2048, BufferedImage.TYPE_INT_ARGB))
+    val image = cache.get("key")
+    assertNotNull(image)
+    assertEquals(256, image!!.width)
+    assertEquals(512, image.height)
+
+    cache.put("small", BufferedImage(100, 200, BufferedImage.TYPE_INT_ARGB))
+    assertEquals(100, cache.get("small")!!.width)
+  }
+
+  @Test
+  fun testKeyDependsOnContentAndConfiguration() {
+    val key = ThumbnailDiskCache.computeKey("/res/layout/a.xml", "<FrameLayout/>", listOf("pixel", "en-port", "AppTheme", null))
+    assertEquals(key, ThumbnailDiskCache.computeKey("/res/layout/a.xml", "<FrameLayout/>", listOf("pixel", "en-port", "AppTheme", null)))
+    assertNotEquals(key, ThumbnailDiskCache.computeKey("/res/layout/b.xml", "<FrameLayout/>", listOf("pixel", "en-port", "AppTheme", null)))
+    assertNotEquals(key, ThumbnailDiskCache.computeKey("/res/layout/a.xml", "<LinearLayout/>", listOf("pixel", "en-port", "AppTheme", null)))
+    assertNotEquals(key, ThumbnailDiskCache.computeKey("/res/layout/a.xml", "<FrameLayout/>", listOf("pixel", "en-land", "AppTheme", null)))
+  }
+
+  @Test
+  fun testLeastRecentlyUsedEntriesArePruned() {
+    val directory = temporaryFolder.root.toPath()
+    val cache = ThumbnailDiskCache(directory)
+    for ((index, key) in listOf("a", "b", "c").withIndex()) {
+      cache.put(key, BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB))
+      Files.setLastModifiedTime(directory.resolve("$key.png"), FileTime.fromMillis(1000L * (index + 1)))
+    }
+    // Reading an entry makes it the most recently used one.
+    assertNotNull(cache.get("a"))
+
+    cache.prune(2)
+    assertNull(cache.get("b"))
+    assertNotNull(cache.get("a"))
+    assertNotNull(cache.get("c"))
+  }
+}
@@ -30,6 +30,7 @@ import com.android.tools.idea.res.ResourceRepositoryManager;
 import com.intellij.idea.Bombed;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualFileSystemEntry;
@@ -44,7 +45,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -178,6 +181,61 @@ public class ThumbnailManagerTest extends NavTestCase {
     assertEquals(1, renderCount.get());
   }
 
+  public void testDiskCachePlaceholder() throws Exception {
+    ThumbnailDiskCache diskCache = new ThumbnailDiskCache(FileUtil.createTempDirectory("thumbnails", null).toPath());
+    CountDownLatch renderAllowed = new CountDownLatch(1);
+    ThumbnailManager manager = new ThumbnailManager(myFacet) {
+      @Nullable
+      @Override
+      protected ThumbnailDiskCache getDiskCache() {
+        return diskCache;
+      }
+
+      @Nullable
+      @Override
+      protected RenderTask createTask(@NotNull AndroidFacet facet,
+                                      @NotNull XmlFile file,
+                                      @NotNull Configuration configuration,
+                                      @NotNull RenderService renderService) {
+        try {
+          renderAllowed.await();
+        }
+        catch (InterruptedException e) {
+          fail(e.getMessage());
+        }
+        return ReadAction.compute(() -> RenderTestUtil.createRenderTask(facet, file.getVirtualFile(), configuration));
+      }
+    };
+    Disposer.register(getProject(), manager);
+    VirtualFile file = myFixture.findFileInTempDir("res/layout/activity_main.xml");
+    XmlFile psiFile = (XmlFile)PsiManager.getInstance(getProject()).findFile(file);
+
+    NlModel model = NlModel.create(getMyRootDisposable(), null, myFacet, psiFile.getVirtualFile(), mySurface.getComponentRegistrar());
+    Configuration configuration = model.getConfiguration();
+    String key = ThumbnailDiskCache.computeKey(file.getPath(), psiFile.getText(), configuration);
+    diskCache.put(key, new BufferedImage(10, 20, BufferedImage.TYPE_INT_ARGB));
+
+    // The stored image is shown while the layout renders.
+    RefinableImage thumbnail = manager.getThumbnail(psiFile, configuration, new Dimension(100, 200));
+    assertNull(thumbnail.getImage());
+    RefinableImage placeholder = thumbnail.getRefined().get(5, TimeUnit.SECONDS);
+    assertEquals(100, placeholder.getImage().getWidth());
+    assertFalse(placeholder.getRefined().isDone());
+
+    renderAllowed.countDown();
+    assertNotNull(thumbnail.getTerminalImage());
+
+    // The rendered image replaces the stored one.
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+    BufferedImage stored = diskCache.get(key);
+    while (stored != null && stored.getWidth() == 10 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      stored = diskCache.get(key);
+    }
+    assertNotNull(stored);
+    assertTrue(stored.getWidth() != 10);
+  }
+
   private static final float MAX_PERCENT_DIFFERENT = 1f;
 
   @Bombed(year = 2020, month = Calendar.OCTOBER, day = 1, user = "Andrei.Kuznetsov",
@@ -20,5 +20,9 @@ import trebuchet.io.GenericByteBuffer
 
 
 interface ImporterFactory {
-    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer?
+    /**
+     * Returns an importer for the data in [buffer], or null if this factory doesn't handle it. The importer may use up to
+     * [parallelism] threads.
+     */
+    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback, parallelism: Int): Importer?
 }
\ No newline at end of file
@@ -24,9 +24,9 @@ object ImporterRegistry {
             FtraceImporter.Factory
         )
 
-    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer? {
+    fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback, parallelism: Int): Importer? {
         importers.forEach {
-            val importer = it.importerFor(buffer, feedback)
+            val importer = it.importerFor(buffer, feedback, parallelism)
             if (importer != null) return importer
         }
         return null
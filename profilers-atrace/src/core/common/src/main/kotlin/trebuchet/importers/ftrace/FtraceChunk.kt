@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package trebuchet.importers.ftrace
+
+import trebuchet.io.DataSlice
+import java.util.regex.Pattern
+
+/**
+ * A block of whole trace lines copied out of the input, along with the parsed header (task, pid, cpu, timestamp, function)
+ * of each line.
+ *
+ * Chunks are parsed concurrently, each with its own [FtraceLine.Parser], and then replayed in input order into a single
+ * [FtraceImporterState]. The importer state itself links events across lines (e.g. the begin and end of a slice, or the
+ * previous task of a cpu) so it is only ever touched by one thread.
+ */
+class FtraceChunk(capacity: Int) {
+    companion object {
+        const val SKIPPED: Byte = 0
+        const val CPU_BUFFER_STARTED: Byte = 1
+        const val HEADER: Byte = 2
+        const val EVENT: Byte = 3
+        const val INVALID: Byte = 4
+
+        // pid, tgid, cpu, function start, function end, details start
+        private const val FIELD_COUNT = 6
+
+        private val coreStartedRegex = Pattern.compile("^#+ CPU \\d buffer started #+")
+
+        fun kindOf(line: DataSlice): Byte {
+            // Lines this short can't be parsed anyway. Due to the dereference below we guard against them so we don't throw out of
+            // bounds exceptions.
+            if (line.length < 2) {
+                return SKIPPED
+            }
+            // The format of the line buffer should be either a series of comments, or a tracer line. Null and empty are handled
+            // at a higher level.
+            return when {
+                line[1] == '#'.toByte() && coreStartedRegex.matcher(line.toString()).matches() -> CPU_BUFFER_STARTED
+                line[0] == '#'.toByte() -> HEADER
+                else -> EVENT
+            }
+        }
+    }
+
+    private val buffer = ByteArray(capacity)
+    private var size = 0
+    private var lineEnds = IntArray(capacity / 64)
+    var lineCount = 0
+        private set
+
+    private var kinds = ByteArray(0)
+    private var tasks = arrayOfNulls<String>(0)
+    private var fields = IntArray(0)
+    private var timestamps = DoubleArray(0)
+    private var errors: MutableMap<Int, Exception>? = null
+
+    private val lineSlice = DataSlice()
+
+    /**
+     * Copies [line] at the end of this chunk.
+     *
+     * @return false if the chunk is full, in which case nothing was copied
+     */
+    fun add(line: DataSlice): Boolean {
+        if (size + line.length > buffer.size) {
+            return false
+        }
+        System.arraycopy(line.buffer, line.startIndex, buffer, size, line.length)
+        size += line.length
+        if (lineCount == lineEnds.size) {
+            lineEnds = lineEnds.copyOf(lineCount * 2 + 1)
+        }
+        lineEnds[lineCount++] = size
+        return true
+    }
+
+    fun kind(index: Int) = kinds[index]
+
+    fun line(index: Int): DataSlice {
+        lineSlice.set(buffer, if (index == 0) 0 else lineEnds[index - 1], lineEnds[index])
+        return lineSlice
+    }
+
+    /**
+     * Parses the header of every line in the chunk. This may run on any thread, but [parser] must not be used concurrently.
+     */
+    fun parse(parser: FtraceLine.Parser) {
+        kinds = ByteArray(lineCount)
+        tasks = arrayOfNulls(lineCount)
+        fields = IntArray(lineCount * FIELD_COUNT)
+        timestamps = DoubleArray(lineCount)
+        for (i in 0 until lineCount) {
+            val line = line(i)
+            kinds[i] = kindOf(line)
+            if (kinds[i] != EVENT) {
+                continue
+            }
+            try {
+                parser.parseLine(line) { record(i, it) }
+            } catch (ex: Exception) {
+                kinds[i] = INVALID
+                val errors = errors ?: HashMap<Int, Exception>().also { errors = it }
+                errors[i] = ex
+            }
+        }
+    }
+
+    private fun record(index: Int, line: FtraceLine) {
+        tasks[index] = line.task
+        timestamps[index] = line.timestamp
+        val offset = index * FIELD_COUNT
+        fields[offset] = line.pid
+        fields[offset + 1] = line.tgid
+        fields[offset + 2] = line.cpu
+        fields[offset + 3] = line.function.startIndex
+        fields[offset + 4] = line.function.endIndex
+        fields[offset + 5] = line.functionDetailsReader.index
+    }
+
+    /**
+     * Passes the line at [index], as it was parsed by [parse], to [callback]. Rethrows the exception [parse] ran into if the line
+     * could not be parsed.
+     */
+    fun replayLine(index: Int, replayer: FtraceLine.Replayer, callback: (FtraceLine) -> Unit) {
+        errors?.get(index)?.let { throw it }
+        val offset = index * FIELD_COUNT
+        replayer.replay(buffer, tasks[index], fields[offset], fields[offset + 1], fields[offset + 2], timestamps[index],
+                fields[offset + 3], fields[offset + 4], fields[offset + 5], lineEnds[index], callback)
+    }
+}
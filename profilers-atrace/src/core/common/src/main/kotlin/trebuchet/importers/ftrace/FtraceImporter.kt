@@ -24,10 +24,19 @@ import trebuchet.io.GenericByteBuffer
 import trebuchet.io.StreamingLineReader
 import trebuchet.io.StreamingReader
 import trebuchet.model.fragments.ModelFragment
+import trebuchet.util.StringCache
 import trebuchet.util.contains
-import java.util.regex.Pattern
+import java.util.ArrayDeque
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
 
-class FtraceImporter(val feedback: ImportFeedback) : Importer {
+/**
+ * Imports ftrace text. When [parallelism] is greater than 1, the lines are parsed concurrently on the common fork-join pool;
+ * otherwise the whole import runs on the calling thread.
+ */
+class FtraceImporter(val feedback: ImportFeedback, private val parallelism: Int) : Importer {
     var foundHeader = false
     var state = FtraceImporterState(feedback)
     val parser = FtraceLine.Parser(state.stringCache)
@@ -35,49 +44,117 @@ class FtraceImporter(val feedback: ImportFeedback) : Importer {
     // Create captured lambads here to avoid extra kotlin-generated overhead
     private val lineReaderCallback: (DataSlice) -> Unit = this::handleLine
     private var ftraceParserCallback: (FtraceLine) -> Unit = state::importLine
-    private val coreStartedRegex = Pattern.compile("^#+ CPU \\d buffer started #+")
 
     override fun import(stream: StreamingReader): ModelFragment? {
         val lineReader = StreamingLineReader(1024, stream)
         foundHeader = false
-        lineReader.forEachLine(lineReaderCallback)
+        if (parallelism > 1) {
+            importConcurrently(lineReader)
+        } else {
+            lineReader.forEachLine(lineReaderCallback)
+        }
         return state.finish()
     }
 
     fun handleLine(line: DataSlice) {
-        // This should never happen. However due to the dereference below we guard against it so we don't throw out of bounds exceptions.
-        if (line.buffer.size < 2) {
-            return
+        when (FtraceChunk.kindOf(line)) {
+            FtraceChunk.CPU_BUFFER_STARTED -> resetState()
+            FtraceChunk.HEADER -> foundHeader = true
+            FtraceChunk.EVENT -> if (foundHeader) {
+                try {
+                    parser.parseLine(line, ftraceParserCallback)
+                } catch (ex: Exception) {
+                    reportParseFailure(line, ex)
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the input into chunks of whole lines, parses the lines of up to [parallelism] chunks concurrently and imports the parsed
+     * lines on the calling thread, in input order.
+     */
+    private fun importConcurrently(lineReader: StreamingLineReader) {
+        val parsers = ConcurrentLinkedQueue<FtraceLine.Parser>()
+        val pending = ArrayDeque<Future<FtraceChunk>>()
+        val replayer = FtraceLine.Replayer(parser.stringCache)
+        val maxPending = parallelism * 2
+
+        fun submit(chunk: FtraceChunk) {
+            if (pending.size >= maxPending) {
+                importChunk(pending.removeFirst().get(), replayer)
+            }
+            pending.addLast(ForkJoinPool.commonPool().submit(Callable {
+                // Each parser, and its string cache, is only used by one thread at a time.
+                val chunkParser = parsers.poll() ?: FtraceLine.Parser(StringCache())
+                try {
+                    chunk.parse(chunkParser)
+                } finally {
+                    parsers.add(chunkParser)
+                }
+                chunk
+            }))
         }
-        // The format of the line buffer should be either a series of comments, or a tracer line. Null and empty are handled
-        // at a higher level.
-        if (line[1] == '#'.toByte() && coreStartedRegex.matcher(line.toString()).matches()) {
-            // Fix inconsistencies in traces due to circular buffering.
-            //
-            //  The circular buffers are kept per CPU, so it is not guaranteed that the
-            //  beginning of a slice is overwritten before the end. To work around this, we
-            //  throw away the prefix of the trace where not all CPUs have events yet.
-            state = FtraceImporterState(feedback)
-            ftraceParserCallback = state::importLine
+
+        var chunk = FtraceChunk(CHUNK_SIZE)
+        lineReader.forEachLine { line ->
+            if (!chunk.add(line)) {
+                submit(chunk)
+                // A line longer than a whole chunk gets a chunk of its own
+                chunk = FtraceChunk(maxOf(CHUNK_SIZE, line.length))
+                chunk.add(line)
+            }
         }
-        else if (line[0] == '#'.toByte()) {
-            foundHeader = true
-        } else if (foundHeader) {
-            try {
-                parser.parseLine(line, ftraceParserCallback)
-            } catch (ex: Exception) {
-                if (line.toString().isNotBlank()) {
-                    feedback.reportImportWarning("Failed to parse: '$line'")
-                    feedback.reportImportException(ex)
+        if (chunk.lineCount > 0) {
+            submit(chunk)
+        }
+        while (pending.isNotEmpty()) {
+            importChunk(pending.removeFirst().get(), replayer)
+        }
+    }
+
+    private fun importChunk(chunk: FtraceChunk, replayer: FtraceLine.Replayer) {
+        for (i in 0 until chunk.lineCount) {
+            when (chunk.kind(i)) {
+                FtraceChunk.CPU_BUFFER_STARTED -> resetState()
+                FtraceChunk.HEADER -> foundHeader = true
+                FtraceChunk.EVENT, FtraceChunk.INVALID -> if (foundHeader) {
+                    try {
+                        chunk.replayLine(i, replayer, ftraceParserCallback)
+                    } catch (ex: Exception) {
+                        reportParseFailure(chunk.line(i), ex)
+                    }
                 }
             }
         }
     }
 
+    private fun resetState() {
+        // Fix inconsistencies in traces due to circular buffering.
+        //
+        //  The circular buffers are kept per CPU, so it is not guaranteed that the
+        //  beginning of a slice is overwritten before the end. To work around this, we
+        //  throw away the prefix of the trace where not all CPUs have events yet.
+        state = FtraceImporterState(feedback)
+        ftraceParserCallback = state::importLine
+    }
+
+    private fun reportParseFailure(line: DataSlice, ex: Exception) {
+        if (line.toString().isNotBlank()) {
+            feedback.reportImportWarning("Failed to parse: '$line'")
+            feedback.reportImportException(ex)
+        }
+    }
+
+    companion object {
+        // Large enough for thousands of lines, small enough to keep a few per thread in flight
+        private const val CHUNK_SIZE = 1 shl 20
+    }
+
     object Factory : ImporterFactory {
-        override fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback): Importer? {
+        override fun importerFor(buffer: GenericByteBuffer, feedback: ImportFeedback, parallelism: Int): Importer? {
             if (buffer.contains("# tracer: nop\n", 1000)) {
-                return FtraceImporter(feedback)
+                return FtraceImporter(feedback, parallelism)
             }
             return null
         }
@@ -117,4 +117,25 @@ class FtraceLine private constructor() {
             callback(ftraceLine)
         }
     }
+
+    /**
+     * Re-creates [FtraceLine]s from the values a [Parser] recorded on another thread, see [FtraceChunk].
+     */
+    class Replayer(val stringCache: StringCache) {
+        private val ftraceLine = FtraceLine()
+        private val function = DataSlice()
+        private val details = DataSlice()
+        private val reader = BufferReader()
+
+        fun replay(buffer: ByteArray, task: String?, pid: Int, tgid: Int, cpu: Int, timestamp: Double,
+                   functionStart: Int, functionEnd: Int, detailsStart: Int, lineEnd: Int,
+                   callback: (FtraceLine) -> Unit) {
+            function.set(buffer, functionStart, functionEnd)
+            details.set(buffer, detailsStart, lineEnd)
+            reader.read(details, stringCache) {
+                ftraceLine.set(task, pid, tgid, cpu, timestamp, function, this)
+                callback(ftraceLine)
+            }
+        }
+    }
 }
@@ -80,7 +80,8 @@ data class DataSlice(var buffer: ByteArray,
     override fun toString() = String(buffer, startIndex, length)
 
     fun compact(): DataSlice {
-        if (length - buffer.size < 50) {
+        // Keep slices that cover (almost) their entire buffer, copy the others so they don't hold on to a large input buffer.
+        if (buffer.size - length < 50) {
             return this
         }
         return DataSlice(buffer.copyOfRange(startIndex, endIndex))
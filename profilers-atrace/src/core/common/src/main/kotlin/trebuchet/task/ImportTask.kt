@@ -25,7 +25,12 @@ import trebuchet.model.Model
 import trebuchet.model.fragments.ModelFragment
 import kotlin.system.measureTimeMillis
 
-class ImportTask(private val importFeedback: ImportFeedback) {
+/**
+ * Imports a trace into a [Model]. Importers may parse the trace on up to [parallelism] threads.
+ */
+class ImportTask @JvmOverloads constructor(
+        private val importFeedback: ImportFeedback,
+        private val parallelism: Int = Runtime.getRuntime().availableProcessors()) {
     private val fragments = mutableListOf<ModelFragment>()
 
     fun importBuffer(source: BufferProducer): Model {
@@ -60,7 +65,7 @@ class ImportTask(private val importFeedback: ImportFeedback) {
     }
 
     private fun addImporterSource(reader: StreamingReader) {
-        val importer = ImporterRegistry.importerFor(reader, importFeedback)
+        val importer = ImporterRegistry.importerFor(reader, importFeedback, parallelism)
         if (importer != null) {
             val result = importer.import(reader)
             if (result != null) {
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.performance
+
+import com.android.testutils.TestUtils
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils.CPU_UI_TRACES_DIR
+import com.android.tools.profilers.cpu.atrace.AtraceProducer
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import trebuchet.model.Model
+import trebuchet.model.base.SliceGroup
+import trebuchet.task.ImportTask
+import trebuchet.util.PrintlnImportFeedback
+import kotlin.system.measureTimeMillis
+
+/**
+ * Measures the time it takes Trebuchet to import an atrace capture, with the trace lines parsed on the calling thread only and
+ * parsed concurrently, and checks that both imports build the same model.
+ */
+class AtraceImportTimeTest {
+  private val timingBenchmark = Benchmark.Builder("CpuProfiler Import Trace Time (millis)").setProject("Android Studio Profilers").build()
+  private val file = TestUtils.getWorkspaceFile(CPU_UI_TRACES_DIR + "atrace.ctrace")
+
+  @Test
+  fun measureImportTime() {
+    // Warm up the class loading and the JIT before measuring anything.
+    val sequentialModel = import(1)
+    val concurrentModel = import(4)
+    assertThat(describe(concurrentModel)).containsExactlyElementsIn(describe(sequentialModel)).inOrder()
+
+    timingBenchmark.log("Atrace-Import-Sequential", bestOf(5) { import(1) })
+    timingBenchmark.log("Atrace-Import-Concurrent", bestOf(5) { import(Runtime.getRuntime().availableProcessors()) })
+  }
+
+  private fun import(parallelism: Int): Model {
+    val producer = AtraceProducer()
+    assertThat(producer.parseFile(file)).isTrue()
+    return ImportTask(PrintlnImportFeedback(), parallelism).importBuffer(producer)
+  }
+
+  private fun describe(model: Model): List<String> {
+    val lines = mutableListOf("${model.beginTimestamp} - ${model.endTimestamp}")
+    for (process in model.processes.values.sortedBy { it.id }) {
+      lines.add("process ${process.id} ${process.name}")
+      for (thread in process.threads) {
+        lines.add("  thread ${thread.id} ${thread.name}, ${thread.schedSlices.size} scheduling slices")
+        thread.slices.forEach { describe(it, "    ", lines) }
+      }
+    }
+    model.cpus.forEach { lines.add("cpu ${it.id}, ${it.slices.size} slices") }
+    return lines
+  }
+
+  private fun describe(slice: SliceGroup, indent: String, lines: MutableList<String>) {
+    lines.add("$indent${slice.name} ${slice.startTime} - ${slice.endTime}")
+    slice.children.forEach { describe(it, "$indent  ", lines) }
+  }
+
+  private fun bestOf(runs: Int, block: () -> Unit) = (1..runs).map { measureTimeMillis(block) }.min()!!
+}
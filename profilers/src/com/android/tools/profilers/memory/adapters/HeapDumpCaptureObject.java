@@ -45,8 +45,11 @@ import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.diagnostic.Logger;
 import gnu.trove.TLongObjectHashMap;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -55,9 +58,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -93,6 +98,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  @Nullable
+  private volatile HprofClassHistogram myClassHistogram;
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
@@ -107,6 +115,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
   private final ExecutorService myExecutorService =
     Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-instancefilters").build());
 
+  private final ExecutorService myHistogramExecutorService =
+    Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("memory-heapdump-histogram").build());
+
   public HeapDumpCaptureObject(@NotNull ProfilerClient client,
                                @NotNull Common.Session session,
                                @NotNull HeapDumpInfo heapDumpInfo,
@@ -152,6 +163,15 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myClassDb;
   }
 
+  /**
+   * Returns the class histogram of the heap dump. It is computed by {@link #load(Range, Executor)} while the {@link Snapshot} is built, and
+   * is available long before the rest of the heap dump has been processed.
+   */
+  @Nullable
+  public HprofClassHistogram getClassHistogram() {
+    return myClassHistogram;
+  }
+
   @NotNull
   @Override
   public Collection<HeapSet> getHeapSets() {
@@ -209,6 +229,14 @@ public class HeapDumpCaptureObject implements CaptureObject {
       return false;
     }
 
+    // The histogram is read while perflib builds the Snapshot from the same bytes, so it does not delay the Snapshot.
+    ByteBuffer histogramBuffer = response.getContents().asReadOnlyByteBuffer();
+    Future<HprofClassHistogram> histogramFuture = myHistogramExecutorService.submit(() -> {
+      HprofClassHistogram histogram = readClassHistogram(histogramBuffer);
+      myClassHistogram = histogram;
+      return histogram;
+    });
+
     InMemoryBuffer buffer = new InMemoryBuffer(response.getContents().asReadOnlyByteBuffer());
     Snapshot snapshot;
     NativeRegistryPostProcessor nativeRegistryPostProcessor = new NativeRegistryPostProcessor();
@@ -222,6 +250,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
     mySnapshot = snapshot;
 
+    HprofClassHistogram histogram = getHistogram(histogramFuture);
+    if (histogram != null) {
+      // Class objects are indexed too, but they are much fewer than the instances.
+      myInstanceIndex.ensureCapacity((int)Math.min(Integer.MAX_VALUE, histogram.getTotalInstanceCount()));
+    }
+
     Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
     InstanceObject javaLangClassObject = null;
     for (Heap heap : snapshot.getHeaps()) {
@@ -280,6 +314,40 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return true;
   }
 
+  @Nullable
+  private HprofClassHistogram readClassHistogram(@NotNull ByteBuffer buffer) {
+    ProguardMap proguardMap = myProguardMap;
+    try {
+      return HprofClassHistogram.read(buffer, proguardMap != null ? proguardMap::getClassName : Function.identity());
+    }
+    catch (IOException e) {
+      // The Snapshot reports the errors of malformed heap dumps, the histogram is only an early summary.
+      getLogger().warn("Failed to compute the class histogram of the heap dump", e);
+      return null;
+    }
+  }
+
+  @Nullable
+  private static HprofClassHistogram getHistogram(@NotNull Future<HprofClassHistogram> histogramFuture) {
+    try {
+      // The histogram only keeps per-class counters, so it is done long before the Snapshot and this does not block.
+      return histogramFuture.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (ExecutionException e) {
+      getLogger().warn("Failed to compute the class histogram of the heap dump", e);
+      return null;
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -293,6 +361,7 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Override
   public void unload() {
     myExecutorService.shutdownNow();
+    myHistogramExecutorService.shutdownNow();
   }
 
   @NotNull
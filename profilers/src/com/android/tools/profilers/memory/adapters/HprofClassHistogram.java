@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Number of instances and shallow size of every class in each heap of a heap dump. It is computed with a single {@link HprofStreamReader}
+ * pass that only keeps per-class counters, so it is available long before the full {@code Snapshot} of a large heap dump is built.
+ */
+public final class HprofClassHistogram {
+  static final int DEFAULT_HEAP_ID = 0;
+  static final String DEFAULT_HEAP_NAME = "default";
+
+  @NotNull private final List<HeapHistogram> myHeaps;
+
+  private HprofClassHistogram(@NotNull List<HeapHistogram> heaps) {
+    myHeaps = heaps;
+  }
+
+  /**
+   * Computes the histogram of the heap dump in {@code buffer}.
+   *
+   * @param classNameMapper applied to every class name, e.g. to deobfuscate it.
+   */
+  @NotNull
+  public static HprofClassHistogram read(@NotNull ByteBuffer buffer, @NotNull Function<String, String> classNameMapper) throws IOException {
+    HistogramVisitor visitor = new HistogramVisitor();
+    HprofStreamReader.accept(buffer, visitor);
+    return visitor.build(classNameMapper);
+  }
+
+  /**
+   * Returns the heaps having instances, in the order they appear in the heap dump.
+   */
+  @NotNull
+  public List<HeapHistogram> getHeaps() {
+    return myHeaps;
+  }
+
+  public long getTotalInstanceCount() {
+    return myHeaps.stream().mapToLong(HeapHistogram::getInstanceCount).sum();
+  }
+
+  public static final class HeapHistogram {
+    private final int myId;
+    @NotNull private final String myName;
+    @NotNull private final List<ClassEntry> myClasses;
+
+    private HeapHistogram(int id, @NotNull String name, @NotNull List<ClassEntry> classes) {
+      myId = id;
+      myName = name;
+      myClasses = classes;
+    }
+
+    public int getId() {
+      return myId;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    /**
+     * Returns the classes having instances in this heap, largest shallow size first.
+     */
+    @NotNull
+    public List<ClassEntry> getClasses() {
+      return myClasses;
+    }
+
+    public long getInstanceCount() {
+      return myClasses.stream().mapToLong(ClassEntry::getInstanceCount).sum();
+    }
+  }
+
+  public static final class ClassEntry {
+    @NotNull private final String myClassName;
+    private final long myInstanceCount;
+    private final long myShallowSize;
+
+    private ClassEntry(@NotNull String className, long instanceCount, long shallowSize) {
+      myClassName = className;
+      myInstanceCount = instanceCount;
+      myShallowSize = shallowSize;
+    }
+
+    @NotNull
+    public String getClassName() {
+      return myClassName;
+    }
+
+    public long getInstanceCount() {
+      return myInstanceCount;
+    }
+
+    public long getShallowSize() {
+      return myShallowSize;
+    }
+  }
+
+  private static final class Counter {
+    long count;
+    long size;
+
+    void add(long bytes) {
+      count++;
+      size += bytes;
+    }
+  }
+
+  private static final class HistogramVisitor implements HprofStreamReader.Visitor {
+    // Only strings naming classes or heaps are kept, but which ones are needed is only known once all records are read.
+    private final Map<Long, String> myStrings = new HashMap<>();
+    private final Map<Long, Long> myClassNameIds = new HashMap<>();
+    private final Map<Integer, Long> myHeapNameIds = new LinkedHashMap<>();
+    // Counters by heap, then by class id for instances and object arrays or by element type for primitive arrays.
+    private final Map<Integer, Map<Object, Counter>> myCounters = new LinkedHashMap<>();
+    private int myIdSize;
+
+    @Override
+    public void visitHeader(int idSize) {
+      myIdSize = idSize;
+    }
+
+    @Override
+    public void visitString(long id, @NotNull String value) {
+      myStrings.put(id, value);
+    }
+
+    @Override
+    public void visitLoadClass(long classId, long nameStringId) {
+      myClassNameIds.put(classId, nameStringId);
+    }
+
+    @Override
+    public void visitHeapDumpInfo(int heapId, long nameStringId) {
+      myHeapNameIds.putIfAbsent(heapId, nameStringId);
+    }
+
+    @Override
+    public void visitInstanceDump(int heapId, long id, long classId, int fieldBytes) {
+      getCounter(heapId, classId).add(fieldBytes);
+    }
+
+    @Override
+    public void visitObjectArrayDump(int heapId, long id, long arrayClassId, int length) {
+      getCounter(heapId, arrayClassId).add((long)length * myIdSize);
+    }
+
+    @Override
+    public void visitPrimitiveArrayDump(int heapId, long id, @NotNull HprofStreamReader.PrimitiveType elementType, int length) {
+      getCounter(heapId, elementType).add((long)length * elementType.getSize());
+    }
+
+    @NotNull
+    private Counter getCounter(int heapId, @NotNull Object key) {
+      return myCounters.computeIfAbsent(heapId, id -> new HashMap<>()).computeIfAbsent(key, k -> new Counter());
+    }
+
+    @NotNull
+    HprofClassHistogram build(@NotNull Function<String, String> classNameMapper) {
+      List<HeapHistogram> heaps = new ArrayList<>(myCounters.size());
+      for (Map.Entry<Integer, Map<Object, Counter>> heapEntry : myCounters.entrySet()) {
+        int heapId = heapEntry.getKey();
+        List<ClassEntry> classes = new ArrayList<>(heapEntry.getValue().size());
+        heapEntry.getValue().forEach(
+          (key, counter) -> classes.add(new ClassEntry(getClassName(key, classNameMapper), counter.count, counter.size)));
+        classes.sort(Comparator.comparingLong(ClassEntry::getShallowSize).reversed().thenComparing(ClassEntry::getClassName));
+        heaps.add(new HeapHistogram(heapId, getHeapName(heapId), Collections.unmodifiableList(classes)));
+      }
+      return new HprofClassHistogram(Collections.unmodifiableList(heaps));
+    }
+
+    @NotNull
+    private String getHeapName(int heapId) {
+      Long nameId = myHeapNameIds.get(heapId);
+      String name = nameId != null ? myStrings.get(nameId) : null;
+      if (name != null) {
+        return name;
+      }
+      return heapId == DEFAULT_HEAP_ID ? DEFAULT_HEAP_NAME : "heap-" + heapId;
+    }
+
+    @NotNull
+    private String getClassName(@NotNull Object key, @NotNull Function<String, String> classNameMapper) {
+      if (key instanceof HprofStreamReader.PrimitiveType) {
+        return ((HprofStreamReader.PrimitiveType)key).getName() + "[]";
+      }
+      Long nameId = myClassNameIds.get(key);
+      String name = nameId != null ? myStrings.get(nameId) : null;
+      if (name == null) {
+        return String.format("0x%x", (Long)key);
+      }
+      return classNameMapper.apply(name.replace('/', '.'));
+    }
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Single pass reader of an hprof heap dump, including the Android specific records. Unlike perflib's {@code Snapshot}, it does not build
+ * an object graph: records are handed to a {@link Visitor} as they are read, so the memory used only depends on what the visitor keeps.
+ */
+public final class HprofStreamReader {
+  /**
+   * Receives the records of a heap dump in file order. Instance field values and array elements are not decoded.
+   */
+  public interface Visitor {
+    default void visitHeader(int idSize) {}
+
+    default void visitString(long id, @NotNull String value) {}
+
+    default void visitLoadClass(long classId, long nameStringId) {}
+
+    /**
+     * Called when the following records belong to another heap. Records before the first call belong to the heap with id 0.
+     */
+    default void visitHeapDumpInfo(int heapId, long nameStringId) {}
+
+    default void visitClassDump(long classId, long superClassId, int instanceSize) {}
+
+    default void visitInstanceDump(int heapId, long id, long classId, int fieldBytes) {}
+
+    default void visitObjectArrayDump(int heapId, long id, long arrayClassId, int length) {}
+
+    default void visitPrimitiveArrayDump(int heapId, long id, @NotNull PrimitiveType elementType, int length) {}
+  }
+
+  public enum PrimitiveType {
+    BOOLEAN(4, 1, "boolean"),
+    CHAR(5, 2, "char"),
+    FLOAT(6, 4, "float"),
+    DOUBLE(7, 8, "double"),
+    BYTE(8, 1, "byte"),
+    SHORT(9, 2, "short"),
+    INT(10, 4, "int"),
+    LONG(11, 8, "long");
+
+    private final int myTypeId;
+    private final int mySize;
+    @NotNull private final String myName;
+
+    PrimitiveType(int typeId, int size, @NotNull String name) {
+      myTypeId = typeId;
+      mySize = size;
+      myName = name;
+    }
+
+    public int getSize() {
+      return mySize;
+    }
+
+    @NotNull
+    public String getName() {
+      return myName;
+    }
+
+    @NotNull
+    static PrimitiveType fromTypeId(int typeId) throws IOException {
+      for (PrimitiveType type : values()) {
+        if (type.myTypeId == typeId) {
+          return type;
+        }
+      }
+      throw new IOException("Unknown primitive type: " + typeId);
+    }
+  }
+
+  private static final int OBJECT_TYPE_ID = 2;
+
+  // Top level record tags.
+  private static final int TAG_STRING = 0x01;
+  private static final int TAG_LOAD_CLASS = 0x02;
+  private static final int TAG_HEAP_DUMP = 0x0C;
+  private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+  // Heap dump sub-record tags, including the ones added by Android.
+  private static final int ROOT_UNKNOWN = 0xFF;
+  private static final int ROOT_JNI_GLOBAL = 0x01;
+  private static final int ROOT_JNI_LOCAL = 0x02;
+  private static final int ROOT_JAVA_FRAME = 0x03;
+  private static final int ROOT_NATIVE_STACK = 0x04;
+  private static final int ROOT_STICKY_CLASS = 0x05;
+  private static final int ROOT_THREAD_BLOCK = 0x06;
+  private static final int ROOT_MONITOR_USED = 0x07;
+  private static final int ROOT_THREAD_OBJECT = 0x08;
+  private static final int CLASS_DUMP = 0x20;
+  private static final int INSTANCE_DUMP = 0x21;
+  private static final int OBJECT_ARRAY_DUMP = 0x22;
+  private static final int PRIMITIVE_ARRAY_DUMP = 0x23;
+  private static final int HEAP_DUMP_INFO = 0xFE;
+  private static final int ROOT_INTERNED_STRING = 0x89;
+  private static final int ROOT_FINALIZING = 0x8A;
+  private static final int ROOT_DEBUGGER = 0x8B;
+  private static final int ROOT_REFERENCE_CLEANUP = 0x8C;
+  private static final int ROOT_VM_INTERNAL = 0x8D;
+  private static final int ROOT_JNI_MONITOR = 0x8E;
+  private static final int UNREACHABLE = 0x90;
+  private static final int PRIMITIVE_ARRAY_NODATA_DUMP = 0xC3;
+
+  @NotNull private final ByteBuffer myBuffer;
+  private int myIdSize;
+  private int myCurrentHeapId;
+
+  private HprofStreamReader(@NotNull ByteBuffer buffer) {
+    myBuffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Reads the heap dump in {@code buffer} from its current position, calling {@code visitor} for every record.
+   *
+   * @throws IOException if the content is not a valid hprof file
+   */
+  public static void accept(@NotNull ByteBuffer buffer, @NotNull Visitor visitor) throws IOException {
+    try {
+      new HprofStreamReader(buffer).accept(visitor);
+    }
+    catch (BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+      throw new IOException("Truncated or malformed hprof", e);
+    }
+  }
+
+  private void accept(@NotNull Visitor visitor) throws IOException {
+    readHeader();
+    visitor.visitHeader(myIdSize);
+    while (myBuffer.hasRemaining()) {
+      int tag = readUnsignedByte();
+      myBuffer.getInt(); // Ignored: timestamp
+      long length = Integer.toUnsignedLong(myBuffer.getInt());
+      int end = Math.toIntExact(myBuffer.position() + length);
+      switch (tag) {
+        case TAG_STRING:
+          long id = readId();
+          byte[] bytes = new byte[end - myBuffer.position()];
+          myBuffer.get(bytes);
+          visitor.visitString(id, new String(bytes, StandardCharsets.UTF_8));
+          break;
+        case TAG_LOAD_CLASS:
+          myBuffer.getInt(); // Ignored: class serial number
+          long classId = readId();
+          myBuffer.getInt(); // Ignored: stack trace serial number
+          visitor.visitLoadClass(classId, readId());
+          break;
+        case TAG_HEAP_DUMP:
+        case TAG_HEAP_DUMP_SEGMENT:
+          while (myBuffer.position() < end) {
+            readHeapDumpRecord(visitor);
+          }
+          break;
+        default:
+          break;
+      }
+      myBuffer.position(end);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    StringBuilder format = new StringBuilder();
+    byte c;
+    while ((c = myBuffer.get()) != 0) {
+      format.append((char)c);
+    }
+    if (!format.toString().startsWith("JAVA PROFILE ")) {
+      throw new IOException("Not an hprof file: " + format);
+    }
+    myIdSize = myBuffer.getInt();
+    if (myIdSize != 1 && myIdSize != 2 && myIdSize != 4 && myIdSize != 8) {
+      throw new IOException("Unsupported identifier size: " + myIdSize);
+    }
+    myBuffer.getLong(); // Ignored: timestamp
+  }
+
+  private void readHeapDumpRecord(@NotNull Visitor visitor) throws IOException {
+    int tag = readUnsignedByte();
+    switch (tag) {
+      case ROOT_UNKNOWN:
+      case ROOT_STICKY_CLASS:
+      case ROOT_MONITOR_USED:
+      case ROOT_INTERNED_STRING:
+      case ROOT_FINALIZING:
+      case ROOT_DEBUGGER:
+      case ROOT_REFERENCE_CLEANUP:
+      case ROOT_VM_INTERNAL:
+      case UNREACHABLE:
+        skip(myIdSize);
+        break;
+      case ROOT_JNI_GLOBAL:
+        skip(2 * myIdSize);
+        break;
+      case ROOT_NATIVE_STACK:
+      case ROOT_THREAD_BLOCK:
+        skip(myIdSize + 4);
+        break;
+      case ROOT_JNI_LOCAL:
+      case ROOT_JAVA_FRAME:
+      case ROOT_THREAD_OBJECT:
+      case ROOT_JNI_MONITOR:
+        skip(myIdSize + 8);
+        break;
+      case HEAP_DUMP_INFO:
+        myCurrentHeapId = myBuffer.getInt();
+        visitor.visitHeapDumpInfo(myCurrentHeapId, readId());
+        break;
+      case CLASS_DUMP:
+        readClassDump(visitor);
+        break;
+      case INSTANCE_DUMP: {
+        long id = readId();
+        myBuffer.getInt(); // Ignored: stack trace serial number
+        long classId = readId();
+        int fieldBytes = myBuffer.getInt();
+        skip(fieldBytes);
+        visitor.visitInstanceDump(myCurrentHeapId, id, classId, fieldBytes);
+        break;
+      }
+      case OBJECT_ARRAY_DUMP: {
+        long id = readId();
+        myBuffer.getInt(); // Ignored: stack trace serial number
+        int length = myBuffer.getInt();
+        long arrayClassId = readId();
+        skip((long)length * myIdSize);
+        visitor.visitObjectArrayDump(myCurrentHeapId, id, arrayClassId, length);
+        break;
+      }
+      case PRIMITIVE_ARRAY_DUMP:
+      case PRIMITIVE_ARRAY_NODATA_DUMP: {
+        long id = readId();
+        myBuffer.getInt(); // Ignored: stack trace serial number
+        int length = myBuffer.getInt();
+        PrimitiveType type = PrimitiveType.fromTypeId(readUnsignedByte());
+        if (tag == PRIMITIVE_ARRAY_DUMP) {
+          skip((long)length * type.getSize());
+        }
+        visitor.visitPrimitiveArrayDump(myCurrentHeapId, id, type, length);
+        break;
+      }
+      default:
+        throw new IOException("Unknown heap dump record type: " + tag);
+    }
+  }
+
+  private void readClassDump(@NotNull Visitor visitor) throws IOException {
+    long classId = readId();
+    myBuffer.getInt(); // Ignored: stack trace serial number
+    long superClassId = readId();
+    // Ignored: class loader, signers, protection domain and two reserved ids.
+    skip(5 * myIdSize);
+    int instanceSize = myBuffer.getInt();
+
+    int constantCount = readUnsignedShort();
+    for (int i = 0; i < constantCount; i++) {
+      skip(2);
+      skipValue(readUnsignedByte());
+    }
+    int staticFieldCount = readUnsignedShort();
+    for (int i = 0; i < staticFieldCount; i++) {
+      skip(myIdSize);
+      skipValue(readUnsignedByte());
+    }
+    int instanceFieldCount = readUnsignedShort();
+    skip((long)instanceFieldCount * (myIdSize + 1));
+    visitor.visitClassDump(classId, superClassId, instanceSize);
+  }
+
+  private void skipValue(int typeId) throws IOException {
+    skip(typeId == OBJECT_TYPE_ID ? myIdSize : PrimitiveType.fromTypeId(typeId).getSize());
+  }
+
+  private long readId() {
+    switch (myIdSize) {
+      case 1:
+        return Byte.toUnsignedLong(myBuffer.get());
+      case 2:
+        return Short.toUnsignedLong(myBuffer.getShort());
+      case 4:
+        return Integer.toUnsignedLong(myBuffer.getInt());
+      default:
+        return myBuffer.getLong();
+    }
+  }
+
+  private int readUnsignedByte() {
+    return Byte.toUnsignedInt(myBuffer.get());
+  }
+
+  private int readUnsignedShort() {
+    return Short.toUnsignedInt(myBuffer.getShort());
+  }
+
+  private void skip(long count) {
+    myBuffer.position(Math.toIntExact(myBuffer.position() + count));
+  }
+}
@@ -108,6 +108,11 @@ public class HeapDumpCaptureObjectTest {
     assertTrue(capture.isDoneLoading());
     assertFalse(capture.isError());
 
+    // The class histogram is computed from the same buffer, before the Snapshot.
+    HprofClassHistogram histogram = capture.getClassHistogram();
+    assertNotNull(histogram);
+    assertTrue(histogram.getHeaps().stream().anyMatch(heap -> "testHeap".equals(heap.getName())));
+
     Collection<HeapSet> heaps = capture.getHeapSets();
     assertEquals(1, heaps.size()); // default heap should not show up if it doesn't contain anything
 
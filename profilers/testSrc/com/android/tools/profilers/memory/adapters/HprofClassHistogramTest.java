@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.Test;
+
+public class HprofClassHistogramTest {
+  private static final int HEAP_APP = 'A';
+
+  @Test
+  public void testInstancesAreCountedPerHeapAndClass() throws Exception {
+    HprofWriter writer = new HprofWriter()
+      .string(1, "com/example/Foo")
+      .string(2, "int[]")
+      .string(3, "app")
+      .string(4, "java.lang.Object[]")
+      .loadClass(100, 1)
+      .loadClass(101, 4);
+    writer.startHeapDump()
+      .classDump(100, 12)
+      .rootUnknown(1000)
+      .instance(1000, 100, 12)
+      .heapDumpInfo(HEAP_APP, 3)
+      .instance(1001, 100, 12)
+      .instance(1002, 100, 12)
+      .objectArray(1003, 101, 5)
+      .intArray(1004, 3)
+      .endHeapDump();
+
+    HprofClassHistogram histogram = HprofClassHistogram.read(writer.toByteBuffer(), Function.identity());
+
+    List<HprofClassHistogram.HeapHistogram> heaps = histogram.getHeaps();
+    assertThat(heaps).hasSize(2);
+    assertThat(histogram.getTotalInstanceCount()).isEqualTo(5);
+
+    HprofClassHistogram.HeapHistogram defaultHeap = heaps.get(0);
+    assertThat(defaultHeap.getName()).isEqualTo("default");
+    assertThat(defaultHeap.getClasses()).hasSize(1);
+    assertThat(defaultHeap.getClasses().get(0).getClassName()).isEqualTo("com.example.Foo");
+    assertThat(defaultHeap.getClasses().get(0).getInstanceCount()).isEqualTo(1);
+
+    HprofClassHistogram.HeapHistogram appHeap = heaps.get(1);
+    assertThat(appHeap.getId()).isEqualTo(HEAP_APP);
+    assertThat(appHeap.getName()).isEqualTo("app");
+    assertThat(appHeap.getInstanceCount()).isEqualTo(4);
+    // Sorted by shallow size: 2 * 12 bytes, then 5 * 4 bytes, then 3 * 4 bytes.
+    List<HprofClassHistogram.ClassEntry> classes = appHeap.getClasses();
+    assertThat(classes).hasSize(3);
+    assertThat(classes.get(0).getClassName()).isEqualTo("com.example.Foo");
+    assertThat(classes.get(0).getInstanceCount()).isEqualTo(2);
+    assertThat(classes.get(0).getShallowSize()).isEqualTo(24);
+    assertThat(classes.get(1).getClassName()).isEqualTo("java.lang.Object[]");
+    assertThat(classes.get(1).getShallowSize()).isEqualTo(20);
+    assertThat(classes.get(2).getClassName()).isEqualTo("int[]");
+    assertThat(classes.get(2).getShallowSize()).isEqualTo(12);
+  }
+
+  @Test
+  public void testClassNamesAreMapped() throws Exception {
+    HprofWriter writer = new HprofWriter()
+      .string(1, "a.b")
+      .loadClass(100, 1);
+    writer.startHeapDump()
+      .classDump(100, 0)
+      .instance(1000, 100, 0)
+      .endHeapDump();
+
+    HprofClassHistogram histogram = HprofClassHistogram.read(writer.toByteBuffer(), name -> "a.b".equals(name) ? "com.example.Bar" : name);
+
+    assertThat(histogram.getHeaps().get(0).getClasses().get(0).getClassName()).isEqualTo("com.example.Bar");
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedHeapDumpFails() throws Exception {
+    HprofWriter writer = new HprofWriter();
+    writer.startHeapDump()
+      .instance(1000, 100, 8)
+      .endHeapDump();
+    ByteBuffer buffer = writer.toByteBuffer();
+    buffer.limit(buffer.limit() - 4);
+
+    HprofClassHistogram.read(buffer, Function.identity());
+  }
+
+  /**
+   * Writes a heap dump with 4 byte identifiers.
+   */
+  private static final class HprofWriter {
+    private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+    private final DataOutputStream myOut = new DataOutputStream(myBytes);
+    private ByteArrayOutputStream myHeapDumpBytes;
+    private DataOutputStream myHeapDumpOut;
+
+    HprofWriter() throws IOException {
+      myOut.write("JAVA PROFILE 1.0.3".getBytes(StandardCharsets.US_ASCII));
+      myOut.writeByte(0);
+      myOut.writeInt(4);
+      myOut.writeLong(0);
+    }
+
+    HprofWriter string(int id, String value) throws IOException {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      startRecord(0x01, 4 + bytes.length);
+      myOut.writeInt(id);
+      myOut.write(bytes);
+      return this;
+    }
+
+    HprofWriter loadClass(int classId, int nameId) throws IOException {
+      startRecord(0x02, 16);
+      myOut.writeInt(0);
+      myOut.writeInt(classId);
+      myOut.writeInt(0);
+      myOut.writeInt(nameId);
+      return this;
+    }
+
+    HprofWriter startHeapDump() {
+      myHeapDumpBytes = new ByteArrayOutputStream();
+      myHeapDumpOut = new DataOutputStream(myHeapDumpBytes);
+      return this;
+    }
+
+    HprofWriter heapDumpInfo(int heapId, int nameId) throws IOException {
+      myHeapDumpOut.writeByte(0xFE);
+      myHeapDumpOut.writeInt(heapId);
+      myHeapDumpOut.writeInt(nameId);
+      return this;
+    }
+
+    HprofWriter rootUnknown(int id) throws IOException {
+      myHeapDumpOut.writeByte(0xFF);
+      myHeapDumpOut.writeInt(id);
+      return this;
+    }
+
+    HprofWriter classDump(int classId, int instanceSize) throws IOException {
+      myHeapDumpOut.writeByte(0x20);
+      myHeapDumpOut.writeInt(classId);
+      myHeapDumpOut.writeInt(0);
+      // Super class, class loader, signers, protection domain and two reserved ids.
+      for (int i = 0; i < 6; i++) {
+        myHeapDumpOut.writeInt(0);
+      }
+      myHeapDumpOut.writeInt(instanceSize);
+      myHeapDumpOut.writeShort(0);
+      // One static int field.
+      myHeapDumpOut.writeShort(1);
+      myHeapDumpOut.writeInt(1);
+      myHeapDumpOut.writeByte(10);
+      myHeapDumpOut.writeInt(42);
+      // One instance object field.
+      myHeapDumpOut.writeShort(1);
+      myHeapDumpOut.writeInt(1);
+      myHeapDumpOut.writeByte(2);
+      return this;
+    }
+
+    HprofWriter instance(int id, int classId, int fieldBytes) throws IOException {
+      myHeapDumpOut.writeByte(0x21);
+      myHeapDumpOut.writeInt(id);
+      myHeapDumpOut.writeInt(0);
+      myHeapDumpOut.writeInt(classId);
+      myHeapDumpOut.writeInt(fieldBytes);
+      myHeapDumpOut.write(new byte[fieldBytes]);
+      return this;
+    }
+
+    HprofWriter objectArray(int id, int arrayClassId, int length) throws IOException {
+      myHeapDumpOut.writeByte(0x22);
+      myHeapDumpOut.writeInt(id);
+      myHeapDumpOut.writeInt(0);
+      myHeapDumpOut.writeInt(length);
+      myHeapDumpOut.writeInt(arrayClassId);
+      myHeapDumpOut.write(new byte[length * 4]);
+      return this;
+    }
+
+    HprofWriter intArray(int id, int length) throws IOException {
+      myHeapDumpOut.writeByte(0x23);
+      myHeapDumpOut.writeInt(id);
+      myHeapDumpOut.writeInt(0);
+      myHeapDumpOut.writeInt(length);
+      myHeapDumpOut.writeByte(10);
+      myHeapDumpOut.write(new byte[length * 4]);
+      return this;
+    }
+
+    HprofWriter endHeapDump() throws IOException {
+      startRecord(0x1C, myHeapDumpBytes.size());
+      myHeapDumpBytes.writeTo(myOut);
+      return this;
+    }
+
+    ByteBuffer toByteBuffer() throws IOException {
+      myOut.flush();
+      return ByteBuffer.wrap(myBytes.toByteArray());
+    }
+
+    private void startRecord(int tag, int length) throws IOException {
+      myOut.writeByte(tag);
+      myOut.writeInt(0);
+      myOut.writeInt(length);
+    }
+  }
+}
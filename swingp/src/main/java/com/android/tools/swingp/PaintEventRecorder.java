@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low overhead alternative to the {@link ThreadStat} call trees, used when {@link RenderStatsManager} is in
+ * {@link RenderStatsManager.RecordingMode#BINARY} mode.
+ * <p>
+ * Every completed {@link MethodStat} is written as a fixed-size event into a ring buffer owned by the painting thread, so recording
+ * neither links stats into trees nor contends with the thread exporting them. When the exporter falls behind, the oldest events are
+ * overwritten and reported as dropped. In addition, the duration of every {@link PaintComponentMethodStat} is aggregated into a
+ * histogram per component class, which stays meaningful however many events are dropped.
+ * <p>
+ * {@link #drain()} encodes everything recorded since the previous call as little endian:
+ * <pre>
+ * int version
+ * int classCount, then per class: int id, int nameLength, byte[nameLength] UTF-8 name
+ * int threadCount, then per thread: long threadId, int nameLength, byte[nameLength] UTF-8 name, long droppedEvents, int eventCount,
+ *     then per event: int statClassId, int ownerClassId, int depth, long startTimeNs, long endTimeNs
+ * int histogramCount, then per histogram: int ownerClassId, long count, long totalNs, int bucketCount, long[bucketCount] buckets
+ * </pre>
+ * Histogram bucket {@code i} counts paints that took less than {@code 2^i} nanoseconds (and at least {@code 2^(i-1)}). Histograms are
+ * cumulative since recording was last enabled, and only included when they changed since the previous call.
+ */
+public final class PaintEventRecorder {
+  @VisibleForTesting static final int VERSION = 1;
+  @VisibleForTesting static final int EVENT_SIZE_BYTES = 4 + 4 + 4 + 8 + 8;
+  @VisibleForTesting static final int HISTOGRAM_BUCKET_COUNT = 40;
+
+  /**
+   * Number of events each painting thread can hold before the oldest ones are overwritten. At 60 frames per second, this leaves the
+   * exporter several frames of slack even for complex component hierarchies.
+   */
+  private static final int DEFAULT_BUFFER_CAPACITY = 1 << 14;
+
+  private static final List<ClassInfo> ourClasses = new CopyOnWriteArrayList<>();
+  private static final ClassValue<ClassInfo> ourClassInfo = new ClassValue<ClassInfo>() {
+    @Override
+    protected ClassInfo computeValue(Class<?> type) {
+      // This may run more than once for the same class under contention. The losing id is never used by events and is harmless.
+      synchronized (ourClasses) {
+        ClassInfo info = new ClassInfo(ourClasses.size(), type.getName());
+        ourClasses.add(info);
+        return info;
+      }
+    }
+  };
+
+  private static final Set<ThreadBuffer> ourBuffers = new CopyOnWriteArraySet<>();
+  private static final ThreadLocal<ThreadBuffer> ourThreadBuffer = new ThreadLocal<ThreadBuffer>() {
+    @Override
+    protected ThreadBuffer initialValue() {
+      ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread(), ourBufferCapacity);
+      ourBuffers.add(buffer);
+      return buffer;
+    }
+  };
+
+  private static volatile int ourBufferCapacity = DEFAULT_BUFFER_CAPACITY;
+  private static volatile boolean ourIsRecording = false;
+
+  private PaintEventRecorder() {
+  }
+
+  /**
+   * Starts or stops recording. Similar to {@link ThreadStat}, stacks that are open when recording stops are allowed to complete.
+   * Histograms are cleared whenever recording starts.
+   */
+  static void setIsRecording(boolean isRecording) {
+    if (isRecording && !ourIsRecording) {
+      for (ClassInfo info : ourClasses) {
+        info.myHistogram = null;
+      }
+    }
+    ourIsRecording = isRecording;
+  }
+
+  static void enter() {
+    ourThreadBuffer.get().enter();
+  }
+
+  static void exit(@NotNull MethodStat methodStat) {
+    ourThreadBuffer.get().exit(methodStat);
+  }
+
+  /**
+   * Changes the capacity of ring buffers created for threads that have not recorded anything yet.
+   */
+  @VisibleForTesting
+  static void setBufferCapacity(int capacity) {
+    ourBufferCapacity = capacity;
+  }
+
+  /**
+   * @return the events recorded since the previous call and the current histograms, in the format described in the class
+   * documentation, or null if nothing was recorded.
+   */
+  @Nullable
+  public static synchronized byte[] drain() {
+    if (ourBuffers.isEmpty()) {
+      return null;
+    }
+
+    List<ThreadBuffer.Snapshot> snapshots = new ArrayList<>();
+    Set<ThreadBuffer> staleBuffers = new HashSet<>();
+    for (ThreadBuffer buffer : ourBuffers) {
+      Thread thread = buffer.myThread.get();
+      boolean isStale = thread == null || !thread.isAlive();
+      if (isStale) {
+        staleBuffers.add(buffer); // Export what is left, then stop tracking the buffer.
+      }
+      ThreadBuffer.Snapshot snapshot = buffer.snapshot(!isStale);
+      if (snapshot.myEventCount > 0 || snapshot.myDroppedEvents > 0) {
+        snapshots.add(snapshot);
+      }
+    }
+    ourBuffers.removeAll(staleBuffers);
+
+    List<ClassInfo> classes = new ArrayList<>(ourClasses);
+    List<Histogram> histograms = new ArrayList<>();
+    for (ClassInfo info : classes) {
+      Histogram histogram = info.myHistogram;
+      if (histogram != null && histogram.myCount.get() != histogram.myExportedCount) {
+        histograms.add(histogram);
+      }
+    }
+    if (snapshots.isEmpty() && histograms.isEmpty()) {
+      return null;
+    }
+
+    List<byte[]> classNames = new ArrayList<>(classes.size());
+    int size = 4 + 4 + 4 + 4;
+    for (ClassInfo info : classes) {
+      byte[] name = info.myName.getBytes(StandardCharsets.UTF_8);
+      classNames.add(name);
+      size += 4 + 4 + name.length;
+    }
+    for (ThreadBuffer.Snapshot snapshot : snapshots) {
+      size += 8 + 4 + snapshot.myThreadName.length + 8 + 4 + snapshot.myEventCount * EVENT_SIZE_BYTES;
+    }
+    size += histograms.size() * (4 + 8 + 8 + 4 + HISTOGRAM_BUCKET_COUNT * 8);
+
+    ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(VERSION);
+    out.putInt(classes.size());
+    for (int i = 0; i < classes.size(); i++) {
+      out.putInt(classes.get(i).myId);
+      out.putInt(classNames.get(i).length);
+      out.put(classNames.get(i));
+    }
+    out.putInt(snapshots.size());
+    for (ThreadBuffer.Snapshot snapshot : snapshots) {
+      snapshot.writeTo(out);
+    }
+    out.putInt(histograms.size());
+    for (Histogram histogram : histograms) {
+      histogram.myExportedCount = histogram.myCount.get();
+      out.putInt(histogram.myOwnerClassId);
+      out.putLong(histogram.myExportedCount);
+      out.putLong(histogram.myTotalNs.get());
+      out.putInt(HISTOGRAM_BUCKET_COUNT);
+      for (int i = 0; i < HISTOGRAM_BUCKET_COUNT; i++) {
+        out.putLong(histogram.myBuckets.get(i));
+      }
+    }
+    return out.array();
+  }
+
+  private static final class ClassInfo {
+    private final int myId;
+    @NotNull private final String myName;
+    @Nullable private volatile Histogram myHistogram;
+
+    private ClassInfo(int id, @NotNull String name) {
+      myId = id;
+      myName = name;
+    }
+
+    @NotNull
+    private Histogram getHistogram() {
+      Histogram histogram = myHistogram;
+      if (histogram == null) {
+        synchronized (this) {
+          histogram = myHistogram;
+          if (histogram == null) {
+            histogram = new Histogram(myId);
+            myHistogram = histogram;
+          }
+        }
+      }
+      return histogram;
+    }
+  }
+
+  private static final class Histogram {
+    private final int myOwnerClassId;
+    @NotNull private final AtomicLongArray myBuckets = new AtomicLongArray(HISTOGRAM_BUCKET_COUNT);
+    @NotNull private final AtomicLong myCount = new AtomicLong();
+    @NotNull private final AtomicLong myTotalNs = new AtomicLong();
+    // Only accessed by the exporting thread, under the PaintEventRecorder lock.
+    private long myExportedCount;
+
+    private Histogram(int ownerClassId) {
+      myOwnerClassId = ownerClassId;
+    }
+
+    private void add(long durationNs) {
+      int bucket = Math.min(HISTOGRAM_BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, durationNs)));
+      myBuckets.incrementAndGet(bucket);
+      myCount.incrementAndGet();
+      myTotalNs.addAndGet(durationNs);
+    }
+  }
+
+  /**
+   * Single-writer ring buffer of events. Only the owning thread writes events, and it publishes them by advancing
+   * {@link #myWriteIndex}. {@link #snapshot()} is called by the exporting thread, which discards any event that may have been
+   * overwritten while it was being copied.
+   */
+  private static final class ThreadBuffer {
+    /**
+     * Each event occupies three slots: header (stat class id, depth and owner class id), start time and end time.
+     */
+    private static final int SLOTS_PER_EVENT = 3;
+
+    @NotNull private final WeakReference<Thread> myThread;
+    private final long myThreadId;
+    @NotNull private final byte[] myThreadName;
+    private final int myCapacity;
+    @NotNull private final long[] mySlots;
+    @NotNull private final AtomicLong myWriteIndex = new AtomicLong();
+
+    // Only accessed by the owning thread.
+    private int myDepth;
+
+    // Only accessed by the exporting thread, under the PaintEventRecorder lock.
+    private long myReadIndex;
+
+    private ThreadBuffer(@NotNull Thread thread, int capacity) {
+      myThread = new WeakReference<>(thread);
+      myThreadId = thread.getId();
+      myThreadName = thread.getName().getBytes(StandardCharsets.UTF_8);
+      myCapacity = capacity;
+      mySlots = new long[capacity * SLOTS_PER_EVENT];
+    }
+
+    private void enter() {
+      // If recording is stopped, let events go through until the stack is popped.
+      if (myDepth == 0 && !ourIsRecording) {
+        return;
+      }
+      myDepth++;
+    }
+
+    private void exit(@NotNull MethodStat methodStat) {
+      if (myDepth == 0) {
+        return;
+      }
+      myDepth--;
+
+      Object owner = methodStat.myOwner.get();
+      ClassInfo ownerInfo = owner == null ? null : ourClassInfo.get(owner.getClass());
+      long startTimeNs = methodStat.getStartTime();
+      long endTimeNs = methodStat.getEndTime();
+      if (ownerInfo != null && methodStat instanceof PaintComponentMethodStat) {
+        ownerInfo.getHistogram().add(endTimeNs - startTimeNs);
+      }
+
+      long writeIndex = myWriteIndex.get();
+      int slot = (int)(writeIndex % myCapacity) * SLOTS_PER_EVENT;
+      mySlots[slot] = ((long)ourClassInfo.get(methodStat.getClass()).myId << 48) |
+                      ((long)(myDepth & 0xFFFF) << 32) |
+                      ((ownerInfo == null ? -1 : ownerInfo.myId) & 0xFFFFFFFFL);
+      mySlots[slot + 1] = startTimeNs;
+      mySlots[slot + 2] = endTimeNs;
+      myWriteIndex.lazySet(writeIndex + 1);
+    }
+
+    /**
+     * @param isWriterAlive whether the owning thread may still be writing events. If so, the event it may be in the middle of writing
+     *                      is treated as overwritten.
+     */
+    @NotNull
+    private Snapshot snapshot(boolean isWriterAlive) {
+      long writeIndex = myWriteIndex.get();
+      long from = Math.max(myReadIndex, writeIndex - myCapacity);
+      int count = (int)(writeIndex - from);
+      long[] events = new long[count * SLOTS_PER_EVENT];
+      for (int i = 0; i < count; i++) {
+        int slot = (int)((from + i) % myCapacity) * SLOTS_PER_EVENT;
+        System.arraycopy(mySlots, slot, events, i * SLOTS_PER_EVENT, SLOTS_PER_EVENT);
+      }
+
+      // Events the writer lapped while we were copying may be torn; drop them. A live writer may also be in the middle of writing the
+      // event after the last one it published, which overwrites one more event.
+      long validFrom = Math.max(from, myWriteIndex.get() - myCapacity + (isWriterAlive ? 1 : 0));
+      validFrom = Math.min(validFrom, writeIndex);
+      int skipped = (int)(validFrom - from);
+      long dropped = validFrom - myReadIndex;
+      myReadIndex = writeIndex;
+      return new Snapshot(myThreadId, myThreadName, dropped, events, skipped, count - skipped);
+    }
+
+    private static final class Snapshot {
+      private final long myThreadId;
+      @NotNull private final byte[] myThreadName;
+      private final long myDroppedEvents;
+      @NotNull private final long[] myEvents;
+      private final int myFirstEvent;
+      private final int myEventCount;
+
+      private Snapshot(long threadId, @NotNull byte[] threadName, long droppedEvents, @NotNull long[] events, int firstEvent, int eventCount) {
+        myThreadId = threadId;
+        myThreadName = threadName;
+        myDroppedEvents = droppedEvents;
+        myEvents = events;
+        myFirstEvent = firstEvent;
+        myEventCount = eventCount;
+      }
+
+      private void writeTo(@NotNull ByteBuffer out) {
+        out.putLong(myThreadId);
+        out.putInt(myThreadName.length);
+        out.put(myThreadName);
+        out.putLong(myDroppedEvents);
+        out.putInt(myEventCount);
+        for (int i = myFirstEvent; i < myFirstEvent + myEventCount; i++) {
+          long header = myEvents[i * SLOTS_PER_EVENT];
+          out.putInt((int)(header >>> 48));
+          out.putInt((int)header);
+          out.putInt((int)(header >>> 32) & 0xFFFF);
+          out.putLong(myEvents[i * SLOTS_PER_EVENT + 1]);
+          out.putLong(myEvents[i * SLOTS_PER_EVENT + 2]);
+        }
+      }
+    }
+  }
+}
@@ -39,19 +39,32 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * This class provides the global and per-thread storage of all call tree bases, which is represented by {@link ThreadStat}.
+ * In {@link RecordingMode#BINARY} mode, stats are handed to the {@link PaintEventRecorder} instead.
  */
 public final class RenderStatsManager {
+  public enum RecordingMode {
+    /**
+     * Builds a {@link ThreadStat} call tree per thread, exported as JSON through {@link #getJson()}.
+     */
+    CALL_TREE,
+    /**
+     * Writes fixed-size events into per-thread ring buffers, exported through {@link PaintEventRecorder#drain()}.
+     */
+    BINARY
+  }
+
   private static final Set<ThreadStat> ourGlobalThreadStats = Collections.synchronizedSet(new HashSet<>());
   private static final ThreadLocal<ThreadStat> ourThreadStat = new ThreadLocal<ThreadStat>() {
     @Override
     protected ThreadStat initialValue() {
       ThreadStat threadStat = new ThreadStat();
-      ourGlobalThreadStats.add(threadStat.setIsRecording(ourIsEnabled));
+      ourGlobalThreadStats.add(threadStat.setIsRecording(ourIsEnabled && ourRecordingMode == RecordingMode.CALL_TREE));
       return threadStat;
     }
   };
 
   private static volatile boolean ourIsEnabled = false;
+  private static volatile RecordingMode ourRecordingMode = RecordingMode.CALL_TREE;
 
   /**
    * Enables/disables swingp's collection of stats.
@@ -60,10 +73,27 @@ public final class RenderStatsManager {
    */
   public static void setIsEnabled(boolean isEnabled) {
     ourIsEnabled = isEnabled;
-    ourGlobalThreadStats.forEach(threadStat -> threadStat.setIsRecording(ourIsEnabled));
+    ourGlobalThreadStats.forEach(threadStat -> threadStat.setIsRecording(ourIsEnabled && ourRecordingMode == RecordingMode.CALL_TREE));
+    PaintEventRecorder.setIsRecording(ourIsEnabled && ourRecordingMode == RecordingMode.BINARY);
     JComponentTreeManager.setEnabled(isEnabled);
   }
 
+  /**
+   * Selects how stats are recorded. The mode can only be changed while collection is disabled, so that no stack is started in one
+   * mode and completed in the other.
+   */
+  public static void setRecordingMode(@NotNull RecordingMode recordingMode) {
+    if (ourIsEnabled) {
+      throw new IllegalStateException("Recording mode cannot be changed while swingp is enabled");
+    }
+    ourRecordingMode = recordingMode;
+  }
+
+  @NotNull
+  public static RecordingMode getRecordingMode() {
+    return ourRecordingMode;
+  }
+
   @VisibleForTesting
   @NotNull
   public static Gson createSwingpGson() {
@@ -131,10 +161,20 @@ public final class RenderStatsManager {
   }
 
   static void push(@NotNull MethodStat methodStat) {
-    ourThreadStat.get().pushMethod(methodStat);
+    if (ourRecordingMode == RecordingMode.BINARY) {
+      PaintEventRecorder.enter();
+    }
+    else {
+      ourThreadStat.get().pushMethod(methodStat);
+    }
   }
 
   static void pop(@NotNull MethodStat verification) {
-    ourThreadStat.get().popMethod(verification);
+    if (ourRecordingMode == RecordingMode.BINARY) {
+      PaintEventRecorder.exit(verification);
+    }
+    else {
+      ourThreadStat.get().popMethod(verification);
+    }
   }
 }
@@ -15,6 +15,7 @@
  */
 package com.android.tools.swingp.server;
 
+import com.android.tools.swingp.PaintEventRecorder;
 import com.android.tools.swingp.RenderStatsManager;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
@@ -47,6 +48,9 @@ import java.util.concurrent.TimeUnit;
  * Stats poller and serializer.
  * This class effectively moves blocking queue out of the stats generators such that the generators can run as fast as possible.
  * There is also a busy-wait polling mechanism to allow for streaming reads from a web service.
+ *
+ * When constructed with {@link RenderStatsManager.RecordingMode#BINARY}, no polling takes place; the events recorded by
+ * {@link PaintEventRecorder} are instead drained on each request to {@link #PAINT_EVENTS_PATH}.
  */
 public class StatsSerializer {
   private static final String POLLING_THREAD_NAME = "Stats Monitor Collector";
@@ -57,11 +61,29 @@ public class StatsSerializer {
   private static final int SWING_MONITOR_SERVER_PORT = 61642;
   private static final int MAX_BATCH_SIZE = 10;
 
+  /**
+   * Request path returning the output of {@link PaintEventRecorder#drain()}, or an empty response if nothing was recorded.
+   */
+  public static final String PAINT_EVENTS_PATH = "/paint-events";
+
+  /**
+   * Set this system property to true to start the serializer created by the "Enable Swing Profiler" action in binary mode.
+   */
+  private static final String BINARY_RECORDING_PROPERTY = "swingp.binary.recording";
+
+  @NotNull private final RenderStatsManager.RecordingMode myRecordingMode;
   @NotNull private final LinkedBlockingQueue<byte[]> mySerializedStats;
   @NotNull private final PollingSerializer myPollingSerializer;
   @NotNull private final HttpServer myHttpServer;
 
   public StatsSerializer() {
+    this(Boolean.getBoolean(BINARY_RECORDING_PROPERTY)
+         ? RenderStatsManager.RecordingMode.BINARY
+         : RenderStatsManager.RecordingMode.CALL_TREE);
+  }
+
+  public StatsSerializer(@NotNull RenderStatsManager.RecordingMode recordingMode) {
+    myRecordingMode = recordingMode;
     mySerializedStats = new LinkedBlockingQueue<>();
     myPollingSerializer = new PollingSerializer(mySerializedStats);
 
@@ -69,6 +91,15 @@ public class StatsSerializer {
       .bootstrap()
       .setListenerPort(SWING_MONITOR_SERVER_PORT)
       .setSocketConfig(SocketConfig.custom().setSoKeepAlive(true).build())
+      .registerHandler(PAINT_EVENTS_PATH, new HttpRequestHandler() {
+        @Override
+        public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+          byte[] events = PaintEventRecorder.drain();
+          response.setStatusCode(HttpStatus.SC_OK);
+          response.setHeader("Access-Control-Allow-Origin", "*");
+          response.setEntity(new ByteArrayEntity(events == null ? new byte[0] : events));
+        }
+      })
       .registerHandler("*", new HttpRequestHandler() {
         @Override
         public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
@@ -84,8 +115,10 @@ public class StatsSerializer {
    * @return true if the serializer started successfully, false otherwise.
    */
   public boolean start() {
-    Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
-    pollingThread.start();
+    if (myRecordingMode == RenderStatsManager.RecordingMode.CALL_TREE) {
+      Thread pollingThread = new Thread(myPollingSerializer, POLLING_THREAD_NAME);
+      pollingThread.start();
+    }
 
     try {
       myHttpServer.start();
@@ -94,13 +127,16 @@ public class StatsSerializer {
       return false;
     }
 
+    RenderStatsManager.setRecordingMode(myRecordingMode);
     RenderStatsManager.setIsEnabled(true);
     return true;
   }
 
   public void stop() throws InterruptedException {
     RenderStatsManager.setIsEnabled(false);
-    myPollingSerializer.stop();
+    if (myRecordingMode == RenderStatsManager.RecordingMode.CALL_TREE) {
+      myPollingSerializer.stop();
+    }
     myHttpServer.shutdown(33, TimeUnit.MILLISECONDS);
   }
 
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.swingp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.JPanel;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PaintEventRecorderTest {
+  @Before
+  public void setUp() {
+    RenderStatsManager.setIsEnabled(false);
+    RenderStatsManager.setRecordingMode(RenderStatsManager.RecordingMode.BINARY);
+    PaintEventRecorder.drain(); // Discard anything left over by other tests.
+  }
+
+  @After
+  public void tearDown() {
+    RenderStatsManager.setIsEnabled(false);
+    RenderStatsManager.setRecordingMode(RenderStatsManager.RecordingMode.CALL_TREE);
+    PaintEventRecorder.setBufferCapacity(1 << 14);
+  }
+
+  @Test
+  public void nothingIsRecordedWhenDisabled() {
+    new TestMethodStat(this).endMethod();
+    assertThat(PaintEventRecorder.drain()).isNull();
+  }
+
+  @Test
+  public void recordsNestedEvents() {
+    RenderStatsManager.setIsEnabled(true);
+    MethodStat outer = new TestMethodStat(this);
+    MethodStat inner = new TestMethodStat("inner");
+    inner.endMethod();
+    outer.endMethod();
+    RenderStatsManager.setIsEnabled(false);
+
+    Dump dump = new Dump(PaintEventRecorder.drain());
+    assertThat(dump.threads).hasSize(1);
+    ThreadEvents thread = dump.threads.get(0);
+    assertThat(thread.name).isEqualTo(Thread.currentThread().getName());
+    assertThat(thread.dropped).isEqualTo(0);
+    assertThat(thread.events).hasSize(2);
+
+    // Events are written when they complete, so the inner one comes first.
+    Event first = thread.events.get(0);
+    assertThat(dump.classNames.get(first.statClassId)).isEqualTo(TestMethodStat.class.getName());
+    assertThat(dump.classNames.get(first.ownerClassId)).isEqualTo(String.class.getName());
+    assertThat(first.depth).isEqualTo(1);
+    Event second = thread.events.get(1);
+    assertThat(dump.classNames.get(second.ownerClassId)).isEqualTo(PaintEventRecorderTest.class.getName());
+    assertThat(second.depth).isEqualTo(0);
+    assertThat(second.startTimeNs).isAtMost(first.startTimeNs);
+    assertThat(second.endTimeNs).isAtLeast(first.endTimeNs);
+
+    // Ensure there are no leftovers.
+    assertThat(PaintEventRecorder.drain()).isNull();
+  }
+
+  @Test
+  public void oldestEventsAreDroppedWhenBufferIsFull() throws InterruptedException {
+    PaintEventRecorder.setBufferCapacity(4);
+    RenderStatsManager.setIsEnabled(true);
+    // Record from a new thread, so that it gets a buffer with the reduced capacity.
+    Thread thread = new Thread(() -> {
+      for (int i = 0; i < 10; i++) {
+        new TestMethodStat(this).endMethod();
+      }
+    }, "Small Buffer Thread");
+    thread.start();
+    thread.join();
+    RenderStatsManager.setIsEnabled(false);
+
+    Dump dump = new Dump(PaintEventRecorder.drain());
+    assertThat(dump.threads).hasSize(1);
+    assertThat(dump.threads.get(0).name).isEqualTo("Small Buffer Thread");
+    assertThat(dump.threads.get(0).events).hasSize(4);
+    assertThat(dump.threads.get(0).dropped).isEqualTo(6);
+  }
+
+  @Test
+  public void eventThatMayBeBeingWrittenIsDroppedWhileTheThreadIsAlive() throws InterruptedException {
+    PaintEventRecorder.setBufferCapacity(4);
+    RenderStatsManager.setIsEnabled(true);
+    CountDownLatch recorded = new CountDownLatch(1);
+    CountDownLatch drained = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      for (int i = 0; i < 10; i++) {
+        new TestMethodStat(this).endMethod();
+      }
+      recorded.countDown();
+      try {
+        drained.await();
+      }
+      catch (InterruptedException ignored) {
+      }
+    }, "Small Buffer Thread");
+    thread.start();
+    recorded.await();
+
+    // The slot of the oldest event is the one the thread writes next.
+    Dump dump = new Dump(PaintEventRecorder.drain());
+    drained.countDown();
+    thread.join();
+    RenderStatsManager.setIsEnabled(false);
+    assertThat(dump.threads).hasSize(1);
+    assertThat(dump.threads.get(0).events).hasSize(3);
+    assertThat(dump.threads.get(0).dropped).isEqualTo(7);
+  }
+
+  @Test
+  public void paintComponentDurationsAreAggregatedPerComponentClass() {
+    RenderStatsManager.setIsEnabled(true);
+    JPanel panel = new JPanel();
+    BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    for (int i = 0; i < 3; i++) {
+      new PaintComponentMethodStat(panel, image.getGraphics(), new AffineTransform(), 0, 0, 1, 1).endMethod();
+    }
+    RenderStatsManager.setIsEnabled(false);
+
+    Dump dump = new Dump(PaintEventRecorder.drain());
+    assertThat(dump.histogramCounts).containsExactly(JPanel.class.getName(), 3L);
+  }
+
+  /**
+   * Trivial extension of {@link MethodStat} (since it's abstract) to test its implementation.
+   */
+  private static final class TestMethodStat extends MethodStat {
+    public TestMethodStat(@NotNull Object owner) {
+      super(owner);
+    }
+  }
+
+  private static final class Event {
+    int statClassId;
+    int ownerClassId;
+    int depth;
+    long startTimeNs;
+    long endTimeNs;
+  }
+
+  private static final class ThreadEvents {
+    String name;
+    long dropped;
+    List<Event> events = new ArrayList<>();
+  }
+
+  /**
+   * Decodes the output of {@link PaintEventRecorder#drain()}.
+   */
+  private static final class Dump {
+    final Map<Integer, String> classNames = new HashMap<>();
+    final List<ThreadEvents> threads = new ArrayList<>();
+    final Map<String, Long> histogramCounts = new HashMap<>();
+
+    Dump(byte[] bytes) {
+      assertThat(bytes).isNotNull();
+      ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      assertThat(in.getInt()).isEqualTo(PaintEventRecorder.VERSION);
+      int classCount = in.getInt();
+      for (int i = 0; i < classCount; i++) {
+        int id = in.getInt();
+        classNames.put(id, readString(in));
+      }
+      int threadCount = in.getInt();
+      for (int i = 0; i < threadCount; i++) {
+        ThreadEvents thread = new ThreadEvents();
+        in.getLong(); // Thread id
+        thread.name = readString(in);
+        thread.dropped = in.getLong();
+        int eventCount = in.getInt();
+        for (int j = 0; j < eventCount; j++) {
+          Event event = new Event();
+          event.statClassId = in.getInt();
+          event.ownerClassId = in.getInt();
+          event.depth = in.getInt();
+          event.startTimeNs = in.getLong();
+          event.endTimeNs = in.getLong();
+          thread.events.add(event);
+        }
+        threads.add(thread);
+      }
+      int histogramCount = in.getInt();
+      for (int i = 0; i < histogramCount; i++) {
+        String className = classNames.get(in.getInt());
+        histogramCounts.put(className, in.getLong());
+        in.getLong(); // Total time
+        int bucketCount = in.getInt();
+        in.position(in.position() + bucketCount * 8);
+      }
+      assertThat(in.hasRemaining()).isFalse();
+    }
+
+    private static String readString(ByteBuffer in) {
+      byte[] bytes = new byte[in.getInt()];
+      in.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}